@@ -0,0 +1,92 @@
+package com.lazy.pegasus.core.collections;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 4 producers and a single consumer on a queue, against a {@link LinkedBlockingQueue} bounded to the same capacity.
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Group)
+@Fork(2)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MpscQueueBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MpscQueueBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    private static final Integer ELEMENT = 1;
+    private static final int CAPACITY = 64 * 1024;
+    private static final int DRAIN_LIMIT = 256;
+
+    @Param({"bounded", "unbounded", "linkedBlocking"})
+    public String queue;
+
+    private MpscQueue<Integer> mpsc;
+    private LinkedBlockingQueue<Integer> blocking;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        mpsc = null;
+        blocking = null;
+        switch (queue) {
+            case "bounded" -> mpsc = new MpscArrayQueue<>(CAPACITY);
+            case "unbounded" -> mpsc = new MpscUnboundedArrayQueue<>();
+            default -> blocking = new LinkedBlockingQueue<>(CAPACITY);
+        }
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(4)
+    public boolean offer() {
+        if (mpsc != null) {
+            // keeps the unbounded queue from growing without limit when the consumer falls behind
+            return mpsc.size() < CAPACITY && mpsc.offer(ELEMENT);
+        }
+        return blocking.offer(ELEMENT);
+    }
+
+    @Benchmark
+    @Group("mpsc")
+    @GroupThreads(1)
+    public int drain(final Blackhole bh) {
+        if (mpsc != null) {
+            return mpsc.drain(bh::consume, DRAIN_LIMIT);
+        }
+        int count = 0;
+        Integer e;
+        while (count < DRAIN_LIMIT && (e = blocking.poll()) != null) {
+            bh.consume(e);
+            count++;
+        }
+        return count;
+    }
+}
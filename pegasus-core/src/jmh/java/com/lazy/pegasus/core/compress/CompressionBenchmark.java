@@ -0,0 +1,126 @@
+package com.lazy.pegasus.core.compress;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of each codec over JSON message bodies. The {@code inputBytes} and {@code outputBytes} counters of
+ * {@link Sizes} give the ratio ({@code outputBytes / inputBytes}) next to the throughput.
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Thread)
+@Fork(2)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompressionBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(CompressionBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Param({"lz4", "deflate"})
+    private String codecName;
+
+    @Param({"1024", "16384", "262144"})
+    private int size;
+
+    @Param({"true", "false"})
+    private boolean direct;
+
+    private CompressionCodec codec;
+    private PegasusBuffer source;
+    private PegasusBuffer compressed;
+    private int compressedLength;
+    private PegasusBuffer output;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Sizes {
+        public long inputBytes;
+        public long outputBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            inputBytes = 0;
+            outputBytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        codec = CompressionCodecs.ofName(codecName);
+
+        byte[] json = json(size);
+        source = direct ? PegasusBuffers.directBuffer(size) : PegasusBuffers.fixedBuffer(size);
+        source.writeBytes(json);
+
+        int max = codec.maxCompressedLength(size);
+        compressed = direct ? PegasusBuffers.directBuffer(max) : PegasusBuffers.fixedBuffer(max);
+        compressedLength = codec.compress(source, 0, size, compressed);
+        output = direct ? PegasusBuffers.directBuffer(max) : PegasusBuffers.fixedBuffer(max);
+    }
+
+    @TearDown
+    public void tearDown() {
+        source.release();
+        compressed.release();
+        output.release();
+    }
+
+    @Benchmark
+    public int compress(Sizes sizes) {
+        output.clear();
+        int len = codec.compress(source, 0, size, output);
+        sizes.inputBytes += size;
+        sizes.outputBytes += len;
+        return len;
+    }
+
+    @Benchmark
+    public int decompress() throws PegasusException {
+        output.clear();
+        codec.decompress(compressed, 0, compressedLength, output, size);
+        return output.writeIndex();
+    }
+
+    private static byte[] json(int size) {
+        StringBuilder sb = new StringBuilder(size + 128);
+        int i = 0;
+        while (sb.length() < size) {
+            sb.append("{\"id\":").append(i).append(",\"region\":\"").append(i % 5 == 0 ? "EU" : "US")
+                    .append("\",\"amount\":").append(i * 7919 % 100_000)
+                    .append(",\"customer\":\"customer-").append(i * 31 % 977).append("\",\"status\":\"")
+                    .append(i % 3 == 0 ? "NEW" : "FILLED").append("\"},");
+            i++;
+        }
+        sb.setLength(size);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
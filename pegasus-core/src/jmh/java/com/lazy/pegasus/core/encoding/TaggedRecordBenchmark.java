@@ -0,0 +1,113 @@
+package com.lazy.pegasus.core.encoding;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.utils.RandsUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares a reader which only knows the v1 fields (skipping the unknown v2 fields by their length prefix) against a
+ * reader which decodes every field of a v2 record.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Thread)
+@Fork(2)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TaggedRecordBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TaggedRecordBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    /**
+     * Number of properties in the nested record, which is unknown to a v1 reader.
+     */
+    @Param({"4", "64"})
+    private int properties;
+
+    private PegasusBuffer record;
+    private TaggedRecordReader reader;
+
+    @Setup
+    public void setup() {
+        record = PegasusBuffers.dynamicBuffer(1024);
+        TaggedRecordWriter writer = new TaggedRecordWriter(record).begin(2)
+                .writeLong(1, 123456789L)
+                .writeSpanString(2, SpanString.of("queue.orders"))
+                .beginNested(3);
+        for (int i = 0; i < properties; i++) {
+            writer.writeString(1, "property-" + i).writeLong(2, i);
+        }
+        writer.endNested()
+                .writeBytes(4, RandsUtil.randBytes(1024))
+                .end();
+
+        reader = new TaggedRecordReader(record);
+    }
+
+    @Benchmark
+    public void skipUnknown(Blackhole bh) throws PegasusException {
+        record.readIndex(0);
+        reader.begin();
+        while (reader.nextField()) {
+            switch (reader.fieldNumber()) {
+                case 1 -> bh.consume(reader.readLong());
+                case 2 -> bh.consume(reader.readSpanString());
+                default -> reader.skipField();
+            }
+        }
+        reader.end();
+    }
+
+    @Benchmark
+    public void decodeAll(Blackhole bh) throws PegasusException {
+        record.readIndex(0);
+        reader.begin();
+        while (reader.nextField()) {
+            switch (reader.fieldNumber()) {
+                case 1 -> bh.consume(reader.readLong());
+                case 2 -> bh.consume(reader.readSpanString());
+                case 3 -> {
+                    TaggedRecordReader nested = reader.readNested();
+                    while (nested.nextField()) {
+                        if (nested.fieldNumber() == 1) {
+                            bh.consume(nested.readSpanString());
+                        } else {
+                            bh.consume(nested.readLong());
+                        }
+                    }
+                }
+                case 4 -> bh.consume(reader.readBytes());
+                default -> reader.skipField();
+            }
+        }
+        reader.end();
+    }
+}
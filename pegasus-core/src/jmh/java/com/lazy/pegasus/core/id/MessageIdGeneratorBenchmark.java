@@ -0,0 +1,72 @@
+package com.lazy.pegasus.core.id;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.utils.RandsUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Id generation under contention of 8 threads, against UUIDs of {@link RandsUtil}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Benchmark)
+@Fork(2)
+@Threads(8)
+@Warmup(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 10, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MessageIdGeneratorBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(MessageIdGeneratorBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    private final MessageIdGenerator blocks = new MessageIdGenerator(1);
+    private final MessageIdGenerator ordered = new MessageIdGenerator(1, 1, System::currentTimeMillis);
+
+    @Benchmark
+    public long nextId() {
+        return blocks.nextId();
+    }
+
+    @Benchmark
+    public long nextIdOrdered() {
+        return ordered.nextId();
+    }
+
+    @Benchmark
+    public SpanString nextIdAsSpanString() {
+        return IdFormat.toSpanString(blocks.nextId());
+    }
+
+    @Benchmark
+    public SpanString nextUniqueIdAsSpanString() {
+        return blocks.nextUniqueId().toSpanString();
+    }
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public SpanString randUUIDAsSpanString() {
+        return RandsUtil.randUUIDAsSpanString();
+    }
+}
@@ -0,0 +1,98 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Load of a journal of 64 files of 8 MB, scanned by 1 thread against all cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class JournalRecoveryBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JournalRecoveryBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    private static final int FILE_SIZE = 8 * 1024 * 1024;
+    private static final int FILES = 64;
+
+    @Param({"1", "0"})
+    private int parallelism;
+
+    private Path dir;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, PegasusException {
+        dir = Files.createTempDirectory("pegasus-journal");
+        final FileJournal journal = new FileJournal(config());
+        journal.start();
+        journal.load();
+
+        final PegasusBuffer body = PegasusBuffers.wrappedBuffer(new byte[512]);
+        final int records = FILES * (FILE_SIZE / JournalConstants.recordSize(512));
+        for (int i = 0; i < records; i++) {
+            journal.appendAddRecord(i, (byte) 1, body, false);
+            if ((i & 1) == 1) {
+                journal.appendDeleteRecord(i - 1, false);
+            }
+        }
+        journal.stop();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public JournalRecoveryStats load() throws PegasusException {
+        final FileJournal journal = new FileJournal(config());
+        journal.start();
+        journal.load();
+        journal.stop();
+        return journal.getRecoveryStats();
+    }
+
+    private JournalConfiguration config() {
+        return new JournalConfiguration(dir)
+                .setFileSize(FILE_SIZE)
+                .setCompactMinFiles(0)
+                .setRecoveryParallelism(parallelism == 0 ? Runtime.getRuntime().availableProcessors() : parallelism);
+    }
+}
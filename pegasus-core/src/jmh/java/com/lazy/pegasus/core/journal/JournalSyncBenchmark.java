@@ -0,0 +1,94 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Durable appends of 8 threads, each waiting for its record to be synced, with and without a sync window, in buffered
+ * and direct I/O modes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class JournalSyncBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(JournalSyncBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Param({"0", "500000"})
+    private long syncWindowNanos;
+
+    @Param({"256"})
+    private int bodySize;
+
+    @Param({"false", "true"})
+    private boolean directIo;
+
+    private final AtomicLong ids = new AtomicLong();
+    private Path dir;
+    private FileJournal journal;
+    private PegasusBuffer body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, PegasusException {
+        dir = Files.createTempDirectory("pegasus-journal");
+        journal = new FileJournal(new JournalConfiguration(dir).setSyncWindowNanos(syncWindowNanos).setDirectIo(directIo));
+        journal.start();
+        journal.load();
+        body = PegasusBuffers.wrappedBuffer(new byte[bodySize]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, PegasusException {
+        journal.stop();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void appendSync() throws PegasusException {
+        journal.appendAddRecord(ids.incrementAndGet(), (byte) 1, body, true);
+    }
+
+    @Benchmark
+    public void appendNoSync() throws PegasusException {
+        journal.appendAddRecord(ids.incrementAndGet(), (byte) 1, body, false);
+    }
+}
@@ -0,0 +1,73 @@
+package com.lazy.pegasus.core.selector;
+
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluation of a selector against a message with a few properties, interpreted from its tree and compiled to
+ * bytecode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SelectorBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(SelectorBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Param({"region = 'EU' AND amount > 100", "region IN ('US', 'APAC') OR (vip AND amount BETWEEN 10 AND 500)"})
+    private String selector;
+
+    private Selector interpreted;
+    private Selector compiled;
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        interpreted = SelectorParser.parse(selector);
+        compiled = SelectorCompiler.compile(selector);
+        message = MessageBuilder.builder()
+                .address("orders")
+                .property("customer", "c-42")
+                .property("region", "EU")
+                .property("amount", 150)
+                .property("vip", true)
+                .body(new byte[64])
+                .build();
+    }
+
+    @Benchmark
+    public boolean interpreted() {
+        return interpreted.matches(message);
+    }
+
+    @Benchmark
+    public boolean compiled() {
+        return compiled.matches(message);
+    }
+}
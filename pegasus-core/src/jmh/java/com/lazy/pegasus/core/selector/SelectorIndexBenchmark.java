@@ -0,0 +1,82 @@
+package com.lazy.pegasus.core.selector;
+
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routing of a message to subscriptions with a selector on the customer and the amount, through the index and by
+ * evaluating every selector.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SelectorIndexBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(SelectorIndexBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Param({"100", "10000"})
+    private int subscriptions;
+
+    private SelectorIndex<Integer> index;
+    private Selector[] selectors;
+    private Message message;
+
+    @Setup
+    public void setUp() {
+        index = new SelectorIndex<>();
+        selectors = new Selector[subscriptions];
+        for (int i = 0; i < subscriptions; i++) {
+            final String selector = "customer = 'c-" + (i % (subscriptions / 10)) + "' AND amount > " + i;
+            index.add(i, selector);
+            selectors[i] = SelectorCompiler.compile(selector);
+        }
+        message = MessageBuilder.builder()
+                .address("orders")
+                .property("customer", "c-7")
+                .property("region", "EU")
+                .property("amount", 150)
+                .body(new byte[64])
+                .build();
+    }
+
+    @Benchmark
+    public int index(final Blackhole blackhole) {
+        return index.match(message, blackhole::consume);
+    }
+
+    @Benchmark
+    public void evaluateAll(final Blackhole blackhole) {
+        for (int i = 0; i < selectors.length; i++) {
+            if (selectors[i].matches(message)) {
+                blackhole.consume(i);
+            }
+        }
+    }
+}
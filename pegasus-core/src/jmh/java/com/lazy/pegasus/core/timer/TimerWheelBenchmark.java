@@ -0,0 +1,86 @@
+package com.lazy.pegasus.core.timer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scheduling and cancelling a timer with a million timers pending, against a {@link ScheduledThreadPoolExecutor}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 1, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 1, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TimerWheelBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TimerWheelBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    private static final Runnable TASK = () -> {
+    };
+
+    @Param({"1000000"})
+    private int pending;
+
+    private TimerWheel<Runnable> wheel;
+    private ScheduledThreadPoolExecutor executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final long now = System.currentTimeMillis();
+        wheel = new TimerWheel<>(10, now, pending);
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        for (int i = 0; i < pending; i++) {
+            final long delay = 60_000 + ThreadLocalRandom.current().nextLong(3_600_000);
+            wheel.schedule(now + delay, TASK);
+            executor.schedule(TASK, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Runnable wheelScheduleCancel() {
+        final long delay = 60_000 + ThreadLocalRandom.current().nextLong(3_600_000);
+        return wheel.cancel(wheel.schedule(System.currentTimeMillis() + delay, TASK));
+    }
+
+    @Benchmark
+    public boolean executorScheduleCancel() {
+        final long delay = 60_000 + ThreadLocalRandom.current().nextLong(3_600_000);
+        final ScheduledFuture<?> future = executor.schedule(TASK, delay, TimeUnit.MILLISECONDS);
+        return future.cancel(false);
+    }
+}
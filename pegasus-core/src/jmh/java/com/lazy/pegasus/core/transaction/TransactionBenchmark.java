@@ -0,0 +1,130 @@
+package com.lazy.pegasus.core.transaction;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.journal.FileJournal;
+import com.lazy.pegasus.core.journal.JournalConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Transactions of a few sends committed by 8 threads, local against XA two-phase commit, whose prepare records are
+ * group-committed with the other ones.
+ */
+@BenchmarkMode(Mode.Throughput)
+@State(Scope.Benchmark)
+@Fork(1)
+@Threads(8)
+@Warmup(iterations = 3, time = 2, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 2, timeUnit = TimeUnit.SECONDS)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TransactionBenchmark {
+
+    public static void main(String[] args) throws RunnerException {
+        Options opt = new OptionsBuilder()
+                .include(TransactionBenchmark.class.getSimpleName())
+                .build();
+
+        new Runner(opt).run();
+    }
+
+    @Param({"4"})
+    private int operations;
+
+    @Param({"256"})
+    private int bodySize;
+
+    private final AtomicLong ids = new AtomicLong();
+    private Path dir;
+    private FileJournal journal;
+    private TransactionManager transactionManager;
+    private XAResourceManager resourceManager;
+    private PegasusBuffer body;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, PegasusException {
+        dir = Files.createTempDirectory("pegasus-transaction");
+        journal = new FileJournal(new JournalConfiguration(dir).setSyncWindowNanos(TimeUnit.MICROSECONDS.toNanos(500)));
+        journal.start();
+        journal.load();
+        transactionManager = new TransactionManager(journal, ids::incrementAndGet);
+        resourceManager = new XAResourceManager(journal, transactionManager, ids::incrementAndGet);
+        body = PegasusBuffers.wrappedBuffer(new byte[bodySize]);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, PegasusException {
+        journal.stop();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void local() throws PegasusException {
+        Transaction tx = transactionManager.begin();
+        for (int i = 0; i < operations; i++) {
+            tx.appendAddRecord(ids.incrementAndGet(), (byte) 1, body);
+        }
+        tx.commit();
+    }
+
+    @Benchmark
+    public void twoPhase() throws XAException {
+        Xid xid = PegasusXid.of(new BenchmarkXid(ids.incrementAndGet()));
+        PegasusXAResource resource = resourceManager.createResource();
+        resource.start(xid, XAResource.TMNOFLAGS);
+        for (int i = 0; i < operations; i++) {
+            resource.getTransaction().appendAddRecord(ids.incrementAndGet(), (byte) 1, body);
+        }
+        resource.end(xid, XAResource.TMSUCCESS);
+        resource.prepare(xid);
+        resource.commit(xid, false);
+    }
+
+    private record BenchmarkXid(long id) implements Xid {
+
+        @Override
+        public int getFormatId() {
+            return 1;
+        }
+
+        @Override
+        public byte[] getGlobalTransactionId() {
+            return Long.toString(id).getBytes();
+        }
+
+        @Override
+        public byte[] getBranchQualifier() {
+            return new byte[0];
+        }
+    }
+}
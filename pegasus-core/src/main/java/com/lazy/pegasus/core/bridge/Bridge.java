@@ -0,0 +1,429 @@
+package com.lazy.pegasus.core.bridge;
+
+import com.lazy.pegasus.core.collections.MpscQueue;
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Consumes messages from a queue of this server and forwards them to another server, e.g. over a WAN link.
+ * <p>
+ * A single forwarder thread drains the source queue into batches of up to {@link BridgeConfiguration#getBatchSize()}
+ * messages or {@link BridgeConfiguration#getBatchBytes()} bytes, each sent as one frame composed of the buffers of its
+ * messages without copying. Frames are pipelined: up to {@link BridgeConfiguration#getMaxInFlight()} frames are sent
+ * without waiting for their acknowledgement, the forwarder only waits once the window is full. A frame never exceeds
+ * {@link BridgeConnection#getMaxFrameLength()}, a message too large to fit in a frame alone is dropped.
+ * <p>
+ * A message is released once its frame is acknowledged. When the connection fails, the bridge reconnects with an
+ * exponential backoff and sends again the frames not acknowledged, in order; the {@link BridgeReceiver} on the target
+ * drops the messages it already received, so each message is delivered once as long as the ids of messages are
+ * unique. A connection on which the oldest frame is not acknowledged within
+ * {@link BridgeConfiguration#getAckTimeoutMillis()} is failed the same way, so a stalled link does not block the
+ * bridge. Frames not acknowledged when the bridge is stopped are kept and sent again when it is started.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class Bridge {
+
+    private static final Logger logger = LoggerFactory.getLogger(Bridge.class);
+
+    private static final class Batch {
+
+        private final List<Message> messages;
+        private long sentNanos;
+
+        private Batch(final List<Message> messages) {
+            this.messages = messages;
+        }
+    }
+
+    private final String name;
+    private final MpscQueue<Message> source;
+    private final BridgeConnector connector;
+    private final BridgeConfiguration config;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final ArrayDeque<Batch> inFlight = new ArrayDeque<>();
+
+    private boolean running;
+    private Thread forwarder;
+    private BridgeConnection connection;
+    /**
+     * Message polled from the source which did not fit in the previous frame, only accessed by the forwarder.
+     */
+    private Message carried;
+    private boolean connectedBefore;
+    private int pendingMessages;
+    private long forwarded;
+    private long framesSent;
+    private long reconnects;
+
+    /**
+     * @param name      name of bridge.
+     * @param source    queue consumed by the bridge, the bridge is its only consumer while started.
+     * @param connector connector to the target server.
+     * @param config    configuration of bridge.
+     */
+    public Bridge(final String name, final MpscQueue<Message> source, final BridgeConnector connector,
+                  final BridgeConfiguration config) {
+        this.name = Objects.requireNonNull(name, "name");
+        this.source = Objects.requireNonNull(source, "source");
+        this.connector = Objects.requireNonNull(connector, "connector");
+        this.config = Objects.requireNonNull(config, "config");
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Starts the forwarder thread, does nothing if started.
+     */
+    public void start() {
+        lock.lock();
+        try {
+            if (running) {
+                return;
+            }
+            // the previous forwarder may still be exiting after a stop timed out
+            if (forwarder != null && forwarder.isAlive()) {
+                throw new IllegalStateException("Bridge " + name + " is stopping");
+            }
+            running = true;
+            forwarder = new Thread(this::forwardLoop, "pegasus-bridge-" + name);
+            forwarder.setDaemon(true);
+            forwarder.start();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the forwarder thread and closes the connection, the messages not acknowledged are kept.
+     */
+    public void stop() throws InterruptedException {
+        final Thread forwarder;
+        final BridgeConnection connection;
+        lock.lock();
+        try {
+            running = false;
+            forwarder = this.forwarder;
+            connection = this.connection;
+            this.connection = null;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (forwarder != null) {
+            forwarder.join(TimeUnit.MINUTES.toMillis(1));
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    public boolean isStarted() {
+        lock.lock();
+        try {
+            return running;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isConnected() {
+        lock.lock();
+        try {
+            return connection != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of messages acknowledged by the target.
+     */
+    public long getForwardedCount() {
+        lock.lock();
+        try {
+            return forwarded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of messages consumed from the source and not acknowledged yet.
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pendingMessages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of frames sent, including the frames sent again after a reconnect.
+     */
+    public long getFramesSent() {
+        lock.lock();
+        try {
+            return framesSent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of connections established after the first one.
+     */
+    public long getReconnectCount() {
+        lock.lock();
+        try {
+            return reconnects;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void forwardLoop() {
+        long retryInterval = config.getRetryIntervalMillis();
+        int attempts = 0;
+        try {
+            while (true) {
+                final BridgeConnection connection;
+                boolean timedOut = false;
+                lock.lock();
+                try {
+                    while (running && this.connection != null) {
+                        final long ackWait = ackWaitNanos();
+                        if (ackWait <= 0) {
+                            timedOut = true;
+                            break;
+                        }
+                        if (inFlight.size() < config.getMaxInFlight()) {
+                            break;
+                        }
+                        changed.awaitNanos(ackWait);
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    connection = this.connection;
+                } finally {
+                    lock.unlock();
+                }
+
+                if (timedOut) {
+                    failed(connection, new PegasusException("No acknowledgement within " +
+                            config.getAckTimeoutMillis() + " ms", PegasusExceptionType.CONNECTION_ERROR));
+                    continue;
+                }
+                if (connection == null) {
+                    if (connect()) {
+                        retryInterval = config.getRetryIntervalMillis();
+                        attempts = 0;
+                    } else if (config.getReconnectAttempts() >= 0 && ++attempts > config.getReconnectAttempts()) {
+                        logger.error("Bridge {} stopped after {} failed connection attempts", name, attempts);
+                        lock.lock();
+                        try {
+                            running = false;
+                        } finally {
+                            lock.unlock();
+                        }
+                        return;
+                    } else {
+                        await(TimeUnit.MILLISECONDS.toNanos(retryInterval));
+                        retryInterval = Math.min(config.getMaxRetryIntervalMillis(),
+                                (long) (retryInterval * config.getRetryIntervalMultiplier()));
+                    }
+                    continue;
+                }
+
+                final Batch batch = poll(connection.getMaxFrameLength());
+                if (batch == null) {
+                    await(config.getIdleNanos());
+                    continue;
+                }
+                lock.lock();
+                try {
+                    inFlight.add(batch);
+                    pendingMessages += batch.messages.size();
+                } finally {
+                    lock.unlock();
+                }
+                send(connection, batch);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Bridge {} stopped on unexpected error", name, e);
+            lock.lock();
+            try {
+                running = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @return true if connected, after sending again the frames not acknowledged.
+     */
+    private boolean connect() {
+        final BridgeConnection connection;
+        try {
+            connection = connector.connect();
+        } catch (PegasusException e) {
+            logger.warn("Bridge {} failed to connect: {}", name, e.getMessage());
+            return false;
+        }
+
+        final List<Batch> unacknowledged;
+        lock.lock();
+        try {
+            if (!running) {
+                connection.close();
+                return true;
+            }
+            this.connection = connection;
+            if (connectedBefore) {
+                reconnects++;
+            }
+            connectedBefore = true;
+            unacknowledged = new ArrayList<>(inFlight);
+        } finally {
+            lock.unlock();
+        }
+
+        if (!unacknowledged.isEmpty()) {
+            logger.info("Bridge {} connected, sending again {} frames", name, unacknowledged.size());
+        }
+        for (Batch batch : unacknowledged) {
+            send(connection, batch);
+        }
+        return true;
+    }
+
+    /**
+     * @return nanoseconds left before the oldest frame in flight times out, or Long.MAX_VALUE if none can.
+     */
+    private long ackWaitNanos() {
+        final Batch oldest = inFlight.peekFirst();
+        if (oldest == null || config.getAckTimeoutMillis() == 0) {
+            return Long.MAX_VALUE;
+        }
+        return oldest.sentNanos + TimeUnit.MILLISECONDS.toNanos(config.getAckTimeoutMillis()) - System.nanoTime();
+    }
+
+    private Batch poll(final int maxFrameLength) {
+        Message message = carried != null ? carried : source.poll();
+        carried = null;
+        while (message != null && DataConstants.SIZE_INT + message.getEncodeSize() > maxFrameLength) {
+            logger.error("Bridge {} dropped message {} of {} bytes, exceeding max frame length {}", name,
+                    message.getMessageId(), message.getEncodeSize(), maxFrameLength);
+            message.release();
+            message = source.poll();
+        }
+        if (message == null) {
+            return null;
+        }
+        final List<Message> messages = new ArrayList<>(Math.min(config.getBatchSize(), source.size() + 1));
+        int bytes = 0;
+        while (true) {
+            messages.add(message);
+            bytes += message.getEncodeSize();
+            if (messages.size() == config.getBatchSize() || bytes >= config.getBatchBytes() ||
+                    (message = source.poll()) == null) {
+                return new Batch(messages);
+            }
+            if (DataConstants.SIZE_INT + bytes + message.getEncodeSize() > maxFrameLength) {
+                carried = message;
+                return new Batch(messages);
+            }
+        }
+    }
+
+    private void send(final BridgeConnection connection, final Batch batch) {
+        final PegasusBuffer frame = BridgeFrames.encode(batch.messages);
+        lock.lock();
+        try {
+            framesSent++;
+            batch.sentNanos = System.nanoTime();
+        } finally {
+            lock.unlock();
+        }
+        connection.send(frame).whenComplete((v, e) -> {
+            if (e == null) {
+                acknowledged(batch);
+            } else {
+                failed(connection, e);
+            }
+        });
+    }
+
+    private void acknowledged(final Batch batch) {
+        lock.lock();
+        try {
+            // a frame sent again may be acknowledged twice, by the failed connection and the new one
+            if (!inFlight.remove(batch)) {
+                return;
+            }
+            pendingMessages -= batch.messages.size();
+            forwarded += batch.messages.size();
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (Message message : batch.messages) {
+            message.release();
+        }
+    }
+
+    private void failed(final BridgeConnection connection, final Throwable cause) {
+        lock.lock();
+        try {
+            if (this.connection != connection) {
+                return;
+            }
+            this.connection = null;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        logger.warn("Bridge {} lost its connection: {}", name, cause.toString());
+        connection.close();
+    }
+
+    private void await(final long nanos) throws InterruptedException {
+        lock.lock();
+        try {
+            if (running) {
+                changed.awaitNanos(nanos);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Bridge[name=" + name + ", connected=" + isConnected() + ", forwarded=" + getForwardedCount() +
+                ", pending=" + getPendingCount() + ']';
+    }
+}
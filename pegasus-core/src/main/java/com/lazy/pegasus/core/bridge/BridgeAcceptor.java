@@ -0,0 +1,32 @@
+package com.lazy.pegasus.core.bridge;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.transport.Connection;
+import com.lazy.pegasus.core.transport.FrameHandler;
+
+import java.util.Objects;
+
+/**
+ * Handler of a {@link com.lazy.pegasus.core.transport.TransportServer} receiving the frames of bridges, each frame
+ * is handed to a {@link BridgeReceiver} then acknowledged by a frame holding the int number of messages delivered.
+ * Acknowledgements are sent in the order of frames, a frame which cannot be received closes the connection.
+ */
+public class BridgeAcceptor implements FrameHandler {
+
+    private final BridgeReceiver receiver;
+
+    public BridgeAcceptor(final BridgeReceiver receiver) {
+        this.receiver = Objects.requireNonNull(receiver, "receiver");
+    }
+
+    @Override
+    public void frameReceived(final Connection connection, final PegasusBuffer frame) throws PegasusException {
+        final int delivered = receiver.receive(frame);
+        final PegasusBuffer ack = PegasusBuffers.fixedBuffer(DataConstants.SIZE_INT);
+        ack.writeInt(delivered);
+        connection.send(ack);
+    }
+}
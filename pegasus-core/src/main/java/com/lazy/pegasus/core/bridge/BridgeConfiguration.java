@@ -0,0 +1,158 @@
+package com.lazy.pegasus.core.bridge;
+
+/**
+ * Configuration of a {@link Bridge}, setters return this configuration to be chained.
+ */
+public class BridgeConfiguration {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final int DEFAULT_BATCH_BYTES = 256 * 1024;
+    public static final int DEFAULT_MAX_IN_FLIGHT = 8;
+    public static final long DEFAULT_RETRY_INTERVAL_MILLIS = 100;
+    public static final double DEFAULT_RETRY_INTERVAL_MULTIPLIER = 2.0;
+    public static final long DEFAULT_MAX_RETRY_INTERVAL_MILLIS = 10_000;
+    public static final int DEFAULT_RECONNECT_ATTEMPTS = -1;
+    public static final long DEFAULT_IDLE_NANOS = 100_000;
+    public static final long DEFAULT_ACK_TIMEOUT_MILLIS = 30_000;
+
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int batchBytes = DEFAULT_BATCH_BYTES;
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+    private long retryIntervalMillis = DEFAULT_RETRY_INTERVAL_MILLIS;
+    private double retryIntervalMultiplier = DEFAULT_RETRY_INTERVAL_MULTIPLIER;
+    private long maxRetryIntervalMillis = DEFAULT_MAX_RETRY_INTERVAL_MILLIS;
+    private int reconnectAttempts = DEFAULT_RECONNECT_ATTEMPTS;
+    private long idleNanos = DEFAULT_IDLE_NANOS;
+    private long ackTimeoutMillis = DEFAULT_ACK_TIMEOUT_MILLIS;
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize maximum number of messages of a frame.
+     */
+    public BridgeConfiguration setBatchSize(int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive, but " + batchSize);
+        }
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public int getBatchBytes() {
+        return batchBytes;
+    }
+
+    /**
+     * @param batchBytes number of bytes of messages closing a frame, a single larger message is sent alone.
+     */
+    public BridgeConfiguration setBatchBytes(int batchBytes) {
+        if (batchBytes <= 0) {
+            throw new IllegalArgumentException("Batch bytes must be positive, but " + batchBytes);
+        }
+        this.batchBytes = batchBytes;
+        return this;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * @param maxInFlight maximum number of frames sent and not yet acknowledged.
+     */
+    public BridgeConfiguration setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Max in flight must be positive, but " + maxInFlight);
+        }
+        this.maxInFlight = maxInFlight;
+        return this;
+    }
+
+    public long getRetryIntervalMillis() {
+        return retryIntervalMillis;
+    }
+
+    /**
+     * @param retryIntervalMillis delay before the first reconnect attempt.
+     */
+    public BridgeConfiguration setRetryIntervalMillis(long retryIntervalMillis) {
+        if (retryIntervalMillis < 0) {
+            throw new IllegalArgumentException("Retry interval must not be negative, but " + retryIntervalMillis);
+        }
+        this.retryIntervalMillis = retryIntervalMillis;
+        return this;
+    }
+
+    public double getRetryIntervalMultiplier() {
+        return retryIntervalMultiplier;
+    }
+
+    /**
+     * @param retryIntervalMultiplier factor of the delay of each reconnect attempt over the previous one.
+     */
+    public BridgeConfiguration setRetryIntervalMultiplier(double retryIntervalMultiplier) {
+        if (retryIntervalMultiplier < 1) {
+            throw new IllegalArgumentException("Retry interval multiplier must be at least 1, but " +
+                    retryIntervalMultiplier);
+        }
+        this.retryIntervalMultiplier = retryIntervalMultiplier;
+        return this;
+    }
+
+    public long getMaxRetryIntervalMillis() {
+        return maxRetryIntervalMillis;
+    }
+
+    /**
+     * @param maxRetryIntervalMillis maximum delay between reconnect attempts.
+     */
+    public BridgeConfiguration setMaxRetryIntervalMillis(long maxRetryIntervalMillis) {
+        this.maxRetryIntervalMillis = maxRetryIntervalMillis;
+        return this;
+    }
+
+    public int getReconnectAttempts() {
+        return reconnectAttempts;
+    }
+
+    /**
+     * @param reconnectAttempts number of failed attempts after which the bridge stops, -1 to retry forever.
+     */
+    public BridgeConfiguration setReconnectAttempts(int reconnectAttempts) {
+        this.reconnectAttempts = reconnectAttempts;
+        return this;
+    }
+
+    public long getIdleNanos() {
+        return idleNanos;
+    }
+
+    /**
+     * @param idleNanos time waited before polling an empty source queue again.
+     */
+    public BridgeConfiguration setIdleNanos(long idleNanos) {
+        if (idleNanos <= 0) {
+            throw new IllegalArgumentException("Idle time must be positive, but " + idleNanos);
+        }
+        this.idleNanos = idleNanos;
+        return this;
+    }
+
+    public long getAckTimeoutMillis() {
+        return ackTimeoutMillis;
+    }
+
+    /**
+     * @param ackTimeoutMillis time a frame waits for its acknowledgement before the connection is failed and the
+     *                         frames not acknowledged are sent again on a new one, 0 to wait forever.
+     */
+    public BridgeConfiguration setAckTimeoutMillis(long ackTimeoutMillis) {
+        if (ackTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Ack timeout must not be negative, but " + ackTimeoutMillis);
+        }
+        this.ackTimeoutMillis = ackTimeoutMillis;
+        return this;
+    }
+}
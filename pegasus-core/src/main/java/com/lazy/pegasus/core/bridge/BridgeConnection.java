@@ -0,0 +1,35 @@
+package com.lazy.pegasus.core.bridge;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A connection of a {@link Bridge} to its target server, which hands the received frames to a
+ * {@link BridgeReceiver}.
+ * <p>
+ * Frames are sent without waiting for the previous ones to be acknowledged, the connection must deliver them in order.
+ */
+public interface BridgeConnection {
+
+    /**
+     * Sends a frame, the connection takes over the frame and releases it once written.
+     *
+     * @param frame frame of messages.
+     * @return future completed once the target server acknowledged the frame, or exceptionally if the connection
+     * failed before, in which case the frame may or may not have been received.
+     */
+    CompletableFuture<Void> send(PegasusBuffer frame);
+
+    /**
+     * @return maximum length of a frame, the bridge does not batch messages past it.
+     */
+    default int getMaxFrameLength() {
+        return Integer.MAX_VALUE;
+    }
+
+    /**
+     * Closes the connection, failing the frames not acknowledged yet. Closing a closed connection does nothing.
+     */
+    void close();
+}
@@ -0,0 +1,16 @@
+package com.lazy.pegasus.core.bridge;
+
+import com.lazy.pegasus.core.exceptions.PegasusException;
+
+/**
+ * Opens connections of a {@link Bridge} to its target server.
+ */
+@FunctionalInterface
+public interface BridgeConnector {
+
+    /**
+     * @return a new connection to the target server.
+     * @throws PegasusException if the target server is not reachable, the bridge retries later.
+     */
+    BridgeConnection connect() throws PegasusException;
+}
@@ -0,0 +1,38 @@
+package com.lazy.pegasus.core.bridge;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.message.Message;
+
+import java.util.List;
+
+/**
+ * Frames of messages forwarded by a bridge, laid out as:
+ * <pre>
+ *     [int count][message]*
+ * </pre>
+ * each message being in its encoded form. A frame is composed of the buffers of its messages without copying them.
+ */
+final class BridgeFrames {
+
+    private BridgeFrames() {
+    }
+
+    /**
+     * @param messages messages of frame, which keep their own reference to their buffer.
+     * @return composite frame holding a reference to the buffer of each message.
+     */
+    static PegasusBuffer encode(final List<Message> messages) {
+        final PegasusBuffer[] components = new PegasusBuffer[messages.size() + 1];
+        final PegasusBuffer header = PegasusBuffers.fixedBuffer(DataConstants.SIZE_INT);
+        header.writeInt(messages.size());
+        components[0] = header;
+        for (int i = 0; i < messages.size(); i++) {
+            final Message message = messages.get(i);
+            components[i + 1] = PegasusBuffers.wrappedBuffer(
+                    message.getBuffer().byteBuf().retainedSlice(0, message.getEncodeSize()));
+        }
+        return PegasusBuffers.compositeBuffer(components);
+    }
+}
@@ -0,0 +1,84 @@
+package com.lazy.pegasus.core.bridge;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.dedup.DuplicateIdCache;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.message.Message;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Target side of a {@link Bridge}: decodes the frames received from the bridge and hands their messages to the
+ * target, dropping the messages already received.
+ * <p>
+ * A bridge sends again the frames not acknowledged when its connection fails, so a message is identified by its id
+ * on the source server, which is checked against a {@link DuplicateIdCache} of the bridge straight from the frame.
+ * A message is added to the cache once handed to the target, so a message is never lost but may be delivered twice if
+ * the target fails while handing it.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class BridgeReceiver {
+
+    private final DuplicateIdCache cache;
+    private final Consumer<Message> target;
+
+    private long received;
+    private long duplicates;
+
+    /**
+     * @param cache  cache of the ids of messages received from the bridge, e.g. the cache of the bridge name.
+     * @param target target of messages, e.g. a queue.
+     */
+    public BridgeReceiver(final DuplicateIdCache cache, final Consumer<Message> target) {
+        this.cache = Objects.requireNonNull(cache, "cache");
+        this.target = Objects.requireNonNull(target, "target");
+    }
+
+    /**
+     * Hands the messages of a frame to the target, the frame is read from its {@code readIndex} and not released.
+     *
+     * @param frame frame of messages.
+     * @return number of messages handed to the target, not counting duplicates.
+     * @throws PegasusException if the frame is invalid or an id could not be journaled.
+     */
+    public synchronized int receive(final PegasusBuffer frame) throws PegasusException {
+        final int count = frame.readInt();
+        int delivered = 0;
+        try {
+            for (int i = 0; i < count; i++) {
+                final int index = frame.readIndex();
+                if (cache.contains(frame.byteBuf(), index + Message.MESSAGE_ID_OFFSET, DataConstants.SIZE_LONG)) {
+                    frame.skipBytes(Message.encodeSizeOf(frame, index));
+                    duplicates++;
+                    continue;
+                }
+                target.accept(Message.decode(frame));
+                cache.addIfAbsent(frame.byteBuf(), index + Message.MESSAGE_ID_OFFSET, DataConstants.SIZE_LONG);
+                delivered++;
+            }
+        } catch (IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new PegasusException("Invalid bridge frame", e, PegasusExceptionType.ENCODING_ERROR);
+        } finally {
+            received += delivered;
+        }
+        return delivered;
+    }
+
+    /**
+     * @return number of messages handed to the target.
+     */
+    public synchronized long getReceivedCount() {
+        return received;
+    }
+
+    /**
+     * @return number of messages dropped as already received.
+     */
+    public synchronized long getDuplicateCount() {
+        return duplicates;
+    }
+}
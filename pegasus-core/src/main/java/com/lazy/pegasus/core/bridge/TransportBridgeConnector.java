@@ -0,0 +1,116 @@
+package com.lazy.pegasus.core.bridge;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.transport.Connection;
+import com.lazy.pegasus.core.transport.FrameHandler;
+import com.lazy.pegasus.core.transport.TransportClient;
+
+import java.util.ArrayDeque;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Connects a {@link Bridge} to a {@link BridgeAcceptor} through a {@link TransportClient}.
+ * <p>
+ * The acceptor acknowledges frames in order, so the futures of the frames sent on a connection are kept in a FIFO
+ * and each acknowledgement completes the oldest one.
+ */
+public class TransportBridgeConnector implements BridgeConnector {
+
+    private final TransportClient client;
+    private final String host;
+    private final int port;
+
+    /**
+     * @param client started client.
+     * @param host   host of the target server.
+     * @param port   port of the target server.
+     */
+    public TransportBridgeConnector(final TransportClient client, final String host, final int port) {
+        this.client = Objects.requireNonNull(client, "client");
+        this.host = Objects.requireNonNull(host, "host");
+        this.port = port;
+    }
+
+    @Override
+    public BridgeConnection connect() throws PegasusException {
+        final TransportBridgeConnection bridgeConnection = new TransportBridgeConnection();
+        bridgeConnection.connection = client.connect(host, port, bridgeConnection);
+        bridgeConnection.connection.getCloseFuture().thenRun(bridgeConnection::failPending);
+        return bridgeConnection;
+    }
+
+    private static final class TransportBridgeConnection implements BridgeConnection, FrameHandler {
+
+        private final ArrayDeque<CompletableFuture<Void>> pending = new ArrayDeque<>();
+        private Connection connection;
+        private boolean closed;
+
+        @Override
+        public CompletableFuture<Void> send(final PegasusBuffer frame) {
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            synchronized (this) {
+                if (closed) {
+                    frame.release();
+                    future.completeExceptionally(closedException());
+                    return future;
+                }
+                pending.add(future);
+                // frames are written in the order they are queued, as the acknowledgements
+                try {
+                    connection.send(frame).whenComplete((v, e) -> {
+                        if (e != null) {
+                            close();
+                        }
+                    });
+                } catch (IllegalArgumentException e) {
+                    // the frame was released and never written, no acknowledgement will come for it
+                    pending.pollLast();
+                    future.completeExceptionally(new PegasusException(e.getMessage(), e,
+                            PegasusExceptionType.CONNECTION_ERROR));
+                }
+            }
+            return future;
+        }
+
+        @Override
+        public int getMaxFrameLength() {
+            return connection.getMaxFrameLength();
+        }
+
+        @Override
+        public void frameReceived(final Connection connection, final PegasusBuffer frame) {
+            final CompletableFuture<Void> future;
+            synchronized (this) {
+                future = pending.poll();
+            }
+            if (future != null) {
+                future.complete(null);
+            }
+        }
+
+        @Override
+        public void close() {
+            connection.close();
+            failPending();
+        }
+
+        private void failPending() {
+            final CompletableFuture<?>[] futures;
+            synchronized (this) {
+                closed = true;
+                futures = pending.toArray(new CompletableFuture<?>[0]);
+                pending.clear();
+            }
+            for (CompletableFuture<?> future : futures) {
+                future.completeExceptionally(closedException());
+            }
+        }
+
+        private PegasusException closedException() {
+            return new PegasusException("Connection " + connection + " closed", PegasusExceptionType.CONNECTION_ERROR);
+        }
+    }
+}
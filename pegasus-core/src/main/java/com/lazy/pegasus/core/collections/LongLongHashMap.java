@@ -0,0 +1,258 @@
+package com.lazy.pegasus.core.collections;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map of primitive {@code long} keys to primitive {@code long} values, without boxing nor an
+ * entry object per mapping. Collisions are resolved by linear probing in two parallel arrays, and a removal shifts the
+ * following entries of its probe sequence back, so there are no tombstones.
+ * <p>
+ * A configurable {@code missingValue} is returned for absent keys and can not be stored as a value. Key 0 marks an
+ * empty slot, a mapping of key 0 is kept aside.
+ * <p>
+ * This map is not thread-safe.
+ */
+public class LongLongHashMap {
+
+    /**
+     * Functional interface to iterate over the mappings of map.
+     */
+    @FunctionalInterface
+    public interface EntryConsumer {
+
+        void accept(long key, long value);
+    }
+
+    private static final long EMPTY_KEY = 0;
+    private static final int MIN_CAPACITY = 8;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private final long missingValue;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    private boolean hasZeroKey;
+    private long zeroKeyValue;
+
+    public LongLongHashMap(final long missingValue) {
+        this(MIN_CAPACITY, missingValue);
+    }
+
+    /**
+     * @param expectedSize number of mappings the map holds without resizing.
+     * @param missingValue value returned for an absent key.
+     */
+    public LongLongHashMap(final int expectedSize, final long missingValue) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Expected size must not be negative, but " + expectedSize);
+        }
+
+        this.missingValue = missingValue;
+        allocate(capacityFor(expectedSize));
+    }
+
+    public long getMissingValue() {
+        return missingValue;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param key key to look up.
+     * @return the value mapped to key, or {@code missingValue} if there is no mapping.
+     */
+    public long get(final long key) {
+        if (key == EMPTY_KEY) {
+            return hasZeroKey ? zeroKeyValue : missingValue;
+        }
+
+        final long[] keys = this.keys;
+        int index = slot(key);
+        long existing;
+        while ((existing = keys[index]) != EMPTY_KEY) {
+            if (existing == key) {
+                return values[index];
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(final long key) {
+        return get(key) != missingValue;
+    }
+
+    /**
+     * @param key   key of mapping.
+     * @param value value of mapping, must not be {@code missingValue}.
+     * @return the previous value mapped to key, or {@code missingValue} if there was no mapping.
+     */
+    public long put(final long key, final long value) {
+        if (value == missingValue) {
+            throw new IllegalArgumentException("Value " + value + " is the missing value of map");
+        }
+
+        if (key == EMPTY_KEY) {
+            final long prev = hasZeroKey ? zeroKeyValue : missingValue;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroKeyValue = value;
+            return prev;
+        }
+
+        int index = slot(key);
+        long existing;
+        while ((existing = keys[index]) != EMPTY_KEY) {
+            if (existing == key) {
+                final long prev = values[index];
+                values[index] = value;
+                return prev;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = value;
+        if (++size > resizeThreshold) {
+            rehash(keys.length << 1);
+        }
+        return missingValue;
+    }
+
+    /**
+     * @param key key of mapping.
+     * @return the value mapped to key before removal, or {@code missingValue} if there was no mapping.
+     */
+    public long remove(final long key) {
+        if (key == EMPTY_KEY) {
+            if (!hasZeroKey) {
+                return missingValue;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroKeyValue;
+        }
+
+        int index = slot(key);
+        long existing;
+        while ((existing = keys[index]) != EMPTY_KEY) {
+            if (existing == key) {
+                final long prev = values[index];
+                shiftBack(index);
+                size--;
+                return prev;
+            }
+            index = (index + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    /**
+     * Removes all mappings, the capacity of map is kept.
+     */
+    public void clear() {
+        Arrays.fill(keys, EMPTY_KEY);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * Iterates over all mappings, the map must not be modified during iteration.
+     *
+     * @param consumer consumer of mappings.
+     */
+    public void forEach(final EntryConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(EMPTY_KEY, zeroKeyValue);
+        }
+
+        final long[] keys = this.keys;
+        final long[] values = this.values;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY_KEY) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    /**
+     * Fills the slot of a removed entry with the following entries of the probe sequence which can not be found
+     * anymore otherwise.
+     */
+    private void shiftBack(int gap) {
+        final long[] keys = this.keys;
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            final long key = keys[index];
+            if (key == EMPTY_KEY) {
+                break;
+            }
+
+            // the entry can move to gap only if its home slot is not in range (gap, index]
+            final int home = slot(key);
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[index];
+                gap = index;
+            }
+        }
+        keys[gap] = EMPTY_KEY;
+    }
+
+    private int slot(final long key) {
+        // Fibonacci hashing, the high bits of product are the best mixed
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        allocate(capacity);
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            final long key = oldKeys[i];
+            if (key != EMPTY_KEY) {
+                int index = slot(key);
+                while (keys[index] != EMPTY_KEY) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = key;
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeThreshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    private static int capacityFor(final int expectedSize) {
+        final int min = Math.max(MIN_CAPACITY, (int) Math.ceil(expectedSize / LOAD_FACTOR) + 1);
+        if (min > 1 << 30) {
+            throw new IllegalArgumentException("Expected size " + expectedSize + " is too large");
+        }
+        return Integer.highestOneBit(min - 1) << 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LongLongHashMap[size=" + size + ", capacity=" + keys.length + ']';
+    }
+}
@@ -0,0 +1,408 @@
+package com.lazy.pegasus.core.collections;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SequenceAccessBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.utils.VarIntUtil;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of primitive {@code long} values kept as sorted runs of consecutive values, e.g. the acknowledged ids of a
+ * consumer: acknowledgements in order extend the last run, and out of order ones cost a run per gap, so memory depends
+ * on the number of gaps rather than on the number of values.
+ * <p>
+ * Runs are kept as start inclusive and end exclusive bounds in two parallel arrays, never overlapping nor adjacent.
+ * A value is located by a binary search, so {@link #add(long)} and {@link #contains(long)} are O(log n) in the number
+ * of runs; a new run or a merge of runs moves the following runs by a single array copy. Runs are kept from a head
+ * offset, so the first run is read in O(1) and removing the runs below a value (e.g. once they are acknowledged in
+ * order) moves nothing.
+ * <p>
+ * The set is encoded as {@code [varint count]} followed by each run as {@code [varlong delta][varlong length]}, the
+ * delta of the first run being its zigzag encoded start and the others the gap from the end of the previous run, so a
+ * set of ids is a few bytes per run.
+ * <p>
+ * Values must be greater than {@link Long#MIN_VALUE} and less than {@link Long#MAX_VALUE}. This set is not
+ * thread-safe.
+ */
+public class LongRangeSet {
+
+    /**
+     * Functional interface to iterate over the runs of set.
+     */
+    @FunctionalInterface
+    public interface RangeConsumer {
+
+        /**
+         * @param start first value of run.
+         * @param end   value after the last value of run.
+         */
+        void accept(long start, long end);
+    }
+
+    private static final int MIN_CAPACITY = 4;
+    private static final int MIN_ENCODED_RANGE_SIZE = 2;
+
+    private long[] starts;
+    private long[] ends;
+    private int head;
+    private int count;
+    private long cardinality;
+
+    public LongRangeSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedRanges number of runs the set holds without resizing.
+     */
+    public LongRangeSet(final int expectedRanges) {
+        if (expectedRanges < 0) {
+            throw new IllegalArgumentException("Expected ranges must not be negative, but " + expectedRanges);
+        }
+        final int capacity = Math.max(MIN_CAPACITY, expectedRanges);
+        this.starts = new long[capacity];
+        this.ends = new long[capacity];
+    }
+
+    /**
+     * @return true if the value was added, false if it was in set.
+     */
+    public boolean add(final long value) {
+        return add(value, value + 1);
+    }
+
+    /**
+     * Adds all values from {@code start} inclusive to {@code end} exclusive.
+     *
+     * @return true if the set changed.
+     */
+    public boolean add(final long start, final long end) {
+        if (start >= end) {
+            return false;
+        }
+
+        // runs from first to last overlap or touch [start, end) and are merged into one
+        final int first = firstEndingAtOrAfter(start);
+        final int last = firstStartingAfter(end) - 1;
+        if (first > last) {
+            insertAt(first);
+            starts[head + first] = start;
+            ends[head + first] = end;
+            cardinality += end - start;
+            return true;
+        }
+
+        final long mergedStart = Math.min(start, starts[head + first]);
+        final long mergedEnd = Math.max(end, ends[head + last]);
+        if (first == last && mergedStart == starts[head + first] && mergedEnd == ends[head + first]) {
+            return false;
+        }
+
+        for (int i = first; i <= last; i++) {
+            cardinality -= ends[head + i] - starts[head + i];
+        }
+        cardinality += mergedEnd - mergedStart;
+        starts[head + first] = mergedStart;
+        ends[head + first] = mergedEnd;
+        removeAt(first + 1, last + 1);
+        return true;
+    }
+
+    /**
+     * @return true if the value was removed, false if it was not in set.
+     */
+    public boolean remove(final long value) {
+        final int i = firstEndingAfter(value);
+        if (i == count || starts[head + i] > value) {
+            return false;
+        }
+
+        final long start = starts[head + i];
+        final long end = ends[head + i];
+        cardinality--;
+        if (start == value && end == value + 1) {
+            removeAt(i, i + 1);
+        } else if (start == value) {
+            starts[head + i] = value + 1;
+        } else if (end == value + 1) {
+            ends[head + i] = value;
+        } else {
+            // the run is split around value
+            insertAt(i + 1);
+            ends[head + i] = value;
+            starts[head + i + 1] = value + 1;
+            ends[head + i + 1] = end;
+        }
+        return true;
+    }
+
+    public boolean contains(final long value) {
+        final int i = firstEndingAfter(value);
+        return i < count && starts[head + i] <= value;
+    }
+
+    /**
+     * @return the lowest value which is not in set and not less than {@code from}.
+     */
+    public long nextAbsent(final long from) {
+        final int i = firstEndingAfter(from);
+        return i < count && starts[head + i] <= from ? ends[head + i] : from;
+    }
+
+    /**
+     * Removes all values less than {@code value}.
+     */
+    public void removeBelow(final long value) {
+        final int i = firstEndingAfter(value);
+        for (int j = 0; j < i; j++) {
+            cardinality -= ends[head + j] - starts[head + j];
+        }
+        removeAt(0, i);
+        if (count > 0 && starts[head] < value) {
+            cardinality -= value - starts[head];
+            starts[head] = value;
+        }
+    }
+
+    /**
+     * @return lowest value of set.
+     * @throws NoSuchElementException if the set is empty.
+     */
+    public long first() {
+        if (count == 0) {
+            throw new NoSuchElementException();
+        }
+        return starts[head];
+    }
+
+    /**
+     * @return highest value of set.
+     * @throws NoSuchElementException if the set is empty.
+     */
+    public long last() {
+        if (count == 0) {
+            throw new NoSuchElementException();
+        }
+        return ends[head + count - 1] - 1;
+    }
+
+    /**
+     * @return number of values of set.
+     */
+    public long cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @return number of runs of set.
+     */
+    public int rangesCount() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public void clear() {
+        head = 0;
+        count = 0;
+        cardinality = 0;
+    }
+
+    /**
+     * Visits all runs of set in ascending order.
+     */
+    public void forEachRange(final RangeConsumer consumer) {
+        for (int i = head; i < head + count; i++) {
+            consumer.accept(starts[i], ends[i]);
+        }
+    }
+
+    /**
+     * @return number of bytes of encoded set.
+     */
+    public int encodeSize() {
+        int size = VarIntUtil.sizeOfVarInt(count);
+        long prevEnd = 0;
+        for (int i = head; i < head + count; i++) {
+            final long delta = i == head ? VarIntUtil.zigzag(starts[i]) : starts[i] - prevEnd;
+            size += VarIntUtil.sizeOfVarLong(delta) + VarIntUtil.sizeOfVarLong(ends[i] - starts[i]);
+            prevEnd = ends[i];
+        }
+        return size;
+    }
+
+    /**
+     * Writes the set at the {@code writeIndex} of buffer.
+     */
+    public void encode(final SequenceAccessBuffer buffer) {
+        VarIntUtil.writeVarInt(buffer, count);
+        long prevEnd = 0;
+        for (int i = head; i < head + count; i++) {
+            final long delta = i == head ? VarIntUtil.zigzag(starts[i]) : starts[i] - prevEnd;
+            VarIntUtil.writeVarLong(buffer, delta);
+            VarIntUtil.writeVarLong(buffer, ends[i] - starts[i]);
+            prevEnd = ends[i];
+        }
+    }
+
+    /**
+     * Reads a set written by {@link #encode(SequenceAccessBuffer)} at the {@code readIndex} of buffer.
+     *
+     * @throws PegasusException if the set is malformed, e.g. its count of runs exceeds the readable bytes.
+     */
+    public static LongRangeSet decode(final PegasusBuffer buffer) throws PegasusException {
+        final int count = VarIntUtil.readVarInt(buffer);
+        // each run takes two varlongs of at least a byte, checked before the arrays are allocated
+        if (count < 0 || count > buffer.readableBytes() / MIN_ENCODED_RANGE_SIZE) {
+            throw new PegasusException("Malformed range set, count " + count + " with " + buffer.readableBytes() +
+                    " readable bytes", PegasusExceptionType.ENCODING_ERROR);
+        }
+        final LongRangeSet set = new LongRangeSet(count);
+        long prevEnd = 0;
+        for (int i = 0; i < count; i++) {
+            final long delta = VarIntUtil.readVarLong(buffer);
+            final long start = i == 0 ? VarIntUtil.unzigzag(delta) : prevEnd + delta;
+            final long end = start + VarIntUtil.readVarLong(buffer);
+            if (end <= start || (i > 0 && start <= prevEnd)) {
+                throw new PegasusException("Malformed range set, run [" + start + ", " + end + ")",
+                        PegasusExceptionType.ENCODING_ERROR);
+            }
+            set.starts[i] = start;
+            set.ends[i] = end;
+            set.cardinality += end - start;
+            prevEnd = end;
+        }
+        set.count = count;
+        return set;
+    }
+
+    /**
+     * @return index, relative to head, of the first run whose end is greater than value.
+     */
+    private int firstEndingAfter(final long value) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (ends[head + mid] > value) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return index, relative to head, of the first run whose end is not less than value, i.e. which overlaps or
+     * touches a run starting at value.
+     */
+    private int firstEndingAtOrAfter(final long value) {
+        return firstEndingAfter(value - 1);
+    }
+
+    /**
+     * @return index, relative to head, of the first run whose start is greater than value.
+     */
+    private int firstStartingAfter(final long value) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (starts[head + mid] > value) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Makes room for a run at index, relative to head.
+     */
+    private void insertAt(final int index) {
+        if (index == 0 && head > 0) {
+            head--;
+            count++;
+            return;
+        }
+        if (head + count == starts.length) {
+            if (count + count / 2 < starts.length) {
+                System.arraycopy(starts, head, starts, 0, count);
+                System.arraycopy(ends, head, ends, 0, count);
+            } else {
+                final int capacity = starts.length << 1;
+                starts = Arrays.copyOfRange(starts, head, head + capacity);
+                ends = Arrays.copyOfRange(ends, head, head + capacity);
+            }
+            head = 0;
+        }
+        System.arraycopy(starts, head + index, starts, head + index + 1, count - index);
+        System.arraycopy(ends, head + index, ends, head + index + 1, count - index);
+        count++;
+    }
+
+    /**
+     * Removes the runs from {@code from} inclusive to {@code to} exclusive, relative to head.
+     */
+    private void removeAt(final int from, final int to) {
+        final int removed = to - from;
+        if (removed <= 0) {
+            return;
+        }
+        if (from == 0) {
+            head += removed;
+        } else {
+            System.arraycopy(starts, head + to, starts, head + from, count - to);
+            System.arraycopy(ends, head + to, ends, head + from, count - to);
+        }
+        count -= removed;
+        if (count == 0) {
+            head = 0;
+        }
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof LongRangeSet other) || count != other.count) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (starts[head + i] != other.starts[other.head + i] || ends[head + i] != other.ends[other.head + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 1;
+        for (int i = head; i < head + count; i++) {
+            hash = 31 * hash + Long.hashCode(starts[i]);
+            hash = 31 * hash + Long.hashCode(ends[i]);
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("LongRangeSet[");
+        for (int i = head; i < head + count; i++) {
+            if (i > head) {
+                sb.append(", ");
+            }
+            sb.append(starts[i]).append("..").append(ends[i]);
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,202 @@
+package com.lazy.pegasus.core.collections;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Bounded lock-free {@link MpscQueue} on a ring buffer whose capacity is a power of two.
+ * <p>
+ * Producers claim a slot by a CAS of the producer index, then publish the element with a release store into the slot.
+ * The consumer reads a slot with an acquire load and frees it by a release store of the consumer index, a slot claimed
+ * but not published yet reads null and the consumer spins for the few instructions until it is. To keep producers
+ * from reading the consumer index on every offer, they cache a producer limit which is only refreshed when reached.
+ * <p>
+ * The producer fields and the consumer index are each surrounded by padding in the class hierarchy (fields of a super
+ * class are laid out first), so producers and the consumer do not false-share a cache line.
+ *
+ * @param <E> type of elements.
+ */
+public class MpscArrayQueue<E> extends MpscArrayQueueConsumerIndex<E> {
+
+    // padding after the consumer index
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    public MpscArrayQueue(final int capacity) {
+        super(capacity);
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        Objects.requireNonNull(e, "element");
+        final long capacity = mask + 1;
+        long limit = (long) PRODUCER_LIMIT.getVolatile(this);
+        long index;
+        do {
+            index = (long) PRODUCER_INDEX.getVolatile(this);
+            if (index >= limit) {
+                limit = (long) CONSUMER_INDEX.getAcquire(this) + capacity;
+                if (index >= limit) {
+                    return false;
+                }
+                PRODUCER_LIMIT.setRelease(this, limit);
+            }
+        } while (!PRODUCER_INDEX.compareAndSet(this, index, index + 1));
+
+        ELEMENTS.setRelease(buffer, (int) index & mask, e);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        final long index = (long) CONSUMER_INDEX.get(this);
+        final int offset = (int) index & mask;
+        E e = (E) ELEMENTS.getAcquire(buffer, offset);
+        if (e == null) {
+            if (index == (long) PRODUCER_INDEX.getVolatile(this)) {
+                return null;
+            }
+            // slot is claimed, the producer is about to publish it
+            do {
+                Thread.onSpinWait();
+                e = (E) ELEMENTS.getAcquire(buffer, offset);
+            } while (e == null);
+        }
+
+        ELEMENTS.set(buffer, offset, null);
+        CONSUMER_INDEX.setRelease(this, index + 1);
+        return e;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final long index = (long) CONSUMER_INDEX.get(this);
+        final int offset = (int) index & mask;
+        E e = (E) ELEMENTS.getAcquire(buffer, offset);
+        if (e == null && index != (long) PRODUCER_INDEX.getVolatile(this)) {
+            do {
+                Thread.onSpinWait();
+                e = (E) ELEMENTS.getAcquire(buffer, offset);
+            } while (e == null);
+        }
+        return e;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drain(final Consumer<? super E> consumer, final int limit) {
+        final long index = (long) CONSUMER_INDEX.get(this);
+        int count = 0;
+        for (; count < limit; count++) {
+            final int offset = (int) (index + count) & mask;
+            final E e = (E) ELEMENTS.getAcquire(buffer, offset);
+            if (e == null) {
+                break;
+            }
+            ELEMENTS.set(buffer, offset, null);
+            CONSUMER_INDEX.setRelease(this, index + count + 1);
+            consumer.accept(e);
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        long consumer = (long) CONSUMER_INDEX.getVolatile(this);
+        while (true) {
+            final long producer = (long) PRODUCER_INDEX.getVolatile(this);
+            final long after = (long) CONSUMER_INDEX.getVolatile(this);
+            if (consumer == after) {
+                return (int) Math.min(producer - consumer, mask + 1L);
+            }
+            consumer = after;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (long) CONSUMER_INDEX.getVolatile(this) == (long) PRODUCER_INDEX.getVolatile(this);
+    }
+
+    @Override
+    public int capacity() {
+        return mask + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "MpscArrayQueue[capacity=" + capacity() + ", size=" + size() + ']';
+    }
+}
+
+abstract class MpscArrayQueuePad0<E> implements MpscQueue<E> {
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class MpscArrayQueueProducerFields<E> extends MpscArrayQueuePad0<E> {
+
+    static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    static final VarHandle PRODUCER_INDEX;
+    static final VarHandle PRODUCER_LIMIT;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            PRODUCER_INDEX = lookup.findVarHandle(MpscArrayQueueProducerFields.class, "producerIndex", long.class);
+            PRODUCER_LIMIT = lookup.findVarHandle(MpscArrayQueueProducerFields.class, "producerLimit", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    final Object[] buffer;
+    final int mask;
+    @SuppressWarnings("unused")
+    private volatile long producerIndex;
+    @SuppressWarnings("unused")
+    private volatile long producerLimit;
+
+    MpscArrayQueueProducerFields(final int capacity) {
+        if (capacity < 2 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Capacity must be in range [2," + (1 << 30) + "], but " + capacity);
+        }
+        final int actual = Integer.highestOneBit(capacity - 1) << 1;
+        this.buffer = new Object[actual];
+        this.mask = actual - 1;
+        this.producerLimit = actual;
+    }
+}
+
+abstract class MpscArrayQueuePad1<E> extends MpscArrayQueueProducerFields<E> {
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+
+    MpscArrayQueuePad1(final int capacity) {
+        super(capacity);
+    }
+}
+
+abstract class MpscArrayQueueConsumerIndex<E> extends MpscArrayQueuePad1<E> {
+
+    static final VarHandle CONSUMER_INDEX;
+
+    static {
+        try {
+            CONSUMER_INDEX = MethodHandles.lookup()
+                    .findVarHandle(MpscArrayQueueConsumerIndex.class, "consumerIndex", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private volatile long consumerIndex;
+
+    MpscArrayQueueConsumerIndex(final int capacity) {
+        super(capacity);
+    }
+}
@@ -0,0 +1,62 @@
+package com.lazy.pegasus.core.collections;
+
+import java.util.function.Consumer;
+
+/**
+ * A multi-producer, single-consumer FIFO queue. {@link #offer(Object)} may be called by any thread, while
+ * {@link #poll()}, {@link #peek()} and {@link #drain(Consumer, int)} must only be called by a single consumer thread at
+ * a time. Null elements are not permitted.
+ *
+ * @param <E> type of elements.
+ */
+public interface MpscQueue<E> {
+
+    /**
+     * Capacity of an unbounded queue.
+     */
+    int UNBOUNDED = -1;
+
+    /**
+     * Adds element at the tail of queue, called by any thread.
+     *
+     * @param e element, not null.
+     * @return true if element was added, false if queue is full.
+     */
+    boolean offer(E e);
+
+    /**
+     * Removes the element at the head of queue, called by the consumer thread.
+     *
+     * @return head element, or null if queue is empty.
+     */
+    E poll();
+
+    /**
+     * Reads the element at the head of queue without removing it, called by the consumer thread.
+     *
+     * @return head element, or null if queue is empty.
+     */
+    E peek();
+
+    /**
+     * Removes up to {@code limit} elements and hands them to consumer in order, called by the consumer thread. Only the
+     * elements already visible are drained, this never waits for producers.
+     *
+     * @param consumer consumer of elements.
+     * @param limit    maximum number of elements drained.
+     * @return number of elements drained.
+     */
+    int drain(Consumer<? super E> consumer, int limit);
+
+    /**
+     * @return number of elements in queue, an estimate while producers or the consumer are active.
+     */
+    int size();
+
+    boolean isEmpty();
+
+    /**
+     * @return maximum number of elements of queue, or {@link #UNBOUNDED}.
+     */
+    int capacity();
+}
@@ -0,0 +1,280 @@
+package com.lazy.pegasus.core.collections;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Unbounded lock-free {@link MpscQueue} on a linked list of array chunks.
+ * <p>
+ * Producers claim an index by a fetch-and-add of the producer index, so an offer never retries, then walk the chunks
+ * from the last known producer chunk to the chunk holding the index, appending chunks by a CAS when needed. The chunk
+ * read before claiming the index always starts at or before it, as the producer chunk only moves to a chunk once an
+ * index of that chunk was claimed. Elements are published and consumed as in {@link MpscArrayQueue}; chunks the
+ * consumer went past are left to the garbage collector.
+ * <p>
+ * The producer fields and the consumer fields are each surrounded by padding in the class hierarchy, so producers and
+ * the consumer do not false-share a cache line.
+ *
+ * @param <E> type of elements.
+ */
+public class MpscUnboundedArrayQueue<E> extends MpscUnboundedArrayQueueConsumerFields<E> {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024;
+
+    // padding after the consumer fields
+    long p10, p11, p12, p13, p14, p15, p16, p17;
+
+    public MpscUnboundedArrayQueue() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize number of elements of each chunk, rounded up to a power of two.
+     */
+    public MpscUnboundedArrayQueue(final int chunkSize) {
+        super(chunkSize);
+    }
+
+    @Override
+    public boolean offer(final E e) {
+        Objects.requireNonNull(e, "element");
+        MpscChunk chunk = (MpscChunk) PRODUCER_CHUNK.getAcquire(this);
+        final long index = (long) PRODUCER_INDEX.getAndAdd(this, 1L);
+
+        while (index >= chunk.base + chunkSize) {
+            MpscChunk next = chunk.next;
+            if (next == null) {
+                final MpscChunk created = new MpscChunk(chunk.base + chunkSize, chunkSize);
+                next = MpscChunk.NEXT.compareAndSet(chunk, null, created) ? created : chunk.next;
+            }
+            // only moves the producer chunk forward
+            PRODUCER_CHUNK.compareAndSet(this, chunk, next);
+            chunk = next;
+        }
+
+        ELEMENTS.setRelease(chunk.elements, (int) index & chunkMask, e);
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        final long index = consumerIndex;
+        final MpscChunk chunk = chunkOf(index, true);
+        if (chunk == null) {
+            return null;
+        }
+
+        final int offset = (int) index & chunkMask;
+        E e = (E) ELEMENTS.getAcquire(chunk.elements, offset);
+        if (e == null) {
+            if (index == (long) PRODUCER_INDEX.getVolatile(this)) {
+                return null;
+            }
+            // index is claimed, the producer is about to publish it
+            do {
+                Thread.onSpinWait();
+                e = (E) ELEMENTS.getAcquire(chunk.elements, offset);
+            } while (e == null);
+        }
+
+        ELEMENTS.set(chunk.elements, offset, null);
+        CONSUMER_INDEX.setRelease(this, index + 1);
+        return e;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E peek() {
+        final long index = consumerIndex;
+        final MpscChunk chunk = chunkOf(index, true);
+        if (chunk == null) {
+            return null;
+        }
+
+        final int offset = (int) index & chunkMask;
+        E e = (E) ELEMENTS.getAcquire(chunk.elements, offset);
+        if (e == null && index != (long) PRODUCER_INDEX.getVolatile(this)) {
+            do {
+                Thread.onSpinWait();
+                e = (E) ELEMENTS.getAcquire(chunk.elements, offset);
+            } while (e == null);
+        }
+        return e;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int drain(final Consumer<? super E> consumer, final int limit) {
+        int count = 0;
+        while (count < limit) {
+            final long index = consumerIndex;
+            final MpscChunk chunk = chunkOf(index, false);
+            if (chunk == null) {
+                break;
+            }
+
+            final int offset = (int) index & chunkMask;
+            final E e = (E) ELEMENTS.getAcquire(chunk.elements, offset);
+            if (e == null) {
+                break;
+            }
+            ELEMENTS.set(chunk.elements, offset, null);
+            CONSUMER_INDEX.setRelease(this, index + 1);
+            count++;
+            consumer.accept(e);
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        long consumer = (long) CONSUMER_INDEX.getVolatile(this);
+        while (true) {
+            final long producer = (long) PRODUCER_INDEX.getVolatile(this);
+            final long after = (long) CONSUMER_INDEX.getVolatile(this);
+            if (consumer == after) {
+                return (int) Math.min(Math.max(producer - consumer, 0), Integer.MAX_VALUE);
+            }
+            consumer = after;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return (long) CONSUMER_INDEX.getVolatile(this) >= (long) PRODUCER_INDEX.getVolatile(this);
+    }
+
+    @Override
+    public int capacity() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * @param index consumer index.
+     * @param wait  true to wait for a chunk being appended by a producer which claimed the index.
+     * @return chunk holding index, or null if there is no element at index.
+     */
+    private MpscChunk chunkOf(final long index, final boolean wait) {
+        MpscChunk chunk = consumerChunk;
+        if (index < chunk.base + chunkSize) {
+            return chunk;
+        }
+
+        MpscChunk next = chunk.next;
+        if (next == null) {
+            if (!wait || index >= (long) PRODUCER_INDEX.getVolatile(this)) {
+                return null;
+            }
+            do {
+                Thread.onSpinWait();
+                next = chunk.next;
+            } while (next == null);
+        }
+        consumerChunk = next;
+        return next;
+    }
+
+    @Override
+    public String toString() {
+        return "MpscUnboundedArrayQueue[chunkSize=" + chunkSize + ", size=" + size() + ']';
+    }
+}
+
+/**
+ * A chunk of elements of {@link MpscUnboundedArrayQueue}, holding indexes {@code [base, base + chunkSize)}.
+ */
+final class MpscChunk {
+
+    static final VarHandle NEXT;
+
+    static {
+        try {
+            NEXT = MethodHandles.lookup().findVarHandle(MpscChunk.class, "next", MpscChunk.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    final long base;
+    final Object[] elements;
+    volatile MpscChunk next;
+
+    MpscChunk(final long base, final int chunkSize) {
+        this.base = base;
+        this.elements = new Object[chunkSize];
+    }
+}
+
+abstract class MpscUnboundedArrayQueuePad0<E> implements MpscQueue<E> {
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class MpscUnboundedArrayQueueProducerFields<E> extends MpscUnboundedArrayQueuePad0<E> {
+
+    static final VarHandle ELEMENTS = MethodHandles.arrayElementVarHandle(Object[].class);
+    static final VarHandle PRODUCER_INDEX;
+    static final VarHandle PRODUCER_CHUNK;
+
+    static {
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            PRODUCER_INDEX = lookup.findVarHandle(MpscUnboundedArrayQueueProducerFields.class, "producerIndex",
+                    long.class);
+            PRODUCER_CHUNK = lookup.findVarHandle(MpscUnboundedArrayQueueProducerFields.class, "producerChunk",
+                    MpscChunk.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    final int chunkSize;
+    final int chunkMask;
+    @SuppressWarnings("unused")
+    private volatile long producerIndex;
+    @SuppressWarnings("unused")
+    private volatile MpscChunk producerChunk;
+
+    MpscUnboundedArrayQueueProducerFields(final int chunkSize) {
+        if (chunkSize < 2 || chunkSize > 1 << 30) {
+            throw new IllegalArgumentException("Chunk size must be in range [2," + (1 << 30) + "], but " + chunkSize);
+        }
+        this.chunkSize = Integer.highestOneBit(chunkSize - 1) << 1;
+        this.chunkMask = this.chunkSize - 1;
+        this.producerChunk = new MpscChunk(0, this.chunkSize);
+    }
+}
+
+abstract class MpscUnboundedArrayQueuePad1<E> extends MpscUnboundedArrayQueueProducerFields<E> {
+
+    long p00, p01, p02, p03, p04, p05, p06, p07;
+
+    MpscUnboundedArrayQueuePad1(final int chunkSize) {
+        super(chunkSize);
+    }
+}
+
+abstract class MpscUnboundedArrayQueueConsumerFields<E> extends MpscUnboundedArrayQueuePad1<E> {
+
+    static final VarHandle CONSUMER_INDEX;
+
+    static {
+        try {
+            CONSUMER_INDEX = MethodHandles.lookup()
+                    .findVarHandle(MpscUnboundedArrayQueueConsumerFields.class, "consumerIndex", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    volatile long consumerIndex;
+    MpscChunk consumerChunk;
+
+    MpscUnboundedArrayQueueConsumerFields(final int chunkSize) {
+        super(chunkSize);
+        this.consumerChunk = (MpscChunk) PRODUCER_CHUNK.get(this);
+    }
+}
@@ -0,0 +1,645 @@
+package com.lazy.pegasus.core.common;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Default implementation of {@link PegasusBuffer}, all operations are delegated to the wrapped netty {@link ByteBuf}.
+ * <p>
+ * Strings are written as an int count of bytes followed by 2 bytes per char (low byte first), which is the same layout
+ * of {@link SpanString#getData()}, so a String and a {@link SpanString} written by this buffer are interchangeable.
+ * Nullable values are prefixed by a single byte {@link DataConstants#NULL} or {@link DataConstants#NOT_NULL}.
+ * <p>
+ * Instance of this should be obtained from {@link PegasusBuffers}.
+ */
+public class ChannelBufferWrapper implements PegasusBuffer {
+
+    protected ByteBuf buffer;
+
+    public ChannelBufferWrapper(final ByteBuf buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int capacity() {
+        return buffer.capacity();
+    }
+
+    @Override
+    public ByteBuf byteBuf() {
+        return buffer;
+    }
+
+    @Override
+    public int readIndex() {
+        return buffer.readerIndex();
+    }
+
+    @Override
+    public void readIndex(int index) {
+        buffer.readerIndex(index);
+    }
+
+    @Override
+    public int writeIndex() {
+        return buffer.writerIndex();
+    }
+
+    @Override
+    public void writeIndex(int index) {
+        buffer.writerIndex(index);
+    }
+
+    @Override
+    public void setIndex(int readIndex, int writeIndex) {
+        buffer.setIndex(readIndex, writeIndex);
+    }
+
+    @Override
+    public int readableBytes() {
+        return buffer.readableBytes();
+    }
+
+    @Override
+    public int writableBytes() {
+        return buffer.writableBytes();
+    }
+
+    @Override
+    public boolean readable() {
+        return buffer.isReadable();
+    }
+
+    @Override
+    public boolean writeable() {
+        return buffer.isWritable();
+    }
+
+    @Override
+    public void clear() {
+        buffer.clear();
+    }
+
+    @Override
+    public void markReadIndex() {
+        buffer.markReaderIndex();
+    }
+
+    @Override
+    public void resetReadIndex() {
+        buffer.resetReaderIndex();
+    }
+
+    @Override
+    public void markWriteIndex() {
+        buffer.markWriterIndex();
+    }
+
+    @Override
+    public void resetWriteIndex() {
+        buffer.resetWriterIndex();
+    }
+
+    @Override
+    public void discardReadBytes() {
+        buffer.discardReadBytes();
+    }
+
+    @Override
+    public PegasusBuffer readSlice(int len) {
+        return new ChannelBufferWrapper(buffer.readSlice(len));
+    }
+
+    @Override
+    public PegasusBuffer copy() {
+        return new ChannelBufferWrapper(buffer.copy());
+    }
+
+    @Override
+    public PegasusBuffer copy(int index, int len) {
+        return new ChannelBufferWrapper(buffer.copy(index, len));
+    }
+
+    @Override
+    public PegasusBuffer slice() {
+        return new ChannelBufferWrapper(buffer.slice());
+    }
+
+    @Override
+    public PegasusBuffer slice(int index, int len) {
+        return new ChannelBufferWrapper(buffer.slice(index, len));
+    }
+
+    @Override
+    public PegasusBuffer duplicate() {
+        return new ChannelBufferWrapper(buffer.duplicate());
+    }
+
+    @Override
+    public ByteBuffer toBuffer() {
+        return buffer.nioBuffer();
+    }
+
+    @Override
+    public ByteBuffer toBuffer(int index, int len) {
+        return buffer.nioBuffer(index, len);
+    }
+
+    @Override
+    public PegasusBuffer retain(int increment) {
+        buffer.retain(increment);
+        return this;
+    }
+
+    @Override
+    public int refCnt() {
+        return buffer.refCnt();
+    }
+
+    @Override
+    public void release() {
+        if (buffer.refCnt() > 0) {
+            buffer.release();
+        }
+    }
+
+    // === RANDOM ACCESS ===
+
+    @Override
+    public byte getByte(int index) {
+        return buffer.getByte(index);
+    }
+
+    @Override
+    public short getUnsignedByte(int index) {
+        return buffer.getUnsignedByte(index);
+    }
+
+    @Override
+    public short getShort(int index) {
+        return buffer.getShort(index);
+    }
+
+    @Override
+    public int getUnsignedShort(int index) {
+        return buffer.getUnsignedShort(index);
+    }
+
+    @Override
+    public int getInt(int index) {
+        return buffer.getInt(index);
+    }
+
+    @Override
+    public long getUnsignedInt(int index) {
+        return buffer.getUnsignedInt(index);
+    }
+
+    @Override
+    public long getLong(int index) {
+        return buffer.getLong(index);
+    }
+
+    @Override
+    public char getChar(int index) {
+        return buffer.getChar(index);
+    }
+
+    @Override
+    public float getFloat(int index) {
+        return buffer.getFloat(index);
+    }
+
+    @Override
+    public double getDouble(int index) {
+        return buffer.getDouble(index);
+    }
+
+    @Override
+    public void setByte(int index, byte b) {
+        buffer.setByte(index, b);
+    }
+
+    @Override
+    public void setShort(int index, short i16) {
+        buffer.setShort(index, i16);
+    }
+
+    @Override
+    public void setInt(int index, int i32) {
+        buffer.setInt(index, i32);
+    }
+
+    @Override
+    public void setLong(int index, long i64) {
+        buffer.setLong(index, i64);
+    }
+
+    @Override
+    public void setFloat(int index, float f32) {
+        buffer.setFloat(index, f32);
+    }
+
+    @Override
+    public void setDouble(int index, double f64) {
+        buffer.setDouble(index, f64);
+    }
+
+    @Override
+    public void setChar(int index, char c) {
+        buffer.setChar(index, c);
+    }
+
+    @Override
+    public void getBytes(int index, PegasusBuffer dest) {
+        buffer.getBytes(index, dest.byteBuf());
+    }
+
+    @Override
+    public void getBytes(int index, PegasusBuffer dest, int len) {
+        buffer.getBytes(index, dest.byteBuf(), len);
+    }
+
+    @Override
+    public void getBytes(int index, PegasusBuffer dest, int destStart, int len) {
+        buffer.getBytes(index, dest.byteBuf(), destStart, len);
+    }
+
+    @Override
+    public void getBytes(int index, byte[] dest) {
+        buffer.getBytes(index, dest);
+    }
+
+    @Override
+    public void getBytes(int index, byte[] dest, int destStart, int len) {
+        buffer.getBytes(index, dest, destStart, len);
+    }
+
+    @Override
+    public void getBytes(int index, ByteBuffer dest) {
+        buffer.getBytes(index, dest);
+    }
+
+    @Override
+    public void setBytes(int index, PegasusBuffer src) {
+        buffer.setBytes(index, src.byteBuf());
+    }
+
+    @Override
+    public void setBytes(int index, PegasusBuffer src, int len) {
+        buffer.setBytes(index, src.byteBuf(), len);
+    }
+
+    @Override
+    public void setBytes(int index, PegasusBuffer src, int srcStart, int len) {
+        buffer.setBytes(index, src.byteBuf(), srcStart, len);
+    }
+
+    @Override
+    public void setBytes(int index, byte[] src) {
+        buffer.setBytes(index, src);
+    }
+
+    @Override
+    public void setBytes(int index, byte[] src, int srcStart, int len) {
+        buffer.setBytes(index, src, srcStart, len);
+    }
+
+    @Override
+    public void setBytes(int index, ByteBuffer src) {
+        buffer.setBytes(index, src);
+    }
+
+    // === SEQUENCE ACCESS ===
+
+    @Override
+    public byte readByte() {
+        return buffer.readByte();
+    }
+
+    @Override
+    public int readUnsignedByte() {
+        return buffer.readUnsignedByte();
+    }
+
+    @Override
+    public short readShort() {
+        return buffer.readShort();
+    }
+
+    @Override
+    public int readUnsignedShort() {
+        return buffer.readUnsignedShort();
+    }
+
+    @Override
+    public int readInt() {
+        return buffer.readInt();
+    }
+
+    @Override
+    public long readUnsignedInt() {
+        return buffer.readUnsignedInt();
+    }
+
+    @Override
+    public Integer readNullableInt() {
+        if (buffer.readByte() == DataConstants.NULL) {
+            return null;
+        }
+        return buffer.readInt();
+    }
+
+    @Override
+    public long readLong() {
+        return buffer.readLong();
+    }
+
+    @Override
+    public Long readNullableLong() {
+        if (buffer.readByte() == DataConstants.NULL) {
+            return null;
+        }
+        return buffer.readLong();
+    }
+
+    @Override
+    public char readChar() {
+        return (char) buffer.readShort();
+    }
+
+    @Override
+    public float readFloat() {
+        return buffer.readFloat();
+    }
+
+    @Override
+    public double readDouble() {
+        return buffer.readDouble();
+    }
+
+    @Override
+    public boolean readBoolean() {
+        return buffer.readByte() != DataConstants.FALSE;
+    }
+
+    @Override
+    public Boolean readNullableBoolean() {
+        if (buffer.readByte() == DataConstants.NULL) {
+            return null;
+        }
+        return readBoolean();
+    }
+
+    @Override
+    public String readString() {
+        int len = buffer.readInt() >> 1;
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            int lo = buffer.readByte() & 0xff;
+            int hi = (buffer.readByte() << 8) & 0xff00;
+            chars[i] = (char) (lo | hi);
+        }
+
+        return new String(chars);
+    }
+
+    @Override
+    public SpanString readSpanString() {
+        int len = buffer.readInt();
+        byte[] data = new byte[len];
+        buffer.readBytes(data);
+
+        return SpanString.of(data);
+    }
+
+    @Override
+    public SpanString readNullableSpanString() {
+        if (buffer.readByte() == DataConstants.NULL) {
+            return null;
+        }
+        return readSpanString();
+    }
+
+    @Override
+    public String readUTF() {
+        int len = buffer.readUnsignedShort();
+        String s = buffer.toString(buffer.readerIndex(), len, StandardCharsets.UTF_8);
+        buffer.skipBytes(len);
+
+        return s;
+    }
+
+    @Override
+    public void readFully(byte[] b) {
+        buffer.readBytes(b);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) {
+        buffer.readBytes(b, off, len);
+    }
+
+    @Override
+    public String readLine() {
+        throw new UnsupportedOperationException("readLine is not supported");
+    }
+
+    @Override
+    public void readBytes(PegasusBuffer dest) {
+        buffer.readBytes(dest.byteBuf());
+    }
+
+    @Override
+    public void readBytes(PegasusBuffer dest, int len) {
+        buffer.readBytes(dest.byteBuf(), len);
+    }
+
+    @Override
+    public void readBytes(PegasusBuffer dest, int destStart, int len) {
+        buffer.readBytes(dest.byteBuf(), destStart, len);
+    }
+
+    @Override
+    public void readBytes(byte[] dest) {
+        buffer.readBytes(dest);
+    }
+
+    @Override
+    public void readBytes(byte[] dest, int destStart, int len) {
+        buffer.readBytes(dest, destStart, len);
+    }
+
+    @Override
+    public void readBytes(ByteBuffer dest) {
+        buffer.readBytes(dest);
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        buffer.skipBytes(n);
+        return n;
+    }
+
+    @Override
+    public void writeByte(byte b) {
+        buffer.writeByte(b);
+    }
+
+    @Override
+    public void writeShort(short i16) {
+        buffer.writeShort(i16);
+    }
+
+    @Override
+    public void writeInt(int i32) {
+        buffer.writeInt(i32);
+    }
+
+    @Override
+    public void writeNullableInt(Integer i32) {
+        if (i32 == null) {
+            buffer.writeByte(DataConstants.NULL);
+        } else {
+            buffer.writeByte(DataConstants.NOT_NULL);
+            buffer.writeInt(i32);
+        }
+    }
+
+    @Override
+    public void writeLong(long i64) {
+        buffer.writeLong(i64);
+    }
+
+    @Override
+    public void writeNullableLong(Long i64) {
+        if (i64 == null) {
+            buffer.writeByte(DataConstants.NULL);
+        } else {
+            buffer.writeByte(DataConstants.NOT_NULL);
+            buffer.writeLong(i64);
+        }
+    }
+
+    @Override
+    public void writeFloat(float f32) {
+        buffer.writeFloat(f32);
+    }
+
+    @Override
+    public void writeDouble(double f64) {
+        buffer.writeDouble(f64);
+    }
+
+    @Override
+    public void writeChar(char c) {
+        buffer.writeShort((short) c);
+    }
+
+    @Override
+    public void writeBoolean(boolean bool) {
+        buffer.writeByte(bool ? DataConstants.TRUE : DataConstants.FALSE);
+    }
+
+    @Override
+    public void writeNullableBoolean(Boolean bool) {
+        if (bool == null) {
+            buffer.writeByte(DataConstants.NULL);
+        } else {
+            buffer.writeByte(DataConstants.NOT_NULL);
+            writeBoolean(bool);
+        }
+    }
+
+    @Override
+    public void writeString(String s) {
+        int len = s.length();
+        buffer.writeInt(len << 1);
+        for (int i = 0; i < len; i++) {
+            char c = s.charAt(i);
+            buffer.writeByte((byte) (c & 0xff));
+            buffer.writeByte((byte) ((c >> 8) & 0xff));
+        }
+    }
+
+    @Override
+    public void writeNullableString(String s) {
+        if (s == null) {
+            buffer.writeByte(DataConstants.NULL);
+        } else {
+            buffer.writeByte(DataConstants.NOT_NULL);
+            writeString(s);
+        }
+    }
+
+    @Override
+    public void writeUTF(String utf) {
+        byte[] bytes = utf.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xffff) {
+            throw new IllegalArgumentException("UTF string is too long, encoded " + bytes.length + " bytes");
+        }
+
+        buffer.writeShort(bytes.length);
+        buffer.writeBytes(bytes);
+    }
+
+    @Override
+    public void writeSpanString(SpanString s) {
+        byte[] data = s.getData();
+        buffer.writeInt(data.length);
+        buffer.writeBytes(data);
+    }
+
+    @Override
+    public void writeNullableSpanString(SpanString s) {
+        if (s == null) {
+            buffer.writeByte(DataConstants.NULL);
+        } else {
+            buffer.writeByte(DataConstants.NOT_NULL);
+            writeSpanString(s);
+        }
+    }
+
+    @Override
+    public void writeBytes(byte[] src) {
+        buffer.writeBytes(src);
+    }
+
+    @Override
+    public void writeBytes(byte[] src, int srcStart, int len) {
+        buffer.writeBytes(src, srcStart, len);
+    }
+
+    @Override
+    public void writeBytes(PegasusBuffer src, int len) {
+        buffer.writeBytes(src.byteBuf(), len);
+    }
+
+    @Override
+    public void writeBytes(PegasusBuffer src, int srcStart, int len) {
+        buffer.writeBytes(src.byteBuf(), srcStart, len);
+    }
+
+    @Override
+    public void writeBytes(ByteBuf src, int len) {
+        buffer.writeBytes(src, len);
+    }
+
+    @Override
+    public void writeBytes(ByteBuf src, int srcStart, int len) {
+        buffer.writeBytes(src, srcStart, len);
+    }
+
+    @Override
+    public void writeBytes(ByteBuffer src) {
+        buffer.writeBytes(src);
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelBufferWrapper[" + buffer + "]";
+    }
+
+}
@@ -215,6 +215,20 @@ public interface PegasusBuffer extends SequenceAccessBuffer, RandomAccessBuffer
      */
     ByteBuffer toBuffer(int index, int len);
 
+    /**
+     * Increases the reference count of the underlying resources by {@code increment}, each increment must be matched by
+     * a {@link #release()}. The reference count is shared by this buffer and all its slices and duplicates.
+     *
+     * @param increment number of references added.
+     * @return this buffer.
+     */
+    PegasusBuffer retain(int increment);
+
+    /**
+     * @return reference count of the underlying resources, 0 if they have been released.
+     */
+    int refCnt();
+
     /**
      * Release any underlying resources in this buffer.
      */
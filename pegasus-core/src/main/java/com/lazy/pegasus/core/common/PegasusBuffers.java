@@ -0,0 +1,122 @@
+package com.lazy.pegasus.core.common;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Factory of {@link PegasusBuffer}, all buffers in code base should be created from here.
+ */
+public final class PegasusBuffers {
+
+    private PegasusBuffers() {
+    }
+
+    /**
+     * Creates a heap buffer which expands its capacity on demand.
+     *
+     * @param initialCapacity initial capacity of buffer.
+     * @return newly created buffer.
+     */
+    public static PegasusBuffer dynamicBuffer(final int initialCapacity) {
+        return new ChannelBufferWrapper(Unpooled.buffer(initialCapacity));
+    }
+
+    /**
+     * Creates a heap buffer of a fixed capacity, writing over its capacity throws {@link IndexOutOfBoundsException}.
+     *
+     * @param capacity capacity of buffer.
+     * @return newly created buffer.
+     */
+    public static PegasusBuffer fixedBuffer(final int capacity) {
+        return new ChannelBufferWrapper(Unpooled.buffer(capacity, capacity));
+    }
+
+    /**
+     * Creates an off-heap buffer of a fixed capacity.
+     *
+     * @param capacity capacity of buffer.
+     * @return newly created buffer.
+     */
+    public static PegasusBuffer directBuffer(final int capacity) {
+        return new ChannelBufferWrapper(Unpooled.directBuffer(capacity, capacity));
+    }
+
+    /**
+     * Creates an off-heap buffer of a fixed capacity whose memory address is a multiple of alignment, as required by
+     * direct I/O. The memory is freed when the buffer is garbage collected.
+     *
+     * @param capacity  capacity of buffer.
+     * @param alignment alignment of memory address, a power of 2.
+     * @return newly created buffer, empty.
+     */
+    public static PegasusBuffer alignedBuffer(final int capacity, final int alignment) {
+        if (Integer.bitCount(alignment) != 1) {
+            throw new IllegalArgumentException("Alignment must be a power of 2, but " + alignment);
+        }
+
+        final ByteBuffer aligned = ByteBuffer.allocateDirect(capacity + alignment - 1).alignedSlice(alignment);
+        final PegasusBuffer buffer = new ChannelBufferWrapper(Unpooled.wrappedBuffer(aligned.limit(capacity).slice()));
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Borrows an off-heap buffer from the shared netty pool, the returned buffer must be {@link PegasusBuffer#release() released}
+     * to give its memory back to the pool.
+     *
+     * @param initialCapacity initial capacity of buffer.
+     * @return pooled buffer.
+     */
+    public static PegasusBuffer pooledBuffer(final int initialCapacity) {
+        return new ChannelBufferWrapper(PooledByteBufAllocator.DEFAULT.directBuffer(initialCapacity));
+    }
+
+    /**
+     * Wraps a byte array as a buffer, the content is shared and the {@code writeIndex} is at the end of array.
+     *
+     * @param bytes byte array to wrap.
+     * @return buffer view of byte array.
+     */
+    public static PegasusBuffer wrappedBuffer(final byte[] bytes) {
+        return new ChannelBufferWrapper(Unpooled.wrappedBuffer(bytes));
+    }
+
+    /**
+     * Wraps the remaining bytes of a NIO buffer as a buffer, the content is shared.
+     *
+     * @param buffer NIO buffer to wrap.
+     * @return buffer view of NIO buffer.
+     */
+    public static PegasusBuffer wrappedBuffer(final ByteBuffer buffer) {
+        return new ChannelBufferWrapper(Unpooled.wrappedBuffer(buffer));
+    }
+
+    /**
+     * Wraps a netty buffer, the content, indexes and reference count are shared.
+     *
+     * @param buffer netty buffer to wrap.
+     * @return buffer view of netty buffer.
+     */
+    public static PegasusBuffer wrappedBuffer(final ByteBuf buffer) {
+        return new ChannelBufferWrapper(buffer);
+    }
+
+    /**
+     * Composes buffers into a single buffer without copying, the readable bytes of each buffer follow the ones of the
+     * previous buffer. The composite takes over the buffers, which are released when it is released.
+     *
+     * @param buffers buffers to compose.
+     * @return composite buffer, readable from index 0 to the sum of readable bytes.
+     */
+    public static PegasusBuffer compositeBuffer(final PegasusBuffer... buffers) {
+        final ByteBuf[] components = new ByteBuf[buffers.length];
+        for (int i = 0; i < buffers.length; i++) {
+            components[i] = buffers[i].byteBuf();
+        }
+        return new ChannelBufferWrapper(Unpooled.wrappedBuffer(components.length, components));
+    }
+
+}
@@ -133,6 +133,14 @@ public interface SequenceAccessBuffer extends DataInput {
 
     SpanString readSpanString();
 
+    /**
+     * Gets a potentially null {@link SpanString} at the current {@code readIndex} and increases the {@code readIndex}
+     * by the SpanString's length.
+     *
+     * @return nullable {@link SpanString} at the current {@code readIndex}
+     */
+    SpanString readNullableSpanString();
+
     /**
      * Gets the UTF-8 String at the current {@code readIndex} and increases the {@code readIndex} by the string's length.
      *
@@ -269,7 +277,7 @@ public interface SequenceAccessBuffer extends DataInput {
      *
      * @param f64 64-bit value to set
      */
-    void writeDouble(float f64);
+    void writeDouble(double f64);
 
     /**
      * Sets the specified char at the current {@code writeIndex}, then increases the {@code writeIndex} by 2 in this buffer.
@@ -443,6 +443,22 @@ public class SpanString implements CharSequence, Serializable, Comparable<SpanSt
         return hash;
     }
 
+    /**
+     * Computes the hash code of an encoded SpanString in place, without allocation.
+     *
+     * @param buf    buffer holding the encoded data.
+     * @param offset index of the first byte of data.
+     * @param len    number of bytes of data.
+     * @return the same hash code as {@link #hashCode()} of a SpanString of these bytes.
+     */
+    public static int hashCode(final ByteBuf buf, final int offset, final int len) {
+        int tmp = 0;
+        for (int i = offset, end = offset + len; i < end; i++) {
+            tmp = (tmp << 5) - tmp + buf.getByte(i);
+        }
+        return tmp;
+    }
+
     @Override
     public String toString() {
         if (this.str == null) {
@@ -0,0 +1,55 @@
+package com.lazy.pegasus.core.compress;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+
+/**
+ * Service provider interface of a payload compression algorithm.
+ * <p>
+ * Implementations must be thread-safe and stateless from the caller's point of view. Besides the built-in codecs,
+ * implementations are discovered by {@link java.util.ServiceLoader}, see {@link CompressionCodecs}.
+ */
+public interface CompressionCodec {
+
+    /**
+     * @return unique id of codec, it is recorded in the header of encoded payload, so it must never change.
+     */
+    byte id();
+
+    /**
+     * @return human-readable name of codec, used in configuration.
+     */
+    String name();
+
+    /**
+     * @param len number of bytes to compress.
+     * @return upper bound of compressed length of {@code len} bytes.
+     */
+    int maxCompressedLength(int len);
+
+    /**
+     * Compresses bytes of source in range {@code [srcIndex, srcIndex + len)} into destination, starting at the current
+     * {@code writeIndex} of destination. The indexes of source are not modified.
+     *
+     * @param src      source buffer.
+     * @param srcIndex index to start reading in source.
+     * @param len      number of bytes to compress.
+     * @param dest     destination buffer, its {@code writeIndex} increases by the compressed length.
+     * @return compressed length.
+     */
+    int compress(PegasusBuffer src, int srcIndex, int len, PegasusBuffer dest);
+
+    /**
+     * Decompresses bytes of source in range {@code [srcIndex, srcIndex + len)} into destination, starting at the current
+     * {@code writeIndex} of destination. The indexes of source are not modified.
+     *
+     * @param src            source buffer.
+     * @param srcIndex       index to start reading in source.
+     * @param len            number of compressed bytes.
+     * @param dest           destination buffer, its {@code writeIndex} increases by {@code originalLength}.
+     * @param originalLength length of data before compression.
+     * @throws PegasusException if compressed data is corrupted.
+     */
+    void decompress(PegasusBuffer src, int srcIndex, int len, PegasusBuffer dest, int originalLength) throws PegasusException;
+
+}
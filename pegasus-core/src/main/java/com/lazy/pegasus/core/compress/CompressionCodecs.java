@@ -0,0 +1,74 @@
+package com.lazy.pegasus.core.compress;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link CompressionCodec}, looked up by the id recorded in an encoded payload or by name in configuration.
+ * <p>
+ * {@link Lz4BlockCodec} and {@link DeflateCodec} are always registered, other codecs are discovered with
+ * {@link ServiceLoader} from {@code META-INF/services/com.lazy.pegasus.core.compress.CompressionCodec}. Id 0 is
+ * reserved for uncompressed payloads.
+ */
+public final class CompressionCodecs {
+
+    private static final Logger logger = LoggerFactory.getLogger(CompressionCodecs.class);
+
+    private static final CompressionCodec[] BY_ID = new CompressionCodec[Byte.MAX_VALUE + 1];
+    private static final Map<String, CompressionCodec> BY_NAME = new ConcurrentHashMap<>();
+
+    static {
+        register(new Lz4BlockCodec());
+        register(new DeflateCodec());
+        for (CompressionCodec codec : ServiceLoader.load(CompressionCodec.class)) {
+            register(codec);
+        }
+    }
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Registers a codec, its id and name must not be taken by another codec.
+     *
+     * @param codec codec to register.
+     */
+    public static synchronized void register(final CompressionCodec codec) {
+        final int id = codec.id();
+        if (id <= 0) {
+            throw new IllegalArgumentException("Codec id must be in range [1," + Byte.MAX_VALUE + "], but " + id);
+        }
+        if (BY_ID[id] != null) {
+            throw new IllegalArgumentException("Codec id " + id + " is taken by " + BY_ID[id].name());
+        }
+
+        final String name = codec.name().toLowerCase(Locale.ROOT);
+        if (BY_NAME.putIfAbsent(name, codec) != null) {
+            throw new IllegalArgumentException("Codec name " + name + " is taken");
+        }
+
+        BY_ID[id] = codec;
+        logger.debug("Registered compression codec {} with id {}", name, id);
+    }
+
+    /**
+     * @param id id of codec.
+     * @return codec of id, or null if no codec is registered.
+     */
+    public static CompressionCodec ofId(final byte id) {
+        return id <= 0 ? null : BY_ID[id];
+    }
+
+    /**
+     * @param name name of codec, case-insensitive.
+     * @return codec of name, or null if no codec is registered.
+     */
+    public static CompressionCodec ofName(final String name) {
+        return BY_NAME.get(name.toLowerCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,61 @@
+package com.lazy.pegasus.core.compress;
+
+import com.lazy.pegasus.core.common.SpanString;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-address opt-in of payload compression. An address is not compressed unless it is enabled, and payloads smaller
+ * than the threshold of address are never compressed, as the header and CPU cost outweigh the saved bytes.
+ */
+public class CompressionPolicy {
+
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private final Map<SpanString, Setting> settings = new ConcurrentHashMap<>();
+
+    /**
+     * Enables compression of an address with {@link #DEFAULT_THRESHOLD}.
+     *
+     * @param address address to compress.
+     * @param codec   codec used to compress.
+     */
+    public void enable(final SpanString address, final CompressionCodec codec) {
+        enable(address, codec, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Enables compression of an address.
+     *
+     * @param address   address to compress.
+     * @param codec     codec used to compress.
+     * @param threshold payloads smaller than this number of bytes are not compressed.
+     */
+    public void enable(final SpanString address, final CompressionCodec codec, final int threshold) {
+        if (threshold < 0) {
+            throw new IllegalArgumentException("Threshold must not be negative, but " + threshold);
+        }
+        settings.put(address, new Setting(codec, threshold));
+    }
+
+    public void disable(final SpanString address) {
+        settings.remove(address);
+    }
+
+    /**
+     * @param address     address of payload.
+     * @param payloadSize size of payload.
+     * @return codec to compress the payload, or null if the payload should not be compressed.
+     */
+    public CompressionCodec codecOf(final SpanString address, final int payloadSize) {
+        final Setting setting = settings.get(address);
+        if (setting == null || payloadSize < setting.threshold) {
+            return null;
+        }
+        return setting.codec;
+    }
+
+    private record Setting(CompressionCodec codec, int threshold) {
+    }
+}
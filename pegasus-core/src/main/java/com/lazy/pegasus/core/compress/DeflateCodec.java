@@ -0,0 +1,125 @@
+package com.lazy.pegasus.core.compress;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Codec of raw deflate (no zlib header and checksum), favours ratio over speed.
+ * <p>
+ * Data is handed to {@link Deflater} and {@link Inflater} as NIO views of the buffers, so direct buffers are
+ * (de)compressed in place without copying through the heap. A {@link Deflater} and an {@link Inflater} are cached per
+ * thread, as creating them allocates native memory.
+ * <p>
+ * The destination must expose its memory as a single NIO buffer (i.e. must not be a composite buffer).
+ */
+public class DeflateCodec implements CompressionCodec {
+
+    public static final byte ID = 2;
+
+    private final int level;
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<Inflater> inflaters = ThreadLocal.withInitial(() -> new Inflater(true));
+
+    public DeflateCodec() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param level compression level in range [0, 9], see {@link Deflater}.
+     */
+    public DeflateCodec(final int level) {
+        if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Illegal deflate level " + level);
+        }
+
+        this.level = level;
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "deflate";
+    }
+
+    @Override
+    public int maxCompressedLength(int len) {
+        // same as compressBound of zlib
+        return len + (len >>> 12) + (len >>> 14) + (len >>> 25) + 13;
+    }
+
+    @Override
+    public int compress(PegasusBuffer src, int srcIndex, int len, PegasusBuffer dest) {
+        final int max = maxCompressedLength(len);
+        dest.byteBuf().ensureWritable(max);
+        final int destStart = dest.writeIndex();
+
+        final ByteBuffer input = src.toBuffer(srcIndex, len);
+        final ByteBuffer output = dest.toBuffer(destStart, max);
+
+        final Deflater deflater = deflaters.get();
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (deflater.deflate(output) == 0 && !output.hasRemaining()) {
+                    throw new IllegalStateException("Deflated data exceeds bound " + max);
+                }
+            }
+        } finally {
+            deflater.reset();
+        }
+
+        final int written = output.position();
+        dest.writeIndex(destStart + written);
+        return written;
+    }
+
+    @Override
+    public void decompress(PegasusBuffer src, int srcIndex, int len, PegasusBuffer dest, int originalLength)
+            throws PegasusException {
+        if (originalLength == 0) {
+            return;
+        }
+
+        dest.byteBuf().ensureWritable(originalLength);
+        final int destStart = dest.writeIndex();
+
+        final ByteBuffer input = src.toBuffer(srcIndex, len);
+        final ByteBuffer output = dest.toBuffer(destStart, originalLength);
+
+        final Inflater inflater = inflaters.get();
+        try {
+            inflater.setInput(input);
+            while (!inflater.finished()) {
+                if (inflater.inflate(output) == 0 && (inflater.needsInput() || !output.hasRemaining())) {
+                    break;
+                }
+            }
+            if (!inflater.finished() || output.hasRemaining()) {
+                throw new PegasusException("Corrupted deflate data, inflated " + output.position() + " bytes, expecting " +
+                        originalLength, PegasusExceptionType.COMPRESSION_ERROR);
+            }
+        } catch (DataFormatException e) {
+            throw new PegasusException("Corrupted deflate data", e, PegasusExceptionType.COMPRESSION_ERROR);
+        } finally {
+            inflater.reset();
+        }
+
+        dest.writeIndex(destStart + originalLength);
+    }
+}
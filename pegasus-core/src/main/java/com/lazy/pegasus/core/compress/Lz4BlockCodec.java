@@ -0,0 +1,192 @@
+package com.lazy.pegasus.core.compress;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+
+import java.util.Arrays;
+
+/**
+ * Pure Java codec of the LZ4 block format, favours speed over ratio.
+ * <p>
+ * A block is a series of sequences, each sequence is:
+ * <pre>
+ *     [token: literalLength(4 bits) | matchLength - 4 (4 bits)][literalLength - 15 as 255s..][literals]
+ *     [offset: 2 bytes little endian][matchLength - 19 as 255s..]
+ * </pre>
+ * The last sequence only has literals. Matches are found by a single-probe hash table of 4-byte sequences, the last
+ * 5 bytes are always literals and the last match starts at least 12 bytes before the end of block.
+ */
+public class Lz4BlockCodec implements CompressionCodec {
+
+    public static final byte ID = 1;
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MF_LIMIT = 12;
+    private static final int MAX_DISTANCE = 0xffff;
+    private static final int RUN_MASK = 0x0f;
+    private static final int HASH_LOG = 12;
+    private static final int SKIP_TRIGGER = 6;
+
+    private static final ThreadLocal<int[]> HASH_TABLES = ThreadLocal.withInitial(() -> new int[1 << HASH_LOG]);
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public String name() {
+        return "lz4";
+    }
+
+    @Override
+    public int maxCompressedLength(int len) {
+        return len + len / 255 + 16;
+    }
+
+    @Override
+    public int compress(PegasusBuffer src, int srcIndex, int len, PegasusBuffer dest) {
+        dest.byteBuf().ensureWritable(maxCompressedLength(len));
+        final int destStart = dest.writeIndex();
+        final int srcEnd = srcIndex + len;
+
+        int anchor = srcIndex;
+        if (len >= MF_LIMIT + 1) {
+            final int[] table = HASH_TABLES.get();
+            Arrays.fill(table, -1);
+
+            final int matchLimit = srcEnd - LAST_LITERALS;
+            final int limit = srcEnd - MF_LIMIT;
+            int i = srcIndex;
+            while (i < limit) {
+                final int seq = src.getInt(i);
+                final int h = hash(seq);
+                final int ref = table[h];
+                table[h] = i;
+
+                if (ref < 0 || i - ref > MAX_DISTANCE || src.getInt(ref) != seq) {
+                    // accelerate over incompressible data
+                    i += 1 + ((i - anchor) >>> SKIP_TRIGGER);
+                    continue;
+                }
+
+                int matchLen = MIN_MATCH;
+                while (i + matchLen < matchLimit && src.getByte(ref + matchLen) == src.getByte(i + matchLen)) {
+                    matchLen++;
+                }
+
+                writeSequence(src, anchor, i - anchor, i - ref, matchLen, dest);
+                i += matchLen;
+                anchor = i;
+            }
+        }
+
+        writeLastLiterals(src, anchor, srcEnd - anchor, dest);
+        return dest.writeIndex() - destStart;
+    }
+
+    @Override
+    public void decompress(PegasusBuffer src, int srcIndex, int len, PegasusBuffer dest, int originalLength)
+            throws PegasusException {
+        dest.byteBuf().ensureWritable(originalLength);
+        final int destStart = dest.writeIndex();
+        final int destEnd = destStart + originalLength;
+        final int srcEnd = srcIndex + len;
+
+        try {
+            int i = srcIndex;
+            while (i < srcEnd) {
+                final int token = src.getUnsignedByte(i++);
+
+                int literalLen = token >>> 4;
+                if (literalLen == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src.getUnsignedByte(i++);
+                        literalLen += b;
+                    } while (b == 0xff);
+                }
+                if (dest.writeIndex() + literalLen > destEnd || i + literalLen > srcEnd) {
+                    throw corrupted("literals overflow");
+                }
+                dest.writeBytes(src, i, literalLen);
+                i += literalLen;
+
+                if (i == srcEnd) {
+                    break; // last sequence
+                }
+
+                final int offset = src.getUnsignedByte(i) | (src.getUnsignedByte(i + 1) << 8);
+                i += 2;
+                int matchLen = token & RUN_MASK;
+                if (matchLen == RUN_MASK) {
+                    int b;
+                    do {
+                        b = src.getUnsignedByte(i++);
+                        matchLen += b;
+                    } while (b == 0xff);
+                }
+                matchLen += MIN_MATCH;
+
+                final int out = dest.writeIndex();
+                final int ref = out - offset;
+                if (offset == 0 || ref < destStart || out + matchLen > destEnd) {
+                    throw corrupted("match out of bound");
+                }
+                // copy byte by byte as match could overlap with its own output
+                for (int j = 0; j < matchLen; j++) {
+                    dest.setByte(out + j, dest.getByte(ref + j));
+                }
+                dest.writeIndex(out + matchLen);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new PegasusException("Corrupted lz4 block", e, PegasusExceptionType.COMPRESSION_ERROR);
+        }
+
+        if (dest.writeIndex() != destEnd) {
+            throw corrupted("decompressed " + (dest.writeIndex() - destStart) + " bytes, expecting " + originalLength);
+        }
+    }
+
+    private static int hash(final int seq) {
+        return (seq * -1640531535) >>> (Integer.SIZE - HASH_LOG);
+    }
+
+    private static void writeSequence(final PegasusBuffer src, final int literalIndex, final int literalLen,
+                                      final int offset, final int matchLen, final PegasusBuffer dest) {
+        final int runLen = matchLen - MIN_MATCH;
+        final int token = (Math.min(literalLen, RUN_MASK) << 4) | Math.min(runLen, RUN_MASK);
+        dest.writeByte((byte) token);
+        writeLength(literalLen, dest);
+        dest.writeBytes(src, literalIndex, literalLen);
+        dest.writeByte((byte) offset);
+        dest.writeByte((byte) (offset >>> 8));
+        writeLength(runLen, dest);
+    }
+
+    private static void writeLastLiterals(final PegasusBuffer src, final int literalIndex, final int literalLen,
+                                          final PegasusBuffer dest) {
+        dest.writeByte((byte) (Math.min(literalLen, RUN_MASK) << 4));
+        writeLength(literalLen, dest);
+        dest.writeBytes(src, literalIndex, literalLen);
+    }
+
+    private static void writeLength(int len, final PegasusBuffer dest) {
+        if (len < RUN_MASK) {
+            return;
+        }
+
+        len -= RUN_MASK;
+        while (len >= 0xff) {
+            dest.writeByte((byte) 0xff);
+            len -= 0xff;
+        }
+        dest.writeByte((byte) len);
+    }
+
+    private static PegasusException corrupted(final String reason) {
+        return new PegasusException("Corrupted lz4 block, " + reason, PegasusExceptionType.COMPRESSION_ERROR);
+    }
+}
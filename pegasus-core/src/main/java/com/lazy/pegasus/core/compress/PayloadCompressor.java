@@ -0,0 +1,102 @@
+package com.lazy.pegasus.core.compress;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.RandomAccessBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.utils.VarIntUtil;
+
+/**
+ * Encodes a payload with a header telling whether, and how, it is compressed.
+ * <pre>
+ *     uncompressed: [byte flags = 0][payload]
+ *     compressed:   [byte flags = FLAG_COMPRESSED][byte codecId][varint originalLength][compressed payload]
+ * </pre>
+ * A payload is compressed only if its address opts in, its size reaches the threshold of address (see
+ * {@link CompressionPolicy}) and the compressed form is actually smaller.
+ */
+public class PayloadCompressor {
+
+    public static final byte FLAG_COMPRESSED = 0x01;
+
+    private final CompressionPolicy policy;
+
+    public PayloadCompressor(final CompressionPolicy policy) {
+        this.policy = policy;
+    }
+
+    public CompressionPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Encodes the readable bytes of payload into destination at its current {@code writeIndex}. The indexes of payload
+     * are not modified.
+     *
+     * @param address address of payload.
+     * @param payload payload to encode.
+     * @param dest    destination buffer.
+     * @return true if the payload is compressed.
+     */
+    public boolean encode(final SpanString address, final PegasusBuffer payload, final PegasusBuffer dest) {
+        final int len = payload.readableBytes();
+        final CompressionCodec codec = policy.codecOf(address, len);
+
+        final int start = dest.writeIndex();
+        if (codec != null) {
+            dest.writeByte(FLAG_COMPRESSED);
+            dest.writeByte(codec.id());
+            VarIntUtil.writeVarInt(dest, len);
+            codec.compress(payload, payload.readIndex(), len, dest);
+            if (dest.writeIndex() - start < len + 1) {
+                return true;
+            }
+
+            // not worth it, e.g. already compressed media
+            dest.writeIndex(start);
+        }
+
+        dest.writeByte((byte) 0);
+        dest.writeBytes(payload, payload.readIndex(), len);
+        return false;
+    }
+
+    /**
+     * Decodes the readable bytes of an encoded payload. An uncompressed payload is returned as a slice sharing the
+     * content of encoded buffer, a compressed payload is decompressed into a new buffer.
+     *
+     * @param encoded encoded payload, its {@code readIndex} is moved to its {@code writeIndex}.
+     * @return decoded payload.
+     * @throws PegasusException if the payload is corrupted or its codec is unknown.
+     */
+    public static PegasusBuffer decode(final PegasusBuffer encoded) throws PegasusException {
+        final byte flags = encoded.readByte();
+        if ((flags & FLAG_COMPRESSED) == 0) {
+            return encoded.readSlice(encoded.readableBytes());
+        }
+
+        final byte id = encoded.readByte();
+        final CompressionCodec codec = CompressionCodecs.ofId(id);
+        if (codec == null) {
+            throw new PegasusException("Unknown compression codec " + id, PegasusExceptionType.COMPRESSION_ERROR);
+        }
+
+        final int originalLength = VarIntUtil.readVarInt(encoded);
+        final int len = encoded.readableBytes();
+        final PegasusBuffer decoded = PegasusBuffers.fixedBuffer(originalLength);
+        codec.decompress(encoded, encoded.readIndex(), len, decoded, originalLength);
+        encoded.skipBytes(len);
+        return decoded;
+    }
+
+    /**
+     * @param buf   buffer of encoded payload.
+     * @param index index of encoded payload header.
+     * @return true if the encoded payload is compressed.
+     */
+    public static boolean isCompressed(final RandomAccessBuffer buf, final int index) {
+        return (buf.getByte(index) & FLAG_COMPRESSED) != 0;
+    }
+}
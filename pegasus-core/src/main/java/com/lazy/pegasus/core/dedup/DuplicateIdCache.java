@@ -0,0 +1,289 @@
+package com.lazy.pegasus.core.dedup;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.journal.Journal;
+import com.lazy.pegasus.core.persistence.RecordTypes;
+import com.lazy.pegasus.core.utils.BytesUtil;
+import io.netty.buffer.ByteBuf;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of the most recent duplicate ids sent to an address, used to drop a message sent again (e.g. by a producer
+ * retrying after a timeout).
+ * <p>
+ * Ids are kept in a ring of fixed capacity, the oldest id being evicted by a new one, and an open addressing hash set
+ * of ring slots finds an id in O(1). An id is looked up straight against the bytes of the incoming frame by
+ * {@link BytesUtil#equals(byte[], ByteBuf, int, int)}, so checking an id allocates nothing; the byte array of an
+ * evicted id is reused by an id of the same length, so a cache of fixed-length ids stops allocating once full.
+ * <p>
+ * With a journal, each added id is appended as a {@link RecordTypes#DUPLICATE_ID} record and deleted once evicted, so
+ * the cache survives a restart. Records are appended without a sync, they are made durable by the sync of the message
+ * they come with.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class DuplicateIdCache {
+
+    private static final int EMPTY = 0;
+
+    private final SpanString address;
+    private final int capacity;
+    private final Journal journal;
+    private final LongSupplier recordIds;
+
+    private final byte[][] ids;
+    private final int[] hashes;
+    private final long[] recordIdsOfSlots;
+    private final int[] table;
+    private final int mask;
+
+    private int next;
+    private int size;
+
+    /**
+     * Creates a cache which is not journaled.
+     */
+    public DuplicateIdCache(final SpanString address, final int capacity) {
+        this(address, capacity, null, null);
+    }
+
+    /**
+     * @param address   address of cache.
+     * @param capacity  number of ids kept.
+     * @param journal   journal of ids, or null if ids are not journaled.
+     * @param recordIds source of record ids of journal.
+     */
+    public DuplicateIdCache(final SpanString address, final int capacity, final Journal journal,
+                            final LongSupplier recordIds) {
+        if (capacity <= 0 || capacity > 1 << 29) {
+            throw new IllegalArgumentException("Capacity must be in range [1," + (1 << 29) + "], but " + capacity);
+        }
+        if (journal != null && recordIds == null) {
+            throw new IllegalArgumentException("Record ids are required by a journaled cache");
+        }
+        this.address = address;
+        this.capacity = capacity;
+        this.journal = journal;
+        this.recordIds = recordIds;
+        this.ids = new byte[capacity][];
+        this.hashes = new int[capacity];
+        this.recordIdsOfSlots = new long[capacity];
+
+        final int tableSize = Integer.highestOneBit(capacity) << 2;
+        this.table = new int[tableSize];
+        this.mask = tableSize - 1;
+    }
+
+    public SpanString getAddress() {
+        return address;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return true if the id of {@code len} bytes at {@code offset} of buffer is in cache.
+     */
+    public synchronized boolean contains(final ByteBuf buf, final int offset, final int len) {
+        return find(hash(buf, offset, len), buf, offset, len) >= 0;
+    }
+
+    public synchronized boolean contains(final byte[] id) {
+        return find(hash(id), id) >= 0;
+    }
+
+    /**
+     * Adds the id of {@code len} bytes at {@code offset} of buffer unless it is in cache.
+     *
+     * @return true if the id was added, false if it is a duplicate.
+     * @throws PegasusException if the id could not be journaled.
+     */
+    public synchronized boolean addIfAbsent(final ByteBuf buf, final int offset, final int len) throws PegasusException {
+        final int hash = hash(buf, offset, len);
+        if (find(hash, buf, offset, len) >= 0) {
+            return false;
+        }
+
+        final int slot = claimSlot(len);
+        buf.getBytes(offset, ids[slot]);
+        insert(slot, hash);
+        return true;
+    }
+
+    /**
+     * @return true if the id was added, false if it is a duplicate.
+     * @throws PegasusException if the id could not be journaled.
+     */
+    public synchronized boolean addIfAbsent(final byte[] id) throws PegasusException {
+        final int hash = hash(id);
+        if (find(hash, id) >= 0) {
+            return false;
+        }
+
+        final int slot = claimSlot(id.length);
+        System.arraycopy(id, 0, ids[slot], 0, id.length);
+        insert(slot, hash);
+        return true;
+    }
+
+    public boolean addIfAbsent(final SpanString id) throws PegasusException {
+        return addIfAbsent(id.getData());
+    }
+
+    /**
+     * Restores an id recovered from journal, ids must be restored in the order they were added.
+     *
+     * @param recordId id of journal record of id.
+     * @param id       id.
+     * @throws PegasusException if an evicted id could not be deleted from journal.
+     */
+    synchronized void restore(final long recordId, final byte[] id) throws PegasusException {
+        final int hash = hash(id);
+        if (find(hash, id) >= 0) {
+            return;
+        }
+
+        final int slot = claimSlot(id.length);
+        System.arraycopy(id, 0, ids[slot], 0, id.length);
+        recordIdsOfSlots[slot] = recordId;
+        add(slot, hash);
+    }
+
+    /**
+     * Frees the next slot of ring, evicting its id, with an array of {@code len} bytes. The slot is only taken by
+     * {@link #add(int, int)}, so a failure to journal the new id leaves it free for the next one.
+     */
+    private int claimSlot(final int len) throws PegasusException {
+        final int slot = next;
+        if (size == capacity) {
+            // journaled first, the evicted id stays in cache if its record could not be deleted
+            if (journal != null) {
+                journal.appendDeleteRecord(recordIdsOfSlots[slot], false);
+            }
+            unlink(slot);
+            size--;
+        }
+        if (ids[slot] == null || ids[slot].length != len) {
+            ids[slot] = new byte[len];
+        }
+        return slot;
+    }
+
+    /**
+     * Journals the id copied in slot, then adds it to cache.
+     */
+    private void insert(final int slot, final int hash) throws PegasusException {
+        if (journal != null) {
+            final long recordId = recordIds.getAsLong();
+            final byte[] id = ids[slot];
+            final PegasusBuffer body = PegasusBuffers.fixedBuffer(address.sizeof() + DataConstants.SIZE_INT + id.length);
+            body.writeSpanString(address);
+            body.writeInt(id.length);
+            body.writeBytes(id);
+            journal.appendAddRecord(recordId, RecordTypes.DUPLICATE_ID, body, false);
+            recordIdsOfSlots[slot] = recordId;
+        }
+        add(slot, hash);
+    }
+
+    private void add(final int slot, final int hash) {
+        link(slot, hash);
+        size++;
+        next = slot + 1 == capacity ? 0 : slot + 1;
+    }
+
+    private int find(final int hash, final ByteBuf buf, final int offset, final int len) {
+        int index = hash & mask;
+        int entry;
+        while ((entry = table[index]) != EMPTY) {
+            final int slot = entry - 1;
+            if (hashes[slot] == hash && BytesUtil.equals(ids[slot], buf, offset, len)) {
+                return slot;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int find(final int hash, final byte[] id) {
+        int index = hash & mask;
+        int entry;
+        while ((entry = table[index]) != EMPTY) {
+            final int slot = entry - 1;
+            if (hashes[slot] == hash && BytesUtil.equals(ids[slot], id)) {
+                return slot;
+            }
+            index = (index + 1) & mask;
+        }
+        return -1;
+    }
+
+    private void link(final int slot, final int hash) {
+        hashes[slot] = hash;
+        int index = hash & mask;
+        while (table[index] != EMPTY) {
+            index = (index + 1) & mask;
+        }
+        table[index] = slot + 1;
+    }
+
+    private void unlink(final int slot) {
+        int gap = hashes[slot] & mask;
+        while (table[gap] != slot + 1) {
+            gap = (gap + 1) & mask;
+        }
+
+        int index = gap;
+        while (true) {
+            index = (index + 1) & mask;
+            final int entry = table[index];
+            if (entry == EMPTY) {
+                break;
+            }
+
+            // the entry can move to gap only if its home slot is not in range (gap, index]
+            final int home = hashes[entry - 1] & mask;
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                table[gap] = entry;
+                gap = index;
+            }
+        }
+        table[gap] = EMPTY;
+    }
+
+    private static int hash(final ByteBuf buf, final int offset, final int len) {
+        int hash = 1;
+        for (int i = 0; i < len; i++) {
+            hash = 31 * hash + buf.getByte(offset + i);
+        }
+        return mix(hash);
+    }
+
+    private static int hash(final byte[] id) {
+        int hash = 1;
+        for (byte b : id) {
+            hash = 31 * hash + b;
+        }
+        return mix(hash);
+    }
+
+    private static int mix(final int hash) {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        return "DuplicateIdCache[address=" + address + ", size=" + size() + ", capacity=" + capacity + ']';
+    }
+}
@@ -0,0 +1,79 @@
+package com.lazy.pegasus.core.dedup;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.journal.Journal;
+import com.lazy.pegasus.core.journal.RecordInfo;
+import com.lazy.pegasus.core.persistence.RecordTypes;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Owns the {@link DuplicateIdCache} of every address, all journaled to the same journal if any.
+ */
+public class DuplicateIdManager {
+
+    public static final int DEFAULT_CACHE_SIZE = 20_000;
+
+    private final int cacheSize;
+    private final Journal journal;
+    private final LongSupplier recordIds;
+    private final Map<SpanString, DuplicateIdCache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a manager whose caches are not journaled.
+     */
+    public DuplicateIdManager(final int cacheSize) {
+        this(cacheSize, null, null);
+    }
+
+    /**
+     * @param cacheSize number of ids kept per address.
+     * @param journal   journal of ids, or null if ids are not journaled.
+     * @param recordIds source of record ids of journal.
+     */
+    public DuplicateIdManager(final int cacheSize, final Journal journal, final LongSupplier recordIds) {
+        this.cacheSize = cacheSize;
+        this.journal = journal;
+        this.recordIds = recordIds;
+    }
+
+    /**
+     * @return cache of address, created if it does not exist.
+     */
+    public DuplicateIdCache getCache(final SpanString address) {
+        return caches.computeIfAbsent(address, a -> new DuplicateIdCache(a, cacheSize, journal, recordIds));
+    }
+
+    /**
+     * Restores the caches from the records loaded from journal, other record types are ignored.
+     *
+     * @param records records loaded from journal, in the order they were appended.
+     * @throws PegasusException if an evicted id could not be deleted from journal.
+     */
+    public void load(final List<RecordInfo> records) throws PegasusException {
+        for (RecordInfo record : records) {
+            if (record.getUserRecordType() != RecordTypes.DUPLICATE_ID || record.isUpdate()) {
+                continue;
+            }
+
+            final PegasusBuffer body = PegasusBuffers.wrappedBuffer(record.getData());
+            final SpanString address = body.readSpanString();
+            final byte[] id = new byte[body.readInt()];
+            body.readBytes(id);
+            getCache(address).restore(record.getId(), id);
+        }
+    }
+
+    /**
+     * @return number of addresses with a cache.
+     */
+    public int getCachesCount() {
+        return caches.size();
+    }
+}
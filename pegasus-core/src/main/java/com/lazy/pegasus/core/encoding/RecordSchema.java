@@ -0,0 +1,169 @@
+package com.lazy.pegasus.core.encoding;
+
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+
+import java.util.Arrays;
+
+/**
+ * Describes fields of a tagged record at a schema version, used to check records written by any version of a broker.
+ * <p>
+ * Evolving a schema follows these rules so that old and new brokers interoperate during a rolling upgrade:
+ * <pre>
+ *     1. a field number is never reused, a removed field leaves its number reserved.
+ *     2. a new field gets a new number and {@code sinceVersion} of the schema version which introduces it.
+ *     3. a field may only be required since the version which introduces it, a reader accepts a record of an older
+ *        version missing the field.
+ *     4. a field keeps its data type, int and long are interchangeable as both are zigzag varints.
+ * </pre>
+ * A reader skips fields unknown to its schema, so records of a newer version are readable by an older broker.
+ */
+public final class RecordSchema {
+
+    private final int version;
+    private final Field[] fields;
+
+    private RecordSchema(final int version, final Field[] fields) {
+        this.version = version;
+        this.fields = fields;
+    }
+
+    /**
+     * @param version current version of schema.
+     * @param fields  fields of schema.
+     * @return newly created schema.
+     */
+    public static RecordSchema of(final int version, final Field... fields) {
+        int max = 0;
+        for (Field field : fields) {
+            if (field.sinceVersion > version) {
+                throw new IllegalArgumentException("Field " + field.number + " since version " + field.sinceVersion +
+                        " is newer than schema version " + version);
+            }
+            max = Math.max(max, field.number);
+        }
+
+        Field[] byNumber = new Field[max + 1];
+        for (Field field : fields) {
+            if (byNumber[field.number] != null) {
+                throw new IllegalArgumentException("Duplicated field number " + field.number);
+            }
+            byNumber[field.number] = field;
+        }
+
+        return new RecordSchema(version, byNumber);
+    }
+
+    public int version() {
+        return version;
+    }
+
+    /**
+     * @param number number of field.
+     * @return field of number, or null if this schema does not know the field.
+     */
+    public Field field(final int number) {
+        return number < fields.length ? fields[number] : null;
+    }
+
+    /**
+     * @param number number of field.
+     * @return true if this schema knows the field.
+     */
+    public boolean isKnown(final int number) {
+        return field(number) != null;
+    }
+
+    /**
+     * Checks that a record read by {@code reader} has all fields which are required by both the writer's version and
+     * this schema version. This should be called once all fields have been visited.
+     *
+     * @param reader reader that has visited all fields.
+     * @throws PegasusException if a required field is missing.
+     */
+    public void validate(final TaggedRecordReader reader) throws PegasusException {
+        final int common = Math.min(reader.version(), version);
+        for (Field field : fields) {
+            if (field != null && field.required && field.sinceVersion <= common && !reader.hasField(field.number)) {
+                throw new PegasusException("Missing required field " + field.number + " of record version " +
+                        reader.version(), PegasusExceptionType.ENCODING_ERROR);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RecordSchema[version=" + version + ", fields=" + Arrays.toString(fields) + ']';
+    }
+
+    /**
+     * A field of schema.
+     */
+    public static final class Field {
+
+        private final int number;
+        private final int dataType;
+        private final int sinceVersion;
+        private final boolean required;
+
+        private Field(int number, int dataType, int sinceVersion, boolean required) {
+            if (number <= 0) {
+                throw new IllegalArgumentException("Field number must be positive, but " + number);
+            }
+            if (required && number >= Long.SIZE) {
+                throw new IllegalArgumentException("Required field number must be less than " + Long.SIZE);
+            }
+
+            this.number = number;
+            this.dataType = dataType;
+            this.sinceVersion = sinceVersion;
+            this.required = required;
+        }
+
+        /**
+         * @param number       number of field.
+         * @param dataType     data type of field, defined in {@link com.lazy.pegasus.core.common.DataConstants}.
+         * @param sinceVersion schema version which introduces the field.
+         * @return an optional field.
+         */
+        public static Field optional(int number, int dataType, int sinceVersion) {
+            return new Field(number, dataType, sinceVersion, false);
+        }
+
+        /**
+         * @param number       number of field, must be less than 64.
+         * @param dataType     data type of field, defined in {@link com.lazy.pegasus.core.common.DataConstants}.
+         * @param sinceVersion schema version which introduces the field.
+         * @return a required field.
+         */
+        public static Field required(int number, int dataType, int sinceVersion) {
+            return new Field(number, dataType, sinceVersion, true);
+        }
+
+        public int number() {
+            return number;
+        }
+
+        public int dataType() {
+            return dataType;
+        }
+
+        public WireType wireType() {
+            return WireType.ofDataType(dataType);
+        }
+
+        public int sinceVersion() {
+            return sinceVersion;
+        }
+
+        public boolean required() {
+            return required;
+        }
+
+        @Override
+        public String toString() {
+            return "Field[number=" + number + ", dataType=" + dataType + ", since=" + sinceVersion +
+                    ", required=" + required + ']';
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package com.lazy.pegasus.core.encoding;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.utils.VarIntUtil;
+
+/**
+ * Reads a tagged record written by {@link TaggedRecordWriter}.
+ * <p>
+ * Fields are visited in the order they were written by calling {@link #nextField()}, then the value is read by the
+ * typed read method matching the field, or skipped by {@link #skipField()}. Skipping never decodes a value: a length
+ * delimited field is skipped by its length prefix, so unknown fields (written by a newer schema) cost O(1) regardless
+ * of their size.
+ * <pre>
+ *     TaggedRecordReader reader = new TaggedRecordReader(buf);
+ *     int version = reader.begin();
+ *     while (reader.nextField()) {
+ *         switch (reader.fieldNumber()) {
+ *             case 1 -> id = reader.readLong();
+ *             case 2 -> name = reader.readSpanString();
+ *             default -> reader.skipField();
+ *         }
+ *     }
+ *     reader.end();
+ * </pre>
+ * Presence of fields whose number is less than 64 is tracked, see {@link #hasField(int)}.
+ */
+public class TaggedRecordReader {
+
+    private static final int TRACKED_FIELDS = Long.SIZE;
+
+    private final PegasusBuffer buffer;
+
+    private int version = -1;
+    private int limit = -1;
+    private int fieldNumber;
+    private WireType wireType;
+    private boolean consumed = true;
+    private long presence;
+
+    public TaggedRecordReader(final PegasusBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    private TaggedRecordReader(final PegasusBuffer buffer, final int version, final int limit) {
+        this.buffer = buffer;
+        this.version = version;
+        this.limit = limit;
+    }
+
+    /**
+     * Reads header of record at the current {@code readIndex}.
+     *
+     * @return schema version of the writer.
+     * @throws PegasusException if the header is malformed.
+     */
+    public int begin() throws PegasusException {
+        version = VarIntUtil.readVarInt(buffer);
+        final int len = VarIntUtil.readVarInt(buffer);
+        limit = buffer.readIndex() + len;
+        if (len < 0 || limit > buffer.writeIndex()) {
+            throw new PegasusException("Record body of " + len + " bytes exceeds readable bytes " + buffer.readableBytes(),
+                    PegasusExceptionType.ENCODING_ERROR);
+        }
+
+        presence = 0;
+        consumed = true;
+        return version;
+    }
+
+    /**
+     * Moves to the next field of record, the value of previous field is skipped if it has not been read yet.
+     *
+     * @return true if there is a next field, false if the end of record is reached.
+     * @throws PegasusException if the tag is malformed.
+     */
+    public boolean nextField() throws PegasusException {
+        if (!consumed) {
+            skipField();
+        }
+
+        final int index = buffer.readIndex();
+        if (index >= limit) {
+            return false;
+        }
+
+        final int tag = VarIntUtil.readVarInt(buffer);
+        wireType = WireType.ofId(tag);
+        fieldNumber = tag >>> WireType.TAG_TYPE_BITS;
+        if (wireType == null || fieldNumber == 0) {
+            throw new PegasusException("Malformed tag " + tag + " at index " + index, PegasusExceptionType.ENCODING_ERROR);
+        }
+
+        if (fieldNumber < TRACKED_FIELDS) {
+            presence |= 1L << fieldNumber;
+        }
+        consumed = false;
+        return true;
+    }
+
+    /**
+     * Skips value of current field.
+     *
+     * @throws PegasusException if the value exceeds the end of record.
+     */
+    public void skipField() throws PegasusException {
+        switch (wireType) {
+            case VARINT -> VarIntUtil.skipVarLong(buffer);
+            case FIXED32 -> buffer.skipBytes(checkLength(Integer.BYTES));
+            case FIXED64 -> buffer.skipBytes(checkLength(Long.BYTES));
+            case LENGTH_DELIMITED -> buffer.skipBytes(readLength());
+        }
+        if (buffer.readIndex() > limit) {
+            throw new PegasusException("Field " + fieldNumber + " exceeds end of record at index " + limit,
+                    PegasusExceptionType.ENCODING_ERROR);
+        }
+        consumed = true;
+    }
+
+    /**
+     * Skips all remaining fields and moves {@code readIndex} to the end of record.
+     */
+    public void end() {
+        buffer.readIndex(limit);
+        consumed = true;
+    }
+
+    public int version() {
+        return version;
+    }
+
+    public int fieldNumber() {
+        return fieldNumber;
+    }
+
+    public WireType wireType() {
+        return wireType;
+    }
+
+    /**
+     * @param number number of field, must be less than 64.
+     * @return true if the field has been visited by {@link #nextField()}.
+     */
+    public boolean hasField(final int number) {
+        if (number <= 0 || number >= TRACKED_FIELDS) {
+            throw new IllegalArgumentException("Presence is only tracked for field number in [1," + TRACKED_FIELDS + ")");
+        }
+        return (presence & (1L << number)) != 0;
+    }
+
+    public boolean readBoolean() throws PegasusException {
+        expect(WireType.VARINT);
+        return VarIntUtil.readVarLong(buffer) != 0;
+    }
+
+    public int readInt() throws PegasusException {
+        expect(WireType.VARINT);
+        return (int) VarIntUtil.unzigzag(VarIntUtil.readVarLong(buffer));
+    }
+
+    public long readLong() throws PegasusException {
+        expect(WireType.VARINT);
+        return VarIntUtil.unzigzag(VarIntUtil.readVarLong(buffer));
+    }
+
+    public float readFloat() throws PegasusException {
+        expect(WireType.FIXED32);
+        checkLength(Integer.BYTES);
+        return buffer.readFloat();
+    }
+
+    public double readDouble() throws PegasusException {
+        expect(WireType.FIXED64);
+        checkLength(Long.BYTES);
+        return buffer.readDouble();
+    }
+
+    public byte[] readBytes() throws PegasusException {
+        expect(WireType.LENGTH_DELIMITED);
+        final byte[] bytes = new byte[readLength()];
+        buffer.readBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads a length delimited field as a slice of the underlying buffer, content is shared and not copied.
+     *
+     * @return slice of field's value.
+     */
+    public PegasusBuffer readSlice() throws PegasusException {
+        expect(WireType.LENGTH_DELIMITED);
+        return buffer.readSlice(readLength());
+    }
+
+    public SpanString readSpanString() throws PegasusException {
+        return SpanString.of(readBytes());
+    }
+
+    public String readString() throws PegasusException {
+        return readSpanString().toString();
+    }
+
+    /**
+     * Reads a length delimited field as a nested record, the nested record shares the underlying buffer and is bounded
+     * by the length of field. The {@code readIndex} of this reader is moved after the nested record once it is returned.
+     *
+     * @return reader of nested record, with fields not yet visited.
+     */
+    public TaggedRecordReader readNested() throws PegasusException {
+        expect(WireType.LENGTH_DELIMITED);
+        final int len = readLength();
+        final PegasusBuffer slice = buffer.readSlice(len);
+        return new TaggedRecordReader(slice, version, len);
+    }
+
+    private int readLength() throws PegasusException {
+        return checkLength(VarIntUtil.readVarInt(buffer));
+    }
+
+    private int checkLength(final int len) throws PegasusException {
+        if (len < 0 || len > limit - buffer.readIndex()) {
+            throw new PegasusException("Field " + fieldNumber + " of " + len + " bytes exceeds end of record at index " +
+                    limit, PegasusExceptionType.ENCODING_ERROR);
+        }
+        return len;
+    }
+
+    private void expect(final WireType type) {
+        if (consumed) {
+            throw new IllegalStateException("Value of field " + fieldNumber + " has already been consumed");
+        }
+        if (wireType != type) {
+            throw new IllegalStateException("Field " + fieldNumber + " is " + wireType + ", but read as " + type);
+        }
+        consumed = true;
+    }
+}
@@ -0,0 +1,199 @@
+package com.lazy.pegasus.core.encoding;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.utils.VarIntUtil;
+
+/**
+ * Writes a tagged record into a {@link PegasusBuffer}.
+ * <p>
+ * A record is laid out as:
+ * <pre>
+ *     [varint schemaVersion][padded varint bodyLength][field]...
+ *     field = [varint tag = fieldNumber << 3 | wireType][value]
+ * </pre>
+ * Every field is optional, a null value is simply not written. Length of the record body and of nested records are
+ * written as padded varints of {@link VarIntUtil#MAX_VARINT_SIZE} bytes, so they can be back-filled after the content
+ * is written without moving bytes around.
+ * <p>
+ * Signed integral values are zigzag encoded, see {@link VarIntUtil#zigzag(long)}.
+ */
+public class TaggedRecordWriter {
+
+    private static final int MAX_DEPTH = 16;
+
+    private final PegasusBuffer buffer;
+
+    /* start indexes of back-filled lengths, index 0 is the record body */
+    private final int[] lengthIndexes = new int[MAX_DEPTH];
+    private int depth;
+    private int recordStart = -1;
+
+    public TaggedRecordWriter(final PegasusBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public PegasusBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Starts a new record at the current {@code writeIndex}.
+     *
+     * @param schemaVersion version of schema used by this writer.
+     * @return this writer.
+     */
+    public TaggedRecordWriter begin(final int schemaVersion) {
+        if (recordStart >= 0) {
+            throw new IllegalStateException("Record has been begun at " + recordStart);
+        }
+
+        recordStart = buffer.writeIndex();
+        VarIntUtil.writeVarInt(buffer, schemaVersion);
+        pushLength();
+        return this;
+    }
+
+    /**
+     * Finishes the current record, back-filling its body length.
+     *
+     * @return total number of bytes of the record, including the header.
+     */
+    public int end() {
+        if (depth != 1) {
+            throw new IllegalStateException("Could not end record, " + (depth - 1) + " nested record(s) are not ended");
+        }
+
+        popLength();
+        final int size = buffer.writeIndex() - recordStart;
+        recordStart = -1;
+        return size;
+    }
+
+    /**
+     * Starts a nested record as a length delimited field, following fields are written into the nested record until
+     * {@link #endNested()} is called.
+     *
+     * @param fieldNumber number of field.
+     * @return this writer.
+     */
+    public TaggedRecordWriter beginNested(final int fieldNumber) {
+        writeTag(fieldNumber, WireType.LENGTH_DELIMITED);
+        pushLength();
+        return this;
+    }
+
+    public TaggedRecordWriter endNested() {
+        if (depth <= 1) {
+            throw new IllegalStateException("No nested record to end");
+        }
+
+        popLength();
+        return this;
+    }
+
+    public TaggedRecordWriter writeBoolean(final int fieldNumber, final boolean value) {
+        writeTag(fieldNumber, WireType.VARINT);
+        buffer.writeByte((byte) (value ? 1 : 0));
+        return this;
+    }
+
+    public TaggedRecordWriter writeInt(final int fieldNumber, final int value) {
+        writeTag(fieldNumber, WireType.VARINT);
+        VarIntUtil.writeVarInt(buffer, VarIntUtil.zigzag(value));
+        return this;
+    }
+
+    public TaggedRecordWriter writeLong(final int fieldNumber, final long value) {
+        writeTag(fieldNumber, WireType.VARINT);
+        VarIntUtil.writeVarLong(buffer, VarIntUtil.zigzag(value));
+        return this;
+    }
+
+    public TaggedRecordWriter writeNullableLong(final int fieldNumber, final Long value) {
+        if (value != null) {
+            writeLong(fieldNumber, value);
+        }
+        return this;
+    }
+
+    public TaggedRecordWriter writeFloat(final int fieldNumber, final float value) {
+        writeTag(fieldNumber, WireType.FIXED32);
+        buffer.writeFloat(value);
+        return this;
+    }
+
+    public TaggedRecordWriter writeDouble(final int fieldNumber, final double value) {
+        writeTag(fieldNumber, WireType.FIXED64);
+        buffer.writeDouble(value);
+        return this;
+    }
+
+    public TaggedRecordWriter writeBytes(final int fieldNumber, final byte[] value) {
+        if (value != null) {
+            writeTag(fieldNumber, WireType.LENGTH_DELIMITED);
+            VarIntUtil.writeVarInt(buffer, value.length);
+            buffer.writeBytes(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes the readable bytes of source as a length delimited field, the {@code readIndex} of source is not modified.
+     *
+     * @param fieldNumber number of field.
+     * @param value       source buffer, could be null.
+     * @return this writer.
+     */
+    public TaggedRecordWriter writeBytes(final int fieldNumber, final PegasusBuffer value) {
+        if (value != null) {
+            final int len = value.readableBytes();
+            writeTag(fieldNumber, WireType.LENGTH_DELIMITED);
+            VarIntUtil.writeVarInt(buffer, len);
+            buffer.writeBytes(value, value.readIndex(), len);
+        }
+        return this;
+    }
+
+    public TaggedRecordWriter writeSpanString(final int fieldNumber, final SpanString value) {
+        if (value != null) {
+            writeBytes(fieldNumber, value.getData());
+        }
+        return this;
+    }
+
+    public TaggedRecordWriter writeString(final int fieldNumber, final String value) {
+        if (value != null) {
+            writeBytes(fieldNumber, SpanString.of(value).getData());
+        }
+        return this;
+    }
+
+    private void writeTag(final int fieldNumber, final WireType type) {
+        if (fieldNumber <= 0) {
+            throw new IllegalArgumentException("Field number must be positive, but " + fieldNumber);
+        }
+        if (depth == 0) {
+            throw new IllegalStateException("Record is not begun");
+        }
+
+        VarIntUtil.writeVarInt(buffer, WireType.tagOf(fieldNumber, type));
+    }
+
+    private void pushLength() {
+        if (depth == MAX_DEPTH) {
+            throw new IllegalStateException("Nested record is too deep, max depth " + MAX_DEPTH);
+        }
+
+        lengthIndexes[depth++] = buffer.writeIndex();
+        // placeholder of padded varint, back-filled by popLength
+        buffer.writeInt(0);
+        buffer.writeByte((byte) 0);
+    }
+
+    private void popLength() {
+        final int index = lengthIndexes[--depth];
+        final int len = buffer.writeIndex() - index - VarIntUtil.MAX_VARINT_SIZE;
+        VarIntUtil.setPaddedVarInt(buffer, index, len);
+    }
+}
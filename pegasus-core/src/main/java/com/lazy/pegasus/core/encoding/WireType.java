@@ -0,0 +1,86 @@
+package com.lazy.pegasus.core.encoding;
+
+import com.lazy.pegasus.core.common.DataConstants;
+
+/**
+ * Defines how a tagged field is laid out on the wire. The wire type is stored in the low 3 bits of a field's tag,
+ * it carries just enough information for a reader to skip a field it does not know.
+ */
+public enum WireType {
+
+    /**
+     * A varint, used for all integral and boolean values.
+     */
+    VARINT(0),
+
+    /**
+     * 8 bytes, used for 64-bit floating values.
+     */
+    FIXED64(1),
+
+    /**
+     * A varint length followed by that many bytes, used for bytes, strings and nested records.
+     */
+    LENGTH_DELIMITED(2),
+
+    /**
+     * 4 bytes, used for 32-bit floating values.
+     */
+    FIXED32(5);
+
+    public static final int TAG_TYPE_BITS = 3;
+    public static final int TAG_TYPE_MASK = (1 << TAG_TYPE_BITS) - 1;
+
+    private static final WireType[] TYPES = new WireType[TAG_TYPE_MASK + 1];
+
+    static {
+        for (WireType type : values()) {
+            TYPES[type.id] = type;
+        }
+    }
+
+    private final int id;
+
+    WireType(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @param id wire type id, the low 3 bits of a tag.
+     * @return wire type of id, or null if id is not a known wire type.
+     */
+    public static WireType ofId(int id) {
+        return TYPES[id & TAG_TYPE_MASK];
+    }
+
+    /**
+     * Maps a {@link DataConstants} type id into the wire type which is used to encode that data type.
+     *
+     * @param dataType data type id, defined in {@link DataConstants}.
+     * @return wire type of data type.
+     */
+    public static WireType ofDataType(int dataType) {
+        return switch (dataType) {
+            case DataConstants.BOOLEAN, DataConstants.BYTE, DataConstants.SHORT, DataConstants.CHAR,
+                 DataConstants.INT, DataConstants.LONG -> VARINT;
+            case DataConstants.FLOAT -> FIXED32;
+            case DataConstants.DOUBLE -> FIXED64;
+            case DataConstants.BYTES, DataConstants.STRING -> LENGTH_DELIMITED;
+            default -> throw new IllegalArgumentException("Data type " + dataType + " has no wire type");
+        };
+    }
+
+    /**
+     * @param fieldNumber number of field, must be positive.
+     * @param type        wire type of field.
+     * @return tag of field.
+     */
+    public static int tagOf(int fieldNumber, WireType type) {
+        return (fieldNumber << TAG_TYPE_BITS) | type.id;
+    }
+
+}
@@ -6,6 +6,18 @@ import java.util.Map;
 
 public enum PegasusExceptionType {
 
+    ENCODING_ERROR(1000),
+
+    COMPRESSION_ERROR(1001),
+
+    IO_ERROR(1002),
+
+    JOURNAL_ERROR(1003),
+
+    PAGING_ERROR(1004),
+
+    CONNECTION_ERROR(1005),
+
     GENERIC_ERROR(9999);
 
     /**
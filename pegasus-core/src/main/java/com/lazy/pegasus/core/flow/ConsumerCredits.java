@@ -0,0 +1,115 @@
+package com.lazy.pegasus.core.flow;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Byte credits granted by a consumer, bounding the bytes of messages sent to it and not yet consumed to a window.
+ * <p>
+ * The whole window is granted by {@link #start()}, then the bytes of consumed messages are counted and granted back
+ * in a single grant once half of the window is consumed, so the sender receives a credit frame per half window rather
+ * than per message while it is never starved as long as the consumer keeps up.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class ConsumerCredits {
+
+    /**
+     * Sends a credit grant, e.g. as a control frame to the sender of the messages.
+     */
+    @FunctionalInterface
+    public interface CreditSender {
+
+        void sendCredits(int bytes);
+    }
+
+    private final int windowSize;
+    private final int grantThreshold;
+    private final CreditSender sender;
+    private final FlowControlMetrics metrics;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * @param windowSize maximum number of bytes sent and not consumed.
+     * @param sender     sender of grants.
+     * @param metrics    metrics of the connection.
+     */
+    public ConsumerCredits(final int windowSize, final CreditSender sender, final FlowControlMetrics metrics) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("Window size must be positive, but " + windowSize);
+        }
+        this.windowSize = windowSize;
+        this.grantThreshold = Math.max(1, windowSize / 2);
+        this.sender = Objects.requireNonNull(sender, "sender");
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    /**
+     * @return number of bytes consumed and not yet granted back.
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Grants the whole window.
+     */
+    public void start() {
+        grant(windowSize);
+    }
+
+    /**
+     * Counts the readable bytes of a consumed message.
+     *
+     * @see #consumed(int)
+     */
+    public void consumed(final PegasusBuffer message) {
+        consumed(message.readableBytes());
+    }
+
+    /**
+     * Counts the bytes of a consumed message, granting them back with the previous ones once they reach half of the
+     * window.
+     *
+     * @param bytes number of bytes of message, as acquired by the sender.
+     */
+    public void consumed(final int bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        final int total = pending.addAndGet(bytes);
+        if (total >= grantThreshold) {
+            // only the thread taking the whole count grants it, a concurrent consumer counts from 0 again
+            final int taken = pending.getAndSet(0);
+            if (taken > 0) {
+                grant(taken);
+            }
+        }
+    }
+
+    /**
+     * Grants back the bytes consumed so far, e.g. before the consumer is closed.
+     */
+    public void flush() {
+        final int taken = pending.getAndSet(0);
+        if (taken > 0) {
+            grant(taken);
+        }
+    }
+
+    private void grant(final int bytes) {
+        metrics.granted(bytes);
+        sender.sendCredits(bytes);
+    }
+
+    @Override
+    public String toString() {
+        return "ConsumerCredits[windowSize=" + windowSize + ", pending=" + getPending() + ']';
+    }
+}
@@ -0,0 +1,59 @@
+package com.lazy.pegasus.core.flow;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Flow control metrics of a connection, shared by the {@link ProducerCredits} and {@link ConsumerCredits} of the
+ * connection.
+ */
+public final class FlowControlMetrics {
+
+    private final AtomicLong creditStalls = new AtomicLong();
+    private final AtomicLong stalledNanos = new AtomicLong();
+    private final AtomicLong creditGrants = new AtomicLong();
+    private final AtomicLong grantedBytes = new AtomicLong();
+
+    void stalled(final long nanos) {
+        creditStalls.incrementAndGet();
+        stalledNanos.addAndGet(nanos);
+    }
+
+    void granted(final int bytes) {
+        creditGrants.incrementAndGet();
+        grantedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @return number of times a producer found no credits and was blocked.
+     */
+    public long getCreditStalls() {
+        return creditStalls.get();
+    }
+
+    /**
+     * @return total time producers were blocked waiting for credits.
+     */
+    public long getStalledNanos() {
+        return stalledNanos.get();
+    }
+
+    /**
+     * @return number of credit grants sent by consumers.
+     */
+    public long getCreditGrants() {
+        return creditGrants.get();
+    }
+
+    /**
+     * @return number of bytes of credits granted by consumers.
+     */
+    public long getGrantedBytes() {
+        return grantedBytes.get();
+    }
+
+    @Override
+    public String toString() {
+        return "FlowControlMetrics[creditStalls=" + getCreditStalls() + ", stalledNanos=" + getStalledNanos() +
+                ", creditGrants=" + getCreditGrants() + ", grantedBytes=" + getGrantedBytes() + ']';
+    }
+}
@@ -0,0 +1,198 @@
+package com.lazy.pegasus.core.flow;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Byte credits of the producers of a connection to an address. A message is sent only once credits are acquired for
+ * its encoded size, and credits are given back by the broker with {@link #grant(int)} as the messages are consumed, so
+ * a producer can not be ahead of the consumers of the address by more than the window.
+ * <p>
+ * Credits are acquired by a CAS, the lock is only taken by a producer which has to wait and by a grant waking it up.
+ * A message is let through as long as some credits are available, so a message larger than the window is not blocked
+ * forever, its excess being paid back by the following grants.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class ProducerCredits {
+
+    private final SpanString address;
+    private final FlowControlMetrics metrics;
+    private final AtomicLong credits;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition granted = lock.newCondition();
+
+    private volatile int waiters;
+    private volatile boolean closed;
+
+    /**
+     * @param address        address of credits.
+     * @param initialCredits number of bytes which can be sent before the first grant.
+     * @param metrics        metrics of the connection.
+     */
+    public ProducerCredits(final SpanString address, final int initialCredits, final FlowControlMetrics metrics) {
+        if (initialCredits < 0) {
+            throw new IllegalArgumentException("Initial credits must not be negative, but " + initialCredits);
+        }
+        this.address = Objects.requireNonNull(address, "address");
+        this.metrics = Objects.requireNonNull(metrics, "metrics");
+        this.credits = new AtomicLong(initialCredits);
+    }
+
+    public SpanString getAddress() {
+        return address;
+    }
+
+    /**
+     * @return number of bytes which can be sent, negative if a message larger than the credits was let through.
+     */
+    public long getAvailable() {
+        return credits.get();
+    }
+
+    /**
+     * @return true if a producer would be blocked.
+     */
+    public boolean isBlocked() {
+        return credits.get() <= 0;
+    }
+
+    /**
+     * Acquires the credits of the readable bytes of an encoded message, blocking until they are available.
+     *
+     * @see #acquire(int)
+     */
+    public void acquire(final PegasusBuffer message) throws InterruptedException {
+        acquire(message.readableBytes());
+    }
+
+    /**
+     * Acquires credits, blocking until they are available.
+     *
+     * @param bytes number of bytes to send.
+     * @throws InterruptedException  if interrupted while waiting.
+     * @throws IllegalStateException if the credits are closed.
+     */
+    public void acquire(final int bytes) throws InterruptedException {
+        if (!acquire(bytes, Long.MAX_VALUE)) {
+            throw new IllegalStateException("Credits of address " + address + " are closed");
+        }
+    }
+
+    /**
+     * Acquires credits, blocking until they are available or the timeout elapses.
+     *
+     * @param bytes   number of bytes to send.
+     * @param timeout maximum time to wait.
+     * @param unit    unit of timeout.
+     * @return true if the credits were acquired, false if the timeout elapsed or the credits are closed.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public boolean acquire(final int bytes, final long timeout, final TimeUnit unit) throws InterruptedException {
+        return acquire(bytes, unit.toNanos(timeout));
+    }
+
+    /**
+     * Acquires credits if they are available, a producer which does not want to block pauses until
+     * {@link #isBlocked()} is false. A failed try is not counted as a stall, only a producer actually blocked is.
+     *
+     * @param bytes number of bytes to send.
+     * @return true if the credits were acquired.
+     */
+    public boolean tryAcquire(final int bytes) {
+        checkBytes(bytes);
+        return bytes == 0 || tryTake(bytes);
+    }
+
+    /**
+     * Gives back credits, waking up the blocked producers.
+     *
+     * @param bytes number of bytes granted.
+     */
+    public void grant(final int bytes) {
+        if (bytes <= 0) {
+            throw new IllegalArgumentException("Granted bytes must be positive, but " + bytes);
+        }
+        credits.addAndGet(bytes);
+        if (waiters > 0) {
+            signalAll();
+        }
+    }
+
+    /**
+     * Wakes up and fails the blocked producers, e.g. when the connection is closed.
+     */
+    public void close() {
+        closed = true;
+        signalAll();
+    }
+
+    private boolean acquire(final int bytes, final long timeoutNanos) throws InterruptedException {
+        checkBytes(bytes);
+        if (bytes == 0 || tryTake(bytes)) {
+            return true;
+        }
+
+        final long start = System.nanoTime();
+        boolean parked = false;
+        long remaining = timeoutNanos;
+        lock.lockInterruptibly();
+        try {
+            waiters++;
+            try {
+                while (!tryTake(bytes)) {
+                    if (closed || remaining <= 0) {
+                        return false;
+                    }
+                    parked = true;
+                    remaining = granted.awaitNanos(remaining);
+                }
+                return true;
+            } finally {
+                waiters--;
+            }
+        } finally {
+            lock.unlock();
+            if (parked) {
+                metrics.stalled(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static void checkBytes(final int bytes) {
+        if (bytes < 0) {
+            throw new IllegalArgumentException("Bytes must not be negative, but " + bytes);
+        }
+    }
+
+    private boolean tryTake(final int bytes) {
+        long available;
+        do {
+            available = credits.get();
+            if (available <= 0 || closed) {
+                return false;
+            }
+        } while (!credits.compareAndSet(available, available - bytes));
+        return true;
+    }
+
+    private void signalAll() {
+        lock.lock();
+        try {
+            granted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ProducerCredits[address=" + address + ", available=" + getAvailable() + ']';
+    }
+}
@@ -0,0 +1,191 @@
+package com.lazy.pegasus.core.group;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Assigns the message groups of a queue to its consumers, so that all the messages of a group go to the same consumer.
+ * <p>
+ * The group of a message is the value of a {@link SpanString} property. Groups are assigned by consistent hashing:
+ * each consumer owns a number of virtual nodes on a ring of hashes, and a group goes to the owner of the first node
+ * following the hash of the group id. There is no per-group state, so a lookup takes no lock and allocates nothing: the
+ * hash is computed over the encoded property bytes, equal to {@link SpanString#hashCode()} of the group id. When a
+ * consumer is added it takes over only the groups hashed just before its nodes, when it is removed only its own groups
+ * move to the following nodes, every other group keeps its consumer.
+ * <p>
+ * The ring is an immutable snapshot replaced on every change of consumers, so lookups are wait-free while changes are
+ * serialized.
+ *
+ * @param <C> type of consumers.
+ */
+public class MessageGroups<C> {
+
+    private static final class Ring {
+
+        private static final Ring EMPTY = new Ring(new int[0], new Object[0]);
+
+        private final int[] points;
+        private final Object[] consumers;
+
+        private Ring(final int[] points, final Object[] consumers) {
+            this.points = points;
+            this.consumers = consumers;
+        }
+    }
+
+    private final SpanString groupKey;
+    private final int virtualNodes;
+    private final Map<Long, C> consumers = new LinkedHashMap<>();
+    private volatile Ring ring = Ring.EMPTY;
+
+    /**
+     * @param groupKey     name of the group id property.
+     * @param virtualNodes number of nodes of each consumer on the ring, more nodes spread groups more evenly.
+     */
+    public MessageGroups(final SpanString groupKey, final int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("Virtual nodes must be positive, but " + virtualNodes);
+        }
+        this.groupKey = Objects.requireNonNull(groupKey, "groupKey");
+        this.virtualNodes = virtualNodes;
+    }
+
+    public SpanString getGroupKey() {
+        return groupKey;
+    }
+
+    public synchronized int getConsumersCount() {
+        return consumers.size();
+    }
+
+    /**
+     * Adds a consumer, which takes over some groups of the other consumers.
+     *
+     * @param consumerId id of consumer, which places its nodes on the ring.
+     * @param consumer   consumer.
+     * @throws IllegalArgumentException if a consumer has the same id.
+     */
+    public synchronized void addConsumer(final long consumerId, final C consumer) {
+        Objects.requireNonNull(consumer, "consumer");
+        if (consumers.putIfAbsent(consumerId, consumer) != null) {
+            throw new IllegalArgumentException("Consumer " + consumerId + " already exists");
+        }
+        rebuild();
+    }
+
+    /**
+     * Removes a consumer, its groups move to the other consumers.
+     *
+     * @param consumerId id of consumer.
+     * @return removed consumer, or null if there is no such consumer.
+     */
+    public synchronized C removeConsumer(final long consumerId) {
+        final C consumer = consumers.remove(consumerId);
+        if (consumer != null) {
+            rebuild();
+        }
+        return consumer;
+    }
+
+    /**
+     * @param message a message.
+     * @return consumer of the group of message, or null if message has no group id or there is no consumer.
+     */
+    public C consumerFor(final Message message) {
+        final int index = message.propertyIndex(groupKey);
+        if (index < 0) {
+            return null;
+        }
+        final PegasusBuffer buf = message.getBuffer();
+        if (buf.getByte(index) != DataConstants.STRING) {
+            return null;
+        }
+        final int lengthIndex = index + DataConstants.SIZE_BYTE;
+        final int length = buf.getInt(lengthIndex);
+        return consumerFor(SpanString.hashCode(buf.byteBuf(), lengthIndex + DataConstants.SIZE_INT, length));
+    }
+
+    /**
+     * @param groupId id of group.
+     * @return consumer of group, or null if there is no consumer.
+     */
+    public C consumerFor(final SpanString groupId) {
+        return consumerFor(groupId.hashCode());
+    }
+
+    @SuppressWarnings("unchecked")
+    private C consumerFor(final int groupHash) {
+        final Ring ring = this.ring;
+        final int[] points = ring.points;
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, mix(groupHash));
+        if (index < 0) {
+            index = -index - 1;
+            if (index == points.length) {
+                index = 0;
+            }
+        }
+        return (C) ring.consumers[index];
+    }
+
+    private void rebuild() {
+        final int size = consumers.size() * virtualNodes;
+        final long[] nodes = new long[size];
+        final Object[] owners = new Object[consumers.size()];
+        int n = 0;
+        int owner = 0;
+        for (Map.Entry<Long, C> entry : consumers.entrySet()) {
+            owners[owner] = entry.getValue();
+            for (int i = 0; i < virtualNodes; i++) {
+                final int point = (int) (mix(entry.getKey() * 0x9E3779B97F4A7C15L + i) >>> 32);
+                // sort by point, then by owner so that colliding points are ordered deterministically
+                nodes[n++] = (long) point << 32 | owner;
+            }
+            owner++;
+        }
+        Arrays.sort(nodes);
+
+        final int[] points = new int[size];
+        final Object[] ringConsumers = new Object[size];
+        for (int i = 0; i < size; i++) {
+            points[i] = (int) (nodes[i] >> 32);
+            ringConsumers[i] = owners[(int) nodes[i]];
+        }
+        ring = new Ring(points, ringConsumers);
+    }
+
+    /**
+     * Spreads the bits of a hash, as the polynomial hash of short ids is clustered.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "MessageGroups[groupKey=" + groupKey + ", consumers=" + getConsumersCount() + ']';
+    }
+}
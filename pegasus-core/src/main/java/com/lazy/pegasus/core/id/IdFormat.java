@@ -0,0 +1,86 @@
+package com.lazy.pegasus.core.id;
+
+import com.lazy.pegasus.core.common.SpanString;
+
+import java.util.Arrays;
+
+/**
+ * Renders ids as fixed width Crockford base32 text, 13 chars per 64 bits. The alphabet is in ascending ASCII order and
+ * the width is fixed, so the text of ids sorts the same as the (unsigned) ids themselves.
+ * <p>
+ * A 64-bit id takes 26 bytes as a {@link SpanString} and a 128-bit id takes 52 bytes, against 72 bytes of a UUID
+ * string.
+ */
+public final class IdFormat {
+
+    public static final int CHARS_PER_LONG = 13;
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = (byte) i;
+            DECODE[Character.toLowerCase(ALPHABET[i])] = (byte) i;
+        }
+    }
+
+    private IdFormat() {
+    }
+
+    /**
+     * @param id 64-bit id.
+     * @return id as 13 chars {@link SpanString}.
+     */
+    public static SpanString toSpanString(final long id) {
+        final byte[] data = new byte[CHARS_PER_LONG << 1];
+        encode(id, data, 0);
+        return SpanString.of(data);
+    }
+
+    /**
+     * @param high high 64 bits of id.
+     * @param low  low 64 bits of id.
+     * @return id as 26 chars {@link SpanString}.
+     */
+    public static SpanString toSpanString(final long high, final long low) {
+        final byte[] data = new byte[CHARS_PER_LONG << 2];
+        encode(high, data, 0);
+        encode(low, data, CHARS_PER_LONG << 1);
+        return SpanString.of(data);
+    }
+
+    /**
+     * Parses 13 chars of text starting at {@code start} into a 64-bit id.
+     *
+     * @param text  text of id, decoding is case-insensitive.
+     * @param start index of first char.
+     * @return decoded id.
+     */
+    public static long parse(final CharSequence text, final int start) {
+        if (text.length() - start < CHARS_PER_LONG) {
+            throw new IllegalArgumentException("Id needs " + CHARS_PER_LONG + " chars from " + start + ": " + text);
+        }
+
+        long id = 0;
+        for (int i = 0; i < CHARS_PER_LONG; i++) {
+            final char c = text.charAt(start + i);
+            final int v = c < DECODE.length ? DECODE[c] : -1;
+            if (v < 0 || (i == 0 && v > 0x0f)) {
+                throw new IllegalArgumentException("Illegal id char '" + c + "' at " + (start + i) + ": " + text);
+            }
+            id = (id << 5) | v;
+        }
+
+        return id;
+    }
+
+    private static void encode(long id, final byte[] data, final int offset) {
+        // low byte of each char, the high byte is always 0 as the alphabet is ASCII
+        for (int i = CHARS_PER_LONG - 1; i >= 0; i--) {
+            data[offset + (i << 1)] = (byte) ALPHABET[(int) (id & 0x1f)];
+            id >>>= 5;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.lazy.pegasus.core.id;
+
+/**
+ * A batch of ids reserved from a {@link MessageIdGenerator}. The ids are ordered but not contiguous numbers, as an id
+ * carries the node between its timestamp and sequence.
+ * <p>
+ * A range is not thread-safe, it is meant to be consumed by the thread which reserves it.
+ */
+public final class IdRange {
+
+    private final MessageIdGenerator generator;
+    private final long firstTick;
+    private final int count;
+    private int position;
+
+    IdRange(final MessageIdGenerator generator, final long firstTick, final int count) {
+        this.generator = generator;
+        this.firstTick = firstTick;
+        this.count = count;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return number of ids not yet served by {@link #next()}.
+     */
+    public int remaining() {
+        return count - position;
+    }
+
+    public boolean isEmpty() {
+        return position == count;
+    }
+
+    /**
+     * @param index index of id in this range.
+     * @return the id at index.
+     */
+    public long get(final int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index " + index + " is out of bound [0," + count + ")");
+        }
+        return generator.toId(firstTick + index);
+    }
+
+    /**
+     * @return the next id of this range.
+     * @throws IllegalStateException if all ids have been served.
+     */
+    public long next() {
+        if (position == count) {
+            throw new IllegalStateException("Id range is exhausted");
+        }
+        return generator.toId(firstTick + position++);
+    }
+
+    @Override
+    public String toString() {
+        return "IdRange[first=" + get(0) + ", size=" + count + ", remaining=" + remaining() + ']';
+    }
+}
@@ -0,0 +1,153 @@
+package com.lazy.pegasus.core.id;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock-free generator of 64-bit time-ordered unique ids, laid out as:
+ * <pre>
+ *     [0 (sign)][41 bits milliseconds since EPOCH][10 bits node][12 bits sequence]
+ * </pre>
+ * The generator keeps a single "tick" ({@code millis << 12 | sequence}) which only moves forward by a CAS. When the
+ * sequence of a millisecond is exhausted, or the clock goes backwards, the tick borrows the next millisecond instead
+ * of waiting, so ids never repeat and never go backwards within a node.
+ * <p>
+ * To keep the shared tick out of the hot path, {@link #nextId()} serves ids from a block reserved per thread, so the
+ * CAS is paid once per {@code blockSize} ids. Ids served by different threads are unique but only ordered within a
+ * thread; a {@code blockSize} of 1 makes every id ordered across the node. {@link #reserve(int)} hands out a batch of
+ * ids at once, e.g. for a journal batch.
+ * <p>
+ * {@link #nextUniqueId()} adds a 64-bit random instance id which is drawn once per generator, making ids unique across
+ * nodes that share a node id and across restarts with a clock set backwards.
+ */
+public class MessageIdGenerator {
+
+    /**
+     * 2025-01-01T00:00:00Z, ids are good for ~69 years after it.
+     */
+    public static final long EPOCH = 1735689600000L;
+
+    public static final int NODE_BITS = 10;
+    public static final int SEQUENCE_BITS = 12;
+    public static final int MAX_NODE = (1 << NODE_BITS) - 1;
+
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+
+    public static final int DEFAULT_BLOCK_SIZE = 64;
+
+    private final long node;
+    private final long instance;
+    private final int blockSize;
+    private final LongSupplier clock;
+    private final AtomicLong tick = new AtomicLong();
+    private final ThreadLocal<IdRange> blocks = new ThreadLocal<>();
+
+    public MessageIdGenerator(final int node) {
+        this(node, DEFAULT_BLOCK_SIZE, System::currentTimeMillis);
+    }
+
+    /**
+     * @param node      id of node, in range [0, {@link #MAX_NODE}].
+     * @param blockSize number of ids reserved per thread at once.
+     * @param clock     source of milliseconds.
+     */
+    public MessageIdGenerator(final int node, final int blockSize, final LongSupplier clock) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node must be in range [0," + MAX_NODE + "], but " + node);
+        }
+        if (blockSize <= 0 || blockSize > SEQUENCE_MASK + 1) {
+            throw new IllegalArgumentException("Block size must be in range [1," + (SEQUENCE_MASK + 1) + "], but " + blockSize);
+        }
+
+        this.node = node;
+        this.blockSize = blockSize;
+        this.clock = clock;
+        this.instance = new SecureRandom().nextLong();
+    }
+
+    public int getNode() {
+        return (int) node;
+    }
+
+    /**
+     * @return the random id of this generator instance, the high 64 bits of {@link #nextUniqueId()}.
+     */
+    public long getInstance() {
+        return instance;
+    }
+
+    /**
+     * @return next 64-bit id, served from the block reserved by the calling thread.
+     */
+    public long nextId() {
+        IdRange block = blocks.get();
+        if (block == null || block.isEmpty()) {
+            block = reserve(blockSize);
+            blocks.set(block);
+        }
+
+        return block.next();
+    }
+
+    /**
+     * @return next 128-bit id, made of the instance id of this generator and {@link #nextId()}.
+     */
+    public UniqueId nextUniqueId() {
+        return new UniqueId(instance, nextId());
+    }
+
+    /**
+     * Reserves a batch of ids, the ids of batch are ordered and greater than all ids reserved before by this generator.
+     *
+     * @param count number of ids, must be in range [1, 4096].
+     * @return range of reserved ids.
+     */
+    public IdRange reserve(final int count) {
+        if (count <= 0 || count > SEQUENCE_MASK + 1) {
+            throw new IllegalArgumentException("Count must be in range [1," + (SEQUENCE_MASK + 1) + "], but " + count);
+        }
+
+        while (true) {
+            final long prev = tick.get();
+            final long now = (clock.getAsLong() - EPOCH) << SEQUENCE_BITS;
+            final long first = Math.max(prev + 1, now);
+            final long last = first + count - 1;
+            if (tick.compareAndSet(prev, last)) {
+                return new IdRange(this, first, count);
+            }
+        }
+    }
+
+    /**
+     * Converts a tick into an id of this node.
+     */
+    long toId(final long tick) {
+        return ((tick >>> SEQUENCE_BITS) << TIMESTAMP_SHIFT) | (node << SEQUENCE_BITS) | (tick & SEQUENCE_MASK);
+    }
+
+    /**
+     * @param id id generated by any node.
+     * @return epoch milliseconds encoded in the id.
+     */
+    public static long timestampOf(final long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    /**
+     * @param id id generated by any node.
+     * @return node encoded in the id.
+     */
+    public static int nodeOf(final long id) {
+        return (int) ((id >>> SEQUENCE_BITS) & MAX_NODE);
+    }
+
+    /**
+     * @param id id generated by any node.
+     * @return sequence encoded in the id.
+     */
+    public static int sequenceOf(final long id) {
+        return (int) (id & SEQUENCE_MASK);
+    }
+}
@@ -0,0 +1,72 @@
+package com.lazy.pegasus.core.id;
+
+import com.lazy.pegasus.core.common.SpanString;
+
+/**
+ * A 128-bit id, made of the random instance id of a {@link MessageIdGenerator} and a 64-bit id of that generator.
+ */
+public final class UniqueId implements Comparable<UniqueId> {
+
+    private final long high;
+    private final long low;
+
+    public UniqueId(final long high, final long low) {
+        this.high = high;
+        this.low = low;
+    }
+
+    /**
+     * @param text 26 chars rendered by {@link #toSpanString()}.
+     * @return parsed id.
+     */
+    public static UniqueId parse(final CharSequence text) {
+        if (text.length() != IdFormat.CHARS_PER_LONG << 1) {
+            throw new IllegalArgumentException("Unique id must have " + (IdFormat.CHARS_PER_LONG << 1) + " chars: " + text);
+        }
+        return new UniqueId(IdFormat.parse(text, 0), IdFormat.parse(text, IdFormat.CHARS_PER_LONG));
+    }
+
+    public long getHigh() {
+        return high;
+    }
+
+    public long getLow() {
+        return low;
+    }
+
+    /**
+     * @return this id as 26 chars {@link SpanString}.
+     */
+    public SpanString toSpanString() {
+        return IdFormat.toSpanString(high, low);
+    }
+
+    @Override
+    public int compareTo(UniqueId o) {
+        final int c = Long.compareUnsigned(high, o.high);
+        return c != 0 ? c : Long.compareUnsigned(low, o.low);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+
+        if (!(obj instanceof UniqueId other)) {
+            return false;
+        }
+
+        return high == other.high && low == other.low;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(high) * 31 + Long.hashCode(low);
+    }
+
+    @Override
+    public String toString() {
+        return toSpanString().toString();
+    }
+}
@@ -0,0 +1,910 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.collections.LongLongHashMap;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@link Journal} stored in a directory of preallocated fixed-size files.
+ * <p>
+ * Records are appended sequentially into the current file, when a record does not fit in the remaining space the
+ * journal moves to the next file. A file is never written before its header position, and the unused tail of a file
+ * stays zeroed, which is where the scan of file stops on recovery. A torn record (a crash in the middle of a write) fails
+ * its CRC and is overwritten by the next append.
+ * <p>
+ * Appends are encoded into a pooled write buffer, which is written to the file when it is full, when the journal moves
+ * to the next file, or by the flusher thread. Appends that must be durable are group committed: the flusher writes the
+ * buffer and syncs the file once for all records waiting at that time, then completes their futures.
+ * <p>
+ * The journal indexes the location of every live record in a primitive map, and counts the live records of each file.
+ * When enough files are sparse, a background compaction copies their live records into new files which replace them,
+ * see {@link JournalCompactor}.
+ * <p>
+ * Optionally, the current file is written with direct I/O ({@code O_DIRECT}), which keeps journal data out of the
+ * page cache. Each write then covers whole blocks: the buffer is block-aligned and a padding record fills the space up
+ * to the next block boundary. The journal falls back to buffered I/O on file systems which reject direct I/O.
+ * <p>
+ * On {@link #load()}, the files are memory-mapped and scanned in parallel, then merged in file order, see
+ * {@link JournalRecovery}.
+ */
+public class FileJournal implements Journal {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileJournal.class);
+
+    private enum State {
+        STOPPED, STARTED, LOADED
+    }
+
+    private static final CompletableFuture<Void> COMPLETED = CompletableFuture.completedFuture(null);
+
+    private final JournalConfiguration config;
+    private final JournalFileManager fileManager;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition syncCondition = lock.newCondition();
+    /* guards a sync of file against the close of file on a move to the next file */
+    private final Object syncLock = new Object();
+    private final AtomicLong syncCount = new AtomicLong();
+
+    /* files with records, ordered by file id, the last one is the current file */
+    private final List<JournalFile> dataFiles = new ArrayList<>();
+    private JournalFile currentFile;
+    /* position of the next record in current file, including the buffered records */
+    private int position;
+    private State state = State.STOPPED;
+
+    private PegasusBuffer writeBuffer;
+    /* position in current file of the first buffered byte */
+    private int bufferPosition;
+    /* position in current file up to which the records are written */
+    private int writtenPosition;
+    /* true if the current file is written with direct I/O, see flushWriteBuffer */
+    private boolean directIo;
+    private int blockSize;
+    private List<CompletableFuture<Void>> pendingSyncs = new ArrayList<>();
+    private int pendingSyncBytes;
+    private long firstPendingNanos;
+    private Thread flusher;
+    /* failure of a write, the records not written leave a hole so nothing is written after it */
+    private PegasusException writeFailure;
+
+    /* id of live record -> location of its add record */
+    private final LongLongHashMap index = new LongLongHashMap(-1);
+    /* held for the whole compaction, a compaction excludes another */
+    private final Object compactionLock = new Object();
+    private ExecutorService compactionExecutor;
+    private boolean compactionScheduled;
+    private volatile JournalCompactor compactor;
+    private volatile JournalRecoveryStats recoveryStats;
+
+    public FileJournal(final JournalConfiguration config) {
+        this.config = config;
+        this.fileManager = new JournalFileManager(config);
+    }
+
+    public JournalConfiguration getConfig() {
+        return config;
+    }
+
+    @Override
+    public void start() throws PegasusException {
+        lock.lock();
+        try {
+            if (state != State.STOPPED) {
+                throw new IllegalStateException("Journal is already started");
+            }
+
+            try {
+                Files.createDirectories(config.getDirectory());
+            } catch (IOException e) {
+                throw new PegasusException("Could not create journal directory " + config.getDirectory(), e,
+                        PegasusExceptionType.IO_ERROR);
+            }
+            state = State.STARTED;
+            writeFailure = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public List<RecordInfo> load() throws PegasusException {
+        lock.lock();
+        try {
+            if (state != State.STARTED) {
+                throw new IllegalStateException("Journal must be started and not loaded, state " + state);
+            }
+
+            JournalCompactor.recover(fileManager);
+            index.clear();
+
+            final long start = System.nanoTime();
+            final Map<Long, List<RecordInfo>> records = new LinkedHashMap<>();
+            final List<JournalFile> emptyFiles = new ArrayList<>();
+            final List<JournalFile> files = fileManager.listFiles();
+            final JournalRecovery recovery = new JournalRecovery(config.getRecoveryParallelism());
+
+            recovery.recover(files, scanned -> {
+                final JournalFile file = scanned.getFile();
+                if (scanned.getCount() == 0) {
+                    emptyFiles.add(file);
+                    return;
+                }
+
+                // empty files followed by a data file hold nothing and are never written, drop them
+                for (JournalFile empty : emptyFiles) {
+                    deleteFile(empty);
+                }
+                emptyFiles.clear();
+
+                dataFiles.add(file);
+                for (int i = 0; i < scanned.getCount(); i++) {
+                    final long id = scanned.getId(i);
+                    final byte recordType = scanned.getRecordType(i);
+                    indexRecord(file, recordType, id, scanned.getPosition(i));
+
+                    switch (recordType) {
+                        case JournalConstants.ADD_RECORD -> {
+                            final List<RecordInfo> list = new ArrayList<>(1);
+                            list.add(new RecordInfo(id, scanned.getUserRecordType(i), scanned.getBody(i), false,
+                                    file.getFileId()));
+                            records.put(id, list);
+                        }
+                        case JournalConstants.UPDATE_RECORD -> {
+                            final List<RecordInfo> list = records.get(id);
+                            if (list != null) {
+                                list.add(new RecordInfo(id, scanned.getUserRecordType(i), scanned.getBody(i), true,
+                                        file.getFileId()));
+                            }
+                        }
+                        case JournalConstants.DELETE_RECORD -> records.remove(id);
+                    }
+                }
+
+                currentFile = file;
+                position = scanned.getEnd();
+                logger.debug("Loaded {} records of journal file {}, data ends at {}", scanned.getCount(), file,
+                        scanned.getEnd());
+            });
+
+            directIo = config.isDirectIo();
+            blockSize = JournalFile.blockSize(config.getDirectory());
+            if (directIo && config.getFileSize() % blockSize != 0) {
+                logger.warn("Journal file size {} is not a multiple of block size {}, direct I/O is disabled",
+                        config.getFileSize(), blockSize);
+                directIo = false;
+            }
+            if (currentFile != null) {
+                startCurrentFile();
+            }
+            for (JournalFile empty : emptyFiles) {
+                fileManager.addFreeFile(empty);
+            }
+            fileManager.preallocate(config.getMinFiles() - (currentFile == null ? 0 : 1));
+            if (currentFile == null) {
+                moveToNextFile();
+            }
+
+            final List<RecordInfo> result = new ArrayList<>(records.size());
+            for (List<RecordInfo> list : records.values()) {
+                result.addAll(list);
+            }
+
+            state = State.LOADED;
+            flusher = new Thread(this::flushLoop, "pegasus-journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+            compactionExecutor = Executors.newSingleThreadExecutor(r -> {
+                final Thread thread = new Thread(r, "pegasus-journal-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            recoveryStats = new JournalRecoveryStats(files.size(), recovery.getBytes(), recovery.getRecords(),
+                    records.size(), System.nanoTime() - start, recovery.getParallelism());
+            logger.info("Loaded journal {}: {}", config.getDirectory(), recoveryStats);
+            return result;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void appendAddRecord(long id, byte userRecordType, PegasusBuffer body, boolean sync) throws PegasusException {
+        append(JournalRecord.add(id, userRecordType, body), sync);
+    }
+
+    @Override
+    public void appendUpdateRecord(long id, byte userRecordType, PegasusBuffer body, boolean sync) throws PegasusException {
+        append(JournalRecord.update(id, userRecordType, body), sync);
+    }
+
+    @Override
+    public void appendDeleteRecord(long id, boolean sync) throws PegasusException {
+        append(JournalRecord.delete(id), sync);
+    }
+
+    @Override
+    public CompletableFuture<Void> appendAddRecordAsync(long id, byte userRecordType, PegasusBuffer body) throws PegasusException {
+        return appendAsync(true, JournalRecord.add(id, userRecordType, body));
+    }
+
+    @Override
+    public CompletableFuture<Void> appendUpdateRecordAsync(long id, byte userRecordType, PegasusBuffer body) throws PegasusException {
+        return appendAsync(true, JournalRecord.update(id, userRecordType, body));
+    }
+
+    @Override
+    public CompletableFuture<Void> appendDeleteRecordAsync(long id) throws PegasusException {
+        return appendAsync(true, JournalRecord.delete(id));
+    }
+
+    @Override
+    public void appendBatch(long batchId, List<JournalRecord> records, boolean sync) throws PegasusException {
+        final JournalRecord[] batch = new JournalRecord[records.size() + 2];
+        batch[0] = JournalRecord.batch(batchId, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            batch[i + 1] = records.get(i);
+        }
+        batch[batch.length - 1] = JournalRecord.commit(batchId);
+        await(appendAsync(sync, batch), sync);
+    }
+
+    @Override
+    public void stop() throws PegasusException {
+        final Thread flusher;
+        final ExecutorService compactionExecutor;
+        lock.lock();
+        try {
+            if (state == State.STOPPED) {
+                return;
+            }
+
+            state = State.STOPPED;
+            flusher = this.flusher;
+            this.flusher = null;
+            compactionExecutor = this.compactionExecutor;
+            this.compactionExecutor = null;
+            compactionScheduled = false;
+            syncCondition.signalAll();
+            if (currentFile != null && writeFailure != null) {
+                completePendingSyncs(writeFailure);
+                currentFile.close();
+            } else if (currentFile != null) {
+                try {
+                    flushWriteBuffer();
+                    syncAndClose(currentFile);
+                    completePendingSyncs(null);
+                } catch (PegasusException e) {
+                    completePendingSyncs(e);
+                    throw e;
+                } finally {
+                    currentFile.close();
+                }
+            }
+        } finally {
+            dataFiles.clear();
+            currentFile = null;
+            position = 0;
+            lock.unlock();
+        }
+
+        // a compaction still running only sees the index as of stop, which it may still commit to the files
+        final JournalCompactor compactor = this.compactor;
+        if (compactor != null) {
+            compactor.abort();
+        }
+        try {
+            if (compactionExecutor != null) {
+                compactionExecutor.shutdownNow();
+                compactionExecutor.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            synchronized (compactionLock) {
+                // waits for a compaction started by a caller of compact()
+            }
+            if (flusher != null) {
+                flusher.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        lock.lock();
+        try {
+            if (writeBuffer != null && state == State.STOPPED) {
+                writeBuffer.release();
+                writeBuffer = null;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of files holding records.
+     */
+    public int getDataFilesCount() {
+        lock.lock();
+        try {
+            return dataFiles.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return metrics of the last {@link #load()}, null if the journal has never been loaded.
+     */
+    public JournalRecoveryStats getRecoveryStats() {
+        return recoveryStats;
+    }
+
+    /**
+     * @return true if the journal writes with direct I/O, false if it is not configured or not supported.
+     */
+    public boolean isDirectIo() {
+        lock.lock();
+        try {
+            return directIo;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of live records.
+     */
+    public int getLiveRecordsCount() {
+        lock.lock();
+        try {
+            return index.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Compacts all files but the current file, copying their live records into new files which replace them. Appends
+     * go on while compacting.
+     *
+     * @return true if files were compacted, false if there is no file to compact.
+     * @throws PegasusException if the compaction failed, the journal is left unchanged.
+     */
+    public boolean compact() throws PegasusException {
+        synchronized (compactionLock) {
+            final List<JournalFile> files;
+            lock.lock();
+            try {
+                if (state != State.LOADED) {
+                    throw new IllegalStateException("Journal must be loaded before compacting, state " + state);
+                }
+                files = new ArrayList<>(dataFiles.subList(0, dataFiles.size() - 1));
+            } finally {
+                lock.unlock();
+            }
+            if (files.isEmpty()) {
+                return false;
+            }
+
+            final long start = System.nanoTime();
+            final JournalCompactor compactor = new JournalCompactor(config, fileManager, files, this::isLive);
+            this.compactor = compactor;
+            try {
+                compactor.compact();
+                compactor.commit();
+            } finally {
+                this.compactor = null;
+            }
+
+            lock.lock();
+            try {
+                swapCompactedFiles(files, compactor);
+            } finally {
+                lock.unlock();
+            }
+
+            logger.info("Compacted {} journal files into {} files in {} ms", files.size(), compactor.getOutputs().size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            return true;
+        }
+    }
+
+    /**
+     * @return the current file, for tests injecting I/O failures.
+     */
+    JournalFile getCurrentFile() {
+        lock.lock();
+        try {
+            return currentFile;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of times files have been synced, a sync makes durable all records appended before it.
+     */
+    public long getSyncCount() {
+        return syncCount.get();
+    }
+
+    private void append(final JournalRecord record, final boolean sync) throws PegasusException {
+        await(appendAsync(sync, record), sync);
+    }
+
+    private void await(final CompletableFuture<Void> future, final boolean sync) throws PegasusException {
+        if (!sync) {
+            return;
+        }
+
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof PegasusException pe) {
+                throw pe;
+            }
+            throw new PegasusException("Could not sync journal", e.getCause(), PegasusExceptionType.IO_ERROR);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PegasusException("Interrupted while waiting for journal sync", e, PegasusExceptionType.JOURNAL_ERROR);
+        }
+    }
+
+    /**
+     * Encodes the records contiguously into the write buffer of a single file. The returned future of a sync append is
+     * completed by the flusher, or by a move to the next file, once the file is synced.
+     */
+    private CompletableFuture<Void> appendAsync(final boolean sync, final JournalRecord... records) throws PegasusException {
+        int size = 0;
+        for (JournalRecord record : records) {
+            size += record.encodeSize();
+        }
+        if (size > config.getFileSize() - JournalConstants.FILE_HEADER_SIZE) {
+            throw new PegasusException((records.length == 1 ? "Record" : "Batch") + " of " + size +
+                    " bytes does not fit into journal file of " + config.getFileSize() + " bytes",
+                    PegasusExceptionType.JOURNAL_ERROR);
+        }
+
+        lock.lock();
+        try {
+            if (state != State.LOADED) {
+                throw new IllegalStateException("Journal must be loaded before appending, state " + state);
+            }
+            if (writeFailure != null) {
+                throw new PegasusException("Journal " + config.getDirectory() + " stopped appending after a failed write",
+                        writeFailure, PegasusExceptionType.IO_ERROR);
+            }
+
+            if (position + size > currentFile.getFileSize()) {
+                moveToNextFile();
+            }
+            if (position > writtenPosition && writeBuffer.readableBytes() + size > config.getWriteBufferSize()) {
+                flushWriteBuffer();
+                // the padding of a direct I/O write may leave no room for the records
+                if (position + size > currentFile.getFileSize()) {
+                    moveToNextFile();
+                }
+            }
+            if (directIo) {
+                ensureDirectCapacity(size);
+            }
+
+            final boolean wasEmpty = position == writtenPosition;
+            for (JournalRecord record : records) {
+                record.encode(writeBuffer, currentFile.getFileId());
+                indexRecord(currentFile, record.getRecordType(), record.getId(), position);
+                position += record.encodeSize();
+            }
+
+            if (!sync) {
+                // the flusher writes buffered records out even if nobody waits for a sync, but a direct I/O write
+                // pads to a block, so they wait for the buffer to fill or the next sync
+                if (wasEmpty && !directIo) {
+                    syncCondition.signal();
+                }
+                return COMPLETED;
+            }
+
+            final CompletableFuture<Void> future = new CompletableFuture<>();
+            if (pendingSyncs.isEmpty()) {
+                firstPendingNanos = System.nanoTime();
+            }
+            pendingSyncs.add(future);
+            pendingSyncBytes += size;
+            syncCondition.signal();
+            return future;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Loop of flusher thread. Each round writes the buffered records and syncs the current file once for all records
+     * waiting at that time.
+     * <p>
+     * The batch adapts to load: while syncs are served one at a time the flusher syncs as soon as a record waits, so a
+     * lone writer pays a single {@code force()} latency. Once a round served several records the journal is busy, and
+     * the next round waits for more records up to the sync window (time or bytes) to amortize the {@code force()}.
+     */
+    private void flushLoop() {
+        List<CompletableFuture<Void>> batch = new ArrayList<>();
+        int lastBatchSize = 0;
+
+        while (true) {
+            final JournalFile file;
+            lock.lock();
+            try {
+                while (state == State.LOADED && pendingSyncs.isEmpty() && (directIo || position == writtenPosition)) {
+                    syncCondition.await();
+                }
+                if (lastBatchSize > 1) {
+                    final long deadline = firstPendingNanos + config.getSyncWindowNanos();
+                    long remaining;
+                    while (state == State.LOADED && !pendingSyncs.isEmpty() &&
+                            pendingSyncBytes < config.getSyncWindowBytes() &&
+                            (remaining = deadline - System.nanoTime()) > 0) {
+                        syncCondition.awaitNanos(remaining);
+                    }
+                }
+                if (state != State.LOADED) {
+                    return;
+                }
+
+                file = currentFile;
+                final List<CompletableFuture<Void>> pending = pendingSyncs;
+                pendingSyncs = batch;
+                pendingSyncBytes = 0;
+                batch = pending;
+                try {
+                    flushWriteBuffer();
+                } catch (PegasusException e) {
+                    logger.error("Could not write journal file {}, the journal stops appending", file, e);
+                    complete(batch, e);
+                    return;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Journal flusher of {} is interrupted", config.getDirectory());
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            if (batch.isEmpty()) {
+                continue;
+            }
+
+            PegasusException failure = null;
+            try {
+                sync(file);
+            } catch (PegasusException e) {
+                logger.error("Could not sync journal file {}", file, e);
+                failure = e;
+            }
+            lastBatchSize = batch.size();
+            complete(batch, failure);
+        }
+    }
+
+    /**
+     * Updates the index and file counters for a record appended or recovered at position of file.
+     */
+    private void indexRecord(final JournalFile file, final byte recordType, final long id, final int position) {
+        switch (recordType) {
+            case JournalConstants.ADD_RECORD -> {
+                decrementLive(index.put(id, JournalFile.location(file.getFileId(), position)));
+                file.addRecord(true);
+            }
+            case JournalConstants.DELETE_RECORD -> {
+                decrementLive(index.remove(id));
+                file.addRecord(false);
+            }
+            default -> file.addRecord(false);
+        }
+    }
+
+    private void decrementLive(final long location) {
+        if (location == index.getMissingValue()) {
+            return;
+        }
+
+        final JournalFile file = findDataFile(JournalFile.fileIdOf(location));
+        if (file != null) {
+            file.decrementLive();
+        }
+    }
+
+    private JournalFile findDataFile(final long fileId) {
+        int low = 0;
+        int high = dataFiles.size() - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final JournalFile file = dataFiles.get(mid);
+            if (file.getFileId() < fileId) {
+                low = mid + 1;
+            } else if (file.getFileId() > fileId) {
+                high = mid - 1;
+            } else {
+                return file;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * An add record is live if it is the indexed add of its id, an update is live if it follows the indexed add.
+     */
+    private boolean isLive(final byte recordType, final long id, final long location) {
+        lock.lock();
+        try {
+            final long added = index.get(id);
+            if (added == index.getMissingValue()) {
+                return false;
+            }
+            return recordType == JournalConstants.ADD_RECORD ? added == location : location > added;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the compacted files by the new files, in place as they have the same file ids, and moves the index.
+     */
+    private void swapCompactedFiles(final List<JournalFile> files, final JournalCompactor compactor) {
+        if (state != State.LOADED) {
+            return;
+        }
+
+        final List<JournalFile> outputs = compactor.getOutputs();
+        dataFiles.subList(0, files.size()).clear();
+        dataFiles.addAll(0, outputs);
+
+        final int[] live = new int[outputs.size()];
+        for (int i = 0; i < compactor.getMovedCount(); i++) {
+            final long id = compactor.getMovedId(i);
+            if (index.get(id) == compactor.getMovedFrom(i)) {
+                final long to = compactor.getMovedTo(i);
+                index.put(id, to);
+                live[outputs.indexOf(findDataFile(JournalFile.fileIdOf(to)))]++;
+            }
+        }
+        for (int i = 0; i < outputs.size(); i++) {
+            outputs.get(i).setCounts(compactor.getOutputRecords(i), live[i]);
+        }
+    }
+
+    /**
+     * Schedules a background compaction if enough files are sparse: there are at least {@code compactMinFiles} files
+     * besides the current file, and the ratio of their live records is below {@code compactPercentage}.
+     */
+    private void scheduleCompaction() {
+        final int files = dataFiles.size() - 1;
+        if (compactionScheduled || config.getCompactMinFiles() == 0 || files < config.getCompactMinFiles()) {
+            return;
+        }
+
+        long records = 0;
+        long live = 0;
+        for (int i = 0; i < files; i++) {
+            records += dataFiles.get(i).getRecordCount();
+            live += dataFiles.get(i).getLiveCount();
+        }
+        if (live * 100 >= records * config.getCompactPercentage()) {
+            return;
+        }
+
+        compactionScheduled = true;
+        compactionExecutor.execute(() -> {
+            try {
+                compact();
+            } catch (PegasusException | IllegalStateException e) {
+                logger.warn("Could not compact journal {}", config.getDirectory(), e);
+            } finally {
+                lock.lock();
+                try {
+                    compactionScheduled = false;
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes the buffered records to the current file.
+     * <p>
+     * With direct I/O, a write must cover whole blocks from an aligned buffer. The buffer always starts at a block
+     * boundary of file, and the records are followed by a padding up to the next block boundary, so the next write
+     * starts aligned again and never rewrites a block holding records already written.
+     */
+    private void flushWriteBuffer() throws PegasusException {
+        if (writeFailure != null) {
+            throw writeFailure;
+        }
+        if (writeBuffer == null || position == writtenPosition) {
+            return;
+        }
+
+        if (directIo) {
+            pad();
+        }
+
+        final int len = writeBuffer.readableBytes();
+        try {
+            currentFile.write(writeBuffer, bufferPosition);
+        } catch (PegasusException e) {
+            // the records not written leave a hole which ends the scan on recovery, any record written after it would
+            // be lost although acknowledged, so the journal fails the waiting syncs and stops appending
+            writeFailure = e;
+            completePendingSyncs(e);
+            throw e;
+        }
+        bufferPosition += len;
+        writtenPosition = position;
+        writeBuffer.clear();
+        if (directIo && writeBuffer.capacity() > directBufferCapacity()) {
+            writeBuffer.release();
+            writeBuffer = PegasusBuffers.alignedBuffer(directBufferCapacity(), blockSize);
+        }
+    }
+
+    /**
+     * @return capacity of the direct I/O buffer, the write buffer size and the padding of a write to a block.
+     */
+    private int directBufferCapacity() {
+        return align(config.getWriteBufferSize()) + 2 * blockSize;
+    }
+
+    /**
+     * Grows the direct I/O buffer, which does not grow by itself, for records larger than the write buffer size.
+     */
+    private void ensureDirectCapacity(final int size) {
+        final int required = writeBuffer.readableBytes() + size + 2 * blockSize;
+        if (required > writeBuffer.capacity()) {
+            final PegasusBuffer grown = PegasusBuffers.alignedBuffer(align(required), blockSize);
+            grown.byteBuf().writeBytes(writeBuffer.byteBuf(), writeBuffer.readIndex(), writeBuffer.readableBytes());
+            writeBuffer.release();
+            writeBuffer = grown;
+        }
+    }
+
+    private void pad() {
+        int aligned = align(position);
+        int gap = aligned - position;
+        if (gap > 0 && gap < JournalConstants.MIN_PADDING_SIZE) {
+            if (aligned + blockSize <= currentFile.getFileSize()) {
+                aligned += blockSize;
+                gap += blockSize;
+            } else {
+                // no record fits in the end of file anyway, zeros end the scan
+                writeBuffer.byteBuf().writeZero(gap);
+                position = aligned;
+                return;
+            }
+        }
+
+        if (gap > 0) {
+            writeBuffer.writeInt(gap);
+            writeBuffer.writeByte(JournalConstants.PADDING_RECORD);
+            writeBuffer.writeInt((int) currentFile.getFileId());
+            writeBuffer.byteBuf().writeZero(gap - JournalConstants.MIN_PADDING_SIZE);
+            position = aligned;
+        }
+    }
+
+    private int align(final int pos) {
+        return (pos + blockSize - 1) & -blockSize;
+    }
+
+    /**
+     * Opens the current file for appends at {@code position}. With direct I/O, the buffer starts at the block boundary
+     * before position, filled with the bytes of file before position.
+     */
+    private void startCurrentFile() throws PegasusException {
+        if (directIo) {
+            currentFile.close();
+            directIo = currentFile.openDirect();
+        } else {
+            currentFile.open();
+        }
+
+        if (writeBuffer == null) {
+            writeBuffer = directIo ? PegasusBuffers.alignedBuffer(directBufferCapacity(), blockSize) :
+                    PegasusBuffers.pooledBuffer(config.getWriteBufferSize());
+        }
+        writeBuffer.clear();
+        writtenPosition = position;
+        bufferPosition = position;
+
+        if (directIo && position % blockSize != 0) {
+            bufferPosition = position & -blockSize;
+            currentFile.read(writeBuffer, bufferPosition, blockSize);
+            writeBuffer.writeIndex(position - bufferPosition);
+        }
+    }
+
+    /**
+     * Syncs the file unless it has been closed, a file is synced before it is closed.
+     */
+    private void sync(final JournalFile file) throws PegasusException {
+        synchronized (syncLock) {
+            if (file.isOpen()) {
+                file.sync();
+                syncCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void syncAndClose(final JournalFile file) throws PegasusException {
+        synchronized (syncLock) {
+            file.sync();
+            syncCount.incrementAndGet();
+            file.close();
+        }
+    }
+
+    private void completePendingSyncs(final PegasusException failure) {
+        complete(pendingSyncs, failure);
+        pendingSyncBytes = 0;
+    }
+
+    private static void complete(final List<CompletableFuture<Void>> futures, final PegasusException failure) {
+        for (CompletableFuture<Void> future : futures) {
+            if (failure == null) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(failure);
+            }
+        }
+        futures.clear();
+    }
+
+    private void moveToNextFile() throws PegasusException {
+        if (currentFile != null) {
+            // the previous file must be durable before records are appended into the next one
+            flushWriteBuffer();
+            try {
+                syncAndClose(currentFile);
+            } catch (PegasusException e) {
+                completePendingSyncs(e);
+                throw e;
+            }
+            completePendingSyncs(null);
+        }
+
+        currentFile = fileManager.takeFile();
+        dataFiles.add(currentFile);
+        position = JournalConstants.FILE_HEADER_SIZE;
+        startCurrentFile();
+        logger.debug("Moved to journal file {}", currentFile);
+        if (compactionExecutor != null) {
+            scheduleCompaction();
+        }
+    }
+
+    private static void deleteFile(final JournalFile file) throws PegasusException {
+        try {
+            Files.deleteIfExists(file.getPath());
+        } catch (IOException e) {
+            throw new PegasusException("Could not delete journal file " + file.getPath(), e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+}
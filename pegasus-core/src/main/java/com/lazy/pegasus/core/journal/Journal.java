@@ -0,0 +1,113 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * An append-only journal of records. A record is added with an id, may be updated any number of times and is
+ * eventually deleted; a record which is added and not deleted is live and survives a restart.
+ * <p>
+ * A journal is used in the following order: {@link #start()}, {@link #load()} once, appends, then {@link #stop()}.
+ */
+public interface Journal {
+
+    /**
+     * Starts the journal, files are not read until {@link #load()}.
+     *
+     * @throws PegasusException if the journal could not be started.
+     */
+    void start() throws PegasusException;
+
+    /**
+     * Recovers the journal by scanning all files, this must be called once before any append.
+     *
+     * @return live records, each added record followed by its updates, in the order they were appended.
+     * @throws PegasusException if the journal could not be read.
+     */
+    List<RecordInfo> load() throws PegasusException;
+
+    /**
+     * Appends an add record.
+     *
+     * @param id             id of record.
+     * @param userRecordType type of record defined by the user of journal.
+     * @param body           body of record, its readable bytes are appended and its indexes are not modified.
+     * @param sync           true if the record must be on the storage device when this method returns.
+     * @throws PegasusException if the record could not be appended.
+     */
+    void appendAddRecord(long id, byte userRecordType, PegasusBuffer body, boolean sync) throws PegasusException;
+
+    /**
+     * Appends an update of a previously added record.
+     *
+     * @param id             id of record.
+     * @param userRecordType type of record defined by the user of journal.
+     * @param body           body of record, its readable bytes are appended and its indexes are not modified.
+     * @param sync           true if the record must be on the storage device when this method returns.
+     * @throws PegasusException if the record could not be appended.
+     */
+    void appendUpdateRecord(long id, byte userRecordType, PegasusBuffer body, boolean sync) throws PegasusException;
+
+    /**
+     * Appends a delete of a previously added record.
+     *
+     * @param id   id of record.
+     * @param sync true if the record must be on the storage device when this method returns.
+     * @throws PegasusException if the record could not be appended.
+     */
+    void appendDeleteRecord(long id, boolean sync) throws PegasusException;
+
+    /**
+     * Appends an add record without waiting for it to be synced.
+     *
+     * @param id             id of record.
+     * @param userRecordType type of record defined by the user of journal.
+     * @param body           body of record, its readable bytes are copied before this method returns.
+     * @return future completed when the record is on the storage device.
+     * @throws PegasusException if the record could not be appended.
+     */
+    CompletableFuture<Void> appendAddRecordAsync(long id, byte userRecordType, PegasusBuffer body) throws PegasusException;
+
+    /**
+     * Appends an update of a previously added record without waiting for it to be synced.
+     *
+     * @param id             id of record.
+     * @param userRecordType type of record defined by the user of journal.
+     * @param body           body of record, its readable bytes are copied before this method returns.
+     * @return future completed when the record is on the storage device.
+     * @throws PegasusException if the record could not be appended.
+     */
+    CompletableFuture<Void> appendUpdateRecordAsync(long id, byte userRecordType, PegasusBuffer body) throws PegasusException;
+
+    /**
+     * Appends a delete of a previously added record without waiting for it to be synced.
+     *
+     * @param id id of record.
+     * @return future completed when the record is on the storage device.
+     * @throws PegasusException if the record could not be appended.
+     */
+    CompletableFuture<Void> appendDeleteRecordAsync(long id) throws PegasusException;
+
+    /**
+     * Appends records as a single batch ended by a commit record: on recovery, either all the records of the batch are
+     * loaded, or none of them if the journal stopped before the commit record was written. The batch is written
+     * contiguously into a single file, so a durable batch costs a single sync whatever its number of records.
+     *
+     * @param batchId id of batch, e.g. the id of a transaction.
+     * @param records add, update and delete records of batch, see {@link JournalRecord}.
+     * @param sync    true if the batch must be on the storage device when this method returns.
+     * @throws PegasusException if the batch could not be appended, e.g. it does not fit into a file.
+     */
+    void appendBatch(long batchId, List<JournalRecord> records, boolean sync) throws PegasusException;
+
+    /**
+     * Stops the journal, closing all files.
+     *
+     * @throws PegasusException if a file could not be closed.
+     */
+    void stop() throws PegasusException;
+
+}
@@ -0,0 +1,427 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Copies the live records of a sequence of journal files into as few new files as possible, and swaps the new files
+ * in place of the old ones.
+ * <p>
+ * The compacted files are the oldest files of journal, all of them but the current file, so every record they cancel
+ * (an add before its delete) is among them and a delete record is never copied. The new files take the file ids of the
+ * compacted files in order, so they keep their place in the sequence of files and a record appended meanwhile, e.g.
+ * the delete of a copied record, is still recovered after the copy.
+ * <p>
+ * The swap is made crash-safe by a control file listing the compacted files, which is written once all new files are
+ * synced: if it exists on {@link #recover(JournalFileManager)}, the swap is completed, otherwise the new files are
+ * dropped.
+ */
+final class JournalCompactor {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalCompactor.class);
+
+    static final String COMPACT_SUFFIX = ".cmp";
+    static final String CONTROL_FILE_SUFFIX = "-compact.ctl";
+    private static final int CONTROL_MAGIC = 0x50474343; // "PGCC"
+
+    /**
+     * Tells whether a record of a compacted file is still needed.
+     */
+    @FunctionalInterface
+    interface LivenessCheck {
+
+        /**
+         * @param recordType type of record.
+         * @param id         id of record.
+         * @param location   location of record, see {@link JournalFile#location(long, int)}.
+         * @return true if the record must be copied.
+         */
+        boolean isLive(byte recordType, long id, long location);
+    }
+
+    private final JournalConfiguration config;
+    private final JournalFileManager fileManager;
+    private final List<JournalFile> files;
+    private final LivenessCheck liveness;
+
+    private final List<JournalFile> outputs = new ArrayList<>();
+    /* triples of (id, old location, new location) of copied add records */
+    private long[] moved = new long[3 * 64];
+    private int movedCount;
+    private int[] outputRecords = new int[4];
+
+    private long startNanos;
+    private long processedBytes;
+    private volatile boolean aborted;
+
+    JournalCompactor(final JournalConfiguration config, final JournalFileManager fileManager, final List<JournalFile> files,
+                     final LivenessCheck liveness) {
+        this.config = config;
+        this.fileManager = fileManager;
+        this.files = files;
+        this.liveness = liveness;
+    }
+
+    /**
+     * Stops a running {@link #compact()}, which then fails.
+     */
+    void abort() {
+        aborted = true;
+    }
+
+    /**
+     * Copies the live records into new files, next to the compacted files. Appends are not blocked, the liveness of
+     * each record is checked while it is copied.
+     *
+     * @throws PegasusException if a file could not be read or written, or the compaction is aborted.
+     */
+    void compact() throws PegasusException {
+        startNanos = System.nanoTime();
+        final PegasusBuffer buffer = PegasusBuffers.pooledBuffer(config.getWriteBufferSize());
+        final Writer writer = new Writer(buffer);
+        try {
+            for (JournalFile file : files) {
+                final PegasusBuffer content;
+                file.open();
+                try {
+                    content = file.read();
+                } finally {
+                    file.close();
+                }
+
+                try {
+                    final int end = JournalFileScanner.scan(content, file.getFileId(),
+                            (recordType, id, userRecordType, buf, bodyIndex, bodyLength, position, size) -> {
+                                final long location = JournalFile.location(file.getFileId(), position);
+                                if (recordType != JournalConstants.DELETE_RECORD &&
+                                        liveness.isLive(recordType, id, location)) {
+                                    writer.copy(recordType, id, userRecordType, buf, bodyIndex, bodyLength, location);
+                                }
+                            });
+                    writer.checkFailure();
+                    throttle(end);
+                } finally {
+                    content.release();
+                }
+            }
+            writer.finish();
+        } catch (PegasusException e) {
+            writer.closeQuietly();
+            deleteOutputs();
+            throw e;
+        } finally {
+            buffer.release();
+        }
+
+        logger.debug("Compacted {} journal files into {} files, {} live records", files.size(), outputs.size(), movedCount);
+    }
+
+    /**
+     * Replaces the compacted files by the new files, compacted files without a replacement are reused as free files.
+     *
+     * @throws PegasusException if a file could not be renamed.
+     */
+    void commit() throws PegasusException {
+        final Path control = controlFile(fileManager);
+        writeControlFile(control);
+
+        for (int i = 0; i < outputs.size(); i++) {
+            final Path path = files.get(i).getPath();
+            try {
+                move(compactPath(path), path);
+            } catch (IOException e) {
+                throw new PegasusException("Could not replace journal file " + path, e, PegasusExceptionType.IO_ERROR);
+            }
+        }
+        for (int i = outputs.size(); i < files.size(); i++) {
+            fileManager.reuseFile(files.get(i));
+        }
+        syncDirectory(fileManager.getConfig().getDirectory());
+
+        try {
+            Files.delete(control);
+        } catch (IOException e) {
+            throw new PegasusException("Could not delete compaction control file " + control, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    /**
+     * @return new files which replace the compacted files, in file id order.
+     */
+    List<JournalFile> getOutputs() {
+        return outputs;
+    }
+
+    /**
+     * @param index index of new file.
+     * @return number of records copied into the new file.
+     */
+    int getOutputRecords(final int index) {
+        return outputRecords[index];
+    }
+
+    int getMovedCount() {
+        return movedCount;
+    }
+
+    long getMovedId(final int index) {
+        return moved[3 * index];
+    }
+
+    long getMovedFrom(final int index) {
+        return moved[3 * index + 1];
+    }
+
+    long getMovedTo(final int index) {
+        return moved[3 * index + 2];
+    }
+
+    /**
+     * Completes or rolls back a compaction interrupted by a crash, this must be called before the files of journal are
+     * listed.
+     *
+     * @param fileManager file manager of journal.
+     * @throws PegasusException if a file could not be renamed or deleted.
+     */
+    static void recover(final JournalFileManager fileManager) throws PegasusException {
+        final Path control = controlFile(fileManager);
+        try {
+            if (Files.exists(control)) {
+                final PegasusBuffer content = PegasusBuffers.wrappedBuffer(Files.readAllBytes(control));
+                if (content.readableBytes() >= 3 * Integer.BYTES && content.readInt() == CONTROL_MAGIC) {
+                    final int outputs = content.readInt();
+                    final int count = content.readInt();
+                    for (int i = 0; i < count; i++) {
+                        final Path path = fileManager.pathOf(content.readLong());
+                        final Path compacted = compactPath(path);
+                        if (i < outputs && Files.exists(compacted)) {
+                            move(compacted, path);
+                        } else if (i >= outputs) {
+                            Files.deleteIfExists(path);
+                        }
+                    }
+                    logger.info("Completed interrupted compaction of {} journal files", count);
+                }
+                Files.delete(control);
+            }
+
+            final String prefix = fileManager.getConfig().getFilePrefix();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(fileManager.getConfig().getDirectory(),
+                    prefix + "-*" + COMPACT_SUFFIX)) {
+                for (Path path : stream) {
+                    logger.debug("Deleting journal file {} of an unfinished compaction", path);
+                    Files.delete(path);
+                }
+            }
+        } catch (IOException e) {
+            throw new PegasusException("Could not recover compaction of " + fileManager.getConfig().getDirectory(), e,
+                    PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    private void writeControlFile(final Path control) throws PegasusException {
+        final PegasusBuffer content = PegasusBuffers.fixedBuffer(3 * Integer.BYTES + files.size() * Long.BYTES);
+        content.writeInt(CONTROL_MAGIC);
+        content.writeInt(outputs.size());
+        content.writeInt(files.size());
+        for (JournalFile file : files) {
+            content.writeLong(file.getFileId());
+        }
+
+        final Path tmp = control.resolveSibling(control.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE)) {
+                channel.write(content.toBuffer());
+                channel.force(true);
+            }
+            move(tmp, control);
+            syncDirectory(control.getParent());
+        } catch (IOException e) {
+            throw new PegasusException("Could not write compaction control file " + control, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    /**
+     * Sleeps as long as needed to keep the rate of processed bytes under the configured budget.
+     */
+    private void throttle(final long bytes) throws PegasusException {
+        if (aborted) {
+            throw new PegasusException("Compaction is aborted", PegasusExceptionType.JOURNAL_ERROR);
+        }
+
+        final long rate = config.getCompactBytesPerSecond();
+        processedBytes += bytes;
+        if (rate <= 0) {
+            return;
+        }
+
+        final long dueNanos = processedBytes * 1_000_000_000L / rate - (System.nanoTime() - startNanos);
+        if (dueNanos > 0) {
+            try {
+                Thread.sleep(dueNanos / 1_000_000, (int) (dueNanos % 1_000_000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new PegasusException("Compaction is interrupted", e, PegasusExceptionType.JOURNAL_ERROR);
+            }
+        }
+    }
+
+    private void deleteOutputs() {
+        for (JournalFile output : outputs) {
+            try {
+                Files.deleteIfExists(compactPath(output.getPath()));
+            } catch (IOException e) {
+                logger.warn("Could not delete compacted journal file {}", output.getPath(), e);
+            }
+        }
+    }
+
+    private static Path controlFile(final JournalFileManager fileManager) {
+        final JournalConfiguration config = fileManager.getConfig();
+        return config.getDirectory().resolve(config.getFilePrefix() + CONTROL_FILE_SUFFIX);
+    }
+
+    private static Path compactPath(final Path path) {
+        return path.resolveSibling(path.getFileName() + COMPACT_SUFFIX);
+    }
+
+    private static void move(final Path source, final Path target) throws IOException {
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void syncDirectory(final Path dir) {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported by every platform, renames are still atomic
+            logger.trace("Could not sync directory {}", dir, e);
+        }
+    }
+
+    /**
+     * Appends copied records into the new files, re-encoded with the file id of the new file.
+     */
+    private final class Writer {
+
+        private final PegasusBuffer buffer;
+        private JournalFile current;
+        private int position;
+        private int bufferPosition;
+        private PegasusException failure;
+
+        private Writer(final PegasusBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        void copy(final byte recordType, final long id, final byte userRecordType, final PegasusBuffer content,
+                  final int bodyIndex, final int bodyLength, final long from) {
+            if (failure != null) {
+                return;
+            }
+
+            try {
+                final PegasusBuffer body = bodyLength < 0 ? null : content.slice(bodyIndex, bodyLength);
+                final JournalRecord record = recordType == JournalConstants.ADD_RECORD ?
+                        JournalRecord.add(id, userRecordType, body) : JournalRecord.update(id, userRecordType, body);
+                final int size = record.encodeSize();
+
+                if (current == null || position + size > current.getFileSize()) {
+                    nextFile();
+                }
+                if (buffer.readable() && buffer.readableBytes() + size > config.getWriteBufferSize()) {
+                    flush();
+                }
+
+                if (recordType == JournalConstants.ADD_RECORD) {
+                    addMoved(id, from, JournalFile.location(current.getFileId(), position));
+                }
+                record.encode(buffer, current.getFileId());
+                position += size;
+                outputRecords[outputs.size() - 1]++;
+            } catch (PegasusException e) {
+                failure = e;
+            }
+        }
+
+        void checkFailure() throws PegasusException {
+            if (failure != null) {
+                throw failure;
+            }
+        }
+
+        void finish() throws PegasusException {
+            if (current != null) {
+                flush();
+                current.sync();
+                current.close();
+            }
+        }
+
+        void closeQuietly() {
+            if (current != null) {
+                try {
+                    current.close();
+                } catch (PegasusException e) {
+                    logger.warn("Could not close compacted journal file {}", current, e);
+                }
+            }
+        }
+
+        private void nextFile() throws PegasusException {
+            finish();
+            if (outputs.size() == files.size()) {
+                throw new PegasusException("Live records of " + files.size() + " journal files do not fit into as many files",
+                        PegasusExceptionType.JOURNAL_ERROR);
+            }
+
+            // created next to the compacted file it replaces, with the same file id
+            final JournalFile replaced = files.get(outputs.size());
+            current = fileManager.createFile(replaced.getFileId(), compactPath(replaced.getPath()));
+            current.open();
+            outputs.add(new JournalFile(replaced.getPath(), replaced.getFileId(), current.getFileSize()));
+            if (outputRecords.length < outputs.size()) {
+                outputRecords = Arrays.copyOf(outputRecords, outputRecords.length << 1);
+            }
+            position = JournalConstants.FILE_HEADER_SIZE;
+            bufferPosition = position;
+        }
+
+        private void flush() throws PegasusException {
+            if (!buffer.readable()) {
+                return;
+            }
+
+            final int len = buffer.readableBytes();
+            current.write(buffer, bufferPosition);
+            bufferPosition += len;
+            buffer.clear();
+            throttle(len);
+        }
+
+        private void addMoved(final long id, final long from, final long to) {
+            if (moved.length < 3 * (movedCount + 1)) {
+                moved = Arrays.copyOf(moved, moved.length << 1);
+            }
+            moved[3 * movedCount] = id;
+            moved[3 * movedCount + 1] = from;
+            moved[3 * movedCount + 2] = to;
+            movedCount++;
+        }
+    }
+}
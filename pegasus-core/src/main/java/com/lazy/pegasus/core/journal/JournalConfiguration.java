@@ -0,0 +1,222 @@
+package com.lazy.pegasus.core.journal;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration of a {@link FileJournal}, setters return this configuration to be chained.
+ */
+public class JournalConfiguration {
+
+    public static final int DEFAULT_FILE_SIZE = 10 * 1024 * 1024;
+    public static final int DEFAULT_MIN_FILES = 2;
+    public static final String DEFAULT_FILE_PREFIX = "pegasus-data";
+    public static final String DEFAULT_FILE_EXTENSION = "pgj";
+    public static final int DEFAULT_WRITE_BUFFER_SIZE = 256 * 1024;
+    public static final long DEFAULT_SYNC_WINDOW_NANOS = 500_000;
+    public static final int DEFAULT_SYNC_WINDOW_BYTES = 1024 * 1024;
+    public static final int DEFAULT_COMPACT_MIN_FILES = 10;
+    public static final int DEFAULT_COMPACT_PERCENTAGE = 30;
+    public static final long DEFAULT_COMPACT_BYTES_PER_SECOND = 64L * 1024 * 1024;
+    public static final int DEFAULT_RECOVERY_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private Path directory;
+    private int fileSize = DEFAULT_FILE_SIZE;
+    private int minFiles = DEFAULT_MIN_FILES;
+    private String filePrefix = DEFAULT_FILE_PREFIX;
+    private String fileExtension = DEFAULT_FILE_EXTENSION;
+    private int writeBufferSize = DEFAULT_WRITE_BUFFER_SIZE;
+    private long syncWindowNanos = DEFAULT_SYNC_WINDOW_NANOS;
+    private int syncWindowBytes = DEFAULT_SYNC_WINDOW_BYTES;
+    private int compactMinFiles = DEFAULT_COMPACT_MIN_FILES;
+    private int compactPercentage = DEFAULT_COMPACT_PERCENTAGE;
+    private long compactBytesPerSecond = DEFAULT_COMPACT_BYTES_PER_SECOND;
+    private int recoveryParallelism = DEFAULT_RECOVERY_PARALLELISM;
+    private boolean directIo;
+
+    public JournalConfiguration(final Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public JournalConfiguration setDirectory(Path directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    public int getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * @param fileSize size of each journal file, all files are preallocated to this size.
+     */
+    public JournalConfiguration setFileSize(int fileSize) {
+        if (fileSize < JournalConstants.FILE_HEADER_SIZE + JournalConstants.MIN_RECORD_SIZE) {
+            throw new IllegalArgumentException("File size " + fileSize + " is too small");
+        }
+        this.fileSize = fileSize;
+        return this;
+    }
+
+    public int getMinFiles() {
+        return minFiles;
+    }
+
+    /**
+     * @param minFiles number of files preallocated when the journal is loaded.
+     */
+    public JournalConfiguration setMinFiles(int minFiles) {
+        this.minFiles = minFiles;
+        return this;
+    }
+
+    public String getFilePrefix() {
+        return filePrefix;
+    }
+
+    public JournalConfiguration setFilePrefix(String filePrefix) {
+        this.filePrefix = filePrefix;
+        return this;
+    }
+
+    public String getFileExtension() {
+        return fileExtension;
+    }
+
+    public JournalConfiguration setFileExtension(String fileExtension) {
+        this.fileExtension = fileExtension;
+        return this;
+    }
+
+    public int getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    /**
+     * @param writeBufferSize number of bytes of records buffered in memory before they are written to the file.
+     */
+    public JournalConfiguration setWriteBufferSize(int writeBufferSize) {
+        if (writeBufferSize <= 0) {
+            throw new IllegalArgumentException("Write buffer size must be positive, but " + writeBufferSize);
+        }
+        this.writeBufferSize = writeBufferSize;
+        return this;
+    }
+
+    public long getSyncWindowNanos() {
+        return syncWindowNanos;
+    }
+
+    /**
+     * @param syncWindowNanos maximum time a sync waits for more records to join its batch when the journal is busy, 0
+     *                        to sync as soon as the previous sync completes.
+     */
+    public JournalConfiguration setSyncWindowNanos(long syncWindowNanos) {
+        if (syncWindowNanos < 0) {
+            throw new IllegalArgumentException("Sync window must not be negative, but " + syncWindowNanos);
+        }
+        this.syncWindowNanos = syncWindowNanos;
+        return this;
+    }
+
+    public int getSyncWindowBytes() {
+        return syncWindowBytes;
+    }
+
+    /**
+     * @param syncWindowBytes number of bytes waiting for a sync which closes the sync window early.
+     */
+    public JournalConfiguration setSyncWindowBytes(int syncWindowBytes) {
+        if (syncWindowBytes <= 0) {
+            throw new IllegalArgumentException("Sync window bytes must be positive, but " + syncWindowBytes);
+        }
+        this.syncWindowBytes = syncWindowBytes;
+        return this;
+    }
+
+    public int getCompactMinFiles() {
+        return compactMinFiles;
+    }
+
+    /**
+     * @param compactMinFiles number of files, besides the current file, before a compaction is considered, 0 to never
+     *                        compact in background.
+     */
+    public JournalConfiguration setCompactMinFiles(int compactMinFiles) {
+        if (compactMinFiles < 0) {
+            throw new IllegalArgumentException("Compact min files must not be negative, but " + compactMinFiles);
+        }
+        this.compactMinFiles = compactMinFiles;
+        return this;
+    }
+
+    public int getCompactPercentage() {
+        return compactPercentage;
+    }
+
+    /**
+     * @param compactPercentage percentage of live records below which the files are compacted.
+     */
+    public JournalConfiguration setCompactPercentage(int compactPercentage) {
+        if (compactPercentage < 0 || compactPercentage > 100) {
+            throw new IllegalArgumentException("Compact percentage must be in range [0,100], but " + compactPercentage);
+        }
+        this.compactPercentage = compactPercentage;
+        return this;
+    }
+
+    public long getCompactBytesPerSecond() {
+        return compactBytesPerSecond;
+    }
+
+    /**
+     * @param compactBytesPerSecond maximum rate of bytes read and written by a compaction, 0 for no limit.
+     */
+    public JournalConfiguration setCompactBytesPerSecond(long compactBytesPerSecond) {
+        if (compactBytesPerSecond < 0) {
+            throw new IllegalArgumentException("Compact rate must not be negative, but " + compactBytesPerSecond);
+        }
+        this.compactBytesPerSecond = compactBytesPerSecond;
+        return this;
+    }
+
+    public int getRecoveryParallelism() {
+        return recoveryParallelism;
+    }
+
+    /**
+     * @param recoveryParallelism number of threads scanning files on load.
+     */
+    public JournalConfiguration setRecoveryParallelism(int recoveryParallelism) {
+        if (recoveryParallelism <= 0) {
+            throw new IllegalArgumentException("Recovery parallelism must be positive, but " + recoveryParallelism);
+        }
+        this.recoveryParallelism = recoveryParallelism;
+        return this;
+    }
+
+    public boolean isDirectIo() {
+        return directIo;
+    }
+
+    /**
+     * @param directIo true to write journal files with direct I/O, bypassing the page cache. Requires a file size
+     *                 multiple of the block size, and falls back to buffered I/O where direct I/O is not supported.
+     */
+    public JournalConfiguration setDirectIo(boolean directIo) {
+        this.directIo = directIo;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalConfiguration[directory=" + directory + ", fileSize=" + fileSize + ", minFiles=" + minFiles +
+                ", filePrefix=" + filePrefix + ", fileExtension=" + fileExtension + ", writeBufferSize=" +
+                writeBufferSize + ", syncWindowNanos=" + syncWindowNanos + ", syncWindowBytes=" + syncWindowBytes +
+                ", compactMinFiles=" + compactMinFiles + ", compactPercentage=" + compactPercentage +
+                ", compactBytesPerSecond=" + compactBytesPerSecond + ", recoveryParallelism=" + recoveryParallelism + ", directIo=" + directIo + ']';
+    }
+}
@@ -0,0 +1,67 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.DataConstants;
+
+/**
+ * Defines the on-disk layout of journal files and records.
+ * <p>
+ * A journal file starts with a header, followed by records until the first zeroed or invalid bytes:
+ * <pre>
+ *     header = [int magic][int formatVersion][long fileId]
+ *     record = [int recordSize][byte recordType][int fileId][long recordId][byte userRecordType]
+ *              [byte bodyType][int bodyLength (only if bodyType is BYTES)][body][int crc]
+ *     padding = [int paddingSize][byte PADDING_RECORD][int fileId][zeros]
+ *     batch = [BATCH_RECORD of id batchId, body [int count]][count records][COMMIT_RECORD of id batchId]
+ * </pre>
+ * {@code recordSize} counts the whole record, {@code bodyType} is a {@link DataConstants} type id, and {@code crc} is
+ * the CRC32C of every byte between {@code recordSize} and {@code crc}. The {@code fileId} of a record is the low
+ * 32 bits of the id of file it was written to, so leftovers of a previous use of a reused file are never recovered.
+ * <p>
+ * A padding fills the space up to a block boundary when the journal writes in direct I/O mode, it is skipped on
+ * recovery.
+ * <p>
+ * A batch is written contiguously into a single file, its records are recovered only if the commit record which ends
+ * it is valid; a batch torn by a crash marks the end of data in the file like a torn record.
+ */
+public final class JournalConstants {
+
+    public static final int FILE_MAGIC = 0x50474a4c; // "PGJL"
+    public static final int FORMAT_VERSION = 1;
+    public static final int FILE_HEADER_SIZE = DataConstants.SIZE_INT + DataConstants.SIZE_INT + DataConstants.SIZE_LONG;
+
+    public static final byte ADD_RECORD = 11;
+    public static final byte UPDATE_RECORD = 12;
+    public static final byte DELETE_RECORD = 13;
+    public static final byte PADDING_RECORD = 14;
+    public static final byte BATCH_RECORD = 15;
+    public static final byte COMMIT_RECORD = 16;
+
+    /**
+     * Size of the smallest padding, shorter gaps are filled up to the next block.
+     */
+    public static final int MIN_PADDING_SIZE = DataConstants.SIZE_INT + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT;
+
+    /**
+     * Size of record fields preceding the body length.
+     */
+    public static final int RECORD_HEADER_SIZE = DataConstants.SIZE_INT + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT +
+            DataConstants.SIZE_LONG + DataConstants.SIZE_BYTE + DataConstants.SIZE_BYTE;
+
+    public static final int RECORD_TRAILER_SIZE = DataConstants.SIZE_INT;
+
+    /**
+     * Size of the smallest record, a record without body.
+     */
+    public static final int MIN_RECORD_SIZE = RECORD_HEADER_SIZE + RECORD_TRAILER_SIZE;
+
+    private JournalConstants() {
+    }
+
+    /**
+     * @param bodyLength length of body, or -1 if the record has no body.
+     * @return total size of record.
+     */
+    public static int recordSize(final int bodyLength) {
+        return bodyLength < 0 ? MIN_RECORD_SIZE : MIN_RECORD_SIZE + DataConstants.SIZE_INT + bodyLength;
+    }
+}
@@ -0,0 +1,323 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.sun.nio.file.ExtendedOpenOption;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.WrappedByteBuf;
+import io.netty.util.internal.PlatformDependent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A preallocated journal file of a fixed size, identified by a file id which is unique and increasing within a
+ * journal.
+ * <p>
+ * A file also counts its records and how many of its add records are still live, which tells how much of the file a
+ * compaction would reclaim. The counters are maintained by the journal.
+ */
+public class JournalFile {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalFile.class);
+
+    public static final int DEFAULT_BLOCK_SIZE = 4096;
+
+    private final Path path;
+    private final long fileId;
+    private final int fileSize;
+
+    private FileChannel channel;
+    private int recordCount;
+    private int liveCount;
+
+    public JournalFile(final Path path, final long fileId, final int fileSize) {
+        this.path = path;
+        this.fileId = fileId;
+        this.fileSize = fileSize;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getFileId() {
+        return fileId;
+    }
+
+    public int getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * @return number of records in this file.
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * @return number of add records of this file which are not deleted.
+     */
+    public int getLiveCount() {
+        return liveCount;
+    }
+
+    void addRecord(final boolean live) {
+        recordCount++;
+        if (live) {
+            liveCount++;
+        }
+    }
+
+    void setCounts(final int recordCount, final int liveCount) {
+        this.recordCount = recordCount;
+        this.liveCount = liveCount;
+    }
+
+    void decrementLive() {
+        liveCount--;
+    }
+
+    public boolean isOpen() {
+        return channel != null;
+    }
+
+    public void open() throws PegasusException {
+        if (channel != null) {
+            return;
+        }
+
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new PegasusException("Could not open journal file " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    /**
+     * Opens this file for direct I/O, bypassing the page cache: buffers, positions and lengths of reads and writes must
+     * then be aligned to the block size. Falls back to a regular open if the platform or the file system does not
+     * support direct I/O (e.g. tmpfs).
+     *
+     * @return true if the file is opened for direct I/O.
+     * @throws PegasusException if the file could not be opened at all.
+     */
+    public boolean openDirect() throws PegasusException {
+        if (channel != null) {
+            throw new IllegalStateException("Journal file " + path + " is already open");
+        }
+
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE, ExtendedOpenOption.DIRECT);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("Direct I/O is not supported for journal file {}, falling back to buffered I/O: {}", path,
+                    e.toString());
+        }
+
+        open();
+        return false;
+    }
+
+    public void close() throws PegasusException {
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new PegasusException("Could not close journal file " + path, e, PegasusExceptionType.IO_ERROR);
+        } finally {
+            channel = null;
+        }
+    }
+
+    /**
+     * Writes the readable bytes of buffer at the given position of file. The indexes of buffer are not modified.
+     *
+     * @param buffer   buffer to write.
+     * @param position position of file to write.
+     * @throws PegasusException if an I/O error occurs.
+     */
+    public void write(final PegasusBuffer buffer, final int position) throws PegasusException {
+        if (position + buffer.readableBytes() > fileSize) {
+            throw new PegasusException("Writing " + buffer.readableBytes() + " bytes at " + position + " exceeds file size " +
+                    fileSize + " of " + path, PegasusExceptionType.JOURNAL_ERROR);
+        }
+
+        if (channel == null) {
+            throw new PegasusException("Journal file " + path + " is not open", PegasusExceptionType.IO_ERROR);
+        }
+
+        final ByteBuffer src = buffer.toBuffer();
+        try {
+            long pos = position;
+            while (src.hasRemaining()) {
+                pos += channel.write(src, pos);
+            }
+        } catch (IOException e) {
+            throw new PegasusException("Could not write journal file " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    /**
+     * Reads bytes of this file at position into the buffer, from its {@code writeIndex}.
+     *
+     * @param buffer   destination buffer.
+     * @param position position of file to read.
+     * @param len      number of bytes to read.
+     * @throws PegasusException if an I/O error occurs.
+     */
+    public void read(final PegasusBuffer buffer, final int position, final int len) throws PegasusException {
+        final ByteBuffer dest = buffer.toBuffer(buffer.writeIndex(), len);
+        try {
+            long pos = position;
+            while (dest.hasRemaining()) {
+                final int read = channel.read(dest, pos);
+                if (read < 0) {
+                    break;
+                }
+                pos += read;
+            }
+            buffer.writeIndex(buffer.writeIndex() + dest.position());
+        } catch (IOException e) {
+            throw new PegasusException("Could not read journal file " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    /**
+     * Flushes written data of this file to the storage device.
+     *
+     * @throws PegasusException if an I/O error occurs.
+     */
+    public void sync() throws PegasusException {
+        try {
+            channel.force(false);
+        } catch (IOException e) {
+            throw new PegasusException("Could not sync journal file " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    /**
+     * Reads the whole file into a new direct buffer, the caller must release it.
+     *
+     * @return buffer of file content, from position 0 to {@code writeIndex}.
+     * @throws PegasusException if an I/O error occurs.
+     */
+    public PegasusBuffer read() throws PegasusException {
+        final PegasusBuffer buffer = PegasusBuffers.directBuffer(fileSize);
+        try {
+            final ByteBuffer dest = buffer.toBuffer(0, fileSize);
+            long pos = 0;
+            while (dest.hasRemaining()) {
+                final int read = channel.read(dest, pos);
+                if (read < 0) {
+                    break;
+                }
+                pos += read;
+            }
+            buffer.writeIndex(dest.position());
+            return buffer;
+        } catch (IOException e) {
+            buffer.release();
+            throw new PegasusException("Could not read journal file " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    /**
+     * Maps the whole file into memory, read-only. The file does not need to be open. The file is unmapped once the
+     * returned buffer is released, rather than once it is garbage collected, so the mappings of a journal being
+     * recovered do not pile up; the buffer must not be used after it is released. A slice released last leaves the
+     * unmapping to the garbage collector.
+     *
+     * @return buffer of file content, from position 0 to {@code writeIndex}.
+     * @throws PegasusException if an I/O error occurs.
+     */
+    public PegasusBuffer map() throws PegasusException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return PegasusBuffers.wrappedBuffer(new MappedByteBuf(mapped));
+        } catch (IOException e) {
+            throw new PegasusException("Could not map journal file " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    /**
+     * @param dir directory of journal files.
+     * @return block size of the file system of directory, which aligns direct I/O.
+     */
+    static int blockSize(final Path dir) {
+        try {
+            final long blockSize = Files.getFileStore(dir).getBlockSize();
+            if (blockSize > 0 && blockSize <= 1 << 20 && Long.bitCount(blockSize) == 1) {
+                return (int) blockSize;
+            }
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.debug("Could not get block size of {}", dir, e);
+        }
+        return DEFAULT_BLOCK_SIZE;
+    }
+
+    /**
+     * Packs a file id and a position in file into a location, locations order as (fileId, position).
+     */
+    static long location(final long fileId, final int position) {
+        return (fileId << 32) | position;
+    }
+
+    static long fileIdOf(final long location) {
+        return location >>> 32;
+    }
+
+    static int positionOf(final long location) {
+        return (int) location;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalFile[fileId=" + fileId + ", path=" + path + ']';
+    }
+
+    /**
+     * Buffer of a mapped file, unmapping it once the last reference is released.
+     */
+    private static final class MappedByteBuf extends WrappedByteBuf {
+
+        private final MappedByteBuffer mapped;
+
+        private MappedByteBuf(final MappedByteBuffer mapped) {
+            super(Unpooled.wrappedBuffer(mapped));
+            this.mapped = mapped;
+        }
+
+        @Override
+        public boolean release() {
+            return unmapIfReleased(super.release());
+        }
+
+        @Override
+        public boolean release(final int decrement) {
+            return unmapIfReleased(super.release(decrement));
+        }
+
+        // netty has no replacement to free a buffer it did not allocate, e.g. a mapping
+        @SuppressWarnings("deprecation")
+        private boolean unmapIfReleased(final boolean released) {
+            if (released) {
+                PlatformDependent.freeDirectBuffer(mapped);
+            }
+            return released;
+        }
+    }
+}
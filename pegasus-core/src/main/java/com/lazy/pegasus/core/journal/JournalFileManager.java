@@ -0,0 +1,251 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates, lists and hands out the files of a journal directory. Files are named {@code <prefix>-<fileId>.<extension>}
+ * and are fully preallocated (filled with zeros) when created, so appends never grow a file.
+ * <p>
+ * Files created ahead of time are kept in a pool of free files and handed out in the order of their file ids.
+ */
+public class JournalFileManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournalFileManager.class);
+
+    private static final int ZERO_CHUNK = 1024 * 1024;
+
+    private final JournalConfiguration config;
+    private final Pattern namePattern;
+    private final AtomicLong nextFileId = new AtomicLong(1);
+    private final Deque<JournalFile> freeFiles = new ArrayDeque<>();
+
+    public JournalFileManager(final JournalConfiguration config) {
+        this.config = config;
+        this.namePattern = Pattern.compile(Pattern.quote(config.getFilePrefix()) + "-(\\d+)\\." +
+                Pattern.quote(config.getFileExtension()));
+    }
+
+    public JournalConfiguration getConfig() {
+        return config;
+    }
+
+    /**
+     * Lists the valid journal files of directory ordered by file id, the following created files get greater ids.
+     * Files with an invalid header (e.g. a crash while creating them) are skipped.
+     *
+     * @return journal files ordered by file id.
+     * @throws PegasusException if the directory could not be read.
+     */
+    public List<JournalFile> listFiles() throws PegasusException {
+        final Path dir = config.getDirectory();
+        final List<JournalFile> files = new ArrayList<>();
+        try {
+            Files.createDirectories(dir);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+                for (Path path : stream) {
+                    final Matcher matcher = namePattern.matcher(path.getFileName().toString());
+                    if (!matcher.matches()) {
+                        continue;
+                    }
+
+                    final long fileId = readFileId(path);
+                    if (fileId <= 0 || fileId != Long.parseLong(matcher.group(1))) {
+                        logger.warn("Skipping journal file {} with an invalid header", path);
+                        continue;
+                    }
+                    files.add(new JournalFile(path, fileId, (int) Files.size(path)));
+                }
+            }
+        } catch (IOException e) {
+            throw new PegasusException("Could not list journal directory " + dir, e, PegasusExceptionType.IO_ERROR);
+        }
+
+        files.sort(Comparator.comparingLong(JournalFile::getFileId));
+        if (!files.isEmpty()) {
+            advanceFileId(files.get(files.size() - 1).getFileId() + 1);
+        }
+        return files;
+    }
+
+    /**
+     * Adds a file without any record to the pool of free files. Files must be added in the order of their file ids.
+     *
+     * @param file empty file.
+     */
+    public synchronized void addFreeFile(final JournalFile file) {
+        freeFiles.addLast(file);
+    }
+
+    /**
+     * @return number of files in the pool of free files.
+     */
+    public synchronized int getFreeFilesCount() {
+        return freeFiles.size();
+    }
+
+    /**
+     * Creates free files until the pool has at least {@code count} files.
+     *
+     * @param count minimum number of free files.
+     * @throws PegasusException if a file could not be created.
+     */
+    public void preallocate(final int count) throws PegasusException {
+        while (getFreeFilesCount() < count) {
+            addFreeFile(createFile());
+        }
+    }
+
+    /**
+     * Takes a free file from pool, or creates a new one if the pool is empty. The returned file is open.
+     *
+     * @return a file without any record.
+     * @throws PegasusException if a file could not be created.
+     */
+    public JournalFile takeFile() throws PegasusException {
+        JournalFile file;
+        synchronized (this) {
+            file = freeFiles.pollFirst();
+        }
+        if (file == null) {
+            file = createFile();
+        }
+
+        file.open();
+        return file;
+    }
+
+    /**
+     * Creates a new preallocated file with the next file id.
+     *
+     * @return newly created file, not opened.
+     * @throws PegasusException if the file could not be created.
+     */
+    public JournalFile createFile() throws PegasusException {
+        final long fileId = nextFileId.getAndIncrement();
+        return createFile(fileId, pathOf(fileId));
+    }
+
+    /**
+     * Creates a preallocated file at path with the given file id in its header.
+     *
+     * @return newly created file, not opened.
+     */
+    JournalFile createFile(final long fileId, final Path path) throws PegasusException {
+        final Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        final int fileSize = config.getFileSize();
+
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            final ByteBuffer zeros = ByteBuffer.allocateDirect(Math.min(ZERO_CHUNK, fileSize));
+            long pos = 0;
+            while (pos < fileSize) {
+                zeros.clear().limit((int) Math.min(zeros.capacity(), fileSize - pos));
+                pos += channel.write(zeros, pos);
+            }
+
+            final PegasusBuffer header = PegasusBuffers.fixedBuffer(JournalConstants.FILE_HEADER_SIZE);
+            writeHeader(header, fileId);
+            channel.write(header.toBuffer(), 0);
+            channel.force(true);
+        } catch (IOException e) {
+            throw new PegasusException("Could not create journal file " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+
+        try {
+            Files.move(tmp, path);
+        } catch (IOException e) {
+            throw new PegasusException("Could not create journal file " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+
+        logger.debug("Created journal file {}", path);
+        return new JournalFile(path, fileId, fileSize);
+    }
+
+    /**
+     * Gives an unused file a new file id and adds it to the pool of free files. The records left in the file are never
+     * recovered as their file id no longer matches the file header.
+     *
+     * @param file closed file without any live record.
+     * @throws PegasusException if the file could not be renamed.
+     */
+    public void reuseFile(final JournalFile file) throws PegasusException {
+        final long fileId = nextFileId.getAndIncrement();
+        final Path path = pathOf(fileId);
+
+        try {
+            try (FileChannel channel = FileChannel.open(file.getPath(), StandardOpenOption.WRITE)) {
+                final PegasusBuffer header = PegasusBuffers.fixedBuffer(JournalConstants.FILE_HEADER_SIZE);
+                writeHeader(header, fileId);
+                channel.write(header.toBuffer(), 0);
+                channel.force(false);
+            }
+            Files.move(file.getPath(), path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new PegasusException("Could not reuse journal file " + file.getPath(), e, PegasusExceptionType.IO_ERROR);
+        }
+
+        logger.debug("Reused journal file {} as {}", file.getPath(), path);
+        addFreeFile(new JournalFile(path, fileId, file.getFileSize()));
+    }
+
+    /**
+     * @return path of file with the given file id.
+     */
+    Path pathOf(final long fileId) {
+        return config.getDirectory().resolve(config.getFilePrefix() + "-" + fileId + "." + config.getFileExtension());
+    }
+
+    /**
+     * Makes sure the next created file id is at least {@code fileId}.
+     */
+    void advanceFileId(final long fileId) {
+        nextFileId.accumulateAndGet(fileId, Math::max);
+    }
+
+    static void writeHeader(final PegasusBuffer buffer, final long fileId) {
+        buffer.writeInt(JournalConstants.FILE_MAGIC);
+        buffer.writeInt(JournalConstants.FORMAT_VERSION);
+        buffer.writeLong(fileId);
+    }
+
+    /**
+     * @return file id of header, or -1 if the header is invalid.
+     */
+    private static long readFileId(final Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer header = ByteBuffer.allocate(JournalConstants.FILE_HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) {
+                    return -1;
+                }
+            }
+            header.flip();
+            if (header.getInt() != JournalConstants.FILE_MAGIC || header.getInt() != JournalConstants.FORMAT_VERSION) {
+                return -1;
+            }
+            return header.getLong();
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+
+/**
+ * Scans the records of a journal file loaded in a {@link PegasusBuffer}, from the first record until the first
+ * zeroed, torn or corrupted record, which marks the end of data in the file. Paddings are skipped, and the records of
+ * a batch are only visited once the commit record of the batch is scanned.
+ */
+public final class JournalFileScanner {
+
+    /**
+     * Receives records found by {@link #scan(PegasusBuffer, long, RecordVisitor)}, the body is passed as a range of
+     * the scanned buffer so a visitor decides whether it needs a copy.
+     */
+    @FunctionalInterface
+    public interface RecordVisitor {
+
+        /**
+         * @param recordType     type of record, defined in {@link JournalConstants}.
+         * @param id             id of record.
+         * @param userRecordType type of record defined by the user of journal.
+         * @param content        scanned buffer.
+         * @param bodyIndex      index of body in scanned buffer.
+         * @param bodyLength     length of body, -1 if the record has no body.
+         * @param position       position of record in file.
+         * @param size           size of record.
+         */
+        void onRecord(byte recordType, long id, byte userRecordType, PegasusBuffer content, int bodyIndex, int bodyLength,
+                      int position, int size);
+    }
+
+    private static final int INVALID = Integer.MIN_VALUE;
+
+    /**
+     * Offsets of the record fields from the position of record.
+     */
+    private static final int ID_OFFSET = DataConstants.SIZE_INT + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT;
+    private static final int USER_RECORD_TYPE_OFFSET = ID_OFFSET + DataConstants.SIZE_LONG;
+    private static final int BODY_TYPE_OFFSET = USER_RECORD_TYPE_OFFSET + DataConstants.SIZE_BYTE;
+    private static final int BODY_OFFSET = BODY_TYPE_OFFSET + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT;
+
+    private JournalFileScanner() {
+    }
+
+    /**
+     * @param content content of whole file, from position 0 to {@code writeIndex}.
+     * @param fileId  id of file, read from the file header.
+     * @param visitor visitor of valid records.
+     * @return position after the last valid record.
+     */
+    public static int scan(final PegasusBuffer content, final long fileId, final RecordVisitor visitor) {
+        final int limit = content.writeIndex();
+        int position = JournalConstants.FILE_HEADER_SIZE;
+
+        // records of a batch are visited once its commit record is found
+        int batchStart = -1;
+        long batchId = 0;
+        int batchCount = 0;
+        int batchRecords = 0;
+
+        while (position + JournalConstants.MIN_PADDING_SIZE <= limit) {
+            final int size = content.getInt(position);
+            final byte recordType = content.getByte(position + DataConstants.SIZE_INT);
+
+            if (recordType == JournalConstants.PADDING_RECORD) {
+                if (size < JournalConstants.MIN_PADDING_SIZE || size > limit - position ||
+                        content.getInt(position + DataConstants.SIZE_INT + DataConstants.SIZE_BYTE) != (int) fileId) {
+                    break;
+                }
+                position += size;
+                continue;
+            }
+
+            final int bodyLength = validate(content, limit, position, fileId);
+            if (bodyLength == INVALID) {
+                break;
+            }
+
+            final long id = content.getLong(position + ID_OFFSET);
+            if (recordType == JournalConstants.BATCH_RECORD) {
+                if (batchStart >= 0 || bodyLength != DataConstants.SIZE_INT) {
+                    break;
+                }
+                batchStart = position;
+                batchId = id;
+                batchCount = content.getInt(position + BODY_OFFSET);
+                batchRecords = 0;
+            } else if (recordType == JournalConstants.COMMIT_RECORD) {
+                if (batchStart < 0 || id != batchId || batchRecords != batchCount) {
+                    break;
+                }
+                visitBatch(content, batchStart, position, visitor);
+                batchStart = -1;
+            } else if (batchStart >= 0) {
+                batchRecords++;
+            } else {
+                visit(content, position, size, bodyLength, visitor);
+            }
+            position += size;
+        }
+
+        return batchStart >= 0 ? batchStart : position;
+    }
+
+    /**
+     * Checks the record at position, which is not a padding.
+     *
+     * @return length of body, -1 if the record has no body, or {@link #INVALID} if the record is not valid.
+     */
+    private static int validate(final PegasusBuffer content, final int limit, final int position, final long fileId) {
+        final int size = content.getInt(position);
+        final byte recordType = content.getByte(position + DataConstants.SIZE_INT);
+        if (size < JournalConstants.MIN_RECORD_SIZE || size > limit - position || !isRecordType(recordType) ||
+                content.getInt(position + DataConstants.SIZE_INT + DataConstants.SIZE_BYTE) != (int) fileId) {
+            return INVALID;
+        }
+
+        final int crcIndex = position + size - JournalConstants.RECORD_TRAILER_SIZE;
+        final int crc = JournalRecord.checksum(content, position + DataConstants.SIZE_INT, crcIndex - position - DataConstants.SIZE_INT);
+        if (crc != content.getInt(crcIndex)) {
+            return INVALID;
+        }
+
+        int bodyLength = -1;
+        if (content.getByte(position + BODY_TYPE_OFFSET) == DataConstants.BYTES) {
+            bodyLength = content.getInt(position + BODY_TYPE_OFFSET + DataConstants.SIZE_BYTE);
+        }
+        return JournalConstants.recordSize(bodyLength) == size ? bodyLength : INVALID;
+    }
+
+    private static boolean isRecordType(final byte recordType) {
+        return recordType >= JournalConstants.ADD_RECORD && recordType <= JournalConstants.DELETE_RECORD ||
+                recordType == JournalConstants.BATCH_RECORD || recordType == JournalConstants.COMMIT_RECORD;
+    }
+
+    /**
+     * Visits the records of a committed batch, they were all validated by the scan.
+     */
+    private static void visitBatch(final PegasusBuffer content, final int batchStart, final int commitPosition,
+                                   final RecordVisitor visitor) {
+        int position = batchStart + content.getInt(batchStart);
+        while (position < commitPosition) {
+            final int size = content.getInt(position);
+            if (content.getByte(position + DataConstants.SIZE_INT) != JournalConstants.PADDING_RECORD) {
+                int bodyLength = -1;
+                if (content.getByte(position + BODY_TYPE_OFFSET) == DataConstants.BYTES) {
+                    bodyLength = content.getInt(position + BODY_TYPE_OFFSET + DataConstants.SIZE_BYTE);
+                }
+                visit(content, position, size, bodyLength, visitor);
+            }
+            position += size;
+        }
+    }
+
+    private static void visit(final PegasusBuffer content, final int position, final int size, final int bodyLength,
+                              final RecordVisitor visitor) {
+        final byte recordType = content.getByte(position + DataConstants.SIZE_INT);
+        final long id = content.getLong(position + ID_OFFSET);
+        final byte userRecordType = content.getByte(position + USER_RECORD_TYPE_OFFSET);
+        final int bodyIndex = bodyLength < 0 ? position + BODY_TYPE_OFFSET + DataConstants.SIZE_BYTE : position + BODY_OFFSET;
+        visitor.onRecord(recordType, id, userRecordType, content, bodyIndex, bodyLength, position, size);
+    }
+}
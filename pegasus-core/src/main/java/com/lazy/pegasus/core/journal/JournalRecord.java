@@ -0,0 +1,138 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+
+import java.util.zip.CRC32C;
+
+/**
+ * A record to append into the journal, see {@link JournalConstants} for its layout.
+ */
+public final class JournalRecord {
+
+    private final byte recordType;
+    private final long id;
+    private final byte userRecordType;
+    private final PegasusBuffer body;
+
+    private JournalRecord(byte recordType, long id, byte userRecordType, PegasusBuffer body) {
+        this.recordType = recordType;
+        this.id = id;
+        this.userRecordType = userRecordType;
+        this.body = body;
+    }
+
+    /**
+     * @param id             id of record.
+     * @param userRecordType type of record defined by the user of journal.
+     * @param body           body of record, its readable bytes are appended.
+     * @return an add record.
+     */
+    public static JournalRecord add(long id, byte userRecordType, PegasusBuffer body) {
+        return new JournalRecord(JournalConstants.ADD_RECORD, id, userRecordType, body);
+    }
+
+    /**
+     * @param id             id of a previously added record.
+     * @param userRecordType type of record defined by the user of journal.
+     * @param body           body of record, its readable bytes are appended.
+     * @return an update record.
+     */
+    public static JournalRecord update(long id, byte userRecordType, PegasusBuffer body) {
+        return new JournalRecord(JournalConstants.UPDATE_RECORD, id, userRecordType, body);
+    }
+
+    /**
+     * @param id id of a previously added record.
+     * @return a delete record.
+     */
+    public static JournalRecord delete(long id) {
+        return new JournalRecord(JournalConstants.DELETE_RECORD, id, (byte) 0, null);
+    }
+
+    /**
+     * @param batchId id of batch.
+     * @param count   number of records of batch.
+     * @return the record starting a batch.
+     */
+    static JournalRecord batch(long batchId, int count) {
+        final PegasusBuffer body = PegasusBuffers.fixedBuffer(DataConstants.SIZE_INT);
+        body.writeInt(count);
+        return new JournalRecord(JournalConstants.BATCH_RECORD, batchId, (byte) 0, body);
+    }
+
+    /**
+     * @param batchId id of batch.
+     * @return the record committing a batch.
+     */
+    static JournalRecord commit(long batchId) {
+        return new JournalRecord(JournalConstants.COMMIT_RECORD, batchId, (byte) 0, null);
+    }
+
+    public byte getRecordType() {
+        return recordType;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public byte getUserRecordType() {
+        return userRecordType;
+    }
+
+    public PegasusBuffer getBody() {
+        return body;
+    }
+
+    /**
+     * @return number of bytes of the encoded record.
+     */
+    public int encodeSize() {
+        return JournalConstants.recordSize(body == null ? -1 : body.readableBytes());
+    }
+
+    /**
+     * Encodes this record at the {@code writeIndex} of destination. The indexes of body are not modified.
+     *
+     * @param dest   destination buffer.
+     * @param fileId id of file the record is written to.
+     */
+    public void encode(final PegasusBuffer dest, final long fileId) {
+        final int start = dest.writeIndex();
+        dest.writeInt(encodeSize());
+        dest.writeByte(recordType);
+        dest.writeInt((int) fileId);
+        dest.writeLong(id);
+        dest.writeByte(userRecordType);
+        if (body == null) {
+            dest.writeByte((byte) DataConstants.NULL);
+        } else {
+            final int len = body.readableBytes();
+            dest.writeByte((byte) DataConstants.BYTES);
+            dest.writeInt(len);
+            dest.writeBytes(body, body.readIndex(), len);
+        }
+
+        dest.writeInt(checksum(dest, start + DataConstants.SIZE_INT, dest.writeIndex() - start - DataConstants.SIZE_INT));
+    }
+
+    /**
+     * @param buf   buffer to check.
+     * @param index index to start.
+     * @param len   number of bytes.
+     * @return CRC32C of bytes in range {@code [index, index + len)}.
+     */
+    static int checksum(final PegasusBuffer buf, final int index, final int len) {
+        final CRC32C crc = new CRC32C();
+        crc.update(buf.toBuffer(index, len));
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return "JournalRecord[type=" + recordType + ", id=" + id + ", userRecordType=" + userRecordType + ", size=" +
+                encodeSize() + ']';
+    }
+}
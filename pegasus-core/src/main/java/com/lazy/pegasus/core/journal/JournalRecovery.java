@@ -0,0 +1,207 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Scans journal files in parallel on a {@link ForkJoinPool} and hands the scanned files over in file id order.
+ * <p>
+ * Each file is memory-mapped and scanned by a worker, which validates the CRC32C of every record and copies the bodies
+ * out of the mapping. Records cancel each other across files, so the scanned files are merged by the caller in order,
+ * on the calling thread. Only a window of files ahead of the merge is scanned at a time, to bound the memory held by
+ * the scanned bodies.
+ */
+final class JournalRecovery {
+
+    /**
+     * Merges a scanned file, called in file id order.
+     */
+    @FunctionalInterface
+    interface ScannedFileConsumer {
+
+        void accept(ScannedFile file) throws PegasusException;
+    }
+
+    /**
+     * Records of a scanned file, in the order they were appended.
+     */
+    static final class ScannedFile {
+
+        private final JournalFile file;
+        private int end;
+        private int count;
+        private byte[] recordTypes = new byte[16];
+        private long[] ids = new long[16];
+        private byte[] userRecordTypes = new byte[16];
+        private int[] positions = new int[16];
+        private byte[][] bodies = new byte[16][];
+
+        private ScannedFile(final JournalFile file) {
+            this.file = file;
+        }
+
+        JournalFile getFile() {
+            return file;
+        }
+
+        /**
+         * @return position after the last valid record.
+         */
+        int getEnd() {
+            return end;
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        byte getRecordType(final int index) {
+            return recordTypes[index];
+        }
+
+        long getId(final int index) {
+            return ids[index];
+        }
+
+        byte getUserRecordType(final int index) {
+            return userRecordTypes[index];
+        }
+
+        int getPosition(final int index) {
+            return positions[index];
+        }
+
+        /**
+         * @return body of record, null if the record has no body.
+         */
+        byte[] getBody(final int index) {
+            return bodies[index];
+        }
+
+        private void add(final byte recordType, final long id, final byte userRecordType, final int position,
+                         final byte[] body) {
+            if (count == ids.length) {
+                final int capacity = count << 1;
+                recordTypes = Arrays.copyOf(recordTypes, capacity);
+                ids = Arrays.copyOf(ids, capacity);
+                userRecordTypes = Arrays.copyOf(userRecordTypes, capacity);
+                positions = Arrays.copyOf(positions, capacity);
+                bodies = Arrays.copyOf(bodies, capacity);
+            }
+            recordTypes[count] = recordType;
+            ids[count] = id;
+            userRecordTypes[count] = userRecordType;
+            positions[count] = position;
+            bodies[count] = body;
+            count++;
+        }
+    }
+
+    private final int parallelism;
+
+    private long bytes;
+    private long records;
+
+    /**
+     * @param parallelism number of threads scanning files.
+     */
+    JournalRecovery(final int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("Parallelism must be positive, but " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Scans all files and hands them over to consumer in the order of list.
+     *
+     * @param files    files ordered by file id.
+     * @param consumer consumer of scanned files.
+     * @throws PegasusException if a file could not be read, or the consumer failed.
+     */
+    void recover(final List<JournalFile> files, final ScannedFileConsumer consumer) throws PegasusException {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        final Deque<ForkJoinTask<ScannedFile>> window = new ArrayDeque<>();
+        final int windowSize = parallelism << 1;
+        int next = 0;
+
+        try {
+            while (next < files.size() || !window.isEmpty()) {
+                while (next < files.size() && window.size() < windowSize) {
+                    final JournalFile file = files.get(next++);
+                    window.addLast(pool.submit(() -> scan(file)));
+                }
+
+                final ScannedFile scanned = await(window.pollFirst());
+                bytes += scanned.getEnd() - JournalConstants.FILE_HEADER_SIZE;
+                records += scanned.getCount();
+                consumer.accept(scanned);
+            }
+        } finally {
+            for (ForkJoinTask<ScannedFile> task : window) {
+                task.cancel(false);
+            }
+            pool.shutdown();
+        }
+    }
+
+    int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return number of bytes of valid records scanned so far.
+     */
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return number of valid records scanned so far.
+     */
+    long getRecords() {
+        return records;
+    }
+
+    private static ScannedFile scan(final JournalFile file) throws PegasusException {
+        final ScannedFile scanned = new ScannedFile(file);
+        final PegasusBuffer content = file.map();
+        try {
+            scanned.end = JournalFileScanner.scan(content, file.getFileId(),
+                    (recordType, id, userRecordType, buf, bodyIndex, bodyLength, position, size) -> {
+                        byte[] body = null;
+                        if (bodyLength >= 0) {
+                            body = new byte[bodyLength];
+                            buf.getBytes(bodyIndex, body);
+                        }
+                        scanned.add(recordType, id, userRecordType, position, body);
+                    });
+        } finally {
+            content.release();
+        }
+        return scanned;
+    }
+
+    private static ScannedFile await(final ForkJoinTask<ScannedFile> task) throws PegasusException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof PegasusException pe) {
+                throw pe;
+            }
+            throw new PegasusException("Could not scan journal file", e.getCause(), PegasusExceptionType.JOURNAL_ERROR);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PegasusException("Interrupted while recovering journal", e, PegasusExceptionType.JOURNAL_ERROR);
+        }
+    }
+}
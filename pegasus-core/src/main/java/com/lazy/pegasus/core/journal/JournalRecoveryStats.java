@@ -0,0 +1,79 @@
+package com.lazy.pegasus.core.journal;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Metrics of the recovery of a journal on {@link Journal#load()}.
+ */
+public final class JournalRecoveryStats {
+
+    private final int files;
+    private final long bytes;
+    private final long records;
+    private final long liveRecords;
+    private final long durationNanos;
+    private final int parallelism;
+
+    public JournalRecoveryStats(int files, long bytes, long records, long liveRecords, long durationNanos, int parallelism) {
+        this.files = files;
+        this.bytes = bytes;
+        this.records = records;
+        this.liveRecords = liveRecords;
+        this.durationNanos = durationNanos;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return number of scanned files.
+     */
+    public int getFiles() {
+        return files;
+    }
+
+    /**
+     * @return number of bytes of valid records scanned.
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return number of valid records scanned, including updates and deletes.
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return number of live records after recovery.
+     */
+    public long getLiveRecords() {
+        return liveRecords;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    /**
+     * @return number of threads which scanned the files.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public long getBytesPerSecond() {
+        return durationNanos == 0 ? 0 : (long) (bytes * 1e9 / durationNanos);
+    }
+
+    public long getRecordsPerSecond() {
+        return durationNanos == 0 ? 0 : (long) (records * 1e9 / durationNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "JournalRecoveryStats[files=" + files + ", bytes=" + bytes + ", records=" + records + ", liveRecords=" +
+                liveRecords + ", duration=" + TimeUnit.NANOSECONDS.toMillis(durationNanos) + "ms, bytesPerSecond=" +
+                getBytesPerSecond() + ", recordsPerSecond=" + getRecordsPerSecond() + ", parallelism=" + parallelism + ']';
+    }
+}
@@ -0,0 +1,55 @@
+package com.lazy.pegasus.core.journal;
+
+import java.util.Arrays;
+
+/**
+ * A record recovered from the journal.
+ */
+public final class RecordInfo {
+
+    private final long id;
+    private final byte userRecordType;
+    private final byte[] data;
+    private final boolean update;
+    private final long fileId;
+
+    public RecordInfo(long id, byte userRecordType, byte[] data, boolean update, long fileId) {
+        this.id = id;
+        this.userRecordType = userRecordType;
+        this.data = data;
+        this.update = update;
+        this.fileId = fileId;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public byte getUserRecordType() {
+        return userRecordType;
+    }
+
+    /**
+     * @return body of record, null if the record has no body.
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return true if this is an update of a previously added record.
+     */
+    public boolean isUpdate() {
+        return update;
+    }
+
+    public long getFileId() {
+        return fileId;
+    }
+
+    @Override
+    public String toString() {
+        return "RecordInfo[id=" + id + ", userRecordType=" + userRecordType + ", update=" + update + ", fileId=" +
+                fileId + ", data=" + (data == null ? "null" : Arrays.toString(Arrays.copyOf(data, Math.min(16, data.length)))) + ']';
+    }
+}
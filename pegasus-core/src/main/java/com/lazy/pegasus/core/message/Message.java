@@ -0,0 +1,256 @@
+package com.lazy.pegasus.core.message;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.RandomAccessBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+
+/**
+ * A message kept in its encoded form. Fields are read in place from the encoded buffer, which is laid out as:
+ * <pre>
+ *     [int encodeSize][long messageId][byte flags][byte priority][long timestamp][long expiration]
+ *     [long scheduledDeliveryTime][SpanString address][properties][int bodyLength][body]
+ * </pre>
+ * {@code encodeSize} counts all bytes of the message including itself, the properties block is encoded as described
+ * by {@link MessageProperties}. The fixed header can be read from any {@link RandomAccessBuffer} holding an encoded
+ * message without decoding it, e.g. {@link #priorityOf(RandomAccessBuffer, int)}.
+ * <p>
+ * The message id is the only field which can be changed after encoding, it is set in place when the message is
+ * routed.
+ */
+public final class Message {
+
+    public static final int ENCODE_SIZE_OFFSET = 0;
+    public static final int MESSAGE_ID_OFFSET = 4;
+    public static final int FLAGS_OFFSET = 12;
+    public static final int PRIORITY_OFFSET = 13;
+    public static final int TIMESTAMP_OFFSET = 14;
+    public static final int EXPIRATION_OFFSET = 22;
+    public static final int SCHEDULED_DELIVERY_TIME_OFFSET = 30;
+    public static final int HEADER_SIZE = 38;
+
+    public static final byte FLAG_DURABLE = 1;
+
+    public static final byte MIN_PRIORITY = 0;
+    public static final byte MAX_PRIORITY = 9;
+    public static final byte DEFAULT_PRIORITY = 4;
+
+    /**
+     * Estimated heap size of a message object, not counting its buffer.
+     */
+    public static final int MEMORY_OVERHEAD = 64;
+
+    private final PegasusBuffer buffer;
+    private final int propertiesIndex;
+    private final int bodyIndex;
+    private SpanString address;
+
+    private Message(final PegasusBuffer buffer) {
+        this.buffer = buffer;
+        this.propertiesIndex = HEADER_SIZE + DataConstants.SIZE_INT + buffer.getInt(HEADER_SIZE);
+        this.bodyIndex = propertiesIndex + DataConstants.SIZE_INT + buffer.getInt(propertiesIndex);
+    }
+
+    /**
+     * Wraps an encoded message, the message takes over the buffer.
+     *
+     * @param buffer buffer holding a single encoded message at index 0.
+     * @return message reading from buffer.
+     */
+    public static Message wrap(final PegasusBuffer buffer) {
+        final int encodeSize = buffer.getInt(ENCODE_SIZE_OFFSET);
+        if (encodeSize < HEADER_SIZE || encodeSize > buffer.capacity()) {
+            throw new IllegalArgumentException("Invalid encoded message size " + encodeSize);
+        }
+        return new Message(buffer);
+    }
+
+    /**
+     * Reads an encoded message at the {@code readIndex} of buffer and advances it, the message gets its own copy.
+     *
+     * @param buffer buffer of encoded messages.
+     * @return decoded message.
+     */
+    public static Message decode(final PegasusBuffer buffer) {
+        final int encodeSize = buffer.getInt(buffer.readIndex());
+        if (encodeSize < HEADER_SIZE || encodeSize > buffer.readableBytes()) {
+            throw new IllegalArgumentException("Invalid encoded message size " + encodeSize);
+        }
+        final Message message = new Message(buffer.copy(buffer.readIndex(), encodeSize));
+        buffer.skipBytes(encodeSize);
+        return message;
+    }
+
+    /**
+     * @param buf   buffer holding an encoded message.
+     * @param index index of encoded message.
+     * @return priority of message.
+     */
+    public static byte priorityOf(final RandomAccessBuffer buf, final int index) {
+        return buf.getByte(index + PRIORITY_OFFSET);
+    }
+
+    /**
+     * @param buf   buffer holding an encoded message.
+     * @param index index of encoded message.
+     * @return number of bytes of encoded message.
+     */
+    public static int encodeSizeOf(final RandomAccessBuffer buf, final int index) {
+        return buf.getInt(index + ENCODE_SIZE_OFFSET);
+    }
+
+    public long getMessageId() {
+        return buffer.getLong(MESSAGE_ID_OFFSET);
+    }
+
+    public Message setMessageId(final long messageId) {
+        buffer.setLong(MESSAGE_ID_OFFSET, messageId);
+        return this;
+    }
+
+    public boolean isDurable() {
+        return (buffer.getByte(FLAGS_OFFSET) & FLAG_DURABLE) != 0;
+    }
+
+    public byte getPriority() {
+        return buffer.getByte(PRIORITY_OFFSET);
+    }
+
+    public long getTimestamp() {
+        return buffer.getLong(TIMESTAMP_OFFSET);
+    }
+
+    /**
+     * @return expiration time in milliseconds, 0 if message never expires.
+     */
+    public long getExpiration() {
+        return buffer.getLong(EXPIRATION_OFFSET);
+    }
+
+    /**
+     * @return time in milliseconds the message is delivered at, 0 if message is delivered at once.
+     */
+    public long getScheduledDeliveryTime() {
+        return buffer.getLong(SCHEDULED_DELIVERY_TIME_OFFSET);
+    }
+
+    /**
+     * @param now time in milliseconds.
+     * @return true if message has expired at {@code now}.
+     */
+    public boolean isExpired(final long now) {
+        final long expiration = getExpiration();
+        return expiration != 0 && expiration <= now;
+    }
+
+    public SpanString getAddress() {
+        if (address == null) {
+            final byte[] data = new byte[buffer.getInt(HEADER_SIZE)];
+            buffer.getBytes(HEADER_SIZE + DataConstants.SIZE_INT, data);
+            address = SpanString.of(data);
+        }
+        return address;
+    }
+
+    /**
+     * @param key key of property.
+     * @return true if message has the property, without allocation.
+     */
+    public boolean containsProperty(final SpanString key) {
+        return MessageProperties.find(buffer, propertiesIndex, key) >= 0;
+    }
+
+    /**
+     * @param key key of property.
+     * @return index of the type of property value in buffer, or -1 if message does not have the property.
+     */
+    public int propertyIndex(final SpanString key) {
+        return MessageProperties.find(buffer, propertiesIndex, key);
+    }
+
+    /**
+     * @param key key of property.
+     * @return value of property, or null if message does not have the property.
+     */
+    public Object getProperty(final SpanString key) {
+        final int index = MessageProperties.find(buffer, propertiesIndex, key);
+        return index < 0 ? null : MessageProperties.readValue(buffer, index);
+    }
+
+    /**
+     * @return index of the properties block in buffer, see {@link MessageProperties}.
+     */
+    public int getPropertiesIndex() {
+        return propertiesIndex;
+    }
+
+    public int getPropertiesCount() {
+        return buffer.getInt(propertiesIndex + DataConstants.SIZE_INT);
+    }
+
+    /**
+     * Visits all properties of message.
+     */
+    public void forEachProperty(final MessageProperties.PropertyConsumer consumer) {
+        MessageProperties.forEach(buffer, propertiesIndex, consumer);
+    }
+
+    public int getBodySize() {
+        return buffer.getInt(bodyIndex);
+    }
+
+    /**
+     * @return a slice of body, sharing content with message.
+     */
+    public PegasusBuffer getBody() {
+        return buffer.slice(bodyIndex + DataConstants.SIZE_INT, getBodySize());
+    }
+
+    public int getEncodeSize() {
+        return buffer.getInt(ENCODE_SIZE_OFFSET);
+    }
+
+    /**
+     * @return buffer holding the encoded message at index 0.
+     */
+    public PegasusBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return estimated number of bytes held in memory by message.
+     */
+    public int getMemoryEstimate() {
+        return buffer.capacity() + MEMORY_OVERHEAD;
+    }
+
+    /**
+     * Writes the encoded message at the {@code writeIndex} of dest.
+     */
+    public void encode(final PegasusBuffer dest) {
+        dest.writeBytes(buffer, 0, getEncodeSize());
+    }
+
+    /**
+     * Adds {@code increment} references to the buffer of message, each released by a {@link #release()}.
+     */
+    public Message retain(final int increment) {
+        buffer.retain(increment);
+        return this;
+    }
+
+    public void release() {
+        buffer.release();
+    }
+
+    @Override
+    public String toString() {
+        return "Message{" +
+                "messageId=" + getMessageId() +
+                ", address=" + getAddress() +
+                ", durable=" + isDurable() +
+                ", priority=" + getPriority() +
+                ", encodeSize=" + getEncodeSize() +
+                '}';
+    }
+}
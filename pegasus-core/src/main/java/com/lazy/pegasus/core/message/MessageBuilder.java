@@ -0,0 +1,139 @@
+package com.lazy.pegasus.core.message;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Builds an encoded {@link Message}.
+ */
+public final class MessageBuilder {
+
+    private final Map<SpanString, Object> properties = new LinkedHashMap<>();
+    private SpanString address;
+    private long messageId;
+    private boolean durable;
+    private byte priority = Message.DEFAULT_PRIORITY;
+    private long timestamp = System.currentTimeMillis();
+    private long expiration;
+    private long scheduledDeliveryTime;
+    private byte[] body = new byte[0];
+
+    private MessageBuilder() {
+    }
+
+    public static MessageBuilder builder() {
+        return new MessageBuilder();
+    }
+
+    public MessageBuilder address(final SpanString address) {
+        this.address = Objects.requireNonNull(address, "address");
+        return this;
+    }
+
+    public MessageBuilder address(final String address) {
+        return address(SpanString.of(address));
+    }
+
+    public MessageBuilder messageId(final long messageId) {
+        this.messageId = messageId;
+        return this;
+    }
+
+    public MessageBuilder durable(final boolean durable) {
+        this.durable = durable;
+        return this;
+    }
+
+    public MessageBuilder priority(final int priority) {
+        if (priority < Message.MIN_PRIORITY || priority > Message.MAX_PRIORITY) {
+            throw new IllegalArgumentException("Priority must be in range [" + Message.MIN_PRIORITY + "," +
+                    Message.MAX_PRIORITY + "], but " + priority);
+        }
+        this.priority = (byte) priority;
+        return this;
+    }
+
+    public MessageBuilder timestamp(final long timestamp) {
+        this.timestamp = timestamp;
+        return this;
+    }
+
+    /**
+     * @param expiration expiration time in milliseconds, 0 if message never expires.
+     */
+    public MessageBuilder expiration(final long expiration) {
+        if (expiration < 0) {
+            throw new IllegalArgumentException("Expiration must not be negative, but " + expiration);
+        }
+        this.expiration = expiration;
+        return this;
+    }
+
+    public MessageBuilder scheduledDeliveryTime(final long scheduledDeliveryTime) {
+        if (scheduledDeliveryTime < 0) {
+            throw new IllegalArgumentException("Scheduled delivery time must not be negative, but " +
+                    scheduledDeliveryTime);
+        }
+        this.scheduledDeliveryTime = scheduledDeliveryTime;
+        return this;
+    }
+
+    /**
+     * @param value value of property, see {@link MessageProperties#typeOf(Object)} for supported types.
+     */
+    public MessageBuilder property(final SpanString key, final Object value) {
+        MessageProperties.typeOf(value);
+        properties.put(Objects.requireNonNull(key, "key"), value);
+        return this;
+    }
+
+    public MessageBuilder property(final String key, final Object value) {
+        return property(SpanString.of(key), value instanceof String s ? SpanString.of(s) : value);
+    }
+
+    public MessageBuilder body(final byte[] body) {
+        this.body = Objects.requireNonNull(body, "body");
+        return this;
+    }
+
+    public Message build() {
+        if (address == null) {
+            throw new IllegalStateException("Address is not set");
+        }
+
+        int propertiesLength = DataConstants.SIZE_INT;
+        for (Map.Entry<SpanString, Object> entry : properties.entrySet()) {
+            propertiesLength += entry.getKey().sizeof() + DataConstants.SIZE_BYTE +
+                    MessageProperties.sizeOfValue(entry.getValue());
+        }
+        final int encodeSize = Message.HEADER_SIZE + address.sizeof() + DataConstants.SIZE_INT + propertiesLength +
+                DataConstants.SIZE_INT + body.length;
+
+        final PegasusBuffer buf = PegasusBuffers.fixedBuffer(encodeSize);
+        buf.writeInt(encodeSize);
+        buf.writeLong(messageId);
+        buf.writeByte(durable ? Message.FLAG_DURABLE : 0);
+        buf.writeByte(priority);
+        buf.writeLong(timestamp);
+        buf.writeLong(expiration);
+        buf.writeLong(scheduledDeliveryTime);
+        buf.writeSpanString(address);
+
+        buf.writeInt(propertiesLength);
+        buf.writeInt(properties.size());
+        for (Map.Entry<SpanString, Object> entry : properties.entrySet()) {
+            buf.writeSpanString(entry.getKey());
+            MessageProperties.writeValue(buf, entry.getValue());
+        }
+
+        buf.writeInt(body.length);
+        buf.writeBytes(body);
+        return Message.wrap(buf);
+    }
+}
@@ -0,0 +1,199 @@
+package com.lazy.pegasus.core.message;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+
+/**
+ * Encoding of message properties. A properties block is laid out as:
+ * <pre>
+ *     [int blockLength][int count] then count times [SpanString key][byte type][value]
+ * </pre>
+ * {@code blockLength} counts the bytes following it, {@code type} is a {@link DataConstants} type id and the value is
+ * encoded as by {@link PegasusBuffer} for that type: BYTES as {@code [int length][bytes]}, STRING as a
+ * {@link SpanString}, NULL without any value.
+ * <p>
+ * Properties are read in place from an encoded block, a lookup compares keys against the encoded bytes and allocates
+ * nothing.
+ */
+public final class MessageProperties {
+
+    private MessageProperties() {
+    }
+
+    /**
+     * @param value value of property, one of null, Boolean, Byte, Short, Character, Integer, Long, Float, Double,
+     *              SpanString or byte[].
+     * @return type id of value.
+     */
+    public static byte typeOf(final Object value) {
+        if (value == null) {
+            return DataConstants.NULL;
+        } else if (value instanceof Boolean) {
+            return DataConstants.BOOLEAN;
+        } else if (value instanceof Byte) {
+            return DataConstants.BYTE;
+        } else if (value instanceof Short) {
+            return DataConstants.SHORT;
+        } else if (value instanceof Character) {
+            return DataConstants.CHAR;
+        } else if (value instanceof Integer) {
+            return DataConstants.INT;
+        } else if (value instanceof Long) {
+            return DataConstants.LONG;
+        } else if (value instanceof Float) {
+            return DataConstants.FLOAT;
+        } else if (value instanceof Double) {
+            return DataConstants.DOUBLE;
+        } else if (value instanceof SpanString) {
+            return DataConstants.STRING;
+        } else if (value instanceof byte[]) {
+            return DataConstants.BYTES;
+        }
+        throw new IllegalArgumentException("Unsupported property type " + value.getClass().getName());
+    }
+
+    /**
+     * @param value value of property.
+     * @return number of bytes of encoded value, without its type.
+     */
+    public static int sizeOfValue(final Object value) {
+        return switch (typeOf(value)) {
+            case DataConstants.NULL -> 0;
+            case DataConstants.BOOLEAN, DataConstants.BYTE -> DataConstants.SIZE_BYTE;
+            case DataConstants.SHORT -> DataConstants.SIZE_SHORT;
+            case DataConstants.CHAR -> DataConstants.SIZE_CHAR;
+            case DataConstants.INT -> DataConstants.SIZE_INT;
+            case DataConstants.FLOAT -> DataConstants.SIZE_FLOAT;
+            case DataConstants.LONG -> DataConstants.SIZE_LONG;
+            case DataConstants.DOUBLE -> DataConstants.SIZE_DOUBLE;
+            case DataConstants.STRING -> ((SpanString) value).sizeof();
+            default -> DataConstants.SIZE_INT + ((byte[]) value).length;
+        };
+    }
+
+    /**
+     * Writes the type and value at the {@code writeIndex} of buffer.
+     */
+    public static void writeValue(final PegasusBuffer buf, final Object value) {
+        final byte type = typeOf(value);
+        buf.writeByte(type);
+        switch (type) {
+            case DataConstants.NULL -> {
+            }
+            case DataConstants.BOOLEAN -> buf.writeBoolean((Boolean) value);
+            case DataConstants.BYTE -> buf.writeByte((Byte) value);
+            case DataConstants.SHORT -> buf.writeShort((Short) value);
+            case DataConstants.CHAR -> buf.writeChar((Character) value);
+            case DataConstants.INT -> buf.writeInt((Integer) value);
+            case DataConstants.FLOAT -> buf.writeFloat((Float) value);
+            case DataConstants.LONG -> buf.writeLong((Long) value);
+            case DataConstants.DOUBLE -> buf.writeDouble((Double) value);
+            case DataConstants.STRING -> buf.writeSpanString((SpanString) value);
+            default -> {
+                final byte[] bytes = (byte[]) value;
+                buf.writeInt(bytes.length);
+                buf.writeBytes(bytes);
+            }
+        }
+    }
+
+    /**
+     * @param buf   encoded properties.
+     * @param index index of type of value.
+     * @return index following the value.
+     */
+    public static int skipValue(final PegasusBuffer buf, final int index) {
+        final int valueIndex = index + DataConstants.SIZE_BYTE;
+        return valueIndex + switch (buf.getByte(index)) {
+            case DataConstants.NULL -> 0;
+            case DataConstants.BOOLEAN, DataConstants.BYTE -> DataConstants.SIZE_BYTE;
+            case DataConstants.SHORT -> DataConstants.SIZE_SHORT;
+            case DataConstants.CHAR -> DataConstants.SIZE_CHAR;
+            case DataConstants.INT -> DataConstants.SIZE_INT;
+            case DataConstants.FLOAT -> DataConstants.SIZE_FLOAT;
+            case DataConstants.LONG -> DataConstants.SIZE_LONG;
+            case DataConstants.DOUBLE -> DataConstants.SIZE_DOUBLE;
+            case DataConstants.STRING, DataConstants.BYTES -> DataConstants.SIZE_INT + buf.getInt(valueIndex);
+            default -> throw new IllegalStateException("Unknown property type " + buf.getByte(index) + " at " + index);
+        };
+    }
+
+    /**
+     * @param buf   encoded properties.
+     * @param index index of type of value.
+     * @return decoded value, boxed.
+     */
+    public static Object readValue(final PegasusBuffer buf, final int index) {
+        final int valueIndex = index + DataConstants.SIZE_BYTE;
+        return switch (buf.getByte(index)) {
+            case DataConstants.NULL -> null;
+            case DataConstants.BOOLEAN -> buf.getByte(valueIndex) != DataConstants.FALSE;
+            case DataConstants.BYTE -> buf.getByte(valueIndex);
+            case DataConstants.SHORT -> buf.getShort(valueIndex);
+            case DataConstants.CHAR -> buf.getChar(valueIndex);
+            case DataConstants.INT -> buf.getInt(valueIndex);
+            case DataConstants.FLOAT -> buf.getFloat(valueIndex);
+            case DataConstants.LONG -> buf.getLong(valueIndex);
+            case DataConstants.DOUBLE -> buf.getDouble(valueIndex);
+            case DataConstants.STRING -> SpanString.of(readBytes(buf, valueIndex));
+            case DataConstants.BYTES -> readBytes(buf, valueIndex);
+            default -> throw new IllegalStateException("Unknown property type " + buf.getByte(index) + " at " + index);
+        };
+    }
+
+    /**
+     * Looks a property up by comparing the key with the encoded keys, without allocation.
+     *
+     * @param buf        buffer of encoded properties.
+     * @param blockIndex index of properties block.
+     * @param key        key of property.
+     * @return index of the type of value, or -1 if there is no such property.
+     */
+    public static int find(final PegasusBuffer buf, final int blockIndex, final SpanString key) {
+        final int count = buf.getInt(blockIndex + DataConstants.SIZE_INT);
+        final int keyLength = key.getData().length;
+        int index = blockIndex + DataConstants.SIZE_INT + DataConstants.SIZE_INT;
+
+        for (int i = 0; i < count; i++) {
+            final int length = buf.getInt(index);
+            index += DataConstants.SIZE_INT;
+            if (length == keyLength && key.equals(buf.byteBuf(), index, length)) {
+                return index + length;
+            }
+            index = skipValue(buf, index + length);
+        }
+        return -1;
+    }
+
+    /**
+     * Visits all properties of a block, keys are decoded.
+     */
+    public static void forEach(final PegasusBuffer buf, final int blockIndex, final PropertyConsumer consumer) {
+        final int count = buf.getInt(blockIndex + DataConstants.SIZE_INT);
+        int index = blockIndex + DataConstants.SIZE_INT + DataConstants.SIZE_INT;
+
+        for (int i = 0; i < count; i++) {
+            final int length = buf.getInt(index);
+            final SpanString key = SpanString.of(readBytes(buf, index));
+            index += DataConstants.SIZE_INT + length;
+            consumer.accept(key, readValue(buf, index));
+            index = skipValue(buf, index);
+        }
+    }
+
+    /**
+     * Functional interface to visit decoded properties.
+     */
+    @FunctionalInterface
+    public interface PropertyConsumer {
+
+        void accept(SpanString key, Object value);
+    }
+
+    private static byte[] readBytes(final PegasusBuffer buf, final int index) {
+        final byte[] bytes = new byte[buf.getInt(index)];
+        buf.getBytes(index + DataConstants.SIZE_INT, bytes);
+        return bytes;
+    }
+}
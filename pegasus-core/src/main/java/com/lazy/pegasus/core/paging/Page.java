@@ -0,0 +1,185 @@
+package com.lazy.pegasus.core.paging;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.message.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * A page file of an address, holding paged messages in the order they were sent. Each message is written as:
+ * <pre>
+ *     [int size][encoded message][int crc32c]
+ * </pre>
+ * where the CRC32C covers the encoded message. A page is only appended to while it is the current page of its store,
+ * reading stops at the first invalid message, e.g. a message torn by a crash.
+ */
+public class Page {
+
+    static final int RECORD_OVERHEAD = DataConstants.SIZE_INT + DataConstants.SIZE_INT;
+
+    private final Path path;
+    private final long pageId;
+
+    private FileChannel channel;
+    private int size;
+    private int messageCount;
+
+    public Page(final Path path, final long pageId, final int size) {
+        this.path = path;
+        this.pageId = pageId;
+        this.size = size;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getPageId() {
+        return pageId;
+    }
+
+    /**
+     * @return number of bytes of page file.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of messages written to page since it was opened.
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    void open() throws PegasusException {
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        } catch (IOException e) {
+            throw new PegasusException("Could not open page " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    /**
+     * Appends an encoded message to page.
+     *
+     * @param message message to write.
+     * @param sync    true to sync page to disk before returning.
+     * @throws PegasusException if message could not be written.
+     */
+    void write(final Message message, final boolean sync) throws PegasusException {
+        final int encodeSize = message.getEncodeSize();
+        final PegasusBuffer buf = PegasusBuffers.fixedBuffer(encodeSize + RECORD_OVERHEAD);
+        buf.writeInt(encodeSize);
+        message.encode(buf);
+        buf.writeInt(checksum(buf, DataConstants.SIZE_INT, encodeSize));
+
+        try {
+            final ByteBuffer bb = buf.toBuffer();
+            long position = size;
+            while (bb.hasRemaining()) {
+                position += channel.write(bb, position);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            throw new PegasusException("Could not write page " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+        size += buf.writeIndex();
+        messageCount++;
+    }
+
+    /**
+     * Reads the whole page file.
+     *
+     * @return content of page, to be released by caller.
+     * @throws PegasusException if page could not be read.
+     */
+    PegasusBuffer read() throws PegasusException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final int length = (int) channel.size();
+            final PegasusBuffer content = PegasusBuffers.fixedBuffer(length);
+            final ByteBuffer bb = content.toBuffer(0, length);
+            while (bb.hasRemaining()) {
+                if (channel.read(bb) < 0) {
+                    break;
+                }
+            }
+            content.writeIndex(bb.position());
+            return content;
+        } catch (IOException e) {
+            throw new PegasusException("Could not read page " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    /**
+     * Reads the next message of page content at its {@code readIndex} and advances it.
+     *
+     * @param content content of page.
+     * @return next message, or null if there is no further valid message.
+     */
+    static Message readMessage(final PegasusBuffer content) {
+        final int position = content.readIndex();
+        final int limit = content.writeIndex();
+        if (limit - position < RECORD_OVERHEAD + Message.HEADER_SIZE) {
+            return null;
+        }
+
+        final int encodeSize = content.getInt(position);
+        if (encodeSize < Message.HEADER_SIZE || encodeSize > limit - position - RECORD_OVERHEAD ||
+                encodeSize != Message.encodeSizeOf(content, position + DataConstants.SIZE_INT)) {
+            return null;
+        }
+        final int index = position + DataConstants.SIZE_INT;
+        if (checksum(content, index, encodeSize) != content.getInt(index + encodeSize)) {
+            return null;
+        }
+
+        content.readIndex(index + encodeSize + DataConstants.SIZE_INT);
+        return Message.wrap(content.copy(index, encodeSize));
+    }
+
+    void close() throws PegasusException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new PegasusException("Could not close page " + path, e, PegasusExceptionType.IO_ERROR);
+        } finally {
+            channel = null;
+        }
+    }
+
+    void delete() throws PegasusException {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new PegasusException("Could not delete page " + path, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    private static int checksum(final PegasusBuffer buf, final int index, final int len) {
+        final CRC32C crc = new CRC32C();
+        crc.update(buf.toBuffer(index, len));
+        return (int) crc.getValue();
+    }
+
+    @Override
+    public String toString() {
+        return "Page[pageId=" + pageId + ", size=" + size + ']';
+    }
+}
@@ -0,0 +1,160 @@
+package com.lazy.pegasus.core.paging;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.message.Message;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * Reads the paged messages of a {@link PagingStore} back in the order they were paged, one page at a time. While a
+ * page is consumed the following pages are read ahead on an executor, so a consumer catching up does not wait for the
+ * disk. A page is deleted once all its messages were read and {@link #acknowledge(Message) acknowledged}.
+ * <p>
+ * A cursor is meant to be driven by the single thread feeding the queue of the address, while messages may be
+ * acknowledged from any thread. A page whose messages were not all acknowledged before a restart is read again from
+ * its start: paged messages are delivered at least once.
+ */
+public class PageCursor {
+
+    private final PagingStore store;
+    private final int readAheadPages;
+    private final Executor executor;
+    private final Map<Long, CompletableFuture<PegasusBuffer>> readAhead = new HashMap<>();
+    private final Map<Message, PageAcks> unacked = new IdentityHashMap<>();
+
+    private PageAcks page;
+    private PegasusBuffer content;
+
+    PageCursor(final PagingStore store, final int readAheadPages, final Executor executor) {
+        this.store = store;
+        this.readAheadPages = readAheadPages;
+        this.executor = executor;
+    }
+
+    /**
+     * Reads the next paged message, which is accounted as held in memory by the store.
+     *
+     * @return next message, or null if all paged messages were read and the store is no longer paging.
+     * @throws PegasusException if a page could not be read or deleted.
+     */
+    public synchronized Message next() throws PegasusException {
+        while (true) {
+            if (content != null) {
+                final Message message = Page.readMessage(content);
+                if (message != null) {
+                    store.addSize(message.getMemoryEstimate());
+                    page.pending++;
+                    unacked.put(message, page);
+                    return message;
+                }
+                content.release();
+                content = null;
+                page.read = true;
+                if (page.pending == 0) {
+                    page.page.delete();
+                }
+                page = null;
+            }
+
+            final Page next = store.nextPage();
+            if (next == null) {
+                return null;
+            }
+            content = take(next);
+            page = new PageAcks(next);
+            scheduleReadAhead();
+        }
+    }
+
+    /**
+     * Acknowledges a message returned by {@link #next()}, its page is deleted once all its messages were read and
+     * acknowledged. The memory of message is still accounted by the store until it is released.
+     *
+     * @param message message read by this cursor.
+     * @throws PegasusException if the page of message could not be deleted.
+     */
+    public synchronized void acknowledge(final Message message) throws PegasusException {
+        final PageAcks acks = unacked.remove(message);
+        if (acks == null) {
+            throw new IllegalArgumentException("Message " + message.getMessageId() + " is not pending on cursor");
+        }
+        if (--acks.pending == 0 && acks.read) {
+            acks.page.delete();
+        }
+    }
+
+    /**
+     * Releases the pages read ahead, the pages of messages not acknowledged are kept on disk to be read again.
+     */
+    public synchronized void close() {
+        for (CompletableFuture<PegasusBuffer> future : readAhead.values()) {
+            future.thenAccept(PegasusBuffer::release);
+        }
+        readAhead.clear();
+        if (content != null) {
+            content.release();
+            content = null;
+        }
+        page = null;
+        unacked.clear();
+    }
+
+    /**
+     * @return number of pages being read ahead.
+     */
+    int getReadAheadCount() {
+        return readAhead.size();
+    }
+
+    private PegasusBuffer take(final Page next) throws PegasusException {
+        final CompletableFuture<PegasusBuffer> future = readAhead.remove(next.getPageId());
+        if (future == null) {
+            return next.read();
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof PegasusException pe) {
+                throw pe;
+            }
+            throw new PegasusException("Could not read page " + next.getPath(), e.getCause(),
+                    PegasusExceptionType.PAGING_ERROR);
+        }
+    }
+
+    private void scheduleReadAhead() {
+        if (readAheadPages == 0) {
+            return;
+        }
+        for (Page ahead : store.peekPages(readAheadPages)) {
+            readAhead.computeIfAbsent(ahead.getPageId(), id -> CompletableFuture.supplyAsync(() -> {
+                try {
+                    return ahead.read();
+                } catch (PegasusException e) {
+                    throw new CompletionException(e);
+                }
+            }, executor));
+        }
+    }
+
+    /**
+     * Messages of a page read but not acknowledged yet.
+     */
+    private static final class PageAcks {
+
+        private final Page page;
+        private int pending;
+        private boolean read;
+
+        private PageAcks(final Page page) {
+            this.page = page;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.lazy.pegasus.core.paging;
+
+import java.nio.file.Path;
+
+/**
+ * Configuration of a {@link PagingManager}, setters return this configuration to be chained.
+ */
+public class PagingConfiguration {
+
+    public static final int DEFAULT_PAGE_SIZE = 10 * 1024 * 1024;
+    public static final long DEFAULT_MAX_SIZE_BYTES = 10L * 1024 * 1024;
+    public static final long DEFAULT_GLOBAL_MAX_SIZE_BYTES = -1;
+    public static final int DEFAULT_READ_AHEAD_PAGES = 1;
+
+    private Path directory;
+    private int pageSize = DEFAULT_PAGE_SIZE;
+    private long maxSizeBytes = DEFAULT_MAX_SIZE_BYTES;
+    private long globalMaxSizeBytes = DEFAULT_GLOBAL_MAX_SIZE_BYTES;
+    private int readAheadPages = DEFAULT_READ_AHEAD_PAGES;
+
+    public PagingConfiguration(final Path directory) {
+        this.directory = directory;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public PagingConfiguration setDirectory(Path directory) {
+        this.directory = directory;
+        return this;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @param pageSize size a page file is rolled at, a page holds at least one message whatever its size.
+     */
+    public PagingConfiguration setPageSize(int pageSize) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page size must be positive, but " + pageSize);
+        }
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public long getMaxSizeBytes() {
+        return maxSizeBytes;
+    }
+
+    /**
+     * @param maxSizeBytes number of bytes of messages an address keeps in memory before paging, -1 to only page when
+     *                     the global limit is reached.
+     */
+    public PagingConfiguration setMaxSizeBytes(long maxSizeBytes) {
+        if (maxSizeBytes < -1) {
+            throw new IllegalArgumentException("Max size must be -1 or not negative, but " + maxSizeBytes);
+        }
+        this.maxSizeBytes = maxSizeBytes;
+        return this;
+    }
+
+    public long getGlobalMaxSizeBytes() {
+        return globalMaxSizeBytes;
+    }
+
+    /**
+     * @param globalMaxSizeBytes number of bytes of messages all addresses keep in memory before paging, -1 for no
+     *                           global limit.
+     */
+    public PagingConfiguration setGlobalMaxSizeBytes(long globalMaxSizeBytes) {
+        if (globalMaxSizeBytes < -1) {
+            throw new IllegalArgumentException("Global max size must be -1 or not negative, but " + globalMaxSizeBytes);
+        }
+        this.globalMaxSizeBytes = globalMaxSizeBytes;
+        return this;
+    }
+
+    public int getReadAheadPages() {
+        return readAheadPages;
+    }
+
+    /**
+     * @param readAheadPages number of pages a cursor reads ahead of the page being consumed, 0 to disable.
+     */
+    public PagingConfiguration setReadAheadPages(int readAheadPages) {
+        if (readAheadPages < 0) {
+            throw new IllegalArgumentException("Read ahead pages must not be negative, but " + readAheadPages);
+        }
+        this.readAheadPages = readAheadPages;
+        return this;
+    }
+}
@@ -0,0 +1,153 @@
+package com.lazy.pegasus.core.paging;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Owns the {@link PagingStore} of every address and accounts the memory held by all addresses. Each address is
+ * accounted by the {@link SpanString#sizeof()} of its name and the {@link com.lazy.pegasus.core.message.Message#getMemoryEstimate()}
+ * of the messages it holds in memory, an address pages when its own limit or the global limit is exceeded.
+ * <p>
+ * The pages of an address are kept in a sub-directory named by the hex encoded bytes of the address, so any address
+ * maps to a valid file name and is recovered from it when the manager is started.
+ */
+public class PagingManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(PagingManager.class);
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final PagingConfiguration config;
+    private final Map<SpanString, PagingStore> stores = new ConcurrentHashMap<>();
+    private final AtomicLong globalSize = new AtomicLong();
+
+    private ExecutorService executor;
+
+    public PagingManager(final PagingConfiguration config) {
+        this.config = config;
+    }
+
+    public PagingConfiguration getConfig() {
+        return config;
+    }
+
+    /**
+     * Loads the stores of addresses which have pages left over.
+     *
+     * @throws PegasusException if the paging directory could not be read.
+     */
+    public synchronized void start() throws PegasusException {
+        if (executor != null) {
+            return;
+        }
+        executor = Executors.newSingleThreadExecutor(r -> {
+            final Thread thread = new Thread(r, "pegasus-paging-reader");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        final Path dir = config.getDirectory();
+        try {
+            Files.createDirectories(dir);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, Files::isDirectory)) {
+                for (Path path : stream) {
+                    final byte[] data;
+                    try {
+                        data = HEX.parseHex(path.getFileName().toString());
+                    } catch (IllegalArgumentException e) {
+                        logger.warn("Skipping paging directory {} which is not an address", path);
+                        continue;
+                    }
+                    getPagingStore(SpanString.of(data));
+                }
+            }
+        } catch (IOException e) {
+            throw new PegasusException("Could not list paging directory " + dir, e, PegasusExceptionType.IO_ERROR);
+        }
+    }
+
+    public synchronized void stop() throws PegasusException {
+        if (executor == null) {
+            return;
+        }
+        try {
+            for (PagingStore store : stores.values()) {
+                store.stop();
+            }
+        } finally {
+            stores.clear();
+            globalSize.set(0);
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executor = null;
+        }
+    }
+
+    /**
+     * @param address name of address.
+     * @return store of address, created if it does not exist.
+     * @throws PegasusException if the pages of address could not be loaded.
+     */
+    public PagingStore getPagingStore(final SpanString address) throws PegasusException {
+        final PagingStore store = stores.get(address);
+        if (store != null) {
+            return store;
+        }
+
+        synchronized (this) {
+            if (executor == null) {
+                throw new PegasusException("Paging manager is not started", PegasusExceptionType.PAGING_ERROR);
+            }
+            PagingStore created = stores.get(address);
+            if (created == null) {
+                created = new PagingStore(this, address, config.getDirectory().resolve(HEX.formatHex(address.getData())));
+                created.load();
+                created.addSize(address.sizeof());
+                stores.put(address, created);
+            }
+            return created;
+        }
+    }
+
+    /**
+     * @return number of bytes held in memory by all addresses.
+     */
+    public long getGlobalSize() {
+        return globalSize.get();
+    }
+
+    /**
+     * @return true if the global memory limit is exceeded.
+     */
+    public boolean isGlobalFull() {
+        final long max = config.getGlobalMaxSizeBytes();
+        return max >= 0 && globalSize.get() > max;
+    }
+
+    void addGlobalSize(final long delta) {
+        globalSize.addAndGet(delta);
+    }
+
+    ExecutorService getExecutor() {
+        return executor;
+    }
+}
@@ -0,0 +1,290 @@
+package com.lazy.pegasus.core.paging;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Paging of an address. While the messages an address holds in memory stay below its limit, {@link #page(Message)}
+ * leaves them in memory and accounts their size. Once the limit is exceeded the store enters paging mode, and every
+ * new message is written to sequential page files until a {@link PageCursor} has read all pages back, which keeps
+ * messages in the order they were sent.
+ * <p>
+ * Page files are named {@code <pageId>.page} and kept in a directory of the address. Pages left over from a previous
+ * run put the store in paging mode again when it is loaded.
+ */
+public class PagingStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(PagingStore.class);
+
+    static final String PAGE_EXTENSION = ".page";
+    private static final Pattern PAGE_PATTERN = Pattern.compile("(\\d+)" + Pattern.quote(PAGE_EXTENSION));
+
+    private final PagingManager manager;
+    private final SpanString address;
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final int pageSize;
+    private final AtomicLong addressSize = new AtomicLong();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Page> pages = new ArrayDeque<>();
+
+    private volatile boolean paging;
+    private Page currentPage;
+    private long nextPageId = 1;
+    private long pagedMessages;
+
+    PagingStore(final PagingManager manager, final SpanString address, final Path directory) {
+        this.manager = manager;
+        this.address = address;
+        this.directory = directory;
+        this.maxSizeBytes = manager.getConfig().getMaxSizeBytes();
+        this.pageSize = manager.getConfig().getPageSize();
+    }
+
+    public SpanString getAddress() {
+        return address;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return true if new messages of address are written to pages.
+     */
+    public boolean isPaging() {
+        return paging;
+    }
+
+    /**
+     * @return number of bytes of messages of address held in memory.
+     */
+    public long getAddressSize() {
+        return addressSize.get();
+    }
+
+    /**
+     * @return number of pages not fully read by the cursor yet.
+     */
+    public int getNumberOfPages() {
+        lock.lock();
+        try {
+            return pages.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of messages written to pages since the store was created.
+     */
+    public long getPagedMessages() {
+        lock.lock();
+        try {
+            return pagedMessages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pages message if the store is paging or the memory limit is exceeded, otherwise accounts the message as held in
+     * memory. A durable message is synced to disk before returning.
+     *
+     * @param message message sent to address.
+     * @return true if message was paged, it is read back by the cursor; false if the caller keeps it in memory and
+     * calls {@link #release(Message)} once it is done with it.
+     * @throws PegasusException if message could not be written to page.
+     */
+    public boolean page(final Message message) throws PegasusException {
+        if (!paging && !isFull()) {
+            lock.lock();
+            try {
+                if (!paging) {
+                    addSize(message.getMemoryEstimate());
+                    return false;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        lock.lock();
+        try {
+            if (!paging) {
+                paging = true;
+                logger.info("Address {} is paging, size {} bytes, global size {} bytes", address, addressSize.get(),
+                        manager.getGlobalSize());
+            }
+
+            if (currentPage != null && currentPage.getMessageCount() > 0 &&
+                    currentPage.getSize() + message.getEncodeSize() + Page.RECORD_OVERHEAD > pageSize) {
+                currentPage.close();
+                currentPage = null;
+            }
+            if (currentPage == null) {
+                openPage();
+            }
+            currentPage.write(message, message.isDurable());
+            pagedMessages++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Accounts a message no longer held in memory, e.g. once it was acknowledged.
+     */
+    public void release(final Message message) {
+        addSize(-message.getMemoryEstimate());
+    }
+
+    /**
+     * @return a cursor reading the pages of this store, there is a single cursor per store.
+     */
+    public PageCursor createCursor() {
+        return new PageCursor(this, manager.getConfig().getReadAheadPages(), manager.getExecutor());
+    }
+
+    /**
+     * @return true if address or global memory limit is exceeded.
+     */
+    public boolean isFull() {
+        return maxSizeBytes >= 0 && addressSize.get() > maxSizeBytes || manager.isGlobalFull();
+    }
+
+    void addSize(final long delta) {
+        addressSize.addAndGet(delta);
+        manager.addGlobalSize(delta);
+    }
+
+    /**
+     * Loads pages left over in the directory, the store is paging if there is any.
+     */
+    void load() throws PegasusException {
+        final List<Page> found = new ArrayList<>();
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path path : stream) {
+                    final Matcher matcher = PAGE_PATTERN.matcher(path.getFileName().toString());
+                    if (matcher.matches()) {
+                        found.add(new Page(path, Long.parseLong(matcher.group(1)), (int) Files.size(path)));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new PegasusException("Could not list paging directory " + directory, e,
+                    PegasusExceptionType.IO_ERROR);
+        }
+
+        found.sort(Comparator.comparingLong(Page::getPageId));
+        lock.lock();
+        try {
+            pages.addAll(found);
+            if (!found.isEmpty()) {
+                nextPageId = found.get(found.size() - 1).getPageId() + 1;
+                paging = true;
+                logger.info("Address {} is paging with {} pages left over", address, found.size());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the next page to be read by the cursor. The current page is closed first, so the cursor only reads
+     * complete pages. If there is no page left to read, the store leaves paging mode.
+     *
+     * @return next page, or null if all pages were read.
+     */
+    Page nextPage() throws PegasusException {
+        lock.lock();
+        try {
+            final Page page = pages.peekFirst();
+            if (page == currentPage && page != null) {
+                currentPage.close();
+                currentPage = null;
+                if (page.getMessageCount() == 0) {
+                    pages.pollFirst();
+                    page.delete();
+                }
+            }
+            if (pages.isEmpty()) {
+                if (paging) {
+                    paging = false;
+                    logger.info("Address {} stopped paging", address);
+                }
+                return null;
+            }
+            return pages.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param count maximum number of pages.
+     * @return the complete pages following the page being read, to be read ahead.
+     */
+    List<Page> peekPages(final int count) {
+        final List<Page> result = new ArrayList<>(count);
+        lock.lock();
+        try {
+            for (Page page : pages) {
+                if (page == currentPage || result.size() == count) {
+                    break;
+                }
+                result.add(page);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    void stop() throws PegasusException {
+        lock.lock();
+        try {
+            if (currentPage != null) {
+                currentPage.close();
+                currentPage = null;
+            }
+            pages.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void openPage() throws PegasusException {
+        final long pageId = nextPageId++;
+        final Page page = new Page(directory.resolve(pageId + PAGE_EXTENSION), pageId, 0);
+        page.open();
+        pages.addLast(page);
+        currentPage = page;
+    }
+
+    @Override
+    public String toString() {
+        return "PagingStore[address=" + address + ", paging=" + paging + ", size=" + addressSize.get() + ']';
+    }
+}
@@ -0,0 +1,42 @@
+package com.lazy.pegasus.core.persistence;
+
+/**
+ * User record types of the records the broker appends to its journal, see
+ * {@link com.lazy.pegasus.core.journal.Journal#appendAddRecord}.
+ */
+public final class RecordTypes {
+
+    /**
+     * A duplicate id of an address, body is {@code [SpanString address][int length][bytes id]}.
+     */
+    public static final byte DUPLICATE_ID = 20;
+
+    /**
+     * A message of a topic log, body is {@code [SpanString address][long sequence][encoded message]}.
+     */
+    public static final byte TOPIC_MESSAGE = 21;
+
+    /**
+     * A durable subscription of a topic, body is {@code [SpanString address][SpanString name][cursor]}.
+     */
+    public static final byte SUBSCRIPTION = 22;
+
+    /**
+     * An update of the cursor of a durable subscription, body is {@code [cursor]}.
+     */
+    public static final byte SUBSCRIPTION_CURSOR = 23;
+
+    /**
+     * A prepared XA transaction branch, body is {@code [xid][int count][count operations]}, see
+     * {@link com.lazy.pegasus.core.transaction.XAResourceManager}.
+     */
+    public static final byte XA_PREPARE = 24;
+
+    /**
+     * An update of a prepared XA transaction branch heuristically completed, body is {@code [xid][byte committed]}.
+     */
+    public static final byte XA_HEURISTIC = 25;
+
+    private RecordTypes() {
+    }
+}
@@ -0,0 +1,244 @@
+package com.lazy.pegasus.core.queue;
+
+import com.lazy.pegasus.core.collections.MpscQueue;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Queue keeping only the last undelivered message of each value of a key property, for consumers which only want the
+ * latest value per key (e.g. market data).
+ * <p>
+ * Messages are kept in a doubly linked list, and a concurrent index maps each value of the key property to the node of
+ * its undelivered message. A message replaces the undelivered message of the same value in O(1): the older node is
+ * unlinked and the new message is appended at the tail. The queue holds at most one message per distinct value, plus
+ * the messages without the key property which are queued as in a FIFO.
+ * <p>
+ * Messages may be offered by any thread, and are polled by a single consumer thread. Replaced messages are handed to
+ * a callback outside of the lock, e.g. to release them.
+ */
+public class LastValueQueue implements MpscQueue<Message> {
+
+    private static final class Node {
+
+        private final Message message;
+        private final Object value;
+        private Node prev;
+        private Node next;
+
+        private Node(final Message message, final Object value) {
+            this.message = message;
+            this.value = value;
+        }
+    }
+
+    private final SpanString key;
+    private final Consumer<? super Message> onReplaced;
+    private final Map<Object, Node> index = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final List<Message> drained = new ArrayList<>();
+
+    private Node head;
+    private Node tail;
+    private int size;
+    private long replaced;
+
+    public LastValueQueue(final SpanString key) {
+        this(key, message -> {
+        });
+    }
+
+    /**
+     * @param key        name of the key property.
+     * @param onReplaced receives the messages replaced by a newer message of the same value.
+     */
+    public LastValueQueue(final SpanString key, final Consumer<? super Message> onReplaced) {
+        this.key = Objects.requireNonNull(key, "key");
+        this.onReplaced = Objects.requireNonNull(onReplaced, "onReplaced");
+    }
+
+    public SpanString getKey() {
+        return key;
+    }
+
+    @Override
+    public boolean offer(final Message message) {
+        final Object value = valueOf(message);
+        final Node node = new Node(message, value);
+        Node old = null;
+
+        lock.lock();
+        try {
+            if (value != null) {
+                old = index.put(value, node);
+                if (old != null) {
+                    unlink(old);
+                    replaced++;
+                }
+            }
+            link(node);
+        } finally {
+            lock.unlock();
+        }
+
+        if (old != null) {
+            onReplaced.accept(old.message);
+        }
+        return true;
+    }
+
+    @Override
+    public Message poll() {
+        lock.lock();
+        try {
+            final Node node = head;
+            if (node == null) {
+                return null;
+            }
+            remove(node);
+            return node.message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Message peek() {
+        lock.lock();
+        try {
+            return head == null ? null : head.message;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes the messages under the lock and hands them to consumer outside of it.
+     */
+    @Override
+    public int drain(final Consumer<? super Message> consumer, final int limit) {
+        lock.lock();
+        try {
+            while (head != null && drained.size() < limit) {
+                final Node node = head;
+                remove(node);
+                drained.add(node.message);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        final int count = drained.size();
+        try {
+            for (int i = 0; i < count; i++) {
+                consumer.accept(drained.get(i));
+            }
+        } finally {
+            drained.clear();
+        }
+        return count;
+    }
+
+    /**
+     * @param value value of key property.
+     * @return undelivered message of value, or null if there is none.
+     */
+    public Message get(final Object value) {
+        final Node node = index.get(value instanceof byte[] bytes ? SpanString.of(bytes) : value);
+        return node == null ? null : node.message;
+    }
+
+    @Override
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public int capacity() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * @return number of distinct values of key property with an undelivered message.
+     */
+    public int getKeysCount() {
+        return index.size();
+    }
+
+    /**
+     * @return number of messages replaced by a newer message of the same value.
+     */
+    public long getReplacedCount() {
+        lock.lock();
+        try {
+            return replaced;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return value of key property of message, bytes are wrapped to be compared by content; null if message does not
+     * have the property.
+     */
+    private Object valueOf(final Message message) {
+        final Object value = message.getProperty(key);
+        return value instanceof byte[] bytes ? SpanString.of(bytes) : value;
+    }
+
+    private void remove(final Node node) {
+        unlink(node);
+        if (node.value != null) {
+            index.remove(node.value, node);
+        }
+    }
+
+    private void link(final Node node) {
+        node.prev = tail;
+        if (tail == null) {
+            head = node;
+        } else {
+            tail.next = node;
+        }
+        tail = node;
+        size++;
+    }
+
+    private void unlink(final Node node) {
+        if (node.prev == null) {
+            head = node.next;
+        } else {
+            node.prev.next = node.next;
+        }
+        if (node.next == null) {
+            tail = node.prev;
+        } else {
+            node.next.prev = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+        size--;
+    }
+
+    @Override
+    public String toString() {
+        return "LastValueQueue[key=" + key + ", size=" + size() + ", keys=" + index.size() + ']';
+    }
+}
@@ -0,0 +1,172 @@
+package com.lazy.pegasus.core.queue;
+
+import com.lazy.pegasus.core.collections.MpscQueue;
+import com.lazy.pegasus.core.collections.MpscUnboundedArrayQueue;
+import com.lazy.pegasus.core.message.Message;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.function.Consumer;
+
+/**
+ * Multi-producer, single-consumer queue of messages delivering higher priorities first and messages of the same
+ * priority in FIFO order.
+ * <p>
+ * Each priority in range [{@link Message#MIN_PRIORITY}, {@link Message#MAX_PRIORITY}] has its own lock-free FIFO, and a
+ * bitmap has bit {@code p} set while the FIFO of priority {@code p} may not be empty. The consumer finds the highest
+ * priority to read from by a single {@link Integer#numberOfLeadingZeros(int)} of the bitmap. The priority is read from
+ * the encoded header of a message by {@link Message#priorityOf}, the message is not decoded.
+ * <p>
+ * A producer sets the bit of a level after adding to it, and the consumer clears the bit of a level it found empty and
+ * then checks the level again, so a message is never left behind a cleared bit.
+ */
+public class PriorityMessageQueue implements MpscQueue<Message> {
+
+    public static final int LEVELS = Message.MAX_PRIORITY + 1;
+    public static final int DEFAULT_CHUNK_SIZE = 128;
+
+    private static final VarHandle BITMAP;
+
+    static {
+        try {
+            BITMAP = MethodHandles.lookup().findVarHandle(PriorityMessageQueue.class, "bitmap", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final MpscQueue<Message>[] levels;
+    @SuppressWarnings("unused")
+    private volatile int bitmap;
+
+    public PriorityMessageQueue() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param chunkSize chunk size of the FIFO of each priority.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public PriorityMessageQueue(final int chunkSize) {
+        this.levels = new MpscQueue[LEVELS];
+        for (int i = 0; i < LEVELS; i++) {
+            levels[i] = new MpscUnboundedArrayQueue<>(chunkSize);
+        }
+    }
+
+    /**
+     * @return priority of message in range of levels, an out of range priority is clamped.
+     */
+    static int levelOf(final Message message) {
+        final int priority = Message.priorityOf(message.getBuffer(), 0);
+        return Math.max(Message.MIN_PRIORITY, Math.min(Message.MAX_PRIORITY, priority));
+    }
+
+    @Override
+    public boolean offer(final Message message) {
+        final int level = levelOf(message);
+        levels[level].offer(message);
+        final int bit = 1 << level;
+        if (((int) BITMAP.getVolatile(this) & bit) == 0) {
+            BITMAP.getAndBitwiseOr(this, bit);
+        }
+        return true;
+    }
+
+    @Override
+    public Message poll() {
+        int level;
+        while ((level = highestLevel()) >= 0) {
+            final Message message = levels[level].poll();
+            if (message != null) {
+                return message;
+            }
+            clearIfEmpty(level);
+        }
+        return null;
+    }
+
+    @Override
+    public Message peek() {
+        int level;
+        while ((level = highestLevel()) >= 0) {
+            final Message message = levels[level].peek();
+            if (message != null) {
+                return message;
+            }
+            clearIfEmpty(level);
+        }
+        return null;
+    }
+
+    /**
+     * Drains the highest priorities first. Messages of a higher priority offered while draining a lower one are only
+     * drained by the next call.
+     */
+    @Override
+    public int drain(final Consumer<? super Message> consumer, final int limit) {
+        int count = 0;
+        int pending = (int) BITMAP.getVolatile(this);
+        while (count < limit && pending != 0) {
+            final int level = 31 - Integer.numberOfLeadingZeros(pending);
+            pending &= ~(1 << level);
+            count += levels[level].drain(consumer, limit - count);
+            if (count < limit) {
+                clearIfEmpty(level);
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (MpscQueue<Message> level : levels) {
+            size += level.size();
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (MpscQueue<Message> level : levels) {
+            if (!level.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int capacity() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * @return number of messages of priority.
+     */
+    public int size(final int priority) {
+        return levels[priority].size();
+    }
+
+    /**
+     * @return highest priority which may have messages, or -1 if all are empty.
+     */
+    private int highestLevel() {
+        return 31 - Integer.numberOfLeadingZeros((int) BITMAP.getVolatile(this));
+    }
+
+    private void clearIfEmpty(final int level) {
+        final int bit = 1 << level;
+        BITMAP.getAndBitwiseAnd(this, ~bit);
+        // a producer may have added to the level before the bit was cleared
+        if (!levels[level].isEmpty()) {
+            BITMAP.getAndBitwiseOr(this, bit);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "PriorityMessageQueue[size=" + size() + ", bitmap=" + Integer.toBinaryString(bitmap) + ']';
+    }
+}
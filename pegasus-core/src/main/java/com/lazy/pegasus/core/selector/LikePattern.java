@@ -0,0 +1,112 @@
+package com.lazy.pegasus.core.selector;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+
+import java.util.Arrays;
+
+/**
+ * A compiled {@code LIKE} pattern, {@code %} matching any sequence of characters and {@code _} any single character
+ * unless preceded by the escape character.
+ * <p>
+ * Matching reads the characters of an encoded {@link com.lazy.pegasus.core.common.SpanString} in place, backtracking
+ * only to the last {@code %}, so it is linear in the length of value for most patterns.
+ */
+public final class LikePattern {
+
+    private static final int ANY_SEQUENCE = -1;
+    private static final int ANY_CHAR = -2;
+
+    private final String pattern;
+    private final int[] tokens;
+
+    /**
+     * @param pattern pattern.
+     * @param escape  escape character, or null if none.
+     * @throws IllegalArgumentException if the pattern ends with the escape character.
+     */
+    public LikePattern(final String pattern, final Character escape) {
+        this.pattern = pattern;
+        final int[] tokens = new int[pattern.length()];
+        int n = 0;
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (escape != null && c == escape) {
+                if (++i == pattern.length()) {
+                    throw new IllegalArgumentException("Pattern " + pattern + " ends with escape character");
+                }
+                tokens[n++] = pattern.charAt(i);
+            } else if (c == '%') {
+                // consecutive % are a single one
+                if (n == 0 || tokens[n - 1] != ANY_SEQUENCE) {
+                    tokens[n++] = ANY_SEQUENCE;
+                }
+            } else if (c == '_') {
+                tokens[n++] = ANY_CHAR;
+            } else {
+                tokens[n++] = c;
+            }
+        }
+        this.tokens = Arrays.copyOf(tokens, n);
+    }
+
+    public String getPattern() {
+        return pattern;
+    }
+
+    /**
+     * @param value value to match.
+     * @return true if the whole value matches.
+     */
+    public boolean matches(final CharSequence value) {
+        return matches(value, null, 0, value.length());
+    }
+
+    /**
+     * @param buf    buffer holding the encoded characters, two bytes per character in little endian order.
+     * @param index  index of the first byte.
+     * @param length number of bytes.
+     * @return true if the whole value matches.
+     */
+    public boolean matches(final PegasusBuffer buf, final int index, final int length) {
+        return matches(null, buf, index, length >> 1);
+    }
+
+    private boolean matches(final CharSequence chars, final PegasusBuffer buf, final int index, final int length) {
+        int t = 0;
+        int v = 0;
+        int lastSequence = -1;
+        int lastSequenceValue = 0;
+        while (v < length) {
+            if (t < tokens.length && tokens[t] == ANY_SEQUENCE) {
+                lastSequence = t++;
+                lastSequenceValue = v;
+            } else if (t < tokens.length && (tokens[t] == ANY_CHAR || tokens[t] == charAt(chars, buf, index, v))) {
+                t++;
+                v++;
+            } else if (lastSequence >= 0) {
+                // let the last % match one more character
+                t = lastSequence + 1;
+                v = ++lastSequenceValue;
+            } else {
+                return false;
+            }
+        }
+        while (t < tokens.length && tokens[t] == ANY_SEQUENCE) {
+            t++;
+        }
+        return t == tokens.length;
+    }
+
+    private static char charAt(final CharSequence chars, final PegasusBuffer buf, final int index, final int i) {
+        if (chars != null) {
+            return chars.charAt(i);
+        }
+        final int byteIndex = index + (i << 1);
+        return (char) ((buf.getByte(byteIndex) & 0xff) | (buf.getByte(byteIndex + 1) & 0xff) << 8);
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
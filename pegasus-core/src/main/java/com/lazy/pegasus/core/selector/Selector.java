@@ -0,0 +1,21 @@
+package com.lazy.pegasus.core.selector;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.message.Message;
+
+/**
+ * A message filter, evaluated against the encoded properties of messages. See {@link SelectorCompiler}.
+ */
+public interface Selector {
+
+    /**
+     * @param buf             buffer holding the encoded properties.
+     * @param propertiesIndex index of the properties block, see {@link com.lazy.pegasus.core.message.MessageProperties}.
+     * @return true if the properties match, false if they do not or the result is unknown.
+     */
+    boolean matches(PegasusBuffer buf, int propertiesIndex);
+
+    default boolean matches(final Message message) {
+        return matches(message.getBuffer(), message.getPropertiesIndex());
+    }
+}
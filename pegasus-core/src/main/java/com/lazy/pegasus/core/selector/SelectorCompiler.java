@@ -0,0 +1,453 @@
+package com.lazy.pegasus.core.selector;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles selectors to hidden classes, so that a selector is evaluated by straight-line bytecode rather than by
+ * walking its tree for every message.
+ * <p>
+ * The generated class implements {@link Selector} and keeps the property names and literals of the selector in final
+ * fields. Its {@code matches} method is the selector flattened into calls to the static methods of
+ * {@link SelectorSupport} reading the encoded properties in place, with {@code AND} and {@code OR} short-circuited by
+ * branches, so only the properties referenced by the selector are looked up and nothing is allocated. The class is
+ * written in class file version 49 which needs no stack map frames, and defined by
+ * {@link MethodHandles.Lookup#defineHiddenClass} in this package, so it can be unloaded with its selector.
+ */
+public final class SelectorCompiler {
+
+    private static final String CLASS_NAME = "com/lazy/pegasus/core/selector/CompiledSelector";
+    private static final String SUPPORT = "com/lazy/pegasus/core/selector/SelectorSupport";
+    private static final String BUFFER = "L" + PegasusBuffer.class.getName().replace('.', '/') + ';';
+    private static final String SPAN_STRING = "L" + SpanString.class.getName().replace('.', '/') + ';';
+    private static final String LIKE_PATTERN = "L" + LikePattern.class.getName().replace('.', '/') + ';';
+    private static final String FIND = "(" + BUFFER + "I" + SPAN_STRING + ")I";
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+
+    private static final int ICONST_0 = 0x03;
+    private static final int ICONST_1 = 0x04;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC2_W = 0x14;
+    private static final int ILOAD_2 = 0x1c;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int ALOAD_1 = 0x2b;
+    private static final int AALOAD = 0x32;
+    private static final int DUP = 0x59;
+    private static final int IFEQ = 0x99;
+    private static final int IF_ICMPEQ = 0x9f;
+    private static final int IRETURN = 0xac;
+    private static final int RETURN = 0xb1;
+    private static final int GETFIELD = 0xb4;
+    private static final int PUTFIELD = 0xb5;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int CHECKCAST = 0xc0;
+
+    private SelectorCompiler() {
+    }
+
+    /**
+     * @param selector selector to compile.
+     * @return compiled selector.
+     * @throws IllegalArgumentException if the selector is invalid.
+     */
+    public static Selector compile(final String selector) {
+        return compile(SelectorParser.parse(selector));
+    }
+
+    /**
+     * @param root root of a parsed selector.
+     * @return compiled selector.
+     */
+    public static Selector compile(final SelectorNode root) {
+        final ClassWriter writer = new ClassWriter();
+        final byte[] bytes = writer.write(root);
+        try {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            return (Selector) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, Object[].class))
+                    .invoke((Object) writer.constants.toArray());
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Could not define compiled selector " + root, e);
+        }
+    }
+
+    /**
+     * Writes the class file of a selector, with its constant pool and the two methods {@code <init>(Object[])} and
+     * {@code matches}.
+     */
+    private static final class ClassWriter {
+
+        private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+        private final DataOutputStream poolOut = new DataOutputStream(pool);
+        private final Map<String, Integer> poolIndexes = new HashMap<>();
+        private int poolCount = 1;
+
+        private final List<Object> constants = new ArrayList<>();
+        private final List<String> fieldTypes = new ArrayList<>();
+
+        private ByteArrayOutputStream code;
+        private int stack;
+        private int maxStack;
+
+        byte[] write(final SelectorNode root) {
+            try {
+                final byte[] matches = matchesCode(root);
+                final int matchesStack = maxStack;
+                final byte[] init = initCode();
+                final int initStack = maxStack;
+
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                final DataOutputStream out = new DataOutputStream(bytes);
+                final int thisClass = classRef(CLASS_NAME);
+                final int superClass = classRef("java/lang/Object");
+                final int selectorClass = classRef(Selector.class.getName().replace('.', '/'));
+                final int codeName = utf8("Code");
+                final int initName = utf8("<init>");
+                final int initDesc = utf8("([Ljava/lang/Object;)V");
+                final int matchesName = utf8("matches");
+                final int matchesDesc = utf8("(" + BUFFER + "I)Z");
+                final int[] fieldNames = new int[fieldTypes.size()];
+                final int[] fieldDescs = new int[fieldTypes.size()];
+                for (int i = 0; i < fieldTypes.size(); i++) {
+                    fieldNames[i] = utf8(fieldName(i));
+                    fieldDescs[i] = utf8(fieldTypes.get(i));
+                }
+
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(49);
+                out.writeShort(poolCount);
+                pool.writeTo(out);
+                out.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(1);
+                out.writeShort(selectorClass);
+
+                out.writeShort(fieldTypes.size());
+                for (int i = 0; i < fieldTypes.size(); i++) {
+                    out.writeShort(ACC_PRIVATE | ACC_FINAL);
+                    out.writeShort(fieldNames[i]);
+                    out.writeShort(fieldDescs[i]);
+                    out.writeShort(0);
+                }
+
+                out.writeShort(2);
+                writeMethod(out, initName, initDesc, codeName, init, initStack, 2);
+                writeMethod(out, matchesName, matchesDesc, codeName, matches, matchesStack, 3);
+                out.writeShort(0);
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private static void writeMethod(final DataOutputStream out, final int name, final int desc, final int codeName,
+                                        final byte[] code, final int maxStack, final int maxLocals) throws IOException {
+            out.writeShort(ACC_PUBLIC);
+            out.writeShort(name);
+            out.writeShort(desc);
+            out.writeShort(1);
+            out.writeShort(codeName);
+            out.writeInt(2 + 2 + 4 + code.length + 2 + 2);
+            out.writeShort(maxStack);
+            out.writeShort(maxLocals);
+            out.writeInt(code.length);
+            out.write(code);
+            out.writeShort(0);
+            out.writeShort(0);
+        }
+
+        private byte[] matchesCode(final SelectorNode root) {
+            begin();
+            emit(root);
+            invokeStatic("isTrue", "(I)Z", 1, 1);
+            op(IRETURN, -1);
+            return code.toByteArray();
+        }
+
+        private byte[] initCode() {
+            begin();
+            op(ALOAD_0, 1);
+            op(INVOKESPECIAL, -1);
+            u2(methodRef("java/lang/Object", "<init>", "()V"));
+            for (int i = 0; i < fieldTypes.size(); i++) {
+                op(ALOAD_0, 1);
+                op(ALOAD_1, 1);
+                pushInt(i);
+                op(AALOAD, -1);
+                final String type = fieldTypes.get(i);
+                op(CHECKCAST, 0);
+                u2(classRef(type.startsWith("[") ? type : type.substring(1, type.length() - 1)));
+                op(PUTFIELD, -2);
+                u2(fieldRef(fieldName(i), type));
+            }
+            op(RETURN, 0);
+            return code.toByteArray();
+        }
+
+        private void emit(final SelectorNode node) {
+            if (node instanceof SelectorNode.Logical logical) {
+                emit(logical.left);
+                op(DUP, 1);
+                final int jump;
+                if (logical.and) {
+                    // a FALSE left operand is the result
+                    jump = branch(IFEQ, -1);
+                } else {
+                    // a TRUE left operand is the result
+                    op(ICONST_1, 1);
+                    jump = branch(IF_ICMPEQ, -2);
+                }
+                emit(logical.right);
+                invokeStatic(logical.and ? "and" : "or", "(II)I", 2, 1);
+                patch(jump);
+            } else if (node instanceof SelectorNode.Not not) {
+                emit(not.operand);
+                invokeStatic("not", "(I)I", 1, 1);
+            } else if (node instanceof SelectorNode.Comparison comparison) {
+                find(comparison.property);
+                final Object value = comparison.value;
+                if (value instanceof Long l) {
+                    ldc2(longConstant(l));
+                    pushInt(comparison.op);
+                    invokeStatic("compareLong", "(" + BUFFER + "IJI)I", 5, 1);
+                } else if (value instanceof Double d) {
+                    ldc2(doubleConstant(d));
+                    pushInt(comparison.op);
+                    invokeStatic("compareDouble", "(" + BUFFER + "IDI)I", 5, 1);
+                } else if (value instanceof SpanString s) {
+                    field(s, SPAN_STRING);
+                    pushInt(comparison.op);
+                    invokeStatic("compareString", "(" + BUFFER + "I" + SPAN_STRING + "I)I", 4, 1);
+                } else {
+                    pushInt((Boolean) value ? 1 : 0);
+                    pushInt(comparison.op);
+                    invokeStatic("compareBoolean", "(" + BUFFER + "IZI)I", 4, 1);
+                }
+            } else if (node instanceof SelectorNode.Between between) {
+                find(between.property);
+                if (between.low instanceof Long) {
+                    ldc2(longConstant(between.low.longValue()));
+                    ldc2(longConstant(between.high.longValue()));
+                    invokeStatic("betweenLong", "(" + BUFFER + "IJJ)I", 6, 1);
+                } else {
+                    ldc2(doubleConstant(between.low.doubleValue()));
+                    ldc2(doubleConstant(between.high.doubleValue()));
+                    invokeStatic("betweenDouble", "(" + BUFFER + "IDD)I", 6, 1);
+                }
+                not(between.not);
+            } else if (node instanceof SelectorNode.In in) {
+                find(in.property);
+                field(in.values, "[" + SPAN_STRING);
+                invokeStatic("in", "(" + BUFFER + "I[" + SPAN_STRING + ")I", 3, 1);
+                not(in.not);
+            } else if (node instanceof SelectorNode.Like like) {
+                find(like.property);
+                field(like.pattern, LIKE_PATTERN);
+                invokeStatic("like", "(" + BUFFER + "I" + LIKE_PATTERN + ")I", 3, 1);
+                not(like.not);
+            } else if (node instanceof SelectorNode.IsNull isNull) {
+                find(isNull.property);
+                invokeStatic("isNull", "(" + BUFFER + "I)I", 2, 1);
+                not(isNull.not);
+            } else if (node instanceof SelectorNode.Constant constant) {
+                pushInt(constant.value ? SelectorSupport.TRUE : SelectorSupport.FALSE);
+            } else {
+                throw new IllegalArgumentException("Unknown selector node " + node);
+            }
+        }
+
+        /**
+         * Pushes the buffer and the index of a property in it.
+         */
+        private void find(final SpanString property) {
+            op(ALOAD_1, 1);
+            op(ALOAD_1, 1);
+            op(ILOAD_2, 1);
+            field(property, SPAN_STRING);
+            invokeStatic("find", FIND, 3, 1);
+        }
+
+        private void not(final boolean not) {
+            if (not) {
+                invokeStatic("not", "(I)I", 1, 1);
+            }
+        }
+
+        private void field(final Object constant, final String type) {
+            op(ALOAD_0, 1);
+            op(GETFIELD, 0);
+            u2(fieldRef(fieldName(constants.size()), type));
+            constants.add(constant);
+            fieldTypes.add(type);
+        }
+
+        private void begin() {
+            code = new ByteArrayOutputStream();
+            stack = 0;
+            maxStack = 0;
+        }
+
+        private void op(final int opcode, final int stackDelta) {
+            code.write(opcode);
+            stack += stackDelta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void u2(final int value) {
+            code.write(value >>> 8);
+            code.write(value);
+        }
+
+        private void pushInt(final int value) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value, 1);
+            } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+                op(BIPUSH, 1);
+                code.write(value);
+            } else {
+                op(SIPUSH, 1);
+                u2(value);
+            }
+        }
+
+        private void ldc2(final int index) {
+            op(LDC2_W, 2);
+            u2(index);
+        }
+
+        private void invokeStatic(final String name, final String desc, final int argSlots, final int returnSlots) {
+            op(INVOKESTATIC, returnSlots - argSlots);
+            u2(methodRef(SUPPORT, name, desc));
+        }
+
+        /**
+         * @return offset of the branch, to be patched with its target.
+         */
+        private int branch(final int opcode, final int stackDelta) {
+            final int offset = code.size();
+            op(opcode, stackDelta);
+            u2(0);
+            return offset;
+        }
+
+        /**
+         * Sets the target of a branch to the current offset.
+         */
+        private void patch(final int offset) {
+            final int jump = code.size() - offset;
+            if (jump > Short.MAX_VALUE) {
+                throw new IllegalArgumentException("Selector too large to compile");
+            }
+            final byte[] bytes = code.toByteArray();
+            bytes[offset + 1] = (byte) (jump >>> 8);
+            bytes[offset + 2] = (byte) jump;
+            code.reset();
+            code.write(bytes, 0, bytes.length);
+        }
+
+        private static String fieldName(final int index) {
+            return "c" + index;
+        }
+
+        private int utf8(final String value) {
+            return constant("U" + value, out -> {
+                out.writeByte(1);
+                out.writeUTF(value);
+            }, 1);
+        }
+
+        private int classRef(final String name) {
+            final int nameIndex = utf8(name);
+            return constant("C" + name, out -> {
+                out.writeByte(7);
+                out.writeShort(nameIndex);
+            }, 1);
+        }
+
+        private int nameAndType(final String name, final String desc) {
+            final int nameIndex = utf8(name);
+            final int descIndex = utf8(desc);
+            return constant("N" + name + ' ' + desc, out -> {
+                out.writeByte(12);
+                out.writeShort(nameIndex);
+                out.writeShort(descIndex);
+            }, 1);
+        }
+
+        private int methodRef(final String owner, final String name, final String desc) {
+            final int ownerIndex = classRef(owner);
+            final int nameAndType = nameAndType(name, desc);
+            return constant("M" + owner + ' ' + name + ' ' + desc, out -> {
+                out.writeByte(10);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            }, 1);
+        }
+
+        private int fieldRef(final String name, final String desc) {
+            final int ownerIndex = classRef(CLASS_NAME);
+            final int nameAndType = nameAndType(name, desc);
+            return constant("F" + name + ' ' + desc, out -> {
+                out.writeByte(9);
+                out.writeShort(ownerIndex);
+                out.writeShort(nameAndType);
+            }, 1);
+        }
+
+        private int longConstant(final long value) {
+            return constant("J" + value, out -> {
+                out.writeByte(5);
+                out.writeLong(value);
+            }, 2);
+        }
+
+        private int doubleConstant(final double value) {
+            return constant("D" + Double.doubleToRawLongBits(value), out -> {
+                out.writeByte(6);
+                out.writeDouble(value);
+            }, 2);
+        }
+
+        private int constant(final String key, final PoolEntry entry, final int slots) {
+            final Integer existing = poolIndexes.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            try {
+                entry.write(poolOut);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            final int index = poolCount;
+            poolCount += slots;
+            poolIndexes.put(key, index);
+            return index;
+        }
+
+        @FunctionalInterface
+        private interface PoolEntry {
+
+            void write(DataOutputStream out) throws IOException;
+        }
+    }
+}
@@ -0,0 +1,479 @@
+package com.lazy.pegasus.core.selector;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageProperties;
+import io.netty.buffer.ByteBuf;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Routes messages to the subscriptions whose selector they match without evaluating every selector.
+ * <p>
+ * Each selector is anchored on one of its top-level {@code AND} terms which must be true for the selector to match:
+ * <ul>
+ *     <li>an equality {@code property = literal} or {@code property IN (...)}, indexed in a hash table of the values of
+ *     property,</li>
+ *     <li>otherwise a numeric range {@code property > literal}, {@code property BETWEEN low AND high}, ..., indexed in
+ *     an interval tree of property.</li>
+ * </ul>
+ * A message looks up each indexed property once, reading its value in place, and only the selectors of the matching
+ * values and intervals are evaluated, so routing is linear in the number of indexed properties and candidates rather
+ * than in the number of subscriptions. Selectors without such a term are evaluated for every message, and an empty
+ * selector matches every message without evaluation.
+ * <p>
+ * The index is an immutable snapshot rebuilt on every change of subscriptions, so matching is lock-free while
+ * changes, much rarer than messages, are serialized.
+ *
+ * @param <S> type of subscriptions.
+ */
+public class SelectorIndex<S> {
+
+    private static final Entry<?>[] NO_ENTRIES = new Entry<?>[0];
+
+    private static final class Entry<S> {
+
+        private final S subscription;
+        private final Selector selector;
+        private final SpanString property;
+        private final Object[] values;
+        private final double low;
+        private final double high;
+
+        private Entry(final S subscription, final Selector selector, final SpanString property, final Object[] values,
+                      final double low, final double high) {
+            this.subscription = subscription;
+            this.selector = selector;
+            this.property = property;
+            this.values = values;
+            this.low = low;
+            this.high = high;
+        }
+    }
+
+    private static final class Snapshot<S> {
+
+        private final SpanString[] equalityProperties;
+        private final ValueTable<S>[] equalityTables;
+        private final SpanString[] rangeProperties;
+        private final IntervalTree<S>[] rangeTrees;
+        private final Entry<S>[] unindexed;
+        private final Entry<S>[] matchAll;
+
+        private Snapshot(final SpanString[] equalityProperties, final ValueTable<S>[] equalityTables,
+                         final SpanString[] rangeProperties, final IntervalTree<S>[] rangeTrees,
+                         final Entry<S>[] unindexed, final Entry<S>[] matchAll) {
+            this.equalityProperties = equalityProperties;
+            this.equalityTables = equalityTables;
+            this.rangeProperties = rangeProperties;
+            this.rangeTrees = rangeTrees;
+            this.unindexed = unindexed;
+            this.matchAll = matchAll;
+        }
+    }
+
+    private final Map<S, Entry<S>> entries = new LinkedHashMap<>();
+    private volatile Snapshot<S> snapshot = build(List.of());
+
+    /**
+     * Adds a subscription.
+     *
+     * @param subscription subscription.
+     * @param selector     selector of subscription, null or blank to match every message.
+     * @throws IllegalArgumentException if the selector is invalid or the subscription was already added.
+     */
+    public synchronized void add(final S subscription, final String selector) {
+        Objects.requireNonNull(subscription, "subscription");
+        if (entries.containsKey(subscription)) {
+            throw new IllegalArgumentException("Subscription " + subscription + " already added");
+        }
+        entries.put(subscription, entry(subscription, selector));
+        snapshot = build(entries.values());
+    }
+
+    /**
+     * @param subscription subscription.
+     * @return true if the subscription was removed.
+     */
+    public synchronized boolean remove(final S subscription) {
+        if (entries.remove(subscription) == null) {
+            return false;
+        }
+        snapshot = build(entries.values());
+        return true;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @see #match(PegasusBuffer, int, Consumer)
+     */
+    public int match(final Message message, final Consumer<? super S> consumer) {
+        return match(message.getBuffer(), message.getPropertiesIndex(), consumer);
+    }
+
+    /**
+     * Hands every subscription whose selector matches the properties to consumer, each at most once.
+     *
+     * @param buf             buffer holding the encoded properties.
+     * @param propertiesIndex index of the properties block.
+     * @param consumer        consumer of matching subscriptions.
+     * @return number of selectors evaluated.
+     */
+    public int match(final PegasusBuffer buf, final int propertiesIndex, final Consumer<? super S> consumer) {
+        final Snapshot<S> snapshot = this.snapshot;
+        for (Entry<S> entry : snapshot.matchAll) {
+            consumer.accept(entry.subscription);
+        }
+        int evaluated = evaluate(snapshot.unindexed, buf, propertiesIndex, consumer);
+
+        for (int i = 0; i < snapshot.equalityProperties.length; i++) {
+            final int index = MessageProperties.find(buf, propertiesIndex, snapshot.equalityProperties[i]);
+            if (index < 0) {
+                continue;
+            }
+            final ValueTable<S> table = snapshot.equalityTables[i];
+            final int valueIndex = index + DataConstants.SIZE_BYTE;
+            final Entry<S>[] candidates = switch (buf.getByte(index)) {
+                case DataConstants.STRING -> table.get(buf.byteBuf(), valueIndex + DataConstants.SIZE_INT,
+                        buf.getInt(valueIndex));
+                case DataConstants.BOOLEAN -> table.get(buf.getByte(valueIndex) != DataConstants.FALSE);
+                case DataConstants.BYTE, DataConstants.SHORT, DataConstants.INT, DataConstants.LONG, DataConstants.FLOAT,
+                     DataConstants.DOUBLE -> table.get(numericValue(buf, index));
+                default -> null;
+            };
+            if (candidates != null) {
+                evaluated += evaluate(candidates, buf, propertiesIndex, consumer);
+            }
+        }
+
+        for (int i = 0; i < snapshot.rangeProperties.length; i++) {
+            final int index = MessageProperties.find(buf, propertiesIndex, snapshot.rangeProperties[i]);
+            if (index < 0 || !isNumeric(buf.getByte(index))) {
+                continue;
+            }
+            evaluated += snapshot.rangeTrees[i].match(numericValue(buf, index), buf, propertiesIndex, consumer);
+        }
+        return evaluated;
+    }
+
+    private static <S> int evaluate(final Entry<S>[] entries, final PegasusBuffer buf, final int propertiesIndex,
+                                    final Consumer<? super S> consumer) {
+        for (Entry<S> entry : entries) {
+            if (entry.selector.matches(buf, propertiesIndex)) {
+                consumer.accept(entry.subscription);
+            }
+        }
+        return entries.length;
+    }
+
+    private static <S> Entry<S> entry(final S subscription, final String selector) {
+        if (selector == null || selector.isBlank()) {
+            return new Entry<>(subscription, null, null, null, 0, 0);
+        }
+        final SelectorNode root = SelectorParser.parse(selector);
+        final Selector compiled = SelectorCompiler.compile(root);
+
+        final List<SelectorNode> terms = new ArrayList<>();
+        terms(root, terms);
+        SelectorNode range = null;
+        for (SelectorNode term : terms) {
+            if (term instanceof SelectorNode.Comparison comparison) {
+                if (comparison.op == SelectorSupport.EQ) {
+                    return new Entry<>(subscription, compiled, comparison.property, new Object[]{key(comparison.value)}, 0, 0);
+                }
+                if (range == null && comparison.op != SelectorSupport.NE && comparison.value instanceof Number) {
+                    range = term;
+                }
+            } else if (term instanceof SelectorNode.In in && !in.not) {
+                return new Entry<>(subscription, compiled, in.property, in.values.clone(), 0, 0);
+            } else if (term instanceof SelectorNode.Between between && !between.not && range == null) {
+                range = term;
+            }
+        }
+
+        if (range instanceof SelectorNode.Between between) {
+            return new Entry<>(subscription, compiled, between.property, null, between.low.doubleValue(),
+                    between.high.doubleValue());
+        } else if (range instanceof SelectorNode.Comparison comparison) {
+            // bounds are inclusive, the index only selects candidates and a long may round to its bound
+            final double value = ((Number) comparison.value).doubleValue();
+            final boolean lower = comparison.op == SelectorSupport.GT || comparison.op == SelectorSupport.GE;
+            return new Entry<>(subscription, compiled, comparison.property, null,
+                    lower ? value : Double.NEGATIVE_INFINITY, lower ? Double.POSITIVE_INFINITY : value);
+        }
+        return new Entry<>(subscription, compiled, null, null, 0, 0);
+    }
+
+    private static void terms(final SelectorNode node, final List<SelectorNode> terms) {
+        if (node instanceof SelectorNode.Logical logical && logical.and) {
+            terms(logical.left, terms);
+            terms(logical.right, terms);
+        } else {
+            terms.add(node);
+        }
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static <S> Snapshot<S> build(final Iterable<Entry<S>> entries) {
+        final Map<SpanString, List<Entry<S>>> equalities = new LinkedHashMap<>();
+        final Map<SpanString, List<Entry<S>>> ranges = new LinkedHashMap<>();
+        final List<Entry<S>> unindexed = new ArrayList<>();
+        final List<Entry<S>> matchAll = new ArrayList<>();
+        for (Entry<S> entry : entries) {
+            if (entry.selector == null) {
+                matchAll.add(entry);
+            } else if (entry.property == null) {
+                unindexed.add(entry);
+            } else if (entry.values != null) {
+                equalities.computeIfAbsent(entry.property, p -> new ArrayList<>()).add(entry);
+            } else {
+                ranges.computeIfAbsent(entry.property, p -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        final ValueTable<S>[] tables = new ValueTable[equalities.size()];
+        int i = 0;
+        for (List<Entry<S>> list : equalities.values()) {
+            tables[i++] = new ValueTable<>(list);
+        }
+        final IntervalTree<S>[] trees = new IntervalTree[ranges.size()];
+        i = 0;
+        for (List<Entry<S>> list : ranges.values()) {
+            trees[i++] = new IntervalTree<>(list);
+        }
+        return new Snapshot<>(equalities.keySet().toArray(new SpanString[0]), tables,
+                ranges.keySet().toArray(new SpanString[0]), trees, unindexed.toArray((Entry<S>[]) NO_ENTRIES),
+                matchAll.toArray((Entry<S>[]) NO_ENTRIES));
+    }
+
+    /**
+     * @return the key of a literal in a value table, numbers being compared as doubles.
+     */
+    private static Object key(final Object value) {
+        return value instanceof Number number ? number.doubleValue() + 0.0 : value;
+    }
+
+    private static boolean isNumeric(final byte type) {
+        return switch (type) {
+            case DataConstants.BYTE, DataConstants.SHORT, DataConstants.INT, DataConstants.LONG, DataConstants.FLOAT,
+                 DataConstants.DOUBLE -> true;
+            default -> false;
+        };
+    }
+
+    private static double numericValue(final PegasusBuffer buf, final int index) {
+        final int valueIndex = index + DataConstants.SIZE_BYTE;
+        return switch (buf.getByte(index)) {
+            case DataConstants.BYTE -> buf.getByte(valueIndex);
+            case DataConstants.SHORT -> buf.getShort(valueIndex);
+            case DataConstants.INT -> buf.getInt(valueIndex);
+            case DataConstants.LONG -> buf.getLong(valueIndex);
+            case DataConstants.FLOAT -> buf.getFloat(valueIndex);
+            default -> buf.getDouble(valueIndex);
+        };
+    }
+
+    /**
+     * Open addressing table from the values of a property (SpanString, Double or Boolean) to the entries anchored on
+     * them, probed with the encoded value without allocation.
+     */
+    private static final class ValueTable<S> {
+
+        private final Object[] keys;
+        private final Entry<S>[][] values;
+        private final int mask;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private ValueTable(final List<Entry<S>> entries) {
+            final Map<Object, List<Entry<S>>> byValue = new LinkedHashMap<>();
+            for (Entry<S> entry : entries) {
+                for (Object value : entry.values) {
+                    final List<Entry<S>> list = byValue.computeIfAbsent(key(value), v -> new ArrayList<>());
+                    // IN may list a value twice
+                    if (list.isEmpty() || list.get(list.size() - 1) != entry) {
+                        list.add(entry);
+                    }
+                }
+            }
+            final int capacity = Integer.highestOneBit(Math.max(2, byValue.size()) * 2 - 1) << 1;
+            keys = new Object[capacity];
+            values = new Entry[capacity][];
+            mask = capacity - 1;
+            for (Map.Entry<Object, List<Entry<S>>> entry : byValue.entrySet()) {
+                int slot = spread(hash(entry.getKey())) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = entry.getKey();
+                values[slot] = entry.getValue().toArray((Entry<S>[]) NO_ENTRIES);
+            }
+        }
+
+        private Entry<S>[] get(final ByteBuf buf, final int offset, final int length) {
+            for (int slot = spread(SpanString.hashCode(buf, offset, length)) & mask; ; slot = (slot + 1) & mask) {
+                final Object key = keys[slot];
+                if (key == null) {
+                    return null;
+                }
+                if (key instanceof SpanString s && s.getData().length == length && s.equals(buf, offset, length)) {
+                    return values[slot];
+                }
+            }
+        }
+
+        private Entry<S>[] get(final double value) {
+            final double normalized = value + 0.0;
+            for (int slot = spread(Double.hashCode(normalized)) & mask; ; slot = (slot + 1) & mask) {
+                final Object key = keys[slot];
+                if (key == null) {
+                    return null;
+                }
+                if (key instanceof Double d && d == normalized) {
+                    return values[slot];
+                }
+            }
+        }
+
+        private Entry<S>[] get(final boolean value) {
+            for (int slot = spread(Boolean.hashCode(value)) & mask; ; slot = (slot + 1) & mask) {
+                final Object key = keys[slot];
+                if (key == null) {
+                    return null;
+                }
+                if (key instanceof Boolean b && b == value) {
+                    return values[slot];
+                }
+            }
+        }
+
+        private static int hash(final Object key) {
+            if (key instanceof Double d) {
+                return Double.hashCode(d);
+            }
+            return key.hashCode();
+        }
+
+        private static int spread(final int h) {
+            return (h ^ (h >>> 16)) * 0x9E3779B9;
+        }
+    }
+
+    /**
+     * Centered interval tree of the closed ranges of a property: each node holds the intervals containing its center,
+     * sorted by low and by high bounds, so a stabbing query visits a path of nodes and reports the containing
+     * intervals without scanning the others.
+     */
+    private static final class IntervalTree<S> {
+
+        private static final class Node<S> {
+
+            private final double center;
+            private final Entry<S>[] byLow;
+            private final Entry<S>[] byHigh;
+            private final Node<S> left;
+            private final Node<S> right;
+
+            private Node(final double center, final Entry<S>[] byLow, final Entry<S>[] byHigh, final Node<S> left,
+                         final Node<S> right) {
+                this.center = center;
+                this.byLow = byLow;
+                this.byHigh = byHigh;
+                this.left = left;
+                this.right = right;
+            }
+        }
+
+        private final Node<S> root;
+
+        private IntervalTree(final List<Entry<S>> entries) {
+            root = build(entries);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <S> Node<S> build(final List<Entry<S>> entries) {
+            if (entries.isEmpty()) {
+                return null;
+            }
+            final double[] bounds = new double[entries.size() * 2];
+            int n = 0;
+            for (Entry<S> entry : entries) {
+                bounds[n++] = entry.low;
+                bounds[n++] = entry.high;
+            }
+            Arrays.sort(bounds);
+            final double center = bounds[bounds.length / 2];
+
+            final List<Entry<S>> left = new ArrayList<>();
+            final List<Entry<S>> right = new ArrayList<>();
+            final List<Entry<S>> overlapping = new ArrayList<>();
+            for (Entry<S> entry : entries) {
+                if (entry.high < center) {
+                    left.add(entry);
+                } else if (entry.low > center) {
+                    right.add(entry);
+                } else {
+                    overlapping.add(entry);
+                }
+            }
+            final Entry<S>[] byLow = overlapping.toArray((Entry<S>[]) NO_ENTRIES);
+            Arrays.sort(byLow, Comparator.comparingDouble(e -> e.low));
+            final Entry<S>[] byHigh = overlapping.toArray((Entry<S>[]) NO_ENTRIES);
+            Arrays.sort(byHigh, Comparator.comparingDouble(e -> -e.high));
+            return new Node<>(center, byLow, byHigh, build(left), build(right));
+        }
+
+        private int match(final double value, final PegasusBuffer buf, final int propertiesIndex,
+                          final Consumer<? super S> consumer) {
+            if (Double.isNaN(value)) {
+                return 0;
+            }
+            int evaluated = 0;
+            Node<S> node = root;
+            while (node != null) {
+                if (value < node.center) {
+                    for (Entry<S> entry : node.byLow) {
+                        if (entry.low > value) {
+                            break;
+                        }
+                        evaluated += evaluate(entry, buf, propertiesIndex, consumer);
+                    }
+                    node = node.left;
+                } else if (value > node.center) {
+                    for (Entry<S> entry : node.byHigh) {
+                        if (entry.high < value) {
+                            break;
+                        }
+                        evaluated += evaluate(entry, buf, propertiesIndex, consumer);
+                    }
+                    node = node.right;
+                } else {
+                    for (Entry<S> entry : node.byLow) {
+                        evaluated += evaluate(entry, buf, propertiesIndex, consumer);
+                    }
+                    node = null;
+                }
+            }
+            return evaluated;
+        }
+
+        private static <S> int evaluate(final Entry<S> entry, final PegasusBuffer buf, final int propertiesIndex,
+                                        final Consumer<? super S> consumer) {
+            if (entry.selector.matches(buf, propertiesIndex)) {
+                consumer.accept(entry.subscription);
+            }
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.lazy.pegasus.core.selector;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+/**
+ * A node of the tree of a parsed selector, see {@link SelectorParser}. A node evaluates to {@link SelectorSupport#TRUE},
+ * {@link SelectorSupport#FALSE} or {@link SelectorSupport#UNKNOWN}.
+ * <p>
+ * Evaluating the tree interprets the selector, {@link SelectorCompiler} compiles it to bytecode doing the same
+ * calls to {@link SelectorSupport}.
+ */
+public abstract class SelectorNode implements Selector {
+
+    private static final String[] OPERATORS = {"=", "<>", "<", "<=", ">", ">="};
+
+    SelectorNode() {
+    }
+
+    /**
+     * @param buf             buffer holding the encoded properties.
+     * @param propertiesIndex index of the properties block.
+     * @return result of node.
+     */
+    abstract int evaluate(PegasusBuffer buf, int propertiesIndex);
+
+    @Override
+    public boolean matches(final PegasusBuffer buf, final int propertiesIndex) {
+        return SelectorSupport.isTrue(evaluate(buf, propertiesIndex));
+    }
+
+    /**
+     * {@code left AND right} or {@code left OR right}, the right operand is evaluated only if needed.
+     */
+    static final class Logical extends SelectorNode {
+
+        final SelectorNode left;
+        final SelectorNode right;
+        final boolean and;
+
+        Logical(final SelectorNode left, final SelectorNode right, final boolean and) {
+            this.left = left;
+            this.right = right;
+            this.and = and;
+        }
+
+        @Override
+        int evaluate(final PegasusBuffer buf, final int propertiesIndex) {
+            final int l = left.evaluate(buf, propertiesIndex);
+            if (and) {
+                return l == SelectorSupport.FALSE ? l : SelectorSupport.and(l, right.evaluate(buf, propertiesIndex));
+            }
+            return l == SelectorSupport.TRUE ? l : SelectorSupport.or(l, right.evaluate(buf, propertiesIndex));
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + (and ? " AND " : " OR ") + right + ')';
+        }
+    }
+
+    static final class Not extends SelectorNode {
+
+        final SelectorNode operand;
+
+        Not(final SelectorNode operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        int evaluate(final PegasusBuffer buf, final int propertiesIndex) {
+            return SelectorSupport.not(operand.evaluate(buf, propertiesIndex));
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + operand;
+        }
+    }
+
+    /**
+     * {@code property op value}, value being a Long, Double, SpanString or Boolean.
+     */
+    static final class Comparison extends SelectorNode {
+
+        final SpanString property;
+        final int op;
+        final Object value;
+
+        Comparison(final SpanString property, final int op, final Object value) {
+            this.property = property;
+            this.op = op;
+            this.value = value;
+        }
+
+        @Override
+        int evaluate(final PegasusBuffer buf, final int propertiesIndex) {
+            final int index = SelectorSupport.find(buf, propertiesIndex, property);
+            if (value instanceof Long l) {
+                return SelectorSupport.compareLong(buf, index, l, op);
+            } else if (value instanceof Double d) {
+                return SelectorSupport.compareDouble(buf, index, d, op);
+            } else if (value instanceof SpanString s) {
+                return SelectorSupport.compareString(buf, index, s, op);
+            }
+            return SelectorSupport.compareBoolean(buf, index, (Boolean) value, op);
+        }
+
+        @Override
+        public String toString() {
+            return property + " " + OPERATORS[op] + ' ' + literal(value);
+        }
+    }
+
+    /**
+     * {@code property [NOT] BETWEEN low AND high}, bounds being both Long or both Double.
+     */
+    static final class Between extends SelectorNode {
+
+        final SpanString property;
+        final Number low;
+        final Number high;
+        final boolean not;
+
+        Between(final SpanString property, final Number low, final Number high, final boolean not) {
+            this.property = property;
+            this.low = low;
+            this.high = high;
+            this.not = not;
+        }
+
+        @Override
+        int evaluate(final PegasusBuffer buf, final int propertiesIndex) {
+            final int index = SelectorSupport.find(buf, propertiesIndex, property);
+            final int result = low instanceof Long ?
+                    SelectorSupport.betweenLong(buf, index, low.longValue(), high.longValue()) :
+                    SelectorSupport.betweenDouble(buf, index, low.doubleValue(), high.doubleValue());
+            return not ? SelectorSupport.not(result) : result;
+        }
+
+        @Override
+        public String toString() {
+            return property + (not ? " NOT" : "") + " BETWEEN " + low + " AND " + high;
+        }
+    }
+
+    /**
+     * {@code property [NOT] IN (values)}.
+     */
+    static final class In extends SelectorNode {
+
+        final SpanString property;
+        final SpanString[] values;
+        final boolean not;
+
+        In(final SpanString property, final SpanString[] values, final boolean not) {
+            this.property = property;
+            this.values = values;
+            this.not = not;
+        }
+
+        @Override
+        int evaluate(final PegasusBuffer buf, final int propertiesIndex) {
+            final int result = SelectorSupport.in(buf, SelectorSupport.find(buf, propertiesIndex, property), values);
+            return not ? SelectorSupport.not(result) : result;
+        }
+
+        @Override
+        public String toString() {
+            return property + (not ? " NOT" : "") + " IN (" +
+                    Arrays.stream(values).map(SelectorNode::literal).collect(Collectors.joining(", ")) + ')';
+        }
+    }
+
+    /**
+     * {@code property [NOT] LIKE pattern}.
+     */
+    static final class Like extends SelectorNode {
+
+        final SpanString property;
+        final LikePattern pattern;
+        final boolean not;
+
+        Like(final SpanString property, final LikePattern pattern, final boolean not) {
+            this.property = property;
+            this.pattern = pattern;
+            this.not = not;
+        }
+
+        @Override
+        int evaluate(final PegasusBuffer buf, final int propertiesIndex) {
+            final int result = SelectorSupport.like(buf, SelectorSupport.find(buf, propertiesIndex, property), pattern);
+            return not ? SelectorSupport.not(result) : result;
+        }
+
+        @Override
+        public String toString() {
+            return property + (not ? " NOT" : "") + " LIKE " + literal(pattern.getPattern());
+        }
+    }
+
+    /**
+     * {@code property IS [NOT] NULL}.
+     */
+    static final class IsNull extends SelectorNode {
+
+        final SpanString property;
+        final boolean not;
+
+        IsNull(final SpanString property, final boolean not) {
+            this.property = property;
+            this.not = not;
+        }
+
+        @Override
+        int evaluate(final PegasusBuffer buf, final int propertiesIndex) {
+            final int result = SelectorSupport.isNull(buf, SelectorSupport.find(buf, propertiesIndex, property));
+            return not ? SelectorSupport.not(result) : result;
+        }
+
+        @Override
+        public String toString() {
+            return property + (not ? " IS NOT NULL" : " IS NULL");
+        }
+    }
+
+    /**
+     * {@code TRUE} or {@code FALSE}.
+     */
+    static final class Constant extends SelectorNode {
+
+        final boolean value;
+
+        Constant(final boolean value) {
+            this.value = value;
+        }
+
+        @Override
+        int evaluate(final PegasusBuffer buf, final int propertiesIndex) {
+            return value ? SelectorSupport.TRUE : SelectorSupport.FALSE;
+        }
+
+        @Override
+        public String toString() {
+            return value ? "TRUE" : "FALSE";
+        }
+    }
+
+    private static String literal(final Object value) {
+        if (value instanceof SpanString || value instanceof String) {
+            return '\'' + value.toString().replace("'", "''") + '\'';
+        }
+        return String.valueOf(value).toUpperCase();
+    }
+}
@@ -0,0 +1,341 @@
+package com.lazy.pegasus.core.selector;
+
+import com.lazy.pegasus.core.common.SpanString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses a selector into a tree of {@link SelectorNode}, with the following grammar:
+ * <pre>
+ *     selector   := or
+ *     or         := and (OR and)*
+ *     and        := not (AND not)*
+ *     not        := NOT not | predicate
+ *     predicate  := '(' or ')' | TRUE | FALSE | identifier
+ *                 | identifier op literal | literal op identifier
+ *                 | identifier [NOT] BETWEEN number AND number
+ *                 | identifier [NOT] IN '(' string (',' string)* ')'
+ *                 | identifier [NOT] LIKE string [ESCAPE string]
+ *                 | identifier IS [NOT] NULL
+ *     op         := '=' | '&lt;&gt;' | '&lt;' | '&lt;=' | '&gt;' | '&gt;='
+ * </pre>
+ * Keywords are case insensitive, strings are quoted by {@code '} with {@code ''} for a quote, and an identifier alone
+ * tests a boolean property. This is the subset of JMS selectors comparing properties with literals, arithmetic and
+ * comparisons between properties are not supported.
+ */
+public final class SelectorParser {
+
+    private enum TokenType {
+        IDENTIFIER, STRING, LONG, DOUBLE, OPERATOR, LPAREN, RPAREN, COMMA, KEYWORD, END
+    }
+
+    private static final class Token {
+
+        private final TokenType type;
+        private final String text;
+        private final Object value;
+        private final int position;
+
+        private Token(final TokenType type, final String text, final Object value, final int position) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+            this.position = position;
+        }
+
+        private boolean is(final TokenType type, final String text) {
+            return this.type == type && this.text.equals(text);
+        }
+    }
+
+    private static final List<String> KEYWORDS = List.of("AND", "OR", "NOT", "BETWEEN", "IN", "LIKE", "ESCAPE", "IS",
+            "NULL", "TRUE", "FALSE");
+    private static final List<String> OPERATORS = List.of("=", "<>", "<", "<=", ">", ">=");
+
+    private final String selector;
+    private final List<Token> tokens;
+    private int next;
+
+    private SelectorParser(final String selector) {
+        this.selector = selector;
+        this.tokens = tokenize(selector);
+    }
+
+    /**
+     * @param selector selector to parse.
+     * @return root of tree.
+     * @throws IllegalArgumentException if the selector is invalid.
+     */
+    public static SelectorNode parse(final String selector) {
+        final SelectorParser parser = new SelectorParser(selector);
+        final SelectorNode root = parser.or();
+        parser.expect(TokenType.END, "end of selector");
+        return root;
+    }
+
+    private SelectorNode or() {
+        SelectorNode node = and();
+        while (accept(TokenType.KEYWORD, "OR")) {
+            node = new SelectorNode.Logical(node, and(), false);
+        }
+        return node;
+    }
+
+    private SelectorNode and() {
+        SelectorNode node = not();
+        while (accept(TokenType.KEYWORD, "AND")) {
+            node = new SelectorNode.Logical(node, not(), true);
+        }
+        return node;
+    }
+
+    private SelectorNode not() {
+        if (accept(TokenType.KEYWORD, "NOT")) {
+            return new SelectorNode.Not(not());
+        }
+        return predicate();
+    }
+
+    private SelectorNode predicate() {
+        final Token token = tokens.get(next++);
+        switch (token.type) {
+            case LPAREN -> {
+                final SelectorNode node = or();
+                expect(TokenType.RPAREN, "')'");
+                return node;
+            }
+            case KEYWORD -> {
+                if (token.text.equals("TRUE") || token.text.equals("FALSE")) {
+                    return new SelectorNode.Constant(token.text.equals("TRUE"));
+                }
+            }
+            case STRING, LONG, DOUBLE -> {
+                // literal op identifier, the same as identifier reversed-op literal
+                final int op = operator();
+                final Token identifier = expect(TokenType.IDENTIFIER, "identifier");
+                return comparison(SpanString.of(identifier.text), reverse(op), token);
+            }
+            case IDENTIFIER -> {
+                return identifierPredicate(SpanString.of(token.text));
+            }
+            default -> {
+            }
+        }
+        throw error(token, "predicate");
+    }
+
+    private SelectorNode identifierPredicate(final SpanString property) {
+        final Token token = tokens.get(next);
+        if (token.type == TokenType.OPERATOR) {
+            final int op = operator();
+            final Token literal = tokens.get(next++);
+            return comparison(property, op, literal);
+        }
+        if (accept(TokenType.KEYWORD, "IS")) {
+            final boolean not = accept(TokenType.KEYWORD, "NOT");
+            expect(TokenType.KEYWORD, "NULL");
+            return new SelectorNode.IsNull(property, not);
+        }
+        final boolean not = accept(TokenType.KEYWORD, "NOT");
+        if (accept(TokenType.KEYWORD, "BETWEEN")) {
+            final Token low = number();
+            expect(TokenType.KEYWORD, "AND");
+            final Token high = number();
+            if (low.type == TokenType.LONG && high.type == TokenType.LONG) {
+                return new SelectorNode.Between(property, (Long) low.value, (Long) high.value, not);
+            }
+            return new SelectorNode.Between(property, ((Number) low.value).doubleValue(),
+                    ((Number) high.value).doubleValue(), not);
+        }
+        if (accept(TokenType.KEYWORD, "IN")) {
+            expect(TokenType.LPAREN, "'('");
+            final List<SpanString> values = new ArrayList<>();
+            do {
+                values.add(SpanString.of((String) expect(TokenType.STRING, "string").value));
+            } while (accept(TokenType.COMMA, ","));
+            expect(TokenType.RPAREN, "')'");
+            return new SelectorNode.In(property, values.toArray(new SpanString[0]), not);
+        }
+        if (accept(TokenType.KEYWORD, "LIKE")) {
+            final Token pattern = expect(TokenType.STRING, "string");
+            Character escape = null;
+            if (accept(TokenType.KEYWORD, "ESCAPE")) {
+                final Token escapeToken = expect(TokenType.STRING, "string");
+                final String text = (String) escapeToken.value;
+                if (text.length() != 1) {
+                    throw error(escapeToken, "single character");
+                }
+                escape = text.charAt(0);
+            }
+            try {
+                return new SelectorNode.Like(property, new LikePattern((String) pattern.value, escape), not);
+            } catch (IllegalArgumentException e) {
+                throw error(pattern, "valid pattern");
+            }
+        }
+        if (not) {
+            throw error(tokens.get(next), "BETWEEN, IN or LIKE");
+        }
+        return new SelectorNode.Comparison(property, SelectorSupport.EQ, Boolean.TRUE);
+    }
+
+    private SelectorNode comparison(final SpanString property, final int op, final Token literal) {
+        final Object value;
+        switch (literal.type) {
+            case LONG, DOUBLE -> value = literal.value;
+            case STRING -> value = SpanString.of((String) literal.value);
+            case KEYWORD -> {
+                if (!literal.text.equals("TRUE") && !literal.text.equals("FALSE")) {
+                    throw error(literal, "literal");
+                }
+                value = literal.text.equals("TRUE");
+            }
+            default -> throw error(literal, "literal");
+        }
+        if (!(value instanceof Number) && op != SelectorSupport.EQ && op != SelectorSupport.NE) {
+            throw error(literal, "numeric literal for operator " + OPERATORS.get(op));
+        }
+        return new SelectorNode.Comparison(property, op, value);
+    }
+
+    private int operator() {
+        return OPERATORS.indexOf(expect(TokenType.OPERATOR, "comparison operator").text);
+    }
+
+    private Token number() {
+        final Token token = tokens.get(next++);
+        if (token.type != TokenType.LONG && token.type != TokenType.DOUBLE) {
+            throw error(token, "number");
+        }
+        return token;
+    }
+
+    private static int reverse(final int op) {
+        return switch (op) {
+            case SelectorSupport.LT -> SelectorSupport.GT;
+            case SelectorSupport.LE -> SelectorSupport.GE;
+            case SelectorSupport.GT -> SelectorSupport.LT;
+            case SelectorSupport.GE -> SelectorSupport.LE;
+            default -> op;
+        };
+    }
+
+    private boolean accept(final TokenType type, final String text) {
+        if (tokens.get(next).is(type, text)) {
+            next++;
+            return true;
+        }
+        return false;
+    }
+
+    private Token expect(final TokenType type, final String expected) {
+        final Token token = tokens.get(next);
+        if (token.type != type || type == TokenType.KEYWORD && !token.text.equals(expected)) {
+            throw error(token, expected);
+        }
+        next++;
+        return token;
+    }
+
+    private IllegalArgumentException error(final Token token, final String expected) {
+        final String found = token.type == TokenType.END ? "end of selector" : "'" + token.text + "'";
+        return new IllegalArgumentException("Invalid selector \"" + selector + "\": expected " + expected + " at " +
+                token.position + " but found " + found);
+    }
+
+    private List<Token> tokenize(final String s) {
+        final List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < s.length()) {
+            final char c = s.charAt(i);
+            final int start = i;
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')' || c == ',') {
+                tokens.add(new Token(c == '(' ? TokenType.LPAREN : c == ')' ? TokenType.RPAREN : TokenType.COMMA,
+                        String.valueOf(c), null, start));
+                i++;
+            } else if (c == '=' || c == '<' || c == '>') {
+                i++;
+                if (i < s.length() && (s.charAt(i) == '=' || c == '<' && s.charAt(i) == '>')) {
+                    i++;
+                }
+                tokens.add(new Token(TokenType.OPERATOR, s.substring(start, i), null, start));
+            } else if (c == '\'') {
+                final StringBuilder value = new StringBuilder();
+                i++;
+                while (true) {
+                    if (i == s.length()) {
+                        throw new IllegalArgumentException("Invalid selector \"" + s + "\": unterminated string at " + start);
+                    }
+                    final char ch = s.charAt(i++);
+                    if (ch == '\'') {
+                        if (i < s.length() && s.charAt(i) == '\'') {
+                            i++;
+                        } else {
+                            break;
+                        }
+                    }
+                    value.append(ch);
+                }
+                tokens.add(new Token(TokenType.STRING, s.substring(start, i), value.toString(), start));
+            } else if (Character.isDigit(c) || c == '.' || c == '-' && i + 1 < s.length() &&
+                    (Character.isDigit(s.charAt(i + 1)) || s.charAt(i + 1) == '.')) {
+                i = number(s, tokens, start);
+            } else if (Character.isJavaIdentifierStart(c)) {
+                while (i < s.length() && (Character.isJavaIdentifierPart(s.charAt(i)) || s.charAt(i) == '.')) {
+                    i++;
+                }
+                final String text = s.substring(start, i);
+                final String upper = text.toUpperCase(Locale.ROOT);
+                if (KEYWORDS.contains(upper)) {
+                    tokens.add(new Token(TokenType.KEYWORD, upper, null, start));
+                } else {
+                    tokens.add(new Token(TokenType.IDENTIFIER, text, null, start));
+                }
+            } else {
+                throw new IllegalArgumentException("Invalid selector \"" + s + "\": unexpected '" + c + "' at " + start);
+            }
+        }
+        tokens.add(new Token(TokenType.END, "", null, s.length()));
+        return tokens;
+    }
+
+    private int number(final String s, final List<Token> tokens, final int start) {
+        int i = start + 1;
+        boolean decimal = s.charAt(start) == '.';
+        while (i < s.length()) {
+            final char ch = s.charAt(i);
+            if (Character.isDigit(ch)) {
+                i++;
+            } else if (ch == '.' && !decimal) {
+                decimal = true;
+                i++;
+            } else if ((ch == 'e' || ch == 'E') && i + 1 < s.length()) {
+                decimal = true;
+                i++;
+                if (s.charAt(i) == '+' || s.charAt(i) == '-') {
+                    i++;
+                }
+            } else {
+                break;
+            }
+        }
+        final String text = s.substring(start, i);
+        try {
+            if (i < s.length() && (s.charAt(i) == 'l' || s.charAt(i) == 'L') && !decimal) {
+                i++;
+            }
+            if (decimal) {
+                tokens.add(new Token(TokenType.DOUBLE, text, Double.parseDouble(text), start));
+            } else {
+                tokens.add(new Token(TokenType.LONG, text, Long.parseLong(text), start));
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid selector \"" + s + "\": invalid number " + text + " at " + start);
+        }
+        return i;
+    }
+}
@@ -0,0 +1,170 @@
+package com.lazy.pegasus.core.selector;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.MessageProperties;
+
+/**
+ * Evaluation of selector predicates against encoded properties, shared by the interpreted tree and the generated
+ * bytecode.
+ * <p>
+ * Predicates use the three-valued logic of SQL: a predicate on a missing property, or on a property of another type
+ * than the literal, is {@link #UNKNOWN}, and a selector matches only if it is {@link #TRUE}. Properties are read in
+ * place, a property index is the index of the type of value returned by {@link MessageProperties#find}, or -1.
+ */
+final class SelectorSupport {
+
+    static final int FALSE = 0;
+    static final int TRUE = 1;
+    static final int UNKNOWN = 2;
+
+    static final int EQ = 0;
+    static final int NE = 1;
+    static final int LT = 2;
+    static final int LE = 3;
+    static final int GT = 4;
+    static final int GE = 5;
+
+    private SelectorSupport() {
+    }
+
+    static int find(final PegasusBuffer buf, final int propertiesIndex, final SpanString key) {
+        return MessageProperties.find(buf, propertiesIndex, key);
+    }
+
+    static int compareLong(final PegasusBuffer buf, final int index, final long value, final int op) {
+        if (index < 0) {
+            return UNKNOWN;
+        }
+        final int valueIndex = index + DataConstants.SIZE_BYTE;
+        return switch (buf.getByte(index)) {
+            case DataConstants.BYTE -> compare(Long.compare(buf.getByte(valueIndex), value), op);
+            case DataConstants.SHORT -> compare(Long.compare(buf.getShort(valueIndex), value), op);
+            case DataConstants.INT -> compare(Long.compare(buf.getInt(valueIndex), value), op);
+            case DataConstants.LONG -> compare(Long.compare(buf.getLong(valueIndex), value), op);
+            case DataConstants.FLOAT -> compare(buf.getFloat(valueIndex), value, op);
+            case DataConstants.DOUBLE -> compare(buf.getDouble(valueIndex), value, op);
+            default -> UNKNOWN;
+        };
+    }
+
+    static int compareDouble(final PegasusBuffer buf, final int index, final double value, final int op) {
+        if (index < 0) {
+            return UNKNOWN;
+        }
+        final int valueIndex = index + DataConstants.SIZE_BYTE;
+        return switch (buf.getByte(index)) {
+            case DataConstants.BYTE -> compare(buf.getByte(valueIndex), value, op);
+            case DataConstants.SHORT -> compare(buf.getShort(valueIndex), value, op);
+            case DataConstants.INT -> compare(buf.getInt(valueIndex), value, op);
+            case DataConstants.LONG -> compare(buf.getLong(valueIndex), value, op);
+            case DataConstants.FLOAT -> compare(buf.getFloat(valueIndex), value, op);
+            case DataConstants.DOUBLE -> compare(buf.getDouble(valueIndex), value, op);
+            default -> UNKNOWN;
+        };
+    }
+
+    /**
+     * @param op {@link #EQ} or {@link #NE}.
+     */
+    static int compareString(final PegasusBuffer buf, final int index, final SpanString value, final int op) {
+        if (index < 0 || buf.getByte(index) != DataConstants.STRING) {
+            return UNKNOWN;
+        }
+        final int lengthIndex = index + DataConstants.SIZE_BYTE;
+        final int length = buf.getInt(lengthIndex);
+        final boolean equal = length == value.getData().length &&
+                value.equals(buf.byteBuf(), lengthIndex + DataConstants.SIZE_INT, length);
+        return of(equal == (op == EQ));
+    }
+
+    /**
+     * @param op {@link #EQ} or {@link #NE}.
+     */
+    static int compareBoolean(final PegasusBuffer buf, final int index, final boolean value, final int op) {
+        if (index < 0 || buf.getByte(index) != DataConstants.BOOLEAN) {
+            return UNKNOWN;
+        }
+        final boolean property = buf.getByte(index + DataConstants.SIZE_BYTE) != DataConstants.FALSE;
+        return of((property == value) == (op == EQ));
+    }
+
+    static int betweenLong(final PegasusBuffer buf, final int index, final long low, final long high) {
+        return and(compareLong(buf, index, low, GE), compareLong(buf, index, high, LE));
+    }
+
+    static int betweenDouble(final PegasusBuffer buf, final int index, final double low, final double high) {
+        return and(compareDouble(buf, index, low, GE), compareDouble(buf, index, high, LE));
+    }
+
+    static int in(final PegasusBuffer buf, final int index, final SpanString[] values) {
+        if (index < 0 || buf.getByte(index) != DataConstants.STRING) {
+            return UNKNOWN;
+        }
+        final int lengthIndex = index + DataConstants.SIZE_BYTE;
+        final int length = buf.getInt(lengthIndex);
+        for (SpanString value : values) {
+            if (length == value.getData().length && value.equals(buf.byteBuf(), lengthIndex + DataConstants.SIZE_INT, length)) {
+                return TRUE;
+            }
+        }
+        return FALSE;
+    }
+
+    static int like(final PegasusBuffer buf, final int index, final LikePattern pattern) {
+        if (index < 0 || buf.getByte(index) != DataConstants.STRING) {
+            return UNKNOWN;
+        }
+        final int lengthIndex = index + DataConstants.SIZE_BYTE;
+        return of(pattern.matches(buf, lengthIndex + DataConstants.SIZE_INT, buf.getInt(lengthIndex)));
+    }
+
+    static int isNull(final PegasusBuffer buf, final int index) {
+        return of(index < 0 || buf.getByte(index) == DataConstants.NULL);
+    }
+
+    static int not(final int value) {
+        return value == UNKNOWN ? UNKNOWN : TRUE - value;
+    }
+
+    static int and(final int left, final int right) {
+        if (left == FALSE || right == FALSE) {
+            return FALSE;
+        }
+        return left == TRUE && right == TRUE ? TRUE : UNKNOWN;
+    }
+
+    static int or(final int left, final int right) {
+        if (left == TRUE || right == TRUE) {
+            return TRUE;
+        }
+        return left == FALSE && right == FALSE ? FALSE : UNKNOWN;
+    }
+
+    static boolean isTrue(final int value) {
+        return value == TRUE;
+    }
+
+    private static int compare(final double property, final double value, final int op) {
+        if (Double.isNaN(property) || Double.isNaN(value)) {
+            return op == NE ? TRUE : FALSE;
+        }
+        return compare(property < value ? -1 : property > value ? 1 : 0, op);
+    }
+
+    private static int compare(final int cmp, final int op) {
+        return of(switch (op) {
+            case EQ -> cmp == 0;
+            case NE -> cmp != 0;
+            case LT -> cmp < 0;
+            case LE -> cmp <= 0;
+            case GT -> cmp > 0;
+            default -> cmp >= 0;
+        });
+    }
+
+    private static int of(final boolean value) {
+        return value ? TRUE : FALSE;
+    }
+}
@@ -0,0 +1,260 @@
+package com.lazy.pegasus.core.timer;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Expiration and scheduled delivery of messages, on two {@link TimerWheel}s ticked by a dedicated thread.
+ * <p>
+ * Scheduling or cancelling a timer takes a lock only for the O(1) update of a wheel, and the ticking thread holds it
+ * only while collecting the due messages. Due messages are handed over outside of the lock in batches of up to
+ * {@code batchSize}: expired messages to the {@link ExpiryHandler} along with the expiry address to move them to,
+ * messages due for delivery to the {@link DeliveryHandler}. A batch the handler throws on is logged and dropped, the
+ * other batches are still handed over.
+ */
+public class MessageTimerService {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageTimerService.class);
+
+    public static final long DEFAULT_TICK_MILLIS = 10;
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    /**
+     * Receives expired messages, to be moved to the expiry address. The list is only valid during the call.
+     */
+    @FunctionalInterface
+    public interface ExpiryHandler {
+
+        void expired(SpanString expiryAddress, List<Message> messages);
+    }
+
+    /**
+     * Receives messages whose scheduled delivery time was reached. The list is only valid during the call.
+     */
+    @FunctionalInterface
+    public interface DeliveryHandler {
+
+        void deliver(List<Message> messages);
+    }
+
+    private final SpanString expiryAddress;
+    private final int batchSize;
+    private final ExpiryHandler expiryHandler;
+    private final DeliveryHandler deliveryHandler;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TimerWheel<Message> expirations;
+    private final TimerWheel<Message> deliveries;
+    private final List<Message> expired = new ArrayList<>();
+    private final List<Message> delivered = new ArrayList<>();
+
+    private volatile boolean running;
+    private Thread ticker;
+
+    public MessageTimerService(final SpanString expiryAddress, final ExpiryHandler expiryHandler,
+                               final DeliveryHandler deliveryHandler) {
+        this(expiryAddress, expiryHandler, deliveryHandler, DEFAULT_TICK_MILLIS, DEFAULT_BATCH_SIZE,
+                System::currentTimeMillis);
+    }
+
+    /**
+     * @param expiryAddress   address expired messages are moved to.
+     * @param expiryHandler   receives batches of expired messages.
+     * @param deliveryHandler receives batches of messages due for delivery.
+     * @param tickMillis      resolution of timers.
+     * @param batchSize       maximum number of messages of a batch.
+     * @param clock           source of milliseconds.
+     */
+    public MessageTimerService(final SpanString expiryAddress, final ExpiryHandler expiryHandler,
+                               final DeliveryHandler deliveryHandler, final long tickMillis, final int batchSize,
+                               final LongSupplier clock) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("Batch size must be positive, but " + batchSize);
+        }
+        this.expiryAddress = Objects.requireNonNull(expiryAddress, "expiryAddress");
+        this.expiryHandler = Objects.requireNonNull(expiryHandler, "expiryHandler");
+        this.deliveryHandler = Objects.requireNonNull(deliveryHandler, "deliveryHandler");
+        this.batchSize = batchSize;
+        this.clock = clock;
+        final long now = clock.getAsLong();
+        this.expirations = new TimerWheel<>(tickMillis, now);
+        this.deliveries = new TimerWheel<>(tickMillis, now);
+    }
+
+    public SpanString getExpiryAddress() {
+        return expiryAddress;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        ticker = new Thread(this::tickLoop, "pegasus-timer-wheel");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(ticker);
+        try {
+            ticker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ticker = null;
+    }
+
+    /**
+     * Schedules the expiration of message.
+     *
+     * @return id of timer to cancel it, or -1 if message never expires.
+     */
+    public long scheduleExpiration(final Message message) {
+        final long expiration = message.getExpiration();
+        if (expiration == 0) {
+            return -1;
+        }
+        lock.lock();
+        try {
+            return expirations.schedule(expiration, message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the expiration of a message, e.g. once it was delivered.
+     *
+     * @return true if the timer was pending.
+     */
+    public boolean cancelExpiration(final long timerId) {
+        if (timerId < 0) {
+            return false;
+        }
+        lock.lock();
+        try {
+            return expirations.cancel(timerId) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Schedules the delivery of message at its scheduled delivery time.
+     *
+     * @return id of timer to cancel it, or -1 if message is not scheduled.
+     */
+    public long scheduleDelivery(final Message message) {
+        final long time = message.getScheduledDeliveryTime();
+        if (time == 0) {
+            return -1;
+        }
+        lock.lock();
+        try {
+            return deliveries.schedule(time, message);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean cancelDelivery(final long timerId) {
+        if (timerId < 0) {
+            return false;
+        }
+        lock.lock();
+        try {
+            return deliveries.cancel(timerId) != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of pending expirations.
+     */
+    public int getPendingExpirations() {
+        lock.lock();
+        try {
+            return expirations.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return number of pending scheduled deliveries.
+     */
+    public int getPendingDeliveries() {
+        lock.lock();
+        try {
+            return deliveries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Advances both wheels to the current time and hands the due messages over, called by the ticking thread.
+     *
+     * @return number of due messages.
+     */
+    int tick() {
+        final long now = clock.getAsLong();
+        lock.lock();
+        try {
+            expirations.advance(now, expired::add);
+            deliveries.advance(now, delivered::add);
+        } finally {
+            lock.unlock();
+        }
+
+        final int count = expired.size() + delivered.size();
+        // each batch is handed over on its own, a batch the handler fails on does not drop the following ones
+        for (int from = 0; from < expired.size(); from += batchSize) {
+            final List<Message> batch = expired.subList(from, Math.min(expired.size(), from + batchSize));
+            try {
+                expiryHandler.expired(expiryAddress, batch);
+            } catch (RuntimeException e) {
+                logger.error("Could not hand over {} expired messages", batch.size(), e);
+            }
+        }
+        for (int from = 0; from < delivered.size(); from += batchSize) {
+            final List<Message> batch = delivered.subList(from, Math.min(delivered.size(), from + batchSize));
+            try {
+                deliveryHandler.deliver(batch);
+            } catch (RuntimeException e) {
+                logger.error("Could not hand over {} messages due for delivery", batch.size(), e);
+            }
+        }
+        expired.clear();
+        delivered.clear();
+        return count;
+    }
+
+    private void tickLoop() {
+        final long tickNanos = TimeUnit.MILLISECONDS.toNanos(expirations.getTickMillis());
+        while (running) {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                logger.error("Could not hand over due messages", e);
+            }
+            LockSupport.parkNanos(this, tickNanos);
+        }
+    }
+}
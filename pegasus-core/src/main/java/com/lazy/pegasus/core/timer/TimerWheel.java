@@ -0,0 +1,269 @@
+package com.lazy.pegasus.core.timer;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical hashed timer wheel of {@value #LEVELS} levels of {@value #SLOTS} slots, scheduling and cancelling a
+ * timer in O(1).
+ * <p>
+ * A slot of level {@code L} spans {@code 64^L} ticks. A timer is put into the lowest level whose span covers its
+ * deadline and is moved down a level (cascaded) when the wheel reaches the start of its slot, so the level 0 slot of a
+ * tick holds exactly the timers due at that tick. Timers further than the range of the wheel wait in the top level and
+ * are placed again each time they are cascaded.
+ * <p>
+ * Timers are not objects: they are kept in parallel primitive arrays, a slot is a doubly linked list of array indexes
+ * and the free indexes form another list, so a timer costs no allocation once the arrays have grown. A timer id packs
+ * the index with a generation of the index, so cancelling a timer that already fired, or whose index was reused, does
+ * nothing.
+ * <p>
+ * This wheel is not thread-safe.
+ *
+ * @param <T> type of values of timers.
+ */
+public class TimerWheel<T> {
+
+    public static final int LEVELS = 4;
+    public static final int SLOTS = 64;
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+    private static final int NONE = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final int[] heads = new int[LEVELS * SLOTS];
+
+    private long currentTick;
+    private int size;
+
+    private long[] deadlines;
+    private int[] nexts;
+    private int[] prevs;
+    private int[] slots;
+    private int[] generations;
+    private Object[] values;
+    private int freeHead;
+
+    /**
+     * @param tickMillis  duration of a tick, the resolution of the wheel.
+     * @param startMillis time of tick 0.
+     */
+    public TimerWheel(final long tickMillis, final long startMillis) {
+        this(tickMillis, startMillis, MIN_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of timers held without growing.
+     */
+    public TimerWheel(final long tickMillis, final long startMillis, final int capacity) {
+        if (tickMillis <= 0) {
+            throw new IllegalArgumentException("Tick must be positive, but " + tickMillis);
+        }
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        Arrays.fill(heads, NONE);
+
+        final int initial = Math.max(MIN_CAPACITY, capacity);
+        deadlines = new long[initial];
+        nexts = new int[initial];
+        prevs = new int[initial];
+        slots = new int[initial];
+        generations = new int[initial];
+        values = new Object[initial];
+        linkFree(0, initial);
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    /**
+     * @return number of pending timers.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return time the wheel has been advanced to.
+     */
+    public long currentTimeMillis() {
+        return startMillis + currentTick * tickMillis;
+    }
+
+    /**
+     * Schedules a timer, a deadline which is already due fires on the next {@link #advance(long, Consumer)}.
+     *
+     * @param deadlineMillis time the timer is due at, rounded up to a tick.
+     * @param value          value handed over when the timer fires, not null.
+     * @return id of timer to cancel it.
+     */
+    public long schedule(final long deadlineMillis, final T value) {
+        Objects.requireNonNull(value, "value");
+        if (freeHead == NONE) {
+            grow();
+        }
+        final int index = freeHead;
+        freeHead = nexts[index];
+
+        // saturated, a far deadline such as Long.MAX_VALUE must not overflow into a due one
+        long delta = deadlineMillis - startMillis;
+        if (deadlineMillis <= startMillis) {
+            delta = 0;
+        } else if (delta < 0) {
+            delta = Long.MAX_VALUE;
+        }
+        deadlines[index] = Math.max(currentTick + 1, delta / tickMillis + (delta % tickMillis == 0 ? 0 : 1));
+        values[index] = value;
+        place(index);
+        size++;
+        return (long) generations[index] << 32 | index;
+    }
+
+    /**
+     * @param timerId id of timer.
+     * @return value of timer, or null if the timer already fired or was cancelled.
+     */
+    @SuppressWarnings("unchecked")
+    public T cancel(final long timerId) {
+        final int index = (int) timerId;
+        if (index < 0 || index >= values.length || generations[index] != (int) (timerId >>> 32) ||
+                values[index] == null) {
+            return null;
+        }
+
+        final T value = (T) values[index];
+        unlink(index);
+        free(index);
+        return value;
+    }
+
+    /**
+     * Advances the wheel to {@code nowMillis} and hands the value of each due timer to consumer, in order of ticks.
+     *
+     * @param nowMillis current time.
+     * @param consumer  consumer of values of due timers.
+     * @return number of timers fired.
+     */
+    public int advance(final long nowMillis, final Consumer<? super T> consumer) {
+        final long target = (nowMillis - startMillis) / tickMillis;
+        if (size == 0) {
+            currentTick = Math.max(currentTick, target);
+            return 0;
+        }
+
+        int fired = 0;
+        while (currentTick < target) {
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) (currentTick >>> (SLOT_BITS * level)) & SLOT_MASK);
+                }
+            }
+            fired += expire((int) currentTick & SLOT_MASK, consumer);
+            if (size == 0) {
+                currentTick = target;
+            }
+        }
+        return fired;
+    }
+
+    private int expire(final int slot, final Consumer<? super T> consumer) {
+        int index = heads[slot];
+        heads[slot] = NONE;
+        int fired = 0;
+        while (index != NONE) {
+            final int next = nexts[index];
+            if (deadlines[index] <= currentTick) {
+                @SuppressWarnings("unchecked")
+                final T value = (T) values[index];
+                free(index);
+                fired++;
+                consumer.accept(value);
+            } else {
+                place(index);
+            }
+            index = next;
+        }
+        return fired;
+    }
+
+    private void cascade(final int level, final int slot) {
+        final int bucket = level * SLOTS + slot;
+        int index = heads[bucket];
+        heads[bucket] = NONE;
+        while (index != NONE) {
+            final int next = nexts[index];
+            place(index);
+            index = next;
+        }
+    }
+
+    /**
+     * Puts a timer at the head of the slot covering its deadline.
+     */
+    private void place(final int index) {
+        final long deadline = Math.min(deadlines[index], currentTick + MAX_DELTA);
+        final long delta = deadline - currentTick;
+
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        final int bucket = level * SLOTS + ((int) (deadline >>> (SLOT_BITS * level)) & SLOT_MASK);
+
+        final int head = heads[bucket];
+        nexts[index] = head;
+        prevs[index] = NONE;
+        if (head != NONE) {
+            prevs[head] = index;
+        }
+        heads[bucket] = index;
+        slots[index] = bucket;
+    }
+
+    private void unlink(final int index) {
+        final int prev = prevs[index];
+        final int next = nexts[index];
+        if (prev == NONE) {
+            heads[slots[index]] = next;
+        } else {
+            nexts[prev] = next;
+        }
+        if (next != NONE) {
+            prevs[next] = prev;
+        }
+    }
+
+    private void free(final int index) {
+        values[index] = null;
+        generations[index]++;
+        nexts[index] = freeHead;
+        freeHead = index;
+        size--;
+    }
+
+    private void grow() {
+        final int capacity = values.length;
+        final int newCapacity = capacity << 1;
+        deadlines = Arrays.copyOf(deadlines, newCapacity);
+        nexts = Arrays.copyOf(nexts, newCapacity);
+        prevs = Arrays.copyOf(prevs, newCapacity);
+        slots = Arrays.copyOf(slots, newCapacity);
+        generations = Arrays.copyOf(generations, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+        linkFree(capacity, newCapacity);
+    }
+
+    private void linkFree(final int from, final int to) {
+        for (int i = from; i < to - 1; i++) {
+            nexts[i] = i + 1;
+        }
+        nexts[to - 1] = NONE;
+        freeHead = from;
+    }
+}
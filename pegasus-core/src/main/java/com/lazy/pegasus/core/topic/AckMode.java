@@ -0,0 +1,17 @@
+package com.lazy.pegasus.core.topic;
+
+/**
+ * How an acknowledgement of a message applies to the other messages of a subscription.
+ */
+public enum AckMode {
+
+    /**
+     * Acknowledges only the message.
+     */
+    INDIVIDUAL,
+
+    /**
+     * Acknowledges the message and all older messages.
+     */
+    CUMULATIVE
+}
@@ -0,0 +1,244 @@
+package com.lazy.pegasus.core.topic;
+
+import com.lazy.pegasus.core.collections.LongRangeSet;
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.persistence.RecordTypes;
+
+/**
+ * A durable subscription of a {@link TopicLog}. The subscription holds no message, it is a cursor over the sequences
+ * of the log: the ack floor below which all messages are acknowledged, and the ranges of messages acknowledged above
+ * it, kept in a {@link LongRangeSet}. The cursor is journaled as a {@link RecordTypes#SUBSCRIPTION_CURSOR} update of
+ * the subscription record on each acknowledgement, so its size depends on the number of gaps left by out of order
+ * acknowledgements, not on the number of messages.
+ * <p>
+ * An acknowledgement is either {@link AckMode#INDIVIDUAL individual} or {@link AckMode#CUMULATIVE cumulative}, both
+ * are an insert into the range set, and the ack floor is the first value the set misses.
+ * <p>
+ * Messages are received in sequence order from the ack floor, skipping acknowledged and lost messages. Delivery state
+ * is not journaled: after a restart, or a {@link #recover()}, all unacknowledged messages are received again.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class DurableSubscription {
+
+    private final TopicLog log;
+    private final SpanString name;
+    private final long recordId;
+
+    private volatile long ackFloor;
+    /**
+     * Acknowledged sequences above the ack floor.
+     */
+    private LongRangeSet acked = new LongRangeSet();
+    private long deliveryCursor;
+    private boolean closed;
+
+    DurableSubscription(final TopicLog log, final SpanString name, final long recordId, final long ackFloor) {
+        this.log = log;
+        this.name = name;
+        this.recordId = recordId;
+        this.ackFloor = ackFloor;
+        this.deliveryCursor = ackFloor;
+    }
+
+    public SpanString getName() {
+        return name;
+    }
+
+    long getRecordId() {
+        return recordId;
+    }
+
+    /**
+     * @return sequence of the oldest unacknowledged message, all older messages are acknowledged.
+     */
+    public long getAckFloor() {
+        return ackFloor;
+    }
+
+    /**
+     * @return sequence after the last acknowledged message.
+     */
+    synchronized long getAckedEnd() {
+        return acked.isEmpty() ? ackFloor : acked.last() + 1;
+    }
+
+    /**
+     * @return number of acknowledged ranges above the ack floor.
+     */
+    public synchronized int getAckedRangesCount() {
+        return acked.rangesCount();
+    }
+
+    /**
+     * Marks the next unacknowledged message as delivered.
+     *
+     * @return sequence of message, or -1 if no message is pending.
+     */
+    public synchronized long receive() {
+        final long next = log.getPublishedSequence();
+        while (deliveryCursor < next) {
+            final long sequence = deliveryCursor++;
+            // the non-durable messages published before a restart are lost
+            if (!isAcked(sequence) && log.get(sequence) != null) {
+                return sequence;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param sequence sequence returned by {@link #receive()}.
+     * @return message of sequence, shared by all subscriptions of log, or null if it is acknowledged by all.
+     */
+    public Message getMessage(final long sequence) {
+        return log.get(sequence);
+    }
+
+    /**
+     * Acknowledges a message individually without waiting for the cursor to be synced.
+     *
+     * @see #acknowledge(long, AckMode, boolean)
+     */
+    public boolean acknowledge(final long sequence) throws PegasusException {
+        return acknowledge(sequence, AckMode.INDIVIDUAL, false);
+    }
+
+    /**
+     * Acknowledges a message and journals the cursor.
+     *
+     * @param sequence sequence of message.
+     * @param mode     whether the older messages are acknowledged too.
+     * @param sync     true if the cursor must be synced before this method returns.
+     * @return true if a message was acknowledged, false if they were already acknowledged.
+     * @throws PegasusException if the cursor could not be journaled.
+     */
+    public boolean acknowledge(final long sequence, final AckMode mode, final boolean sync) throws PegasusException {
+        final boolean floorMoved;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Subscription " + name + " is closed");
+            }
+            if (sequence >= log.getPublishedSequence()) {
+                throw new IllegalArgumentException("Unknown sequence " + sequence + " of subscription " + name);
+            }
+            final long floor = ackFloor;
+            if (sequence < floor || (mode == AckMode.INDIVIDUAL && acked.contains(sequence))) {
+                return false;
+            }
+
+            // the floor only moves once the cursor is journaled: an acknowledgement of the floor, or a cumulative one,
+            // is journaled as the floor after sequence, the runs of the set it reaches being skipped on decoding. An
+            // acknowledgement above the floor is inserted in place, and removed again if it could not be journaled.
+            final boolean inserted = mode == AckMode.INDIVIDUAL && sequence > floor;
+            final long journaledFloor = inserted ? floor : sequence + 1;
+            if (inserted) {
+                acked.add(sequence);
+            }
+            final PegasusBuffer body = PegasusBuffers.fixedBuffer(DataConstants.SIZE_LONG + acked.encodeSize());
+            body.writeLong(journaledFloor);
+            acked.encode(body);
+            try {
+                log.getJournal().appendUpdateRecord(recordId, RecordTypes.SUBSCRIPTION_CURSOR, body, sync);
+            } catch (PegasusException e) {
+                if (inserted) {
+                    acked.remove(sequence);
+                }
+                throw e;
+            }
+
+            // the set only keeps the sequences above the floor, so the floor moves past its first run at most
+            final long updatedFloor = acked.nextAbsent(journaledFloor);
+            acked.removeBelow(updatedFloor);
+            ackFloor = updatedFloor;
+            floorMoved = updatedFloor != floor;
+        }
+        if (floorMoved) {
+            log.trim();
+        }
+        return true;
+    }
+
+    /**
+     * Acknowledges a sequence whose message was never published, e.g. as its sync failed. The acknowledgement is only
+     * made in memory, it is journaled with the cursor by the following acknowledgement.
+     */
+    synchronized void skip(final long sequence) {
+        if (sequence < ackFloor || !acked.add(sequence)) {
+            return;
+        }
+        ackFloor = acked.nextAbsent(ackFloor);
+        acked.removeBelow(ackFloor);
+    }
+
+    /**
+     * Rewinds delivery to the ack floor, all unacknowledged messages are received again.
+     */
+    public synchronized void recover() {
+        deliveryCursor = ackFloor;
+    }
+
+    /**
+     * @return number of messages not acknowledged.
+     */
+    public synchronized long getMessageCount() {
+        return log.getPublishedSequence() - ackFloor - acked.cardinality();
+    }
+
+    /**
+     * Deletes the subscription from journal, then closes it. A subscription whose delete failed stays open.
+     *
+     * @return false if the subscription was already closed.
+     * @throws PegasusException if the subscription could not be deleted from journal.
+     */
+    synchronized boolean delete() throws PegasusException {
+        if (closed) {
+            return false;
+        }
+        log.getJournal().appendDeleteRecord(recordId, true);
+        closed = true;
+        return true;
+    }
+
+    private boolean isAcked(final long sequence) {
+        return sequence < ackFloor || acked.contains(sequence);
+    }
+
+    /**
+     * @return number of bytes of cursor.
+     */
+    synchronized int cursorSize() {
+        return DataConstants.SIZE_LONG + acked.encodeSize();
+    }
+
+    /**
+     * Writes the cursor as {@code [long ackFloor][acked ranges]}, see {@link LongRangeSet#encode}.
+     */
+    synchronized void encodeCursor(final PegasusBuffer buffer) {
+        buffer.writeLong(ackFloor);
+        acked.encode(buffer);
+    }
+
+    /**
+     * Reads a cursor written by {@link #encodeCursor(PegasusBuffer)} or journaled by an acknowledgement, replacing the
+     * current one. The ack floor of a journaled cursor may be followed by a run of the set, the floor is moved past it.
+     */
+    synchronized void decodeCursor(final PegasusBuffer buffer) throws PegasusException {
+        final long floor = buffer.readLong();
+        acked = LongRangeSet.decode(buffer);
+        ackFloor = acked.nextAbsent(floor);
+        acked.removeBelow(ackFloor);
+        deliveryCursor = ackFloor;
+    }
+
+    @Override
+    public String toString() {
+        return "DurableSubscription[name=" + name + ", ackFloor=" + ackFloor + ", ackedRanges=" +
+                getAckedRangesCount() + ']';
+    }
+}
@@ -0,0 +1,115 @@
+package com.lazy.pegasus.core.topic;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A publish-subscribe address, each message published is received by every subscription.
+ * <p>
+ * Messages are not copied per subscription: the encoded buffer of a published message is retained once per
+ * subscription and the same {@link Message} is handed to all of them, each subscription releasing its reference once
+ * it has acknowledged the message. The body is therefore held in memory once whatever the number of subscriptions,
+ * which only pay for their per message state, see {@link TopicSubscription}.
+ * <p>
+ * Subscriptions are expected to change rarely compared to publishing, they are kept in a copy-on-write list so that
+ * publishing takes no lock of the topic.
+ */
+public class Topic {
+
+    private final SpanString address;
+    private final Map<SpanString, TopicSubscription> subscriptions = new ConcurrentHashMap<>();
+    private final CopyOnWriteArrayList<TopicSubscription> subscriptionList = new CopyOnWriteArrayList<>();
+
+    public Topic(final SpanString address) {
+        this.address = Objects.requireNonNull(address, "address");
+    }
+
+    public SpanString getAddress() {
+        return address;
+    }
+
+    /**
+     * Creates a subscription receiving the messages published from now on.
+     *
+     * @param name name of subscription.
+     * @return created subscription.
+     * @throws IllegalStateException if the topic has a subscription of name.
+     */
+    public TopicSubscription createSubscription(final SpanString name) {
+        final TopicSubscription subscription = new TopicSubscription(name);
+        if (subscriptions.putIfAbsent(name, subscription) != null) {
+            throw new IllegalStateException("Subscription " + name + " already exists on topic " + address);
+        }
+        subscriptionList.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Removes a subscription, releasing all messages it holds.
+     *
+     * @return removed subscription, or null if the topic has no subscription of name.
+     */
+    public TopicSubscription removeSubscription(final SpanString name) {
+        final TopicSubscription subscription = subscriptions.remove(name);
+        if (subscription != null) {
+            subscriptionList.remove(subscription);
+            subscription.close();
+        }
+        return subscription;
+    }
+
+    public TopicSubscription getSubscription(final SpanString name) {
+        return subscriptions.get(name);
+    }
+
+    public Collection<TopicSubscription> getSubscriptions() {
+        return Collections.unmodifiableCollection(subscriptionList);
+    }
+
+    public int getSubscriptionsCount() {
+        return subscriptionList.size();
+    }
+
+    /**
+     * Publishes a message to all subscriptions, the topic takes over the reference of the caller.
+     *
+     * @param message message to publish.
+     * @return number of subscriptions the message was published to.
+     */
+    public int publish(final Message message) {
+        // snapshot the subscriptions so that the references retained match the subscriptions added to
+        final Object[] targets = subscriptionList.toArray();
+        if (targets.length == 0) {
+            message.release();
+            return 0;
+        }
+        if (targets.length > 1) {
+            message.retain(targets.length - 1);
+        }
+        for (Object target : targets) {
+            ((TopicSubscription) target).add(message);
+        }
+        return targets.length;
+    }
+
+    /**
+     * Removes all subscriptions, releasing all messages they hold.
+     */
+    public void close() {
+        for (TopicSubscription subscription : subscriptionList) {
+            removeSubscription(subscription.getName());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Topic[address=" + address + ", subscriptions=" + getSubscriptionsCount() + ']';
+    }
+}
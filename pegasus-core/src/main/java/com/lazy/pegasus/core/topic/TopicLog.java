@@ -0,0 +1,375 @@
+package com.lazy.pegasus.core.topic;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.journal.Journal;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.persistence.RecordTypes;
+import io.netty.buffer.Unpooled;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongSupplier;
+
+/**
+ * The log of a topic with durable subscriptions. A published message is given the next sequence of the log, a durable
+ * one is journaled once as a {@link RecordTypes#TOPIC_MESSAGE} record, and each
+ * {@link DurableSubscription} is a journaled cursor over the sequences, so publishing costs one journal write whatever
+ * the number of subscriptions. A message is deleted from the journal and released once acknowledged by all
+ * subscriptions.
+ * <p>
+ * Durable messages are synced before {@link #publish(Message)} returns, concurrent publishers share the syncs of the
+ * journal. A message is only published to subscriptions once it and all messages of lower sequences are synced, so a
+ * subscription never receives a message which is not durable yet, and a message whose sync failed is never received.
+ * Non-durable messages are only held in memory and lost on restart, the sequences of the log still go past the ones
+ * acknowledged before. A message published while the topic has no subscription is dropped.
+ * <p>
+ * Logs are created and recovered by a {@link TopicLogManager}.
+ */
+public class TopicLog {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final long NO_RECORD = -1;
+
+    private final SpanString address;
+    private final Journal journal;
+    private final LongSupplier recordIds;
+    private final Map<SpanString, DurableSubscription> subscriptions = new ConcurrentHashMap<>();
+
+    private Message[] messages = new Message[INITIAL_CAPACITY];
+    private long[] recordIdsOfMessages = new long[INITIAL_CAPACITY];
+    /**
+     * Whether the message of a sequence between the published and the next sequences is still being synced.
+     */
+    private boolean[] syncing = new boolean[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private long firstSequence;
+    private long nextSequence;
+    private volatile long publishedSequence;
+
+    TopicLog(final SpanString address, final Journal journal, final LongSupplier recordIds) {
+        this.address = Objects.requireNonNull(address, "address");
+        this.journal = Objects.requireNonNull(journal, "journal");
+        this.recordIds = Objects.requireNonNull(recordIds, "recordIds");
+    }
+
+    public SpanString getAddress() {
+        return address;
+    }
+
+    Journal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Appends a message to the log, the log takes over the reference of the caller.
+     *
+     * @param message message to publish.
+     * @return sequence of message, or -1 if the topic has no subscription.
+     * @throws PegasusException if the message could not be journaled, the message is released and its sequence is
+     *                          skipped by subscriptions.
+     */
+    public long publish(final Message message) throws PegasusException {
+        if (subscriptions.isEmpty()) {
+            message.release();
+            return -1;
+        }
+
+        final long sequence;
+        final long recordId;
+        final CompletableFuture<Void> synced;
+        synchronized (this) {
+            sequence = nextSequence;
+            if (!message.isDurable()) {
+                put(sequence, NO_RECORD, message);
+                nextSequence = sequence + 1;
+                published(sequence);
+                return sequence;
+            }
+
+            recordId = recordIds.getAsLong();
+            try {
+                synced = journal.appendAddRecordAsync(recordId, RecordTypes.TOPIC_MESSAGE, encode(sequence, message));
+            } catch (PegasusException e) {
+                message.release();
+                throw e;
+            }
+            // the slot is reserved in order of sequences, the message is put into it once synced
+            put(sequence, NO_RECORD, null);
+            syncing[(int) sequence & mask] = true;
+            nextSequence = sequence + 1;
+        }
+
+        try {
+            await(synced);
+        } catch (PegasusException e) {
+            synchronized (this) {
+                published(sequence);
+            }
+            message.release();
+            // the sequence is acknowledged for all subscriptions, so that it does not hold back their ack floors
+            for (DurableSubscription subscription : subscriptions.values()) {
+                subscription.skip(sequence);
+            }
+            try {
+                trim();
+            } catch (PegasusException te) {
+                e.addSuppressed(te);
+            }
+            throw e;
+        }
+        synchronized (this) {
+            final int index = (int) sequence & mask;
+            messages[index] = message;
+            recordIdsOfMessages[index] = recordId;
+            published(sequence);
+        }
+        return sequence;
+    }
+
+    /**
+     * @return message of sequence, or null if it is acknowledged by all subscriptions or not published yet.
+     */
+    public synchronized Message get(final long sequence) {
+        if (sequence < firstSequence || sequence >= publishedSequence) {
+            return null;
+        }
+        return messages[(int) sequence & mask];
+    }
+
+    /**
+     * Creates a durable subscription receiving the messages published from now on.
+     *
+     * @param name name of subscription.
+     * @return created subscription.
+     * @throws PegasusException if the subscription could not be journaled.
+     */
+    public DurableSubscription createSubscription(final SpanString name) throws PegasusException {
+        final DurableSubscription subscription;
+        synchronized (this) {
+            if (subscriptions.containsKey(name)) {
+                throw new IllegalStateException("Subscription " + name + " already exists on topic " + address);
+            }
+            subscription = new DurableSubscription(this, name, recordIds.getAsLong(), publishedSequence);
+            final PegasusBuffer body = PegasusBuffers.fixedBuffer(address.sizeof() + name.sizeof() +
+                    subscription.cursorSize());
+            body.writeSpanString(address);
+            body.writeSpanString(name);
+            subscription.encodeCursor(body);
+            journal.appendAddRecord(subscription.getRecordId(), RecordTypes.SUBSCRIPTION, body, true);
+            subscriptions.put(name, subscription);
+        }
+        return subscription;
+    }
+
+    /**
+     * Removes a durable subscription, the messages it did not acknowledge are released if no other subscription
+     * needs them.
+     *
+     * @return removed subscription, or null if the topic has no subscription of name.
+     * @throws PegasusException if the subscription could not be deleted from journal.
+     */
+    public DurableSubscription removeSubscription(final SpanString name) throws PegasusException {
+        final DurableSubscription subscription = subscriptions.get(name);
+        // the subscription is only removed once deleted from journal, a failed delete leaves it in place
+        if (subscription == null || !subscription.delete()) {
+            return null;
+        }
+        subscriptions.remove(name, subscription);
+        trim();
+        return subscription;
+    }
+
+    public DurableSubscription getSubscription(final SpanString name) {
+        return subscriptions.get(name);
+    }
+
+    public Collection<DurableSubscription> getSubscriptions() {
+        return Collections.unmodifiableCollection(subscriptions.values());
+    }
+
+    /**
+     * @return sequence after the last published message, messages of greater sequences are still being synced.
+     */
+    public long getPublishedSequence() {
+        return publishedSequence;
+    }
+
+    /**
+     * @return sequence of the oldest message held.
+     */
+    public synchronized long getFirstSequence() {
+        return firstSequence;
+    }
+
+    /**
+     * @return number of messages held, i.e. not acknowledged by all subscriptions.
+     */
+    public synchronized int getMessageCount() {
+        return (int) (publishedSequence - firstSequence);
+    }
+
+    /**
+     * Deletes the messages acknowledged by all subscriptions. Messages are removed under the lock of the log and their
+     * records deleted from journal once it is released, so publishers do not wait for the journal.
+     *
+     * @throws PegasusException if a message could not be deleted from journal.
+     */
+    void trim() throws PegasusException {
+        long floor = publishedSequence;
+        for (DurableSubscription subscription : subscriptions.values()) {
+            floor = Math.min(floor, subscription.getAckFloor());
+        }
+
+        long[] deletedRecordIds = null;
+        int deleted = 0;
+        synchronized (this) {
+            while (firstSequence < floor) {
+                final int index = (int) firstSequence & mask;
+                final Message message = messages[index];
+                if (message != null) {
+                    messages[index] = null;
+                    message.release();
+                    if (recordIdsOfMessages[index] != NO_RECORD) {
+                        if (deletedRecordIds == null) {
+                            deletedRecordIds = new long[(int) (floor - firstSequence)];
+                        }
+                        deletedRecordIds[deleted++] = recordIdsOfMessages[index];
+                    }
+                }
+                firstSequence++;
+            }
+        }
+
+        // a delete which is not journaled is done again by the recovery, as the message is acknowledged
+        for (int i = 0; i < deleted; i++) {
+            journal.appendDeleteRecord(deletedRecordIds[i], false);
+        }
+    }
+
+    /**
+     * Restores a message recovered from journal, messages must be restored in sequence order.
+     */
+    synchronized void restoreMessage(final long sequence, final long recordId, final Message message) {
+        if (firstSequence == nextSequence) {
+            firstSequence = sequence;
+        }
+        put(sequence, recordId, message);
+        nextSequence = sequence + 1;
+        publishedSequence = nextSequence;
+    }
+
+    /**
+     * Restores a subscription recovered from journal.
+     */
+    DurableSubscription restoreSubscription(final SpanString name, final long recordId, final PegasusBuffer cursor)
+            throws PegasusException {
+        final DurableSubscription subscription = new DurableSubscription(this, name, recordId, 0);
+        subscription.decodeCursor(cursor);
+        subscriptions.put(name, subscription);
+        return subscription;
+    }
+
+    /**
+     * Completes the recovery once all records are restored, deleting the messages acknowledged by all subscriptions
+     * whose delete was not journaled. The next sequence goes past the sequences acknowledged by any subscription, as
+     * they may be of non-durable messages which were not journaled.
+     */
+    void loaded() throws PegasusException {
+        synchronized (this) {
+            for (DurableSubscription subscription : subscriptions.values()) {
+                final long ackedEnd = subscription.getAckedEnd();
+                if (ackedEnd > nextSequence) {
+                    if (firstSequence == nextSequence) {
+                        firstSequence = ackedEnd;
+                    }
+                    nextSequence = ackedEnd;
+                    publishedSequence = ackedEnd;
+                }
+            }
+        }
+        trim();
+    }
+
+    /**
+     * Stores a message at sequence, the slots of the sequences skipped are left empty.
+     */
+    private void put(final long sequence, final long recordId, final Message message) {
+        while (sequence - firstSequence >= messages.length) {
+            grow();
+        }
+        final int index = (int) sequence & mask;
+        messages[index] = message;
+        recordIdsOfMessages[index] = recordId;
+    }
+
+    /**
+     * Marks the message of sequence as synced or failed, publishing the messages which no longer wait for one of a
+     * lower sequence.
+     */
+    private void published(final long sequence) {
+        syncing[(int) sequence & mask] = false;
+        long published = publishedSequence;
+        while (published < nextSequence && !syncing[(int) published & mask]) {
+            published++;
+        }
+        publishedSequence = published;
+    }
+
+    private void grow() {
+        final int capacity = messages.length << 1;
+        final Message[] newMessages = new Message[capacity];
+        final long[] newRecordIds = new long[capacity];
+        final boolean[] newSyncing = new boolean[capacity];
+        final int newMask = capacity - 1;
+        for (long sequence = firstSequence; sequence < nextSequence; sequence++) {
+            newMessages[(int) sequence & newMask] = messages[(int) sequence & mask];
+            newRecordIds[(int) sequence & newMask] = recordIdsOfMessages[(int) sequence & mask];
+            newSyncing[(int) sequence & newMask] = syncing[(int) sequence & mask];
+        }
+        messages = newMessages;
+        recordIdsOfMessages = newRecordIds;
+        syncing = newSyncing;
+        mask = newMask;
+    }
+
+    /**
+     * Encodes the body of a message record, the encoded message is not copied but composed with the header.
+     */
+    private PegasusBuffer encode(final long sequence, final Message message) {
+        final PegasusBuffer header = PegasusBuffers.fixedBuffer(address.sizeof() + DataConstants.SIZE_LONG);
+        header.writeSpanString(address);
+        header.writeLong(sequence);
+        return PegasusBuffers.wrappedBuffer(Unpooled.wrappedBuffer(header.byteBuf(),
+                message.getBuffer().byteBuf().slice(0, message.getEncodeSize())));
+    }
+
+    private static void await(final CompletableFuture<Void> future) throws PegasusException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof PegasusException pe) {
+                throw pe;
+            }
+            throw new PegasusException("Could not sync journal", e.getCause(), PegasusExceptionType.IO_ERROR);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PegasusException("Interrupted while waiting for journal sync", e, PegasusExceptionType.JOURNAL_ERROR);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TopicLog[address=" + address + ", subscriptions=" + subscriptions.size() + ", messages=" +
+                getMessageCount() + ']';
+    }
+}
@@ -0,0 +1,85 @@
+package com.lazy.pegasus.core.topic;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.journal.Journal;
+import com.lazy.pegasus.core.journal.RecordInfo;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.persistence.RecordTypes;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Owns the {@link TopicLog} of every topic with durable subscriptions, all journaled to the same journal.
+ */
+public class TopicLogManager {
+
+    private final Journal journal;
+    private final LongSupplier recordIds;
+    private final Map<SpanString, TopicLog> logs = new ConcurrentHashMap<>();
+
+    /**
+     * @param journal   journal of messages and subscriptions.
+     * @param recordIds source of record ids of journal.
+     */
+    public TopicLogManager(final Journal journal, final LongSupplier recordIds) {
+        this.journal = Objects.requireNonNull(journal, "journal");
+        this.recordIds = Objects.requireNonNull(recordIds, "recordIds");
+    }
+
+    /**
+     * @return log of address, created if it does not exist.
+     */
+    public TopicLog getTopicLog(final SpanString address) {
+        return logs.computeIfAbsent(address, a -> new TopicLog(a, journal, recordIds));
+    }
+
+    /**
+     * Restores the logs and their subscriptions from the records loaded from journal, other record types are ignored.
+     *
+     * @param records records loaded from journal, in the order they were appended.
+     * @throws PegasusException if an acknowledged message could not be deleted from journal.
+     */
+    public void load(final List<RecordInfo> records) throws PegasusException {
+        final Map<Long, DurableSubscription> subscriptions = new HashMap<>();
+        for (RecordInfo record : records) {
+            final PegasusBuffer body = PegasusBuffers.wrappedBuffer(record.getData());
+            switch (record.getUserRecordType()) {
+                case RecordTypes.TOPIC_MESSAGE -> {
+                    final TopicLog log = getTopicLog(body.readSpanString());
+                    final long sequence = body.readLong();
+                    final Message message = Message.wrap(body.slice(body.readIndex(), body.readableBytes()));
+                    log.restoreMessage(sequence, record.getId(), message);
+                }
+                case RecordTypes.SUBSCRIPTION -> {
+                    final TopicLog log = getTopicLog(body.readSpanString());
+                    final SpanString name = body.readSpanString();
+                    subscriptions.put(record.getId(), log.restoreSubscription(name, record.getId(), body));
+                }
+                case RecordTypes.SUBSCRIPTION_CURSOR -> {
+                    final DurableSubscription subscription = subscriptions.get(record.getId());
+                    if (subscription != null) {
+                        subscription.decodeCursor(body);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+
+        for (TopicLog log : logs.values()) {
+            log.loaded();
+        }
+    }
+
+    public int getTopicLogsCount() {
+        return logs.size();
+    }
+}
@@ -0,0 +1,231 @@
+package com.lazy.pegasus.core.topic;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+
+import java.util.Objects;
+
+/**
+ * A subscription of a {@link Topic}, holding a reference to each message published since it was created until the
+ * message is acknowledged.
+ * <p>
+ * The messages are shared by all subscriptions of the topic, a subscription only holds a reference to the message and
+ * one reference count of its buffer. The state of a message for a subscription is packed in a single long, the
+ * delivery count in the low 32 bits and the ack state above, so a message costs a subscription one array slot of each
+ * of a reference and a long, whatever the size of the message.
+ * <p>
+ * Messages are received in publish order and identified by a delivery tag, the sequence of the message in the
+ * subscription. Acknowledgements may be out of order, a message is released once it and all older messages are
+ * acknowledged. A message given back by {@link #redeliver(long)} is received again before any newer message.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class TopicSubscription {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final long PENDING = 0;
+    private static final long DELIVERED = 1L << 32;
+    private static final long ACKED = 2L << 32;
+    private static final long STATE_MASK = 3L << 32;
+    private static final long DELIVERY_COUNT_MASK = 0xFFFFFFFFL;
+
+    private final SpanString name;
+
+    private Message[] messages = new Message[INITIAL_CAPACITY];
+    private long[] states = new long[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+
+    /**
+     * Sequence of the oldest unacknowledged message.
+     */
+    private long head;
+    /**
+     * Sequence of the next published message.
+     */
+    private long tail;
+    /**
+     * Sequence from which the next pending message is searched.
+     */
+    private long deliveryCursor;
+    private int delivering;
+    private boolean closed;
+
+    TopicSubscription(final SpanString name) {
+        this.name = Objects.requireNonNull(name, "name");
+    }
+
+    public SpanString getName() {
+        return name;
+    }
+
+    /**
+     * Takes over one reference of message, which is released at once if the subscription is closed.
+     */
+    synchronized void add(final Message message) {
+        if (closed) {
+            message.release();
+            return;
+        }
+        if (tail - head == messages.length) {
+            grow();
+        }
+        final int index = (int) tail & mask;
+        messages[index] = message;
+        states[index] = PENDING;
+        tail++;
+    }
+
+    /**
+     * Marks the oldest pending message as delivered.
+     *
+     * @return delivery tag of message, or -1 if no message is pending.
+     */
+    public synchronized long receive() {
+        while (deliveryCursor < tail) {
+            final long sequence = deliveryCursor++;
+            final int index = (int) sequence & mask;
+            final long state = states[index];
+            if ((state & STATE_MASK) == PENDING) {
+                states[index] = DELIVERED | ((state + 1) & DELIVERY_COUNT_MASK);
+                delivering++;
+                return sequence;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param tag delivery tag returned by {@link #receive()}.
+     * @return message of tag, shared with the other subscriptions of topic and valid until it is acknowledged.
+     */
+    public synchronized Message getMessage(final long tag) {
+        return messages[indexOf(tag)];
+    }
+
+    /**
+     * @param tag delivery tag returned by {@link #receive()}.
+     * @return number of times the message of tag was received.
+     */
+    public synchronized int getDeliveryCount(final long tag) {
+        return (int) (states[indexOf(tag)] & DELIVERY_COUNT_MASK);
+    }
+
+    /**
+     * Acknowledges a delivered message.
+     *
+     * @param tag delivery tag returned by {@link #receive()}.
+     * @return true if the message was acknowledged, false if it was already acknowledged.
+     * @throws IllegalStateException if the message is not delivered.
+     */
+    public synchronized boolean acknowledge(final long tag) {
+        if (tag < head) {
+            return false;
+        }
+        final int index = indexOf(tag);
+        final long state = states[index];
+        if ((state & STATE_MASK) == ACKED) {
+            return false;
+        }
+        if ((state & STATE_MASK) != DELIVERED) {
+            throw new IllegalStateException("Message " + tag + " of subscription " + name + " is not delivered");
+        }
+        states[index] = ACKED | (state & DELIVERY_COUNT_MASK);
+        delivering--;
+
+        while (head < tail && (states[(int) head & mask] & STATE_MASK) == ACKED) {
+            final int headIndex = (int) head & mask;
+            messages[headIndex].release();
+            messages[headIndex] = null;
+            head++;
+        }
+        return true;
+    }
+
+    /**
+     * Gives back a delivered message, it is received again before any newer message.
+     *
+     * @param tag delivery tag returned by {@link #receive()}.
+     * @throws IllegalStateException if the message is not delivered.
+     */
+    public synchronized void redeliver(final long tag) {
+        final int index = indexOf(tag);
+        final long state = states[index];
+        if ((state & STATE_MASK) != DELIVERED) {
+            throw new IllegalStateException("Message " + tag + " of subscription " + name + " is not delivered");
+        }
+        states[index] = PENDING | (state & DELIVERY_COUNT_MASK);
+        delivering--;
+        deliveryCursor = Math.min(deliveryCursor, tag);
+    }
+
+    /**
+     * @return number of messages held, i.e. not acknowledged.
+     */
+    public synchronized int getMessageCount() {
+        int count = 0;
+        for (long sequence = head; sequence < tail; sequence++) {
+            if ((states[(int) sequence & mask] & STATE_MASK) != ACKED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return number of messages delivered and not acknowledged.
+     */
+    public synchronized int getDeliveringCount() {
+        return delivering;
+    }
+
+    /**
+     * Releases all messages held, messages published afterwards are released at once.
+     */
+    synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        // messages acknowledged out of order are still held until the head moves past them
+        for (long sequence = head; sequence < tail; sequence++) {
+            final int index = (int) sequence & mask;
+            messages[index].release();
+            messages[index] = null;
+        }
+        head = tail;
+        deliveryCursor = tail;
+        delivering = 0;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private int indexOf(final long tag) {
+        if (tag < head || tag >= tail) {
+            throw new IllegalArgumentException("Unknown delivery tag " + tag + " of subscription " + name);
+        }
+        return (int) tag & mask;
+    }
+
+    private void grow() {
+        final int capacity = messages.length << 1;
+        final Message[] newMessages = new Message[capacity];
+        final long[] newStates = new long[capacity];
+        final int newMask = capacity - 1;
+        for (long sequence = head; sequence < tail; sequence++) {
+            newMessages[(int) sequence & newMask] = messages[(int) sequence & mask];
+            newStates[(int) sequence & newMask] = states[(int) sequence & mask];
+        }
+        messages = newMessages;
+        states = newStates;
+        mask = newMask;
+    }
+
+    @Override
+    public String toString() {
+        return "TopicSubscription[name=" + name + ", messages=" + getMessageCount() + ", delivering=" +
+                getDeliveringCount() + ']';
+    }
+}
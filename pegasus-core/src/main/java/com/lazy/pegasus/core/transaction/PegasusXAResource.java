@@ -0,0 +1,95 @@
+package com.lazy.pegasus.core.transaction;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+
+/**
+ * The {@link XAResource} of a session, associated with at most one branch of an {@link XAResourceManager} at a time.
+ * The operations of the session go to the local {@link Transaction} of its current branch, see
+ * {@link #getTransaction()}.
+ * <p>
+ * The completion methods apply to any branch of the resource manager, so a branch can be completed by another resource
+ * than the one it was started on, e.g. after a restart.
+ */
+public class PegasusXAResource implements XAResource {
+
+    private final XAResourceManager manager;
+    private volatile XAResourceManager.Branch current;
+
+    PegasusXAResource(final XAResourceManager manager) {
+        this.manager = manager;
+    }
+
+    /**
+     * @return transaction of the branch associated with this resource, null if none.
+     */
+    public Transaction getTransaction() {
+        final XAResourceManager.Branch branch = current;
+        return branch == null ? null : branch.transaction;
+    }
+
+    @Override
+    public void start(final Xid xid, final int flags) throws XAException {
+        if (current != null) {
+            throw XAResourceManager.xaException(XAException.XAER_PROTO, "Resource is associated with " + current.xid);
+        }
+        current = manager.start(PegasusXid.of(xid), flags);
+    }
+
+    @Override
+    public void end(final Xid xid, final int flags) throws XAException {
+        final XAResourceManager.Branch branch = current;
+        if (branch == null || !branch.xid.equals(PegasusXid.of(xid))) {
+            throw XAResourceManager.xaException(XAException.XAER_PROTO, "Resource is not associated with " + xid);
+        }
+        manager.end(branch, flags);
+        current = null;
+    }
+
+    @Override
+    public int prepare(final Xid xid) throws XAException {
+        return manager.prepare(xid);
+    }
+
+    @Override
+    public void commit(final Xid xid, final boolean onePhase) throws XAException {
+        manager.commit(xid, onePhase);
+    }
+
+    @Override
+    public void rollback(final Xid xid) throws XAException {
+        manager.rollback(xid);
+    }
+
+    @Override
+    public void forget(final Xid xid) throws XAException {
+        manager.forget(xid);
+    }
+
+    /**
+     * @return xids of the branches prepared or heuristically completed on a start of scan, none otherwise.
+     */
+    @Override
+    public Xid[] recover(final int flag) {
+        return (flag & TMSTARTRSCAN) != 0 ? manager.recover() : new Xid[0];
+    }
+
+    @Override
+    public boolean isSameRM(final XAResource resource) {
+        return resource instanceof PegasusXAResource other && other.manager == manager;
+    }
+
+    /**
+     * Transaction timeouts are not supported, a branch lives until completed.
+     */
+    @Override
+    public int getTransactionTimeout() {
+        return 0;
+    }
+
+    @Override
+    public boolean setTransactionTimeout(final int seconds) {
+        return false;
+    }
+}
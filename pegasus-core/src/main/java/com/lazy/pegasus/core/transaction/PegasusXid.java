@@ -0,0 +1,119 @@
+package com.lazy.pegasus.core.transaction;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.utils.BytesUtil;
+
+import javax.transaction.xa.Xid;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * An {@link Xid} stored as a single compact byte array {@code [int formatId][byte gtridLength][gtrid][byte
+ * bqualLength][bqual]}, which is also its journal encoding.
+ * <p>
+ * Two instances are equal if their byte arrays are, so a {@code PegasusXid} is the key of a transaction branch whatever
+ * the {@link Xid} implementation of the transaction manager is.
+ */
+public final class PegasusXid implements Xid {
+
+    private static final int GTRID_LENGTH_OFFSET = DataConstants.SIZE_INT;
+
+    private final byte[] bytes;
+    private final int hash;
+
+    private PegasusXid(final byte[] bytes) {
+        this.bytes = bytes;
+        this.hash = Arrays.hashCode(bytes);
+    }
+
+    /**
+     * @param xid any xid.
+     * @return the xid itself if it already is a {@code PegasusXid}, a copy otherwise.
+     */
+    public static PegasusXid of(final Xid xid) {
+        if (xid instanceof PegasusXid pegasusXid) {
+            return pegasusXid;
+        }
+        final byte[] gtrid = xid.getGlobalTransactionId();
+        final byte[] bqual = xid.getBranchQualifier();
+        if (gtrid.length > MAXGTRIDSIZE || bqual.length > MAXBQUALSIZE) {
+            throw new IllegalArgumentException("Xid too long, gtrid " + gtrid.length + ", bqual " + bqual.length);
+        }
+        final byte[] bytes = new byte[DataConstants.SIZE_INT + 2 + gtrid.length + bqual.length];
+        final int formatId = xid.getFormatId();
+        bytes[0] = (byte) (formatId >>> 24);
+        bytes[1] = (byte) (formatId >>> 16);
+        bytes[2] = (byte) (formatId >>> 8);
+        bytes[3] = (byte) formatId;
+        bytes[GTRID_LENGTH_OFFSET] = (byte) gtrid.length;
+        System.arraycopy(gtrid, 0, bytes, GTRID_LENGTH_OFFSET + 1, gtrid.length);
+        bytes[GTRID_LENGTH_OFFSET + 1 + gtrid.length] = (byte) bqual.length;
+        System.arraycopy(bqual, 0, bytes, GTRID_LENGTH_OFFSET + 2 + gtrid.length, bqual.length);
+        return new PegasusXid(bytes);
+    }
+
+    /**
+     * Reads an xid encoded by {@link #encode(PegasusBuffer)} from the {@code readIndex} of buffer.
+     */
+    public static PegasusXid decode(final PegasusBuffer buf) {
+        final int len = buf.readByte() & 0xff;
+        final byte[] bytes = new byte[len];
+        buf.readBytes(bytes);
+        return new PegasusXid(bytes);
+    }
+
+    /**
+     * Writes this xid at the {@code writeIndex} of buffer.
+     */
+    public void encode(final PegasusBuffer buf) {
+        buf.writeByte((byte) bytes.length);
+        buf.writeBytes(bytes);
+    }
+
+    /**
+     * @return number of bytes of the encoded xid.
+     */
+    public int encodeSize() {
+        return DataConstants.SIZE_BYTE + bytes.length;
+    }
+
+    @Override
+    public int getFormatId() {
+        return (bytes[0] & 0xff) << 24 | (bytes[1] & 0xff) << 16 | (bytes[2] & 0xff) << 8 | bytes[3] & 0xff;
+    }
+
+    @Override
+    public byte[] getGlobalTransactionId() {
+        final int len = bytes[GTRID_LENGTH_OFFSET] & 0xff;
+        return Arrays.copyOfRange(bytes, GTRID_LENGTH_OFFSET + 1, GTRID_LENGTH_OFFSET + 1 + len);
+    }
+
+    @Override
+    public byte[] getBranchQualifier() {
+        final int start = GTRID_LENGTH_OFFSET + 2 + (bytes[GTRID_LENGTH_OFFSET] & 0xff);
+        return Arrays.copyOfRange(bytes, start, bytes.length);
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PegasusXid other)) {
+            return false;
+        }
+        return hash == other.hash && BytesUtil.equals(bytes, other.bytes);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "PegasusXid[formatId=" + getFormatId() + ", gtrid=" + HexFormat.of().formatHex(getGlobalTransactionId()) +
+                ", bqual=" + HexFormat.of().formatHex(getBranchQualifier()) + ']';
+    }
+}
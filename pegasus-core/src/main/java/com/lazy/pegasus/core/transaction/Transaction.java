@@ -0,0 +1,168 @@
+package com.lazy.pegasus.core.transaction;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.journal.JournalRecord;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A local transaction, grouping the journal operations of several sends and acknowledgements so that they are all
+ * applied or none.
+ * <p>
+ * Operations are buffered in memory as encoded journal records until {@link #commit()}, which appends them as a
+ * single journal batch ended by a commit record, with one sync for the whole transaction. Nothing is written on
+ * {@link #rollback()}, and a batch whose commit record was not written is discarded on recovery.
+ * <p>
+ * The in-memory effects of a transaction (e.g. delivering the sent messages) are registered as callbacks, run once
+ * the transaction is committed or rolled back. A transaction is used by a single thread.
+ */
+public class Transaction {
+
+    /**
+     * State of a transaction.
+     */
+    public enum State {
+        ACTIVE, COMMITTED, ROLLED_BACK
+    }
+
+    private final TransactionManager manager;
+    private final long id;
+    private final List<JournalRecord> records = new ArrayList<>();
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final List<Runnable> afterRollback = new ArrayList<>();
+    private State state = State.ACTIVE;
+
+    Transaction(final TransactionManager manager, final long id) {
+        this.manager = manager;
+        this.id = id;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return number of journal operations of transaction.
+     */
+    public int getOperationsCount() {
+        return records.size();
+    }
+
+    /**
+     * Adds a record on commit, the body must not be modified until the transaction completes.
+     */
+    public void appendAddRecord(final long recordId, final byte userRecordType, final PegasusBuffer body) {
+        checkActive();
+        records.add(JournalRecord.add(recordId, userRecordType, body));
+    }
+
+    /**
+     * Updates a record on commit, the body must not be modified until the transaction completes.
+     */
+    public void appendUpdateRecord(final long recordId, final byte userRecordType, final PegasusBuffer body) {
+        checkActive();
+        records.add(JournalRecord.update(recordId, userRecordType, body));
+    }
+
+    /**
+     * Deletes a record on commit.
+     */
+    public void appendDeleteRecord(final long recordId) {
+        checkActive();
+        records.add(JournalRecord.delete(recordId));
+    }
+
+    /**
+     * Registers an action run after the transaction is committed.
+     */
+    public void afterCommit(final Runnable action) {
+        checkActive();
+        afterCommit.add(action);
+    }
+
+    /**
+     * Registers an action run after the transaction is rolled back, including when its commit fails.
+     */
+    public void afterRollback(final Runnable action) {
+        checkActive();
+        afterRollback.add(action);
+    }
+
+    /**
+     * Writes all operations as a single durable journal batch, then runs the commit actions.
+     *
+     * @throws PegasusException if the batch could not be written, the transaction is then rolled back.
+     */
+    public void commit() throws PegasusException {
+        checkActive();
+        try {
+            manager.write(this, records);
+        } catch (PegasusException | RuntimeException e) {
+            rollback();
+            throw e;
+        }
+        committed();
+    }
+
+    /**
+     * Commits a prepared transaction, writing the record which completes its prepare record in the same batch. The
+     * transaction stays active if the batch could not be written, so that it can be completed again.
+     */
+    void commitPrepared(final JournalRecord completion) throws PegasusException {
+        checkActive();
+        records.add(completion);
+        try {
+            manager.write(this, records);
+        } catch (PegasusException | RuntimeException e) {
+            records.remove(records.size() - 1);
+            throw e;
+        }
+        committed();
+    }
+
+    List<JournalRecord> getRecords() {
+        return records;
+    }
+
+    /**
+     * Discards all operations, then runs the rollback actions.
+     */
+    public void rollback() {
+        checkActive();
+        state = State.ROLLED_BACK;
+        records.clear();
+        manager.completed(this);
+        run(afterRollback);
+    }
+
+    private void committed() {
+        state = State.COMMITTED;
+        records.clear();
+        manager.completed(this);
+        run(afterCommit);
+    }
+
+    private void checkActive() {
+        if (state != State.ACTIVE) {
+            throw new IllegalStateException("Transaction " + id + " is " + state);
+        }
+    }
+
+    private static void run(final List<Runnable> actions) {
+        for (Runnable action : actions) {
+            action.run();
+        }
+        actions.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "Transaction[id=" + id + ", state=" + state + ", operations=" + records.size() + ']';
+    }
+}
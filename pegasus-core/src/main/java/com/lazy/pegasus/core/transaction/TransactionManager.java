@@ -0,0 +1,54 @@
+package com.lazy.pegasus.core.transaction;
+
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.journal.Journal;
+import com.lazy.pegasus.core.journal.JournalRecord;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Begins the local {@link Transaction}s committed to a journal.
+ * <p>
+ * Each commit is a single {@link Journal#appendBatch journal batch} synced once, concurrent commits share the syncs
+ * of the journal. A transaction without journal operations commits without writing anything.
+ */
+public class TransactionManager {
+
+    private final Journal journal;
+    private final LongSupplier transactionIds;
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    /**
+     * @param journal        journal of transactions.
+     * @param transactionIds source of transaction ids, which are the batch ids of journal.
+     */
+    public TransactionManager(final Journal journal, final LongSupplier transactionIds) {
+        this.journal = Objects.requireNonNull(journal, "journal");
+        this.transactionIds = Objects.requireNonNull(transactionIds, "transactionIds");
+    }
+
+    public Transaction begin() {
+        activeCount.incrementAndGet();
+        return new Transaction(this, transactionIds.getAsLong());
+    }
+
+    /**
+     * @return number of transactions begun and not completed.
+     */
+    public int getActiveCount() {
+        return activeCount.get();
+    }
+
+    void write(final Transaction transaction, final List<JournalRecord> records) throws PegasusException {
+        if (!records.isEmpty()) {
+            journal.appendBatch(transaction.getId(), records, true);
+        }
+    }
+
+    void completed(final Transaction transaction) {
+        activeCount.decrementAndGet();
+    }
+}
@@ -0,0 +1,425 @@
+package com.lazy.pegasus.core.transaction;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.journal.Journal;
+import com.lazy.pegasus.core.journal.JournalConstants;
+import com.lazy.pegasus.core.journal.JournalRecord;
+import com.lazy.pegasus.core.journal.RecordInfo;
+import com.lazy.pegasus.core.persistence.RecordTypes;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * The XA transaction branches of a broker, each backed by a local {@link Transaction}.
+ * <p>
+ * A branch is prepared by appending a single {@link RecordTypes#XA_PREPARE} record holding its xid and buffered
+ * operations. The prepare of concurrent branches are not serialized, so their records share the syncs of the journal.
+ * The second phase commits the operations and deletes the prepare record in a single journal batch, so a two-phase
+ * commit costs two syncs where a local transaction costs one. On restart the prepare records left are loaded back as
+ * in-doubt branches, returned by {@link #recover()} until the transaction manager completes them.
+ * <p>
+ * A prepared branch can also be completed heuristically, e.g. by an administrator when the transaction manager is
+ * lost. Its outcome is journaled as an {@link RecordTypes#XA_HEURISTIC} update of the prepare record, reported to the
+ * transaction manager and kept until {@link #forget(Xid)}.
+ * <p>
+ * Branches are keyed by {@link PegasusXid}, the completion of a branch is serialized, and all methods are thread-safe.
+ */
+public class XAResourceManager {
+
+    enum BranchState {
+        ACTIVE, IDLE, PREPARED, HEURISTIC_COMMITTED, HEURISTIC_ROLLED_BACK, COMPLETED
+    }
+
+    static final class Branch {
+
+        final PegasusXid xid;
+        final Transaction transaction;
+        BranchState state;
+        long prepareId = -1;
+        boolean rollbackOnly;
+
+        Branch(final PegasusXid xid, final Transaction transaction, final BranchState state) {
+            this.xid = xid;
+            this.transaction = transaction;
+            this.state = state;
+        }
+    }
+
+    private final Journal journal;
+    private final TransactionManager transactionManager;
+    private final LongSupplier recordIds;
+    private final Map<PegasusXid, Branch> branches = new ConcurrentHashMap<>();
+
+    /**
+     * @param journal            journal of prepare records.
+     * @param transactionManager manager of the local transactions of branches, committing to the same journal.
+     * @param recordIds          source of journal record ids.
+     */
+    public XAResourceManager(final Journal journal, final TransactionManager transactionManager,
+                             final LongSupplier recordIds) {
+        this.journal = Objects.requireNonNull(journal, "journal");
+        this.transactionManager = Objects.requireNonNull(transactionManager, "transactionManager");
+        this.recordIds = Objects.requireNonNull(recordIds, "recordIds");
+    }
+
+    /**
+     * @return a new resource, e.g. of a session.
+     */
+    public PegasusXAResource createResource() {
+        return new PegasusXAResource(this);
+    }
+
+    /**
+     * @return number of branches not completed, including the heuristically completed ones not forgotten.
+     */
+    public int getBranchesCount() {
+        return branches.size();
+    }
+
+    Branch start(final PegasusXid xid, final int flags) throws XAException {
+        if ((flags & (XAResource.TMJOIN | XAResource.TMRESUME)) != 0) {
+            final Branch branch = get(xid);
+            synchronized (branch) {
+                if (branch.state != BranchState.IDLE) {
+                    throw xaException(XAException.XAER_PROTO, "Branch " + xid + " is " + branch.state);
+                }
+                branch.state = BranchState.ACTIVE;
+            }
+            return branch;
+        }
+        if (flags != XAResource.TMNOFLAGS) {
+            throw xaException(XAException.XAER_INVAL, "Invalid start flags " + flags);
+        }
+        final Branch branch = new Branch(xid, transactionManager.begin(), BranchState.ACTIVE);
+        if (branches.putIfAbsent(xid, branch) != null) {
+            branch.transaction.rollback();
+            throw xaException(XAException.XAER_DUPID, "Branch " + xid + " already exists");
+        }
+        return branch;
+    }
+
+    void end(final Branch branch, final int flags) throws XAException {
+        synchronized (branch) {
+            if (branch.state != BranchState.ACTIVE) {
+                throw xaException(XAException.XAER_PROTO, "Branch " + branch.xid + " is " + branch.state);
+            }
+            if (flags == XAResource.TMFAIL) {
+                branch.rollbackOnly = true;
+            } else if (flags != XAResource.TMSUCCESS && flags != XAResource.TMSUSPEND) {
+                throw xaException(XAException.XAER_INVAL, "Invalid end flags " + flags);
+            }
+            branch.state = BranchState.IDLE;
+        }
+    }
+
+    /**
+     * Prepares a branch, durably recording its operations.
+     *
+     * @return {@link XAResource#XA_RDONLY} if the branch has no operations and is then completed,
+     * {@link XAResource#XA_OK} otherwise.
+     */
+    public int prepare(final Xid xid) throws XAException {
+        final Branch branch = get(PegasusXid.of(xid));
+        synchronized (branch) {
+            checkState(branch, BranchState.IDLE);
+            if (branch.rollbackOnly) {
+                rollback(branch);
+                throw xaException(XAException.XA_RBROLLBACK, "Branch " + branch.xid + " is rollback only");
+            }
+            final List<JournalRecord> records = branch.transaction.getRecords();
+            if (records.isEmpty()) {
+                commitLocal(branch);
+                return XAResource.XA_RDONLY;
+            }
+            final long prepareId = recordIds.getAsLong();
+            try {
+                journal.appendAddRecord(prepareId, RecordTypes.XA_PREPARE, encodePrepare(branch.xid, records), true);
+            } catch (PegasusException e) {
+                throw xaException(XAException.XAER_RMERR, "Could not prepare branch " + branch.xid, e);
+            }
+            branch.prepareId = prepareId;
+            branch.state = BranchState.PREPARED;
+            return XAResource.XA_OK;
+        }
+    }
+
+    /**
+     * Commits a prepared branch, or an ended one if one phase.
+     */
+    public void commit(final Xid xid, final boolean onePhase) throws XAException {
+        final Branch branch = get(PegasusXid.of(xid));
+        synchronized (branch) {
+            checkHeuristic(branch);
+            if (onePhase) {
+                checkState(branch, BranchState.IDLE);
+                if (branch.rollbackOnly) {
+                    rollback(branch);
+                    throw xaException(XAException.XA_RBROLLBACK, "Branch " + branch.xid + " is rollback only");
+                }
+                commitLocal(branch);
+                return;
+            }
+            checkState(branch, BranchState.PREPARED);
+            try {
+                branch.transaction.commitPrepared(JournalRecord.delete(branch.prepareId));
+            } catch (PegasusException e) {
+                throw xaException(XAException.XAER_RMERR, "Could not commit branch " + branch.xid, e);
+            }
+            completed(branch);
+        }
+    }
+
+    /**
+     * Rolls back a branch, either ended or prepared.
+     */
+    public void rollback(final Xid xid) throws XAException {
+        final Branch branch = get(PegasusXid.of(xid));
+        synchronized (branch) {
+            checkHeuristic(branch);
+            if (branch.state != BranchState.IDLE && branch.state != BranchState.PREPARED) {
+                throw xaException(XAException.XAER_PROTO, "Branch " + branch.xid + " is " + branch.state);
+            }
+            rollback(branch);
+        }
+    }
+
+    /**
+     * Forgets a heuristically completed branch.
+     */
+    public void forget(final Xid xid) throws XAException {
+        final Branch branch = get(PegasusXid.of(xid));
+        synchronized (branch) {
+            if (branch.state != BranchState.HEURISTIC_COMMITTED && branch.state != BranchState.HEURISTIC_ROLLED_BACK) {
+                throw xaException(XAException.XAER_PROTO, "Branch " + branch.xid + " is " + branch.state);
+            }
+            try {
+                journal.appendDeleteRecord(branch.prepareId, true);
+            } catch (PegasusException e) {
+                throw xaException(XAException.XAER_RMERR, "Could not forget branch " + branch.xid, e);
+            }
+            completed(branch);
+        }
+    }
+
+    /**
+     * Commits a prepared branch without waiting for the transaction manager, which is told on completion.
+     */
+    public void heuristicCommit(final Xid xid) throws XAException {
+        final Branch branch = get(PegasusXid.of(xid));
+        synchronized (branch) {
+            checkState(branch, BranchState.PREPARED);
+            final JournalRecord outcome = JournalRecord.update(branch.prepareId, RecordTypes.XA_HEURISTIC,
+                    encodeHeuristic(branch.xid, true));
+            try {
+                branch.transaction.commitPrepared(outcome);
+            } catch (PegasusException e) {
+                throw xaException(XAException.XAER_RMERR, "Could not commit branch " + branch.xid, e);
+            }
+            branch.state = BranchState.HEURISTIC_COMMITTED;
+        }
+    }
+
+    /**
+     * Rolls back a prepared branch without waiting for the transaction manager, which is told on completion.
+     */
+    public void heuristicRollback(final Xid xid) throws XAException {
+        final Branch branch = get(PegasusXid.of(xid));
+        synchronized (branch) {
+            checkState(branch, BranchState.PREPARED);
+            try {
+                journal.appendUpdateRecord(branch.prepareId, RecordTypes.XA_HEURISTIC,
+                        encodeHeuristic(branch.xid, false), true);
+            } catch (PegasusException e) {
+                throw xaException(XAException.XAER_RMERR, "Could not roll back branch " + branch.xid, e);
+            }
+            branch.transaction.rollback();
+            branch.state = BranchState.HEURISTIC_ROLLED_BACK;
+        }
+    }
+
+    /**
+     * @return xids of the branches prepared or heuristically completed.
+     */
+    public Xid[] recover() {
+        final List<Xid> xids = new ArrayList<>();
+        for (Branch branch : branches.values()) {
+            synchronized (branch) {
+                if (branch.state == BranchState.PREPARED || branch.state == BranchState.HEURISTIC_COMMITTED ||
+                        branch.state == BranchState.HEURISTIC_ROLLED_BACK) {
+                    xids.add(branch.xid);
+                }
+            }
+        }
+        return xids.toArray(new Xid[0]);
+    }
+
+    /**
+     * Restores the branches left prepared or heuristically completed from the records loaded from journal.
+     *
+     * @param records records returned by {@link Journal#load()}, of any type.
+     */
+    public void load(final List<RecordInfo> records) throws PegasusException {
+        final Map<Long, Branch> prepared = new HashMap<>();
+        for (RecordInfo record : records) {
+            final PegasusBuffer body = PegasusBuffers.wrappedBuffer(record.getData());
+            switch (record.getUserRecordType()) {
+                case RecordTypes.XA_PREPARE -> {
+                    final PegasusXid xid = PegasusXid.decode(body);
+                    final Branch branch = new Branch(xid, transactionManager.begin(), BranchState.PREPARED);
+                    branch.prepareId = record.getId();
+                    decodeOperations(body, branch.transaction);
+                    branches.put(xid, branch);
+                    prepared.put(record.getId(), branch);
+                }
+                case RecordTypes.XA_HEURISTIC -> {
+                    final Branch branch = prepared.get(record.getId());
+                    if (branch != null) {
+                        PegasusXid.decode(body);
+                        branch.state = body.readBoolean() ? BranchState.HEURISTIC_COMMITTED :
+                                BranchState.HEURISTIC_ROLLED_BACK;
+                        branch.transaction.rollback();
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private Branch get(final PegasusXid xid) throws XAException {
+        final Branch branch = branches.get(xid);
+        if (branch == null) {
+            throw xaException(XAException.XAER_NOTA, "Unknown branch " + xid);
+        }
+        return branch;
+    }
+
+    private void commitLocal(final Branch branch) throws XAException {
+        try {
+            branch.transaction.commit();
+        } catch (PegasusException e) {
+            completed(branch);
+            throw xaException(XAException.XA_RBOTHER, "Could not commit branch " + branch.xid, e);
+        }
+        completed(branch);
+    }
+
+    private void rollback(final Branch branch) throws XAException {
+        if (branch.state == BranchState.PREPARED) {
+            try {
+                journal.appendDeleteRecord(branch.prepareId, true);
+            } catch (PegasusException e) {
+                throw xaException(XAException.XAER_RMERR, "Could not roll back branch " + branch.xid, e);
+            }
+        }
+        branch.transaction.rollback();
+        completed(branch);
+    }
+
+    private void completed(final Branch branch) {
+        branch.state = BranchState.COMPLETED;
+        branches.remove(branch.xid, branch);
+    }
+
+    private static void checkState(final Branch branch, final BranchState expected) throws XAException {
+        if (branch.state == BranchState.COMPLETED) {
+            throw xaException(XAException.XAER_NOTA, "Unknown branch " + branch.xid);
+        }
+        if (branch.state != expected) {
+            throw xaException(XAException.XAER_PROTO, "Branch " + branch.xid + " is " + branch.state);
+        }
+    }
+
+    private static void checkHeuristic(final Branch branch) throws XAException {
+        if (branch.state == BranchState.HEURISTIC_COMMITTED) {
+            throw xaException(XAException.XA_HEURCOM, "Branch " + branch.xid + " was heuristically committed");
+        }
+        if (branch.state == BranchState.HEURISTIC_ROLLED_BACK) {
+            throw xaException(XAException.XA_HEURRB, "Branch " + branch.xid + " was heuristically rolled back");
+        }
+        if (branch.state == BranchState.COMPLETED) {
+            throw xaException(XAException.XAER_NOTA, "Unknown branch " + branch.xid);
+        }
+    }
+
+    /**
+     * Encodes a prepare record, an operation is {@code [byte recordType][long id][byte userRecordType][int length]
+     * [bytes body]} with a length of -1 for a delete.
+     */
+    private static PegasusBuffer encodePrepare(final PegasusXid xid, final List<JournalRecord> records) {
+        int size = xid.encodeSize() + DataConstants.SIZE_INT;
+        for (JournalRecord record : records) {
+            size += DataConstants.SIZE_BYTE + DataConstants.SIZE_LONG + DataConstants.SIZE_BYTE + DataConstants.SIZE_INT;
+            if (record.getBody() != null) {
+                size += record.getBody().readableBytes();
+            }
+        }
+        final PegasusBuffer buf = PegasusBuffers.fixedBuffer(size);
+        xid.encode(buf);
+        buf.writeInt(records.size());
+        for (JournalRecord record : records) {
+            buf.writeByte(record.getRecordType());
+            buf.writeLong(record.getId());
+            buf.writeByte(record.getUserRecordType());
+            final PegasusBuffer body = record.getBody();
+            if (body == null) {
+                buf.writeInt(-1);
+            } else {
+                buf.writeInt(body.readableBytes());
+                buf.writeBytes(body, body.readIndex(), body.readableBytes());
+            }
+        }
+        return buf;
+    }
+
+    private static void decodeOperations(final PegasusBuffer buf, final Transaction transaction)
+            throws PegasusException {
+        final int count = buf.readInt();
+        for (int i = 0; i < count; i++) {
+            final byte recordType = buf.readByte();
+            final long id = buf.readLong();
+            final byte userRecordType = buf.readByte();
+            final int len = buf.readInt();
+            final PegasusBuffer body = len < 0 ? null : buf.readSlice(len);
+            switch (recordType) {
+                case JournalConstants.ADD_RECORD -> transaction.appendAddRecord(id, userRecordType, body);
+                case JournalConstants.UPDATE_RECORD -> transaction.appendUpdateRecord(id, userRecordType, body);
+                case JournalConstants.DELETE_RECORD -> transaction.appendDeleteRecord(id);
+                default -> throw new PegasusException("Invalid operation type " + recordType + " of prepared branch",
+                        PegasusExceptionType.JOURNAL_ERROR);
+            }
+        }
+    }
+
+    private static PegasusBuffer encodeHeuristic(final PegasusXid xid, final boolean committed) {
+        final PegasusBuffer buf = PegasusBuffers.fixedBuffer(xid.encodeSize() + DataConstants.SIZE_BYTE);
+        xid.encode(buf);
+        buf.writeBoolean(committed);
+        return buf;
+    }
+
+    static XAException xaException(final int errorCode, final String message) {
+        final XAException e = new XAException(message);
+        e.errorCode = errorCode;
+        return e;
+    }
+
+    private static XAException xaException(final int errorCode, final String message, final Throwable cause) {
+        final XAException e = xaException(errorCode, message);
+        e.initCause(cause);
+        return e;
+    }
+}
@@ -0,0 +1,115 @@
+package com.lazy.pegasus.core.transport;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.channel.Channel;
+
+import java.net.SocketAddress;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A connection of the transport, exchanging frames prefixed by their int length.
+ * <p>
+ * A frame is sent as a composite of a length prefix and the buffers given by the caller, so its content is never
+ * copied. Frames are written to the socket by the flush consolidation of the pipeline: frames sent while the
+ * connection reads are flushed once the read completes, others are flushed together by the event loop, so a burst
+ * of small frames costs a few syscalls.
+ * <p>
+ * All methods are thread-safe.
+ */
+public class Connection {
+
+    private final Channel channel;
+    private final int maxFrameLength;
+    private final CompletableFuture<Void> closeFuture = new CompletableFuture<>();
+
+    Connection(final Channel channel, final int maxFrameLength) {
+        this.channel = channel;
+        this.maxFrameLength = maxFrameLength;
+        channel.closeFuture().addListener(f -> closeFuture.complete(null));
+    }
+
+    /**
+     * Sends the readable bytes of buffers as a single frame, the connection takes over the buffers and releases them
+     * once written.
+     *
+     * @param buffers content of frame.
+     * @return future completed once the frame is written to socket, or exceptionally if it could not be written.
+     * @throws IllegalArgumentException if the frame is longer than the max frame length.
+     */
+    public CompletableFuture<Void> send(final PegasusBuffer... buffers) {
+        long length = 0;
+        for (PegasusBuffer buffer : buffers) {
+            length += buffer.readableBytes();
+        }
+        if (length > maxFrameLength) {
+            for (PegasusBuffer buffer : buffers) {
+                buffer.release();
+            }
+            throw new IllegalArgumentException("Frame length " + length + " exceeds max frame length " + maxFrameLength);
+        }
+
+        final ByteBuf header = channel.alloc().ioBuffer(DataConstants.SIZE_INT).writeInt((int) length);
+        final CompositeByteBuf frame = channel.alloc().compositeBuffer(buffers.length + 1).addComponent(true, header);
+        for (PegasusBuffer buffer : buffers) {
+            frame.addComponent(true, buffer.byteBuf());
+        }
+
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        channel.writeAndFlush(frame).addListener(f -> {
+            if (f.isSuccess()) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(f.cause());
+            }
+        });
+        return future;
+    }
+
+    Channel channel() {
+        return channel;
+    }
+
+    /**
+     * @return maximum length of a frame sent or received.
+     */
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    public boolean isActive() {
+        return channel.isActive();
+    }
+
+    /**
+     * @return false while the outbound buffer of connection is over its high water mark, the sender should hold off.
+     */
+    public boolean isWritable() {
+        return channel.isWritable();
+    }
+
+    public SocketAddress getRemoteAddress() {
+        return channel.remoteAddress();
+    }
+
+    /**
+     * @return future completed once the connection is closed.
+     */
+    public CompletableFuture<Void> getCloseFuture() {
+        return closeFuture;
+    }
+
+    /**
+     * Closes the connection, the frames not yet written are failed.
+     */
+    public void close() {
+        channel.close();
+    }
+
+    @Override
+    public String toString() {
+        return "Connection[local=" + channel.localAddress() + ", remote=" + channel.remoteAddress() + ']';
+    }
+}
@@ -0,0 +1,26 @@
+package com.lazy.pegasus.core.transport;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+
+/**
+ * Handles the frames received by a connection, called by the event loop thread of the connection.
+ */
+@FunctionalInterface
+public interface FrameHandler {
+
+    /**
+     * Handles a frame, which is a slice of the buffer read from socket and is released once this method returns, it
+     * must be retained to be used later.
+     *
+     * @param connection connection receiving the frame.
+     * @param frame      frame without its length prefix, readable from index 0.
+     * @throws Exception to close the connection.
+     */
+    void frameReceived(Connection connection, PegasusBuffer frame) throws Exception;
+
+    /**
+     * Called once the connection is closed.
+     */
+    default void connectionClosed(Connection connection) {
+    }
+}
@@ -0,0 +1,83 @@
+package com.lazy.pegasus.core.transport;
+
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Opens connections exchanging length-prefixed frames to a {@link TransportServer}, all connections of a client share
+ * its event loops.
+ */
+public class TransportClient {
+
+    private final TransportConfiguration config;
+
+    private EventLoopGroup group;
+
+    public TransportClient(final TransportConfiguration config) {
+        this.config = Objects.requireNonNull(config, "config");
+    }
+
+    /**
+     * Starts the event loops, does nothing if started.
+     */
+    public synchronized void start() {
+        if (group == null) {
+            group = TransportSupport.eventLoopGroup(config, config.getIoThreads(), "pegasus-transport-client");
+        }
+    }
+
+    /**
+     * Connects to a server.
+     *
+     * @param host    host of server.
+     * @param port    port of server.
+     * @param handler handler of the frames received from server.
+     * @return connection, ready to send frames.
+     * @throws PegasusException if the server is not reachable.
+     */
+    public Connection connect(final String host, final int port, final FrameHandler handler) throws PegasusException {
+        final EventLoopGroup group;
+        synchronized (this) {
+            if (this.group == null) {
+                throw new IllegalStateException("Client is not started");
+            }
+            group = this.group;
+        }
+
+        final AtomicReference<Connection> connection = new AtomicReference<>();
+        final Bootstrap bootstrap = new Bootstrap()
+                .group(group)
+                .channel(TransportSupport.channelClass(config))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, config.getConnectTimeoutMillis())
+                .handler(TransportSupport.initializer(config, Objects.requireNonNull(handler, "handler"),
+                        connection::set));
+        try {
+            bootstrap.connect(host, port).sync();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PegasusException("Interrupted while connecting to " + host + ":" + port, e,
+                    PegasusExceptionType.CONNECTION_ERROR);
+        } catch (Exception e) {
+            throw new PegasusException("Failed to connect to " + host + ":" + port, e,
+                    PegasusExceptionType.CONNECTION_ERROR);
+        }
+        return connection.get();
+    }
+
+    /**
+     * Stops the event loops, closing all connections.
+     */
+    public synchronized void stop() {
+        if (group != null) {
+            group.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+            group = null;
+        }
+    }
+}
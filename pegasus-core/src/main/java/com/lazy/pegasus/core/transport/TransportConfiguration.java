@@ -0,0 +1,129 @@
+package com.lazy.pegasus.core.transport;
+
+/**
+ * Configuration of a {@link TransportServer} or a {@link TransportClient}, setters return this configuration to be
+ * chained.
+ */
+public class TransportConfiguration {
+
+    public static final String DEFAULT_HOST = "0.0.0.0";
+    public static final int DEFAULT_PORT = 61616;
+    public static final int DEFAULT_IO_THREADS = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    public static final int DEFAULT_MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+    public static final int DEFAULT_CONNECT_TIMEOUT_MILLIS = 10_000;
+    public static final int DEFAULT_FLUSH_AFTER_WRITES = 256;
+
+    private String host = DEFAULT_HOST;
+    private int port = DEFAULT_PORT;
+    private int ioThreads = DEFAULT_IO_THREADS;
+    private int maxFrameLength = DEFAULT_MAX_FRAME_LENGTH;
+    private int connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private int flushAfterWrites = DEFAULT_FLUSH_AFTER_WRITES;
+    private boolean tcpNoDelay = true;
+    private boolean epoll = true;
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @param host address the server binds to.
+     */
+    public TransportConfiguration setHost(String host) {
+        this.host = host;
+        return this;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @param port port the server binds to, 0 for an ephemeral port.
+     */
+    public TransportConfiguration setPort(int port) {
+        if (port < 0 || port > 65535) {
+            throw new IllegalArgumentException("Port must be in range [0,65535], but " + port);
+        }
+        this.port = port;
+        return this;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    /**
+     * @param ioThreads number of event loop threads.
+     */
+    public TransportConfiguration setIoThreads(int ioThreads) {
+        if (ioThreads <= 0) {
+            throw new IllegalArgumentException("IO threads must be positive, but " + ioThreads);
+        }
+        this.ioThreads = ioThreads;
+        return this;
+    }
+
+    public int getMaxFrameLength() {
+        return maxFrameLength;
+    }
+
+    /**
+     * @param maxFrameLength maximum number of bytes of a frame, not counting its length prefix. A connection receiving
+     *                       a larger frame is closed.
+     */
+    public TransportConfiguration setMaxFrameLength(int maxFrameLength) {
+        if (maxFrameLength <= 0 || maxFrameLength > Integer.MAX_VALUE - 4) {
+            throw new IllegalArgumentException("Max frame length must be in range [1," + (Integer.MAX_VALUE - 4) +
+                    "], but " + maxFrameLength);
+        }
+        this.maxFrameLength = maxFrameLength;
+        return this;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public TransportConfiguration setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+        return this;
+    }
+
+    public int getFlushAfterWrites() {
+        return flushAfterWrites;
+    }
+
+    /**
+     * @param flushAfterWrites maximum number of frames written before the socket is flushed, frames written while
+     *                         frames are read or the event loop is busy are flushed together.
+     */
+    public TransportConfiguration setFlushAfterWrites(int flushAfterWrites) {
+        if (flushAfterWrites <= 0) {
+            throw new IllegalArgumentException("Flush after writes must be positive, but " + flushAfterWrites);
+        }
+        this.flushAfterWrites = flushAfterWrites;
+        return this;
+    }
+
+    public boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public TransportConfiguration setTcpNoDelay(boolean tcpNoDelay) {
+        this.tcpNoDelay = tcpNoDelay;
+        return this;
+    }
+
+    public boolean isEpoll() {
+        return epoll;
+    }
+
+    /**
+     * @param epoll true to use the native epoll transport when it is available, NIO is used otherwise.
+     */
+    public TransportConfiguration setEpoll(boolean epoll) {
+        this.epoll = epoll;
+        return this;
+    }
+}
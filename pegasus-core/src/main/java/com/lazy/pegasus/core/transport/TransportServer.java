@@ -0,0 +1,125 @@
+package com.lazy.pegasus.core.transport;
+
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts connections exchanging length-prefixed frames, whose frames are handed to a {@link FrameHandler}.
+ * <p>
+ * Connections are served by event loops of the native epoll transport when it is available, of NIO otherwise. A frame
+ * is handed to the handler as a slice of the buffer read from socket, the handler typically sends its response on
+ * the same connection, which is flushed once all frames of the read are handled.
+ */
+public class TransportServer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransportServer.class);
+
+    private final TransportConfiguration config;
+    private final FrameHandler handler;
+
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+    private ChannelGroup channels;
+    private Channel serverChannel;
+
+    public TransportServer(final TransportConfiguration config, final FrameHandler handler) {
+        this.config = Objects.requireNonNull(config, "config");
+        this.handler = Objects.requireNonNull(handler, "handler");
+    }
+
+    /**
+     * Binds the server, does nothing if started.
+     *
+     * @throws PegasusException if the server could not bind.
+     */
+    public synchronized void start() throws PegasusException {
+        if (serverChannel != null) {
+            return;
+        }
+
+        bossGroup = TransportSupport.eventLoopGroup(config, 1, "pegasus-transport-acceptor");
+        workerGroup = TransportSupport.eventLoopGroup(config, config.getIoThreads(), "pegasus-transport-server");
+        channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+        final ChannelGroup channels = this.channels;
+        final ServerBootstrap bootstrap = new ServerBootstrap()
+                .group(bossGroup, workerGroup)
+                .channel(TransportSupport.serverChannelClass(config))
+                .option(ChannelOption.SO_REUSEADDR, true)
+                .childHandler(TransportSupport.initializer(config, handler,
+                        connection -> channels.add(connection.channel())));
+        try {
+            serverChannel = bootstrap.bind(config.getHost(), config.getPort()).sync().channel();
+            channels.add(serverChannel);
+        } catch (Exception e) {
+            shutdown();
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw new PegasusException("Failed to bind " + config.getHost() + ":" + config.getPort(), e,
+                    PegasusExceptionType.CONNECTION_ERROR);
+        }
+        logger.info("Transport server listening on {} with {}", serverChannel.localAddress(),
+                TransportSupport.useEpoll(config) ? "epoll" : "nio");
+    }
+
+    /**
+     * @return port the server is bound to, e.g. the ephemeral port chosen for port 0.
+     */
+    public synchronized int getPort() {
+        if (serverChannel == null) {
+            throw new IllegalStateException("Server is not started");
+        }
+        return ((InetSocketAddress) serverChannel.localAddress()).getPort();
+    }
+
+    public synchronized boolean isStarted() {
+        return serverChannel != null;
+    }
+
+    /**
+     * @return number of open connections.
+     */
+    public synchronized int getConnectionCount() {
+        return channels == null ? 0 : channels.size() - 1;
+    }
+
+    /**
+     * Closes the server and all its connections.
+     */
+    public synchronized void stop() {
+        if (serverChannel == null) {
+            return;
+        }
+        shutdown();
+        logger.info("Transport server stopped");
+    }
+
+    private void shutdown() {
+        if (channels != null) {
+            channels.close().awaitUninterruptibly();
+        }
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).syncUninterruptibly();
+        }
+        serverChannel = null;
+        channels = null;
+        bossGroup = null;
+        workerGroup = null;
+    }
+}
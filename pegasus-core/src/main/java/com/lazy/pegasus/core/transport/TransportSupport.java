@@ -0,0 +1,109 @@
+package com.lazy.pegasus.core.transport;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.MultiThreadIoEventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollIoHandler;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioIoHandler;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.function.Consumer;
+
+/**
+ * Event loops and pipeline shared by {@link TransportServer} and {@link TransportClient}.
+ */
+final class TransportSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransportSupport.class);
+
+    private TransportSupport() {
+    }
+
+    static boolean useEpoll(final TransportConfiguration config) {
+        return config.isEpoll() && Epoll.isAvailable();
+    }
+
+    static EventLoopGroup eventLoopGroup(final TransportConfiguration config, final int threads, final String name) {
+        return new MultiThreadIoEventLoopGroup(threads, new DefaultThreadFactory(name, true),
+                useEpoll(config) ? EpollIoHandler.newFactory() : NioIoHandler.newFactory());
+    }
+
+    static Class<? extends ServerChannel> serverChannelClass(final TransportConfiguration config) {
+        return useEpoll(config) ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    static Class<? extends Channel> channelClass(final TransportConfiguration config) {
+        return useEpoll(config) ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * @param opened called with the connection of each channel once the pipeline is set up.
+     */
+    static ChannelInitializer<Channel> initializer(final TransportConfiguration config, final FrameHandler handler,
+                                                   final Consumer<Connection> opened) {
+        return new ChannelInitializer<>() {
+            @Override
+            protected void initChannel(final Channel channel) {
+                channel.config().setOption(ChannelOption.TCP_NODELAY, config.isTcpNoDelay());
+                final Connection connection = new Connection(channel, config.getMaxFrameLength());
+                channel.pipeline().addLast(
+                        new FlushConsolidationHandler(config.getFlushAfterWrites(), true),
+                        // frames are retained slices of the cumulated socket buffer, without the length prefix
+                        new LengthFieldBasedFrameDecoder(config.getMaxFrameLength() + DataConstants.SIZE_INT, 0,
+                                DataConstants.SIZE_INT, 0, DataConstants.SIZE_INT),
+                        new FrameInboundHandler(connection, handler));
+                opened.accept(connection);
+            }
+        };
+    }
+
+    private static final class FrameInboundHandler extends ChannelInboundHandlerAdapter {
+
+        private final Connection connection;
+        private final FrameHandler handler;
+
+        private FrameInboundHandler(final Connection connection, final FrameHandler handler) {
+            this.connection = connection;
+            this.handler = handler;
+        }
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx, final Object msg) throws Exception {
+            final ByteBuf frame = (ByteBuf) msg;
+            try {
+                handler.frameReceived(connection, PegasusBuffers.wrappedBuffer(frame));
+            } finally {
+                frame.release();
+            }
+        }
+
+        @Override
+        public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+            handler.connectionClosed(connection);
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(final ChannelHandlerContext ctx, final Throwable cause) {
+            logger.warn("Closing {} on error: {}", connection, cause.toString());
+            ctx.close();
+        }
+    }
+}
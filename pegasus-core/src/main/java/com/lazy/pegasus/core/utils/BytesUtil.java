@@ -82,7 +82,7 @@ public class BytesUtil {
 
     private static boolean safeEquals(byte[] left, byte[] right, int rightOffset, int rightLen) {
         for (int i = 0; i < rightLen; i++) {
-            if (left[i] != right[i]) {
+            if (left[i] != right[rightOffset + i]) {
                 return false;
             }
         }
@@ -127,8 +127,8 @@ public class BytesUtil {
                 return false;
             }
 
-            charsIndex += 8;
-            bytesAdrr += 8;
+            charsIndex++;
+            bytesAdrr++;
         }
 
         return true;
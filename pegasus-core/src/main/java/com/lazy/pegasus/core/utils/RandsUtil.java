@@ -21,7 +21,10 @@ public class RandsUtil {
 
     /**
      * @return a randomized UUID generated by java as {@link SpanString}
+     * @deprecated {@link java.util.UUID#randomUUID()} contends on a shared {@link java.security.SecureRandom} and the
+     * 36 chars text takes 72 bytes, use {@link com.lazy.pegasus.core.id.MessageIdGenerator} to identify messages.
      */
+    @Deprecated
     public static SpanString randUUIDAsSpanString() {
         return SpanString.of(randUUID());
     }
@@ -0,0 +1,144 @@
+package com.lazy.pegasus.core.utils;
+
+import com.lazy.pegasus.core.common.RandomAccessBuffer;
+import com.lazy.pegasus.core.common.SequenceAccessBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+
+/**
+ * Variable length integer (LEB128, 7 bits per byte, least significant group first) helpers, signed values are
+ * zigzag encoded first so that small negative numbers stay small.
+ */
+public class VarIntUtil {
+
+    /**
+     * Maximum number of bytes of an encoded 32-bit varint.
+     */
+    public static final int MAX_VARINT_SIZE = 5;
+
+    /**
+     * Maximum number of bytes of an encoded 64-bit varint.
+     */
+    public static final int MAX_VARLONG_SIZE = 10;
+
+    public static int zigzag(final int i32) {
+        return (i32 << 1) ^ (i32 >> 31);
+    }
+
+    public static int unzigzag(final int u32) {
+        return (u32 >>> 1) ^ -(u32 & 1);
+    }
+
+    public static long zigzag(final long i64) {
+        return (i64 << 1) ^ (i64 >> 63);
+    }
+
+    public static long unzigzag(final long u64) {
+        return (u64 >>> 1) ^ -(u64 & 1);
+    }
+
+    /**
+     * @param u32 unsigned value to check.
+     * @return number of bytes needed to encode the value.
+     */
+    public static int sizeOfVarInt(final int u32) {
+        // each byte carries 7 bits, (31 - nlz) is the index of highest bit
+        return (31 - Integer.numberOfLeadingZeros(u32 | 1)) / 7 + 1;
+    }
+
+    /**
+     * @param u64 unsigned value to check.
+     * @return number of bytes needed to encode the value.
+     */
+    public static int sizeOfVarLong(final long u64) {
+        return (63 - Long.numberOfLeadingZeros(u64 | 1)) / 7 + 1;
+    }
+
+    public static void writeVarInt(final SequenceAccessBuffer buf, int u32) {
+        while ((u32 & ~0x7f) != 0) {
+            buf.writeByte((byte) ((u32 & 0x7f) | 0x80));
+            u32 >>>= 7;
+        }
+        buf.writeByte((byte) u32);
+    }
+
+    public static void writeVarLong(final SequenceAccessBuffer buf, long u64) {
+        while ((u64 & ~0x7fL) != 0) {
+            buf.writeByte((byte) ((u64 & 0x7f) | 0x80));
+            u64 >>>= 7;
+        }
+        buf.writeByte((byte) u64);
+    }
+
+    /**
+     * Sets a varint that always occupies {@link #MAX_VARINT_SIZE} bytes, the value is padded with continuation bits.
+     * This is used to back-fill a length once the content has been written, it is still readable by
+     * {@link #readVarInt(SequenceAccessBuffer)}.
+     *
+     * @param buf   buffer to write.
+     * @param index index to write.
+     * @param u32   unsigned value.
+     */
+    public static void setPaddedVarInt(final RandomAccessBuffer buf, final int index, int u32) {
+        for (int i = 0; i < MAX_VARINT_SIZE - 1; i++) {
+            buf.setByte(index + i, (byte) ((u32 & 0x7f) | 0x80));
+            u32 >>>= 7;
+        }
+        buf.setByte(index + MAX_VARINT_SIZE - 1, (byte) (u32 & 0x0f));
+    }
+
+    /**
+     * @param buf buffer to read.
+     * @return unsigned value.
+     * @throws PegasusException if the varint is longer than {@link #MAX_VARINT_SIZE} bytes.
+     */
+    public static int readVarInt(final SequenceAccessBuffer buf) throws PegasusException {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final byte b = buf.readByte();
+            result |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+
+        throw new PegasusException("Malformed varint, more than " + MAX_VARINT_SIZE + " bytes",
+                PegasusExceptionType.ENCODING_ERROR);
+    }
+
+    /**
+     * @param buf buffer to read.
+     * @return unsigned value.
+     * @throws PegasusException if the varlong is longer than {@link #MAX_VARLONG_SIZE} bytes.
+     */
+    public static long readVarLong(final SequenceAccessBuffer buf) throws PegasusException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final byte b = buf.readByte();
+            result |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+
+        throw new PegasusException("Malformed varlong, more than " + MAX_VARLONG_SIZE + " bytes",
+                PegasusExceptionType.ENCODING_ERROR);
+    }
+
+    /**
+     * Skips a varint of any width (up to {@link #MAX_VARLONG_SIZE} bytes) without decoding it.
+     *
+     * @param buf buffer to read.
+     * @throws PegasusException if the varint is longer than {@link #MAX_VARLONG_SIZE} bytes.
+     */
+    public static void skipVarLong(final SequenceAccessBuffer buf) throws PegasusException {
+        for (int i = 0; i < MAX_VARLONG_SIZE; i++) {
+            if (buf.readByte() >= 0) {
+                return;
+            }
+        }
+
+        throw new PegasusException("Malformed varlong, more than " + MAX_VARLONG_SIZE + " bytes",
+                PegasusExceptionType.ENCODING_ERROR);
+    }
+}
@@ -0,0 +1,311 @@
+package com.lazy.pegasus.core.bridge;
+
+import com.lazy.pegasus.core.collections.MpscQueue;
+import com.lazy.pegasus.core.collections.MpscUnboundedArrayQueue;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.dedup.DuplicateIdCache;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import com.lazy.pegasus.core.transport.TransportClient;
+import com.lazy.pegasus.core.transport.TransportConfiguration;
+import com.lazy.pegasus.core.transport.TransportServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BridgeTest {
+
+    private final MpscQueue<Message> source = new MpscUnboundedArrayQueue<>(1024);
+    private final List<Message> target = new CopyOnWriteArrayList<>();
+    private final BridgeReceiver receiver = new BridgeReceiver(
+            new DuplicateIdCache(SpanString.of("bridge"), 100_000), target::add);
+    private final LoopbackConnector connector = new LoopbackConnector(receiver);
+    private Bridge bridge;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (bridge != null) {
+            bridge.stop();
+        }
+        connector.executor.shutdownNow();
+    }
+
+    @Test
+    void forwardsInPipelinedBatches() throws Exception {
+        connector.delayNanos = 200_000;
+        bridge = new Bridge("b", source, connector, new BridgeConfiguration().setBatchSize(100).setMaxInFlight(4));
+        send(1, 20_000);
+        bridge.start();
+
+        waitFor(() -> bridge.getForwardedCount() == 20_000);
+        assertTarget(20_000);
+        assertEquals(0, bridge.getPendingCount());
+        assertTrue(bridge.getFramesSent() >= 200 && bridge.getFramesSent() < 20_000, "frames " + bridge.getFramesSent());
+        assertTrue(connector.maxInFlight.get() <= 4, "in flight " + connector.maxInFlight.get());
+        assertTrue(connector.maxInFlight.get() > 1, "frames are pipelined");
+        assertEquals(0, receiver.getDuplicateCount());
+    }
+
+    @Test
+    void reconnectsWithBackoffAndDropsDuplicates() throws Exception {
+        connector.refusals.set(3);
+        // the target receives the 20th frame but its acknowledgement is lost with the connection
+        connector.framesUntilReset.set(20);
+        bridge = new Bridge("b", source, connector, new BridgeConfiguration().setBatchSize(50).setMaxInFlight(4)
+                .setRetryIntervalMillis(1).setMaxRetryIntervalMillis(10));
+        send(1, 10_000);
+        bridge.start();
+
+        waitFor(() -> bridge.getForwardedCount() == 10_000);
+        assertTarget(10_000);
+        assertTrue(receiver.getDuplicateCount() > 0);
+        assertEquals(10_000, receiver.getReceivedCount());
+        assertEquals(1, bridge.getReconnectCount());
+        assertEquals(5, connector.connects.get());
+    }
+
+    @Test
+    void keepsUnacknowledgedMessagesWhenStopped() throws Exception {
+        connector.stalled = true;
+        bridge = new Bridge("b", source, connector, new BridgeConfiguration().setBatchSize(10).setMaxInFlight(3));
+        send(1, 100);
+        bridge.start();
+        waitFor(() -> bridge.getPendingCount() == 30);
+        bridge.stop();
+        assertTrue(target.isEmpty());
+        assertEquals(30, bridge.getPendingCount());
+
+        connector.stalled = false;
+        bridge.start();
+        waitFor(() -> bridge.getForwardedCount() == 100);
+        assertTarget(100);
+        assertEquals(0, bridge.getPendingCount());
+    }
+
+    @Test
+    void reconnectsWhenAcknowledgementsTimeOut() throws Exception {
+        connector.stalled = true;
+        bridge = new Bridge("b", source, connector, new BridgeConfiguration().setBatchSize(10).setMaxInFlight(3)
+                .setAckTimeoutMillis(100).setRetryIntervalMillis(1));
+        send(1, 100);
+        bridge.start();
+        waitFor(() -> connector.stalledFrames.get() == 3);
+
+        // the link recovers, the stalled frames are sent again once the connection timed out
+        connector.stalled = false;
+        waitFor(() -> bridge.getForwardedCount() == 100);
+        assertTarget(100);
+        assertEquals(0, bridge.getPendingCount());
+        assertEquals(1, bridge.getReconnectCount());
+        assertTrue(bridge.isStarted());
+    }
+
+    @Test
+    void forwardsOverLoopbackTransport() throws Exception {
+        TransportConfiguration config = new TransportConfiguration().setHost("127.0.0.1").setPort(0).setIoThreads(1);
+        TransportServer server = new TransportServer(config, new BridgeAcceptor(receiver));
+        TransportClient client = new TransportClient(config);
+        try {
+            server.start();
+            client.start();
+            config.setPort(server.getPort());
+            bridge = new Bridge("b", source, new TransportBridgeConnector(client, "127.0.0.1", server.getPort()),
+                    new BridgeConfiguration().setBatchSize(64).setRetryIntervalMillis(10).setMaxRetryIntervalMillis(50));
+            send(1, 5_000);
+            bridge.start();
+            waitFor(() -> bridge.getForwardedCount() == 5_000);
+
+            // the target server restarts, frames in flight are sent again once reconnected
+            send(5_001, 10_000);
+            server.stop();
+            server = new TransportServer(config, new BridgeAcceptor(receiver));
+            server.start();
+
+            waitFor(() -> bridge.getForwardedCount() == 10_000);
+            assertTarget(10_000);
+            assertEquals(10_000, receiver.getReceivedCount());
+        } finally {
+            bridge.stop();
+            client.stop();
+            server.stop();
+        }
+    }
+
+    @Test
+    void splitsFramesAndDropsMessagesOverMaxFrameLength() throws Exception {
+        TransportConfiguration config = new TransportConfiguration().setHost("127.0.0.1").setPort(0).setIoThreads(1)
+                .setMaxFrameLength(1024);
+        TransportServer server = new TransportServer(config, new BridgeAcceptor(receiver));
+        TransportClient client = new TransportClient(config);
+        try {
+            server.start();
+            client.start();
+            TransportBridgeConnector transport = new TransportBridgeConnector(client, "127.0.0.1", server.getPort());
+
+            BridgeConnection connection = transport.connect();
+            PegasusBuffer oversized = PegasusBuffers.wrappedBuffer(new byte[2048]);
+            CompletableFuture<Void> future = connection.send(oversized);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(10, TimeUnit.SECONDS));
+            assertInstanceOf(PegasusException.class, e.getCause());
+            assertEquals(0, oversized.byteBuf().refCnt());
+            connection.close();
+
+            bridge = new Bridge("b", source, transport, new BridgeConfiguration().setBatchSize(64));
+            send(1, 499);
+            Message large = MessageBuilder.builder().address("orders").body(new byte[2048]).build().setMessageId(500);
+            assertTrue(source.offer(large));
+            send(501, 1_000);
+            bridge.start();
+
+            waitFor(() -> bridge.getForwardedCount() == 999);
+            assertEquals(0, large.getBuffer().refCnt());
+            assertEquals(999, target.size());
+            for (int i = 0; i < 999; i++) {
+                assertEquals(i < 499 ? i + 1 : i + 2, target.get(i).getMessageId());
+            }
+            assertTrue(bridge.getFramesSent() > 1_000 / 64 + 1, "frames " + bridge.getFramesSent());
+            assertEquals(0, bridge.getReconnectCount());
+            assertTrue(bridge.isStarted());
+        } finally {
+            bridge.stop();
+            client.stop();
+            server.stop();
+        }
+    }
+
+    @Test
+    void stopsAfterReconnectAttempts() throws Exception {
+        connector.refusals.set(Integer.MAX_VALUE);
+        bridge = new Bridge("b", source, connector, new BridgeConfiguration().setReconnectAttempts(3)
+                .setRetryIntervalMillis(1));
+        bridge.start();
+        waitFor(() -> !bridge.isStarted());
+        assertEquals(4, connector.connects.get());
+    }
+
+    private void send(int from, int to) {
+        for (int i = from; i <= to; i++) {
+            assertTrue(source.offer(MessageBuilder.builder()
+                    .address("orders")
+                    .property("seq", i)
+                    .body(new byte[32])
+                    .build()
+                    .setMessageId(i)));
+        }
+    }
+
+    private void assertTarget(int count) {
+        assertEquals(count, target.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i + 1, target.get(i).getMessageId());
+            assertEquals(i + 1, target.get(i).getProperty(SpanString.of("seq")));
+        }
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Connects to a target broker in the same JVM, which receives frames in order on its own thread.
+     */
+    private static final class LoopbackConnector implements BridgeConnector {
+
+        private final BridgeReceiver receiver;
+        private final ExecutorService executor = Executors.newSingleThreadExecutor();
+        private final AtomicInteger refusals = new AtomicInteger();
+        private final AtomicInteger connects = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger maxInFlight = new AtomicInteger();
+        private final AtomicInteger framesUntilReset = new AtomicInteger();
+        private final AtomicInteger stalledFrames = new AtomicInteger();
+        private volatile long delayNanos;
+        private volatile boolean stalled;
+
+        private LoopbackConnector(BridgeReceiver receiver) {
+            this.receiver = receiver;
+        }
+
+        @Override
+        public BridgeConnection connect() throws PegasusException {
+            connects.incrementAndGet();
+            if (refusals.getAndUpdate(r -> Math.max(0, r - 1)) > 0) {
+                throw new PegasusException("Connection refused", PegasusExceptionType.CONNECTION_ERROR);
+            }
+            return new LoopbackConnection(this);
+        }
+    }
+
+    private static final class LoopbackConnection implements BridgeConnection {
+
+        private final LoopbackConnector connector;
+        private final List<CompletableFuture<Void>> stalled = new CopyOnWriteArrayList<>();
+        private volatile boolean closed;
+
+        private LoopbackConnection(LoopbackConnector connector) {
+            this.connector = connector;
+        }
+
+        @Override
+        public CompletableFuture<Void> send(PegasusBuffer frame) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            if (connector.stalled) {
+                frame.release();
+                stalled.add(future);
+                connector.stalledFrames.incrementAndGet();
+                return future;
+            }
+            connector.maxInFlight.accumulateAndGet(connector.inFlight.incrementAndGet(), Math::max);
+            connector.executor.execute(() -> {
+                try {
+                    if (closed) {
+                        throw new PegasusException("Connection closed", PegasusExceptionType.CONNECTION_ERROR);
+                    }
+                    if (connector.delayNanos > 0) {
+                        TimeUnit.NANOSECONDS.sleep(connector.delayNanos);
+                    }
+                    connector.receiver.receive(frame);
+                    if (connector.framesUntilReset.decrementAndGet() == 0) {
+                        throw new PegasusException("Connection reset", PegasusExceptionType.CONNECTION_ERROR);
+                    }
+                    connector.inFlight.decrementAndGet();
+                    future.complete(null);
+                } catch (Exception e) {
+                    connector.inFlight.decrementAndGet();
+                    future.completeExceptionally(e);
+                } finally {
+                    frame.release();
+                }
+            });
+            return future;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            for (CompletableFuture<Void> future : stalled) {
+                future.completeExceptionally(new PegasusException("Connection closed",
+                        PegasusExceptionType.CONNECTION_ERROR));
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.lazy.pegasus.core.collections;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongLongHashMapTest {
+
+    @Test
+    void putGetRemove() {
+        LongLongHashMap map = new LongLongHashMap(-1);
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get(42));
+
+        assertEquals(-1, map.put(42, 1));
+        assertEquals(1, map.put(42, 2));
+        assertEquals(2, map.get(42));
+        assertTrue(map.containsKey(42));
+        assertEquals(1, map.size());
+
+        assertEquals(2, map.remove(42));
+        assertEquals(-1, map.remove(42));
+        assertFalse(map.containsKey(42));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void zeroAndNegativeKeys() {
+        LongLongHashMap map = new LongLongHashMap(-1);
+        map.put(0, 10);
+        map.put(Long.MIN_VALUE, 20);
+        map.put(-1, 30);
+        assertEquals(3, map.size());
+        assertEquals(10, map.get(0));
+        assertEquals(20, map.get(Long.MIN_VALUE));
+        assertEquals(30, map.get(-1));
+
+        long[] sum = {0};
+        map.forEach((key, value) -> sum[0] += value);
+        assertEquals(60, sum[0]);
+
+        assertEquals(10, map.remove(0));
+        assertEquals(-1, map.get(0));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void missingValueIsRejected() {
+        LongLongHashMap map = new LongLongHashMap(-1);
+        assertThrows(IllegalArgumentException.class, () -> map.put(1, -1));
+    }
+
+    @Test
+    void matchesHashMap() {
+        LongLongHashMap map = new LongLongHashMap(0, Long.MIN_VALUE);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 200_000; i++) {
+            // a small key space makes long probe sequences and many removals
+            long key = random.nextInt(5000) * 1024L;
+            if (random.nextInt(3) == 0) {
+                Long prev = expected.remove(key);
+                assertEquals(prev == null ? Long.MIN_VALUE : prev, map.remove(key));
+            } else {
+                long value = random.nextLong() & Long.MAX_VALUE;
+                Long prev = expected.put(key, value);
+                assertEquals(prev == null ? Long.MIN_VALUE : prev, map.put(key, value));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals(value, map.get(key)));
+        map.forEach((key, value) -> assertEquals(expected.get(key), value));
+
+        map.clear();
+        assertEquals(0, map.size());
+        expected.keySet().forEach(key -> assertFalse(map.containsKey(key)));
+    }
+}
@@ -0,0 +1,179 @@
+package com.lazy.pegasus.core.collections;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.utils.VarIntUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LongRangeSetTest {
+
+    @Test
+    void mergesRuns() {
+        LongRangeSet set = new LongRangeSet();
+        assertTrue(set.add(5));
+        assertTrue(set.add(7));
+        assertTrue(set.add(3));
+        assertEquals(3, set.rangesCount());
+        assertFalse(set.add(5));
+
+        assertTrue(set.add(6));
+        assertEquals(2, set.rangesCount());
+        assertTrue(set.add(4));
+        assertEquals(1, set.rangesCount());
+        assertEquals(3, set.first());
+        assertEquals(7, set.last());
+        assertEquals(5, set.cardinality());
+
+        assertTrue(set.add(10, 20));
+        assertTrue(set.add(0, 12));
+        assertEquals(1, set.rangesCount());
+        assertEquals(20, set.cardinality());
+        assertFalse(set.add(2, 15));
+        assertEquals("LongRangeSet[0..20]", set.toString());
+    }
+
+    @Test
+    void remove() {
+        LongRangeSet set = new LongRangeSet(1);
+        set.add(1, 6);
+        set.add(8);
+        assertFalse(set.remove(7));
+        assertTrue(set.remove(3));
+        assertTrue(set.remove(1));
+        assertTrue(set.remove(5));
+        assertTrue(set.remove(8));
+        assertFalse(set.remove(8));
+
+        LongRangeSet expected = new LongRangeSet();
+        expected.add(2);
+        expected.add(4);
+        assertEquals(expected, set);
+        assertEquals(2, set.cardinality());
+    }
+
+    @Test
+    void containsAndNextAbsent() {
+        LongRangeSet set = new LongRangeSet();
+        set.add(10, 20);
+        set.add(30, 40);
+        assertFalse(set.contains(9));
+        assertTrue(set.contains(10));
+        assertTrue(set.contains(19));
+        assertFalse(set.contains(20));
+        assertTrue(set.contains(35));
+
+        assertEquals(5, set.nextAbsent(5));
+        assertEquals(20, set.nextAbsent(10));
+        assertEquals(25, set.nextAbsent(25));
+        assertEquals(40, set.nextAbsent(39));
+    }
+
+    @Test
+    void removeBelow() {
+        LongRangeSet set = new LongRangeSet();
+        for (int i = 0; i < 100; i += 2) {
+            set.add(i);
+        }
+        assertEquals(50, set.rangesCount());
+        set.removeBelow(51);
+        assertEquals(24, set.rangesCount());
+        assertEquals(52, set.first());
+
+        set.add(40, 60);
+        set.removeBelow(45);
+        assertEquals(45, set.first());
+        assertEquals(16 + 19, set.cardinality());
+
+        // runs added before the first reuse the room left by removed runs
+        for (int i = 0; i < 40; i += 2) {
+            set.add(i);
+        }
+        assertEquals(0, set.first());
+        assertEquals(20 + 1 + 19, set.rangesCount());
+    }
+
+    @Test
+    void matchesTreeSet() {
+        Random random = new Random(42);
+        LongRangeSet set = new LongRangeSet();
+        TreeSet<Long> expected = new TreeSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            long value = random.nextInt(5_000);
+            if (random.nextInt(10) == 0) {
+                long end = value + random.nextInt(20);
+                set.add(value, end);
+                for (long v = value; v < end; v++) {
+                    expected.add(v);
+                }
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+            if (i % 5_000 == 4_999) {
+                long floor = random.nextInt(1_000) + i / 5;
+                set.removeBelow(floor);
+                expected.headSet(floor).clear();
+            }
+        }
+
+        assertEquals(expected.size(), set.cardinality());
+        assertEquals(expected.first(), set.first());
+        assertEquals(expected.last(), set.last());
+        for (long v = 0; v < 5_100; v++) {
+            assertEquals(expected.contains(v), set.contains(v), "value " + v);
+        }
+        List<long[]> runs = new ArrayList<>();
+        set.forEachRange((start, end) -> runs.add(new long[]{start, end}));
+        assertEquals(set.rangesCount(), runs.size());
+        for (int i = 1; i < runs.size(); i++) {
+            assertTrue(runs.get(i)[0] > runs.get(i - 1)[1]);
+        }
+    }
+
+    @Test
+    void encodeDecode() throws PegasusException {
+        LongRangeSet set = new LongRangeSet();
+        set.add(-5, 3);
+        set.add(1_000_000_000_000L);
+        set.add(1_000_000_000_010L, 1_000_000_000_020L);
+
+        PegasusBuffer buffer = PegasusBuffers.dynamicBuffer(16);
+        set.encode(buffer);
+        assertEquals(set.encodeSize(), buffer.readableBytes());
+        assertTrue(buffer.readableBytes() < 24);
+
+        LongRangeSet decoded = LongRangeSet.decode(buffer);
+        assertEquals(set, decoded);
+        assertEquals(set.cardinality(), decoded.cardinality());
+        assertEquals(0, buffer.readableBytes());
+
+        PegasusBuffer empty = PegasusBuffers.dynamicBuffer(1);
+        new LongRangeSet().encode(empty);
+        assertTrue(LongRangeSet.decode(empty).isEmpty());
+    }
+
+    @Test
+    void decodeRejectsCountExceedingReadableBytes() {
+        PegasusBuffer buffer = PegasusBuffers.dynamicBuffer(16);
+        VarIntUtil.writeVarInt(buffer, Integer.MAX_VALUE);
+        VarIntUtil.writeVarLong(buffer, VarIntUtil.zigzag(1L));
+        VarIntUtil.writeVarLong(buffer, 1);
+        PegasusException e = assertThrows(PegasusException.class, () -> LongRangeSet.decode(buffer));
+        assertEquals(PegasusExceptionType.ENCODING_ERROR, e.getType());
+
+        buffer.clear();
+        VarIntUtil.writeVarInt(buffer, 2);
+        VarIntUtil.writeVarLong(buffer, VarIntUtil.zigzag(1L));
+        VarIntUtil.writeVarLong(buffer, 1);
+        e = assertThrows(PegasusException.class, () -> LongRangeSet.decode(buffer));
+        assertEquals(PegasusExceptionType.ENCODING_ERROR, e.getType());
+    }
+}
@@ -0,0 +1,134 @@
+package com.lazy.pegasus.core.collections;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MpscQueueTest {
+
+    @Test
+    void boundedRejectsWhenFull() {
+        MpscArrayQueue<Integer> queue = new MpscArrayQueue<>(6);
+        assertEquals(8, queue.capacity());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertFalse(queue.offer(8));
+        assertEquals(8, queue.size());
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(8));
+        for (int i = 1; i <= 8; i++) {
+            assertEquals(i, queue.peek());
+            assertEquals(i, queue.poll());
+        }
+        assertNull(queue.poll());
+        assertNull(queue.peek());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void unboundedGrowsAcrossChunks() {
+        MpscUnboundedArrayQueue<Integer> queue = new MpscUnboundedArrayQueue<>(4);
+        assertEquals(MpscQueue.UNBOUNDED, queue.capacity());
+        fifo(queue, 100);
+    }
+
+    @Test
+    void boundedFifo() {
+        fifo(new MpscArrayQueue<>(128), 100);
+    }
+
+    @Test
+    void drainLimit() {
+        drainLimit(new MpscArrayQueue<>(16));
+        drainLimit(new MpscUnboundedArrayQueue<>(4));
+    }
+
+    @Test
+    void rejectsNull() {
+        assertThrows(NullPointerException.class, () -> new MpscArrayQueue<>(4).offer(null));
+        assertThrows(NullPointerException.class, () -> new MpscUnboundedArrayQueue<>().offer(null));
+        assertThrows(IllegalArgumentException.class, () -> new MpscArrayQueue<>(1));
+    }
+
+    @Test
+    void boundedConcurrentProducers() throws InterruptedException {
+        concurrentProducers(new MpscArrayQueue<>(64));
+    }
+
+    @Test
+    void unboundedConcurrentProducers() throws InterruptedException {
+        concurrentProducers(new MpscUnboundedArrayQueue<>(16));
+    }
+
+    private static void fifo(MpscQueue<Integer> queue, int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(queue.offer(i));
+        }
+        assertEquals(count, queue.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, queue.poll());
+        }
+        assertNull(queue.poll());
+        assertEquals(0, queue.size());
+    }
+
+    private static void drainLimit(MpscQueue<Integer> queue) {
+        for (int i = 0; i < 10; i++) {
+            queue.offer(i);
+        }
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(6, queue.drain(drained::add, 6));
+        assertEquals(List.of(0, 1, 2, 3, 4, 5), drained);
+        assertEquals(4, queue.drain(drained::add, 100));
+        assertEquals(0, queue.drain(drained::add, 100));
+        assertEquals(10, drained.size());
+        assertTrue(queue.isEmpty());
+    }
+
+    private static void concurrentProducers(MpscQueue<Long> queue) throws InterruptedException {
+        int producers = 4;
+        int perProducer = 100_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long i = 0; i < perProducer; i++) {
+                    while (!queue.offer(producer << 32 | i)) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+        }
+
+        long[] next = new long[producers];
+        int received = 0;
+        start.countDown();
+        while (received < producers * perProducer) {
+            received += queue.drain(e -> {
+                int producer = (int) (e >>> 32);
+                assertEquals(next[producer]++, e & 0xFFFFFFFFL);
+            }, 256);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertNull(queue.poll());
+        for (long n : next) {
+            assertEquals(perProducer, n);
+        }
+    }
+}
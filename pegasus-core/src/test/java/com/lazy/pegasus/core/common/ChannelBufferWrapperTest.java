@@ -0,0 +1,80 @@
+package com.lazy.pegasus.core.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChannelBufferWrapperTest {
+
+    @Test
+    void primitives() {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(4);
+        buf.writeByte((byte) -1);
+        buf.writeShort((short) -2);
+        buf.writeInt(-3);
+        buf.writeLong(-4L);
+        buf.writeChar('\uB435');
+        buf.writeFloat(1.5f);
+        buf.writeDouble(Math.PI);
+        buf.writeBoolean(true);
+
+        assertEquals(-1, buf.readByte());
+        assertEquals(-2, buf.readShort());
+        assertEquals(-3, buf.readInt());
+        assertEquals(-4L, buf.readLong());
+        assertEquals('\uB435', buf.readChar());
+        assertEquals(1.5f, buf.readFloat());
+        assertEquals(Math.PI, buf.readDouble());
+        assertTrue(buf.readBoolean());
+        assertFalse(buf.readable());
+    }
+
+    @Test
+    void nullables() {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(4);
+        buf.writeNullableInt(null);
+        buf.writeNullableInt(7);
+        buf.writeNullableLong(null);
+        buf.writeNullableLong(8L);
+        buf.writeNullableBoolean(null);
+        buf.writeNullableBoolean(false);
+        buf.writeNullableString(null);
+        buf.writeNullableString("abc");
+        buf.writeNullableSpanString(null);
+        buf.writeNullableSpanString(SpanString.of("def"));
+
+        assertNull(buf.readNullableInt());
+        assertEquals(7, buf.readNullableInt());
+        assertNull(buf.readNullableLong());
+        assertEquals(8L, buf.readNullableLong());
+        assertNull(buf.readNullableBoolean());
+        assertEquals(false, buf.readNullableBoolean());
+        assertEquals(DataConstants.NULL, buf.readByte());
+        assertEquals(DataConstants.NOT_NULL, buf.readByte());
+        assertEquals("abc", buf.readString());
+        assertNull(buf.readNullableSpanString());
+        assertEquals(SpanString.of("def"), buf.readNullableSpanString());
+    }
+
+    @Test
+    void stringAndSpanStringInterchangeable() {
+        String str = "abc\uB435\uD900\uDD00";
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(4);
+        buf.writeString(str);
+        assertEquals(SpanString.of(str).sizeof(), buf.writeIndex());
+        buf.writeSpanString(SpanString.of(str));
+        buf.writeUTF(str);
+
+        assertEquals(SpanString.of(str), buf.readSpanString());
+        assertEquals(str, buf.readString());
+        assertEquals(str, buf.readUTF());
+    }
+
+    @Test
+    void fixedBuffer() {
+        PegasusBuffer buf = PegasusBuffers.fixedBuffer(4);
+        buf.writeInt(1);
+        assertFalse(buf.writeable());
+        assertThrows(IndexOutOfBoundsException.class, () -> buf.writeByte((byte) 1));
+    }
+}
@@ -0,0 +1,137 @@
+package com.lazy.pegasus.core.compress;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.utils.RandsUtil;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionTest {
+
+    private static final CompressionCodec[] CODECS = {new Lz4BlockCodec(), new DeflateCodec()};
+
+    @Test
+    void roundTrip() throws PegasusException {
+        int[] sizes = {0, 1, 12, 13, 100, 4096, 70_000, 300_000};
+        for (CompressionCodec codec : CODECS) {
+            for (int size : sizes) {
+                assertRoundTrip(codec, json(size), false);
+                assertRoundTrip(codec, RandsUtil.randBytes(size), false);
+                assertRoundTrip(codec, new byte[size], true);
+            }
+        }
+    }
+
+    @Test
+    void compressJson() {
+        byte[] json = json(64 * 1024);
+        for (CompressionCodec codec : CODECS) {
+            PegasusBuffer dest = PegasusBuffers.dynamicBuffer(16);
+            int len = codec.compress(PegasusBuffers.wrappedBuffer(json), 0, json.length, dest);
+            assertTrue(len < json.length / 3, codec.name() + " compressed to " + len);
+        }
+    }
+
+    @Test
+    void corrupted() {
+        byte[] json = json(8192);
+        for (CompressionCodec codec : CODECS) {
+            PegasusBuffer compressed = PegasusBuffers.dynamicBuffer(16);
+            int len = codec.compress(PegasusBuffers.wrappedBuffer(json), 0, json.length, compressed);
+            for (int i = 0; i < len; i += 7) {
+                compressed.setByte(i, (byte) (compressed.getByte(i) ^ 0x5a));
+            }
+
+            try {
+                PegasusBuffer dest = PegasusBuffers.dynamicBuffer(json.length);
+                codec.decompress(compressed, 0, len, dest, json.length);
+                byte[] out = new byte[json.length];
+                dest.readBytes(out);
+                assertFalse(java.util.Arrays.equals(json, out), codec.name());
+            } catch (PegasusException e) {
+                assertEquals(PegasusExceptionType.COMPRESSION_ERROR, e.getType());
+            }
+        }
+    }
+
+    @Test
+    void registry() {
+        assertInstanceOf(Lz4BlockCodec.class, CompressionCodecs.ofId(Lz4BlockCodec.ID));
+        assertInstanceOf(DeflateCodec.class, CompressionCodecs.ofName("DEFLATE"));
+        assertNull(CompressionCodecs.ofId((byte) 0));
+        assertThrows(IllegalArgumentException.class, () -> CompressionCodecs.register(new Lz4BlockCodec()));
+    }
+
+    @Test
+    void payloadCompressor() throws PegasusException {
+        SpanString orders = SpanString.of("orders");
+        SpanString audit = SpanString.of("audit");
+        CompressionPolicy policy = new CompressionPolicy();
+        policy.enable(orders, CompressionCodecs.ofName("lz4"), 512);
+        PayloadCompressor compressor = new PayloadCompressor(policy);
+
+        // not opted in
+        assertEncoded(compressor, audit, json(4096), false);
+        // below threshold
+        assertEncoded(compressor, orders, json(256), false);
+        // incompressible
+        assertEncoded(compressor, orders, RandsUtil.randBytes(4096), false);
+        assertEncoded(compressor, orders, json(4096), true);
+
+        policy.disable(orders);
+        assertEncoded(compressor, orders, json(4096), false);
+    }
+
+    private static void assertEncoded(PayloadCompressor compressor, SpanString address, byte[] payload, boolean compressed)
+            throws PegasusException {
+        PegasusBuffer src = PegasusBuffers.wrappedBuffer(payload);
+        PegasusBuffer encoded = PegasusBuffers.dynamicBuffer(16);
+        assertEquals(compressed, compressor.encode(address, src, encoded));
+        assertEquals(compressed, PayloadCompressor.isCompressed(encoded, 0));
+        assertEquals(0, src.readIndex());
+
+        PegasusBuffer decoded = PayloadCompressor.decode(encoded);
+        assertFalse(encoded.readable());
+        byte[] out = new byte[decoded.readableBytes()];
+        decoded.readBytes(out);
+        assertArrayEquals(payload, out);
+    }
+
+    private static void assertRoundTrip(CompressionCodec codec, byte[] data, boolean direct) throws PegasusException {
+        PegasusBuffer src = direct ? PegasusBuffers.directBuffer(data.length + 3) : PegasusBuffers.dynamicBuffer(data.length + 3);
+        src.writeBytes(new byte[3]);
+        src.writeBytes(data);
+
+        PegasusBuffer compressed = direct ? PegasusBuffers.pooledBuffer(16) : PegasusBuffers.dynamicBuffer(16);
+        compressed.writeByte((byte) 7);
+        int len = codec.compress(src, 3, data.length, compressed);
+        assertEquals(len + 1, compressed.writeIndex());
+        assertTrue(len <= codec.maxCompressedLength(data.length));
+
+        PegasusBuffer out = direct ? PegasusBuffers.directBuffer(data.length) : PegasusBuffers.dynamicBuffer(0);
+        codec.decompress(compressed, 1, len, out, data.length);
+        assertEquals(data.length, out.readableBytes());
+        byte[] bytes = new byte[data.length];
+        out.readBytes(bytes);
+        assertArrayEquals(data, bytes, codec.name() + " of " + data.length + " bytes");
+        compressed.release();
+    }
+
+    private static byte[] json(int size) {
+        StringBuilder sb = new StringBuilder(size + 128);
+        int i = 0;
+        while (sb.length() < size) {
+            sb.append("{\"id\":").append(i).append(",\"region\":\"EU\",\"amount\":").append(i * 31 % 1000)
+                    .append(",\"status\":\"").append(i % 3 == 0 ? "NEW" : "FILLED").append("\"},");
+            i++;
+        }
+        sb.setLength(size);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
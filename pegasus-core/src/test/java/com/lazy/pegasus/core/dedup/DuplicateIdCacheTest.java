@@ -0,0 +1,187 @@
+package com.lazy.pegasus.core.dedup;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.journal.FileJournal;
+import com.lazy.pegasus.core.journal.JournalConfiguration;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateIdCacheTest {
+
+    private static final SpanString ADDRESS = SpanString.of("orders");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void detectsDuplicates() throws PegasusException {
+        DuplicateIdCache cache = new DuplicateIdCache(ADDRESS, 16);
+        assertTrue(cache.addIfAbsent(SpanString.of("id-1")));
+        assertTrue(cache.addIfAbsent(SpanString.of("id-2")));
+        assertFalse(cache.addIfAbsent(SpanString.of("id-1")));
+        assertEquals(2, cache.size());
+
+        // looked up straight against a frame holding the id
+        ByteBuf frame = Unpooled.buffer();
+        frame.writeInt(42);
+        frame.writeBytes(SpanString.of("id-2").getData());
+        int len = SpanString.of("id-2").getData().length;
+        assertTrue(cache.contains(frame, 4, len));
+        assertFalse(cache.addIfAbsent(frame, 4, len));
+
+        ByteBuf direct = Unpooled.directBuffer();
+        direct.writeBytes(SpanString.of("id-3").getData());
+        assertTrue(cache.addIfAbsent(direct, 0, direct.readableBytes()));
+        assertTrue(cache.contains(SpanString.of("id-3").getData()));
+
+        // ids of a direct frame differing past their last 8-byte word
+        ByteBuf tail = Unpooled.directBuffer();
+        tail.writeByte(1).writeBytes(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11});
+        assertTrue(cache.addIfAbsent(tail, 1, 11));
+        tail.setByte(11, 12);
+        assertFalse(cache.contains(tail, 1, 11));
+        assertTrue(cache.addIfAbsent(tail, 1, 11));
+    }
+
+    @Test
+    void evictsOldest() throws PegasusException {
+        DuplicateIdCache cache = new DuplicateIdCache(ADDRESS, 100);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(cache.addIfAbsent(id(i)));
+        }
+        assertEquals(100, cache.size());
+        for (int i = 0; i < 900; i++) {
+            assertFalse(cache.contains(id(i)));
+        }
+        for (int i = 900; i < 1000; i++) {
+            assertTrue(cache.contains(id(i)));
+        }
+        assertTrue(cache.addIfAbsent(id(0)));
+        assertFalse(cache.contains(id(900)));
+        assertTrue(cache.contains(id(901)));
+    }
+
+    @Test
+    void survivesRestart() throws PegasusException {
+        AtomicLong recordIds = new AtomicLong();
+        FileJournal journal = journal();
+        journal.load();
+        DuplicateIdManager manager = new DuplicateIdManager(10, journal, recordIds::incrementAndGet);
+        DuplicateIdCache orders = manager.getCache(ADDRESS);
+        DuplicateIdCache other = manager.getCache(SpanString.of("other"));
+        for (int i = 0; i < 25; i++) {
+            orders.addIfAbsent(id(i));
+        }
+        other.addIfAbsent(id(7));
+        journal.stop();
+
+        journal = journal();
+        manager = new DuplicateIdManager(10, journal, recordIds::incrementAndGet);
+        manager.load(journal.load());
+        assertEquals(2, manager.getCachesCount());
+        orders = manager.getCache(ADDRESS);
+        assertEquals(10, orders.size());
+        for (int i = 0; i < 15; i++) {
+            assertFalse(orders.contains(id(i)));
+        }
+        for (int i = 15; i < 25; i++) {
+            assertFalse(orders.addIfAbsent(id(i)));
+        }
+        assertTrue(manager.getCache(SpanString.of("other")).contains(id(7)));
+
+        // evictions after restart are journaled too
+        assertTrue(orders.addIfAbsent(id(100)));
+        journal.stop();
+        journal = journal();
+        manager = new DuplicateIdManager(10, journal, recordIds::incrementAndGet);
+        manager.load(journal.load());
+        assertFalse(manager.getCache(ADDRESS).contains(id(15)));
+        assertTrue(manager.getCache(ADDRESS).contains(id(100)));
+        journal.stop();
+    }
+
+    @Test
+    void keepsStateWhenJournalFails() throws PegasusException {
+        AtomicLong recordIds = new AtomicLong();
+        FailingJournal journal = new FailingJournal(new JournalConfiguration(dir).setFileSize(64 * 1024));
+        journal.start();
+        journal.load();
+        DuplicateIdCache cache = new DuplicateIdCache(ADDRESS, 4, journal, recordIds::incrementAndGet);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(cache.addIfAbsent(id(i)));
+        }
+
+        // the oldest id cannot be evicted
+        journal.failDeletes = true;
+        assertThrows(PegasusException.class, () -> cache.addIfAbsent(id(4)));
+        assertFalse(cache.contains(id(4)));
+        assertTrue(cache.contains(id(0)));
+        assertEquals(4, cache.size());
+
+        // the oldest id is evicted but the new id cannot be added
+        journal.failDeletes = false;
+        journal.failAdds = true;
+        assertThrows(PegasusException.class, () -> cache.addIfAbsent(id(4)));
+        assertFalse(cache.contains(id(4)));
+        assertFalse(cache.contains(id(0)));
+        assertEquals(3, cache.size());
+
+        journal.failAdds = false;
+        for (int i = 4; i < 10; i++) {
+            assertTrue(cache.addIfAbsent(id(i)));
+        }
+        assertEquals(4, cache.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i >= 6, cache.contains(id(i)), "id " + i);
+        }
+        journal.stop();
+    }
+
+    private FileJournal journal() throws PegasusException {
+        FileJournal journal = new FileJournal(new JournalConfiguration(dir).setFileSize(64 * 1024).setMinFiles(2));
+        journal.start();
+        return journal;
+    }
+
+    private static byte[] id(int i) {
+        return ByteBuffer.allocate(16).putLong(0x5EED).putLong(i).array();
+    }
+
+    private static final class FailingJournal extends FileJournal {
+
+        private boolean failAdds;
+        private boolean failDeletes;
+
+        private FailingJournal(JournalConfiguration config) {
+            super(config);
+        }
+
+        @Override
+        public void appendAddRecord(long id, byte userRecordType, PegasusBuffer body, boolean sync)
+                throws PegasusException {
+            if (failAdds) {
+                throw new PegasusException("Add failed", PegasusExceptionType.JOURNAL_ERROR);
+            }
+            super.appendAddRecord(id, userRecordType, body, sync);
+        }
+
+        @Override
+        public void appendDeleteRecord(long id, boolean sync) throws PegasusException {
+            if (failDeletes) {
+                throw new PegasusException("Delete failed", PegasusExceptionType.JOURNAL_ERROR);
+            }
+            super.appendDeleteRecord(id, sync);
+        }
+    }
+}
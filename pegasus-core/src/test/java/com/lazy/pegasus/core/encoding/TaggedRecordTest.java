@@ -0,0 +1,241 @@
+package com.lazy.pegasus.core.encoding;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.utils.RandsUtil;
+import com.lazy.pegasus.core.utils.VarIntUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaggedRecordTest {
+
+    private static final RecordSchema V1 = RecordSchema.of(1,
+            RecordSchema.Field.required(1, DataConstants.LONG, 1),
+            RecordSchema.Field.optional(2, DataConstants.STRING, 1));
+
+    private static final RecordSchema V2 = RecordSchema.of(2,
+            RecordSchema.Field.required(1, DataConstants.LONG, 1),
+            RecordSchema.Field.optional(2, DataConstants.STRING, 1),
+            RecordSchema.Field.required(3, DataConstants.INT, 2),
+            RecordSchema.Field.optional(4, DataConstants.BYTES, 2));
+
+    @Test
+    void varInts() throws PegasusException {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(16);
+        long[] values = {0, 1, -1, 63, -64, 64, 300, Integer.MAX_VALUE, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long v : values) {
+            buf.clear();
+            VarIntUtil.writeVarLong(buf, VarIntUtil.zigzag(v));
+            assertEquals(VarIntUtil.sizeOfVarLong(VarIntUtil.zigzag(v)), buf.readableBytes());
+            assertEquals(v, VarIntUtil.unzigzag(VarIntUtil.readVarLong(buf)));
+        }
+
+        buf.clear();
+        buf.writeInt(0);
+        buf.writeByte((byte) 0);
+        VarIntUtil.setPaddedVarInt(buf, 0, 300);
+        assertEquals(300, VarIntUtil.readVarInt(buf));
+        assertFalse(buf.readable());
+
+        buf.clear();
+        for (int i = 0; i < VarIntUtil.MAX_VARLONG_SIZE + 1; i++) {
+            buf.writeByte((byte) 0x80);
+        }
+        PegasusException ex = assertThrows(PegasusException.class, () -> VarIntUtil.readVarInt(buf));
+        assertEquals(PegasusExceptionType.ENCODING_ERROR, ex.getType());
+        buf.readIndex(0);
+        ex = assertThrows(PegasusException.class, () -> VarIntUtil.readVarLong(buf));
+        assertEquals(PegasusExceptionType.ENCODING_ERROR, ex.getType());
+        buf.readIndex(0);
+        ex = assertThrows(PegasusException.class, () -> VarIntUtil.skipVarLong(buf));
+        assertEquals(PegasusExceptionType.ENCODING_ERROR, ex.getType());
+    }
+
+    @Test
+    void roundTrip() throws PegasusException {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(64);
+        byte[] payload = RandsUtil.randBytes(100);
+        int size = new TaggedRecordWriter(buf).begin(2)
+                .writeLong(1, -42L)
+                .writeSpanString(2, SpanString.of("queue.orders"))
+                .writeInt(3, Integer.MIN_VALUE)
+                .writeBytes(4, payload)
+                .writeDouble(5, 3.25d)
+                .writeBoolean(6, true)
+                .end();
+        assertEquals(buf.writeIndex(), size);
+
+        TaggedRecordReader reader = new TaggedRecordReader(buf);
+        assertEquals(2, reader.begin());
+
+        assertTrue(reader.nextField());
+        assertEquals(1, reader.fieldNumber());
+        assertEquals(-42L, reader.readLong());
+        assertTrue(reader.nextField());
+        assertEquals(SpanString.of("queue.orders"), reader.readSpanString());
+        assertTrue(reader.nextField());
+        assertEquals(Integer.MIN_VALUE, reader.readInt());
+        assertTrue(reader.nextField());
+        assertArrayEquals(payload, reader.readBytes());
+        assertTrue(reader.nextField());
+        assertEquals(3.25d, reader.readDouble());
+        assertTrue(reader.nextField());
+        assertTrue(reader.readBoolean());
+        assertFalse(reader.nextField());
+        reader.end();
+
+        assertFalse(buf.readable());
+        V2.validate(reader);
+    }
+
+    @Test
+    void oldReaderSkipsUnknownFields() throws PegasusException {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(64);
+        new TaggedRecordWriter(buf).begin(V2.version())
+                .writeLong(1, 7L)
+                .writeInt(3, 99)
+                .writeBytes(4, new byte[4096])
+                .writeString(2, "name")
+                .end();
+        // a following record must stay readable
+        new TaggedRecordWriter(buf).begin(V2.version()).writeLong(1, 8L).end();
+
+        TaggedRecordReader reader = new TaggedRecordReader(buf);
+        assertEquals(2, reader.begin());
+        long id = 0;
+        String name = null;
+        while (reader.nextField()) {
+            if (!V1.isKnown(reader.fieldNumber())) {
+                continue; // not read, skipped by nextField
+            }
+            switch (reader.fieldNumber()) {
+                case 1 -> id = reader.readLong();
+                case 2 -> name = reader.readString();
+                default -> reader.skipField();
+            }
+        }
+        reader.end();
+        V1.validate(reader);
+
+        assertEquals(7L, id);
+        assertEquals("name", name);
+
+        assertEquals(2, reader.begin());
+        assertTrue(reader.nextField());
+        assertEquals(8L, reader.readLong());
+        assertFalse(reader.nextField());
+    }
+
+    @Test
+    void newReaderAcceptsOldRecord() throws PegasusException {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(64);
+        new TaggedRecordWriter(buf).begin(V1.version()).writeLong(1, 1L).end();
+
+        TaggedRecordReader reader = new TaggedRecordReader(buf);
+        assertEquals(1, reader.begin());
+        while (reader.nextField()) {
+            reader.skipField();
+        }
+        // field 3 is required since version 2, but the writer is version 1
+        V2.validate(reader);
+        assertFalse(reader.hasField(3));
+
+        buf.clear();
+        new TaggedRecordWriter(buf).begin(V2.version()).writeLong(1, 1L).end();
+        reader.begin();
+        while (reader.nextField()) {
+            reader.skipField();
+        }
+        PegasusException ex = assertThrows(PegasusException.class, () -> V2.validate(reader));
+        assertEquals(PegasusExceptionType.ENCODING_ERROR, ex.getType());
+    }
+
+    @Test
+    void rejectsFieldExceedingRecord() throws PegasusException {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(64);
+        new TaggedRecordWriter(buf).begin(1).writeBytes(1, new byte[8]).writeLong(2, 1L).end();
+        // the following record must not be read as part of the field
+        new TaggedRecordWriter(buf).begin(1).writeLong(1, 2L).end();
+        // the length prefix of field 1, after the header and the tag, claims more bytes than left in the record
+        int lengthIndex = 1 + VarIntUtil.MAX_VARINT_SIZE + 1;
+        assertEquals(8, buf.getByte(lengthIndex));
+        buf.setByte(lengthIndex, (byte) 12);
+
+        TaggedRecordReader reader = new TaggedRecordReader(buf);
+        reader.begin();
+        assertTrue(reader.nextField());
+        PegasusException ex = assertThrows(PegasusException.class, reader::skipField);
+        assertEquals(PegasusExceptionType.ENCODING_ERROR, ex.getType());
+
+        buf.readIndex(0);
+        reader.begin();
+        assertTrue(reader.nextField());
+        ex = assertThrows(PegasusException.class, reader::readBytes);
+        assertEquals(PegasusExceptionType.ENCODING_ERROR, ex.getType());
+    }
+
+    @Test
+    void rejectsFixedFieldExceedingRecord() throws PegasusException {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(64);
+        new TaggedRecordWriter(buf).begin(1).writeDouble(1, 3.25d).end();
+        // the record is truncated in the middle of the value, whose last bytes read as a following record
+        VarIntUtil.setPaddedVarInt(buf, 1, 1 + Integer.BYTES);
+
+        TaggedRecordReader reader = new TaggedRecordReader(buf);
+        reader.begin();
+        assertTrue(reader.nextField());
+        PegasusException ex = assertThrows(PegasusException.class, reader::readDouble);
+        assertEquals(PegasusExceptionType.ENCODING_ERROR, ex.getType());
+
+        buf.clear();
+        new TaggedRecordWriter(buf).begin(1).writeFloat(1, 1.5f).end();
+        VarIntUtil.setPaddedVarInt(buf, 1, 1 + Short.BYTES);
+        reader.begin();
+        assertTrue(reader.nextField());
+        ex = assertThrows(PegasusException.class, reader::readFloat);
+        assertEquals(PegasusExceptionType.ENCODING_ERROR, ex.getType());
+    }
+
+    @Test
+    void nested() throws PegasusException {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(16);
+        new TaggedRecordWriter(buf).begin(1)
+                .writeLong(1, 10L)
+                .beginNested(2)
+                .writeInt(1, 5)
+                .writeString(2, "inner")
+                .endNested()
+                .writeLong(3, 11L)
+                .end();
+
+        TaggedRecordReader reader = new TaggedRecordReader(buf);
+        reader.begin();
+        assertTrue(reader.nextField());
+        assertEquals(10L, reader.readLong());
+        assertTrue(reader.nextField());
+        TaggedRecordReader nested = reader.readNested();
+        assertTrue(reader.nextField());
+        assertEquals(11L, reader.readLong());
+        assertFalse(reader.nextField());
+
+        assertTrue(nested.nextField());
+        assertEquals(5, nested.readInt());
+        assertTrue(nested.nextField());
+        assertEquals("inner", nested.readString());
+        assertFalse(nested.nextField());
+    }
+
+    @Test
+    void schema() {
+        assertThrows(IllegalArgumentException.class, () -> RecordSchema.of(1, RecordSchema.Field.optional(1, DataConstants.INT, 2)));
+        assertThrows(IllegalArgumentException.class, () -> RecordSchema.of(1,
+                RecordSchema.Field.optional(1, DataConstants.INT, 1), RecordSchema.Field.optional(1, DataConstants.LONG, 1)));
+        assertEquals(WireType.LENGTH_DELIMITED, V2.field(4).wireType());
+        assertNull(V1.field(4));
+    }
+}
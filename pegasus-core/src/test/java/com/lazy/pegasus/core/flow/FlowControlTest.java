@@ -0,0 +1,138 @@
+package com.lazy.pegasus.core.flow;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlowControlTest {
+
+    private static final SpanString ADDRESS = SpanString.of("orders");
+
+    @Test
+    void grantsAreBatched() {
+        FlowControlMetrics metrics = new FlowControlMetrics();
+        List<Integer> grants = new ArrayList<>();
+        ConsumerCredits credits = new ConsumerCredits(1000, grants::add, metrics);
+        credits.start();
+        for (int i = 0; i < 23; i++) {
+            credits.consumed(message(100));
+        }
+        assertEquals(List.of(1000, 500, 500, 500, 500), grants);
+        assertEquals(300, credits.getPending());
+
+        credits.flush();
+        assertEquals(300, grants.get(grants.size() - 1));
+        assertEquals(6, metrics.getCreditGrants());
+        assertEquals(1000 + 2300, metrics.getGrantedBytes());
+    }
+
+    @Test
+    void producerPausedWhenCreditsExhausted() {
+        FlowControlMetrics metrics = new FlowControlMetrics();
+        ProducerCredits credits = new ProducerCredits(ADDRESS, 250, metrics);
+        assertTrue(credits.tryAcquire(100));
+        assertTrue(credits.tryAcquire(100));
+        // let through while some credits remain, paid back by the next grant
+        assertTrue(credits.tryAcquire(100));
+        assertEquals(-50, credits.getAvailable());
+        assertTrue(credits.isBlocked());
+        assertFalse(credits.tryAcquire(1));
+        // a producer polling without blocking is not stalled
+        assertFalse(credits.tryAcquire(1));
+        assertEquals(0, metrics.getCreditStalls());
+        assertTrue(credits.tryAcquire(0));
+
+        credits.grant(100);
+        assertFalse(credits.isBlocked());
+        assertTrue(credits.tryAcquire(100));
+    }
+
+    @Test
+    void producerBlockedUntilGrant() throws InterruptedException {
+        FlowControlMetrics metrics = new FlowControlMetrics();
+        ProducerCredits credits = new ProducerCredits(ADDRESS, 0, metrics);
+        credits.acquire(0);
+        assertFalse(credits.acquire(10, 0, TimeUnit.MILLISECONDS));
+        assertEquals(0, metrics.getCreditStalls());
+        assertFalse(credits.acquire(10, 10, TimeUnit.MILLISECONDS));
+
+        Thread producer = new Thread(() -> {
+            try {
+                credits.acquire(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        while (producer.getState() != Thread.State.WAITING && producer.getState() != Thread.State.TIMED_WAITING) {
+            Thread.onSpinWait();
+        }
+        credits.grant(10);
+        producer.join(5_000);
+        assertFalse(producer.isAlive());
+        assertEquals(0, credits.getAvailable());
+        assertEquals(2, metrics.getCreditStalls());
+        assertTrue(metrics.getStalledNanos() > 0);
+
+        credits.close();
+        assertThrows(IllegalStateException.class, () -> credits.acquire(10));
+    }
+
+    @Test
+    void windowBoundsBytesInFlight() throws Exception {
+        final int window = 10_000;
+        final int messages = 5_000;
+        FlowControlMetrics metrics = new FlowControlMetrics();
+        ProducerCredits producerCredits = new ProducerCredits(ADDRESS, 0, metrics);
+        ConsumerCredits consumerCredits = new ConsumerCredits(window, producerCredits::grant, metrics);
+        BlockingQueue<PegasusBuffer> link = new ArrayBlockingQueue<>(messages);
+        AtomicLong inFlight = new AtomicLong();
+        AtomicLong maxInFlight = new AtomicLong();
+
+        Thread consumer = new Thread(() -> {
+            try {
+                for (int i = 0; i < messages; i++) {
+                    PegasusBuffer message = link.take();
+                    inFlight.addAndGet(-message.readableBytes());
+                    if (i % 100 == 0) {
+                        Thread.sleep(1);
+                    }
+                    consumerCredits.consumed(message);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+        consumerCredits.start();
+
+        for (int i = 0; i < messages; i++) {
+            PegasusBuffer message = message(64 + i % 64);
+            producerCredits.acquire(message);
+            maxInFlight.accumulateAndGet(inFlight.addAndGet(message.readableBytes()), Math::max);
+            link.put(message);
+        }
+        consumer.join(30_000);
+        assertFalse(consumer.isAlive());
+
+        assertTrue(maxInFlight.get() <= window + 128, "max in flight " + maxInFlight.get());
+        assertTrue(metrics.getCreditStalls() > 0);
+        assertTrue(metrics.getCreditGrants() < messages / 10, "grants " + metrics.getCreditGrants());
+    }
+
+    private static PegasusBuffer message(int size) {
+        PegasusBuffer buffer = PegasusBuffers.fixedBuffer(size);
+        buffer.writeIndex(size);
+        return buffer;
+    }
+}
@@ -0,0 +1,127 @@
+package com.lazy.pegasus.core.group;
+
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageGroupsTest {
+
+    private static final SpanString GROUP_KEY = SpanString.of("_PGS_GROUP_ID");
+    private static final int GROUPS = 10_000;
+
+    @Test
+    void sameGroupSameConsumer() {
+        MessageGroups<String> groups = groups(4);
+        assertNull(groups.consumerFor(message(null)));
+        assertNull(groups.consumerFor(MessageBuilder.builder().address("orders").property(GROUP_KEY, 1).build()));
+
+        for (int i = 0; i < 100; i++) {
+            SpanString groupId = SpanString.of("group-" + i);
+            String consumer = groups.consumerFor(groupId);
+            assertNotNull(consumer);
+            assertEquals(consumer, groups.consumerFor(message(groupId)));
+            assertEquals(consumer, groups.consumerFor(message(SpanString.of("group-" + i))));
+        }
+    }
+
+    @Test
+    void hashOfEncodedGroupId() {
+        SpanString groupId = SpanString.of("group-42");
+        byte[] data = groupId.getData();
+        assertEquals(groupId.hashCode(), SpanString.hashCode(PegasusBuffers.wrappedBuffer(data).byteBuf(), 0, data.length));
+    }
+
+    @Test
+    void groupsAreSpread() {
+        MessageGroups<String> groups = groups(4);
+        Map<String, Integer> counts = counts(groups);
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > GROUPS / 8 && count < GROUPS / 2, "counts " + counts);
+        }
+    }
+
+    @Test
+    void onlyAffectedGroupsMove() {
+        MessageGroups<String> groups = groups(4);
+        Map<SpanString, String> before = assignments(groups);
+
+        groups.addConsumer(4, "consumer-4");
+        Map<SpanString, String> added = assignments(groups);
+        int moved = 0;
+        for (Map.Entry<SpanString, String> entry : added.entrySet()) {
+            if (!entry.getValue().equals(before.get(entry.getKey()))) {
+                assertEquals("consumer-4", entry.getValue());
+                moved++;
+            }
+        }
+        assertTrue(moved > GROUPS / 10 && moved < GROUPS / 3, "moved " + moved);
+
+        assertEquals("consumer-1", groups.removeConsumer(1));
+        assertNull(groups.removeConsumer(1));
+        for (Map.Entry<SpanString, String> entry : assignments(groups).entrySet()) {
+            String previous = added.get(entry.getKey());
+            if (!previous.equals("consumer-1")) {
+                assertEquals(previous, entry.getValue());
+            } else {
+                assertNotEquals("consumer-1", entry.getValue());
+            }
+        }
+
+        // a consumer coming back takes its groups back
+        groups.addConsumer(1, "consumer-1");
+        groups.removeConsumer(4);
+        assertEquals(before, assignments(groups));
+    }
+
+    @Test
+    void noConsumer() {
+        MessageGroups<String> groups = new MessageGroups<>(GROUP_KEY, 16);
+        assertNull(groups.consumerFor(SpanString.of("group")));
+        groups.addConsumer(1, "consumer-1");
+        assertEquals("consumer-1", groups.consumerFor(SpanString.of("group")));
+        assertThrows(IllegalArgumentException.class, () -> groups.addConsumer(1, "other"));
+        groups.removeConsumer(1);
+        assertNull(groups.consumerFor(SpanString.of("group")));
+    }
+
+    private static MessageGroups<String> groups(int consumers) {
+        MessageGroups<String> groups = new MessageGroups<>(GROUP_KEY, 64);
+        for (int i = 0; i < consumers; i++) {
+            groups.addConsumer(i, "consumer-" + i);
+        }
+        return groups;
+    }
+
+    private static Map<SpanString, String> assignments(MessageGroups<String> groups) {
+        Map<SpanString, String> assignments = new HashMap<>();
+        for (int i = 0; i < GROUPS; i++) {
+            SpanString groupId = SpanString.of("group-" + i);
+            assignments.put(groupId, groups.consumerFor(groupId));
+        }
+        return assignments;
+    }
+
+    private static Map<String, Integer> counts(MessageGroups<String> groups) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String consumer : assignments(groups).values()) {
+            counts.merge(consumer, 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    private static Message message(SpanString groupId) {
+        MessageBuilder builder = MessageBuilder.builder().address("orders").property("other", 7L);
+        if (groupId != null) {
+            builder.property(GROUP_KEY, groupId);
+        }
+        return builder.body(new byte[16]).build();
+    }
+}
@@ -0,0 +1,129 @@
+package com.lazy.pegasus.core.id;
+
+import com.lazy.pegasus.core.common.SpanString;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageIdGeneratorTest {
+
+    @Test
+    void layout() {
+        long now = MessageIdGenerator.EPOCH + 123_456L;
+        MessageIdGenerator generator = new MessageIdGenerator(513, 1, () -> now);
+
+        long first = generator.nextId();
+        long second = generator.nextId();
+        assertEquals(now, MessageIdGenerator.timestampOf(first));
+        assertEquals(513, MessageIdGenerator.nodeOf(first));
+        assertEquals(0, MessageIdGenerator.sequenceOf(first));
+        assertEquals(1, MessageIdGenerator.sequenceOf(second));
+        assertTrue(first > 0);
+    }
+
+    @Test
+    void monotonicWhenSequenceOverflowsAndClockGoesBack() {
+        AtomicLong clock = new AtomicLong(MessageIdGenerator.EPOCH + 1000);
+        MessageIdGenerator generator = new MessageIdGenerator(1, 1, clock::get);
+
+        long prev = -1;
+        for (int i = 0; i < 10_000; i++) {
+            if (i == 5000) {
+                clock.addAndGet(-500);
+            }
+            long id = generator.nextId();
+            assertTrue(id > prev);
+            assertEquals(1, MessageIdGenerator.nodeOf(id));
+            prev = id;
+        }
+    }
+
+    @Test
+    void reserve() {
+        MessageIdGenerator generator = new MessageIdGenerator(7);
+        IdRange first = generator.reserve(4096);
+        IdRange second = generator.reserve(10);
+        assertEquals(4096, first.size());
+        assertTrue(second.get(0) > first.get(4095));
+
+        long prev = -1;
+        while (!first.isEmpty()) {
+            long id = first.next();
+            assertTrue(id > prev);
+            prev = id;
+        }
+        assertThrows(IllegalStateException.class, first::next);
+        assertThrows(IllegalArgumentException.class, () -> generator.reserve(0));
+        assertThrows(IllegalArgumentException.class, () -> generator.reserve(4097));
+    }
+
+    @Test
+    void uniqueAcrossThreads() throws InterruptedException {
+        MessageIdGenerator generator = new MessageIdGenerator(3);
+        int threads = 8;
+        int perThread = 50_000;
+        long[][] ids = new long[threads][perThread];
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long[] out = ids[t];
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    out[i] = generator.nextId();
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        Set<Long> all = new HashSet<>();
+        for (long[] out : ids) {
+            for (int i = 0; i < perThread; i++) {
+                assertTrue(all.add(out[i]));
+                if (i > 0) {
+                    assertTrue(out[i] > out[i - 1]);
+                }
+            }
+        }
+    }
+
+    @Test
+    void format() {
+        long[] ids = {0, 1, 31, 32, Long.MAX_VALUE, -1L, Long.MIN_VALUE, 0x123456789abcdefL};
+        for (long id : ids) {
+            SpanString s = IdFormat.toSpanString(id);
+            assertEquals(IdFormat.CHARS_PER_LONG, s.length());
+            assertEquals(id, IdFormat.parse(s, 0));
+            assertEquals(id, IdFormat.parse(s.toString().toLowerCase(), 0));
+        }
+        assertEquals(0, IdFormat.toSpanString(0).compareTo(SpanString.of("0000000000000")));
+        assertTrue(IdFormat.toSpanString(100).compareTo(IdFormat.toSpanString(99)) > 0);
+        assertTrue(IdFormat.toSpanString(Long.MAX_VALUE).compareTo(IdFormat.toSpanString(1L << 40)) > 0);
+        assertThrows(IllegalArgumentException.class, () -> IdFormat.parse("U000000000000", 0));
+        assertThrows(IllegalArgumentException.class, () -> IdFormat.parse("G000000000000", 0));
+
+        MessageIdGenerator generator = new MessageIdGenerator(0);
+        UniqueId id = generator.nextUniqueId();
+        SpanString s = id.toSpanString();
+        assertEquals(26, s.length());
+        assertEquals(52, s.getData().length);
+        assertEquals(id, UniqueId.parse(s));
+        assertEquals(generator.getInstance(), id.getHigh());
+    }
+}
@@ -0,0 +1,470 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.DataConstants;
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileJournalTest {
+
+    private static final byte USER_TYPE = 30;
+
+    @TempDir
+    Path dir;
+
+    private FileJournal journal;
+
+    @BeforeEach
+    void setUp() throws PegasusException {
+        journal = open();
+    }
+
+    @AfterEach
+    void tearDown() throws PegasusException {
+        journal.stop();
+    }
+
+    @Test
+    void addUpdateDelete() throws PegasusException {
+        assertTrue(journal.load().isEmpty());
+        journal.appendAddRecord(1, USER_TYPE, body("one"), false);
+        journal.appendAddRecord(2, USER_TYPE, body("two"), false);
+        journal.appendUpdateRecord(1, USER_TYPE, body("one-updated"), false);
+        journal.appendAddRecord(3, USER_TYPE, body("three"), false);
+        journal.appendDeleteRecord(2, true);
+
+        List<RecordInfo> records = restart().load();
+        assertEquals(3, records.size());
+        assertRecord(records.get(0), 1, "one", false);
+        assertRecord(records.get(1), 1, "one-updated", true);
+        assertRecord(records.get(2), 3, "three", false);
+    }
+
+    @Test
+    void rollsAcrossFiles() throws PegasusException {
+        journal.load();
+        int count = 500;
+        for (int i = 0; i < count; i++) {
+            journal.appendAddRecord(i, USER_TYPE, body("record-" + i), false);
+        }
+        for (int i = 0; i < count; i += 2) {
+            journal.appendDeleteRecord(i, false);
+        }
+        assertTrue(journal.getDataFilesCount() > 1);
+
+        List<RecordInfo> records = restart().load();
+        assertEquals(count / 2, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertRecord(records.get(i), 2L * i + 1, "record-" + (2 * i + 1), false);
+        }
+    }
+
+    @Test
+    void tornRecordIsDiscardedAndOverwritten() throws Exception {
+        journal.load();
+        journal.appendAddRecord(1, USER_TYPE, body("one"), false);
+        journal.appendAddRecord(2, USER_TYPE, body("two"), true);
+        journal.stop();
+
+        // corrupt the body of last record
+        Path file = dir.resolve("pegasus-data-1.pgj");
+        int secondRecord = JournalConstants.FILE_HEADER_SIZE + JournalConstants.recordSize(body("one").readableBytes());
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(secondRecord + JournalConstants.RECORD_HEADER_SIZE + 5);
+            raf.write(0x7f);
+        }
+
+        journal = open();
+        List<RecordInfo> records = journal.load();
+        assertEquals(1, records.size());
+        assertRecord(records.get(0), 1, "one", false);
+
+        journal.appendAddRecord(3, USER_TYPE, body("three"), true);
+        records = restart().load();
+        assertEquals(2, records.size());
+        assertRecord(records.get(1), 3, "three", false);
+    }
+
+    @Test
+    void batchIsLoadedOnlyIfCommitted() throws Exception {
+        journal.load();
+        journal.appendAddRecord(1, USER_TYPE, body("one"), false);
+        journal.appendBatch(100, List.of(JournalRecord.add(2, USER_TYPE, body("two")),
+                JournalRecord.update(1, USER_TYPE, body("one-updated"))), true);
+        long syncs = journal.getSyncCount();
+        journal.appendBatch(101, List.of(JournalRecord.add(3, USER_TYPE, body("three")),
+                JournalRecord.delete(2)), true);
+        assertEquals(syncs + 1, journal.getSyncCount());
+        journal.stop();
+
+        // corrupt the commit record of last batch
+        Path file = dir.resolve("pegasus-data-1.pgj");
+        long length;
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            length = raf.length();
+        }
+        int lastBatch = JournalConstants.FILE_HEADER_SIZE + JournalConstants.recordSize(body("one").readableBytes()) +
+                JournalConstants.recordSize(DataConstants.SIZE_INT) +
+                JournalConstants.recordSize(body("two").readableBytes()) +
+                JournalConstants.recordSize(body("one-updated").readableBytes()) + JournalConstants.MIN_RECORD_SIZE;
+        int commit = lastBatch + JournalConstants.recordSize(DataConstants.SIZE_INT) +
+                JournalConstants.recordSize(body("three").readableBytes()) + JournalConstants.MIN_RECORD_SIZE;
+        assertTrue(commit < length);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(commit + JournalConstants.RECORD_HEADER_SIZE);
+            raf.write(0x7f);
+        }
+
+        journal = open();
+        List<RecordInfo> records = journal.load();
+        assertEquals(3, records.size());
+        assertRecord(records.get(0), 1, "one", false);
+        assertRecord(records.get(1), 1, "one-updated", true);
+        assertRecord(records.get(2), 2, "two", false);
+
+        // the torn batch is overwritten
+        journal.appendAddRecord(4, USER_TYPE, body("four"), true);
+        records = restart().load();
+        assertEquals(4, records.size());
+        assertRecord(records.get(3), 4, "four", false);
+    }
+
+    @Test
+    void batchTooLarge() throws PegasusException {
+        journal.load();
+        List<JournalRecord> batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(JournalRecord.add(i, USER_TYPE, body("record-" + i)));
+        }
+        PegasusException e = assertThrows(PegasusException.class, () -> journal.appendBatch(1, batch, true));
+        assertEquals(PegasusExceptionType.JOURNAL_ERROR, e.getType());
+    }
+
+    @Test
+    void recordTooLarge() throws PegasusException {
+        journal.load();
+        PegasusBuffer large = PegasusBuffers.wrappedBuffer(new byte[8192]);
+        PegasusException e = assertThrows(PegasusException.class, () -> journal.appendAddRecord(1, USER_TYPE, large, false));
+        assertEquals(PegasusExceptionType.JOURNAL_ERROR, e.getType());
+    }
+
+    @Test
+    void asyncAppendsAreGroupCommitted() throws Exception {
+        journal.stop();
+        journal = open(new JournalConfiguration(dir).setFileSize(64 * 1024)
+                .setSyncWindowNanos(TimeUnit.MILLISECONDS.toNanos(5)));
+        journal.load();
+
+        int count = 1000;
+        List<CompletableFuture<Void>> futures = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            futures.add(journal.appendAddRecordAsync(i, USER_TYPE, body("record-" + i)));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        assertTrue(journal.getSyncCount() < count, "syncs " + journal.getSyncCount());
+
+        List<RecordInfo> records = restart().load();
+        assertEquals(count, records.size());
+        for (int i = 0; i < count; i++) {
+            assertRecord(records.get(i), i, "record-" + i, false);
+        }
+    }
+
+    @Test
+    void concurrentSyncAppends() throws Exception {
+        journal.load();
+        int threads = 8;
+        int perThread = 200;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch ready = new CountDownLatch(threads);
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int base = t * perThread;
+                results.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    for (int i = 0; i < perThread; i++) {
+                        journal.appendAddRecord(base + i, USER_TYPE, body("record-" + (base + i)), true);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<RecordInfo> records = restart().load();
+        assertEquals(threads * perThread, records.size());
+        assertEquals(threads * perThread, records.stream().mapToLong(RecordInfo::getId).distinct().count());
+    }
+
+    @Test
+    void bufferedAppendsAreWrittenOnStop() throws PegasusException {
+        journal.stop();
+        journal = open(new JournalConfiguration(dir).setWriteBufferSize(64 * 1024));
+        journal.load();
+        for (int i = 0; i < 10; i++) {
+            journal.appendAddRecord(i, USER_TYPE, body("record-" + i), false);
+        }
+
+        assertEquals(10, restart().load().size());
+    }
+
+    @Test
+    void parallelRecovery() throws PegasusException {
+        journal.stop();
+        journal = open(new JournalConfiguration(dir).setFileSize(4096).setCompactMinFiles(0));
+        journal.load();
+        int count = 3000;
+        for (int i = 0; i < count; i++) {
+            journal.appendAddRecord(i, USER_TYPE, body("record-" + i), false);
+            if (i % 3 == 0) {
+                journal.appendUpdateRecord(i, USER_TYPE, body("update-" + i), false);
+            }
+            if (i % 2 == 1) {
+                journal.appendDeleteRecord(i - 1, false);
+            }
+        }
+        journal.stop();
+
+        List<List<RecordInfo>> recovered = new ArrayList<>();
+        for (int parallelism : new int[]{1, 4}) {
+            journal = open(new JournalConfiguration(dir).setFileSize(4096).setRecoveryParallelism(parallelism)
+                    .setCompactMinFiles(0));
+            recovered.add(journal.load());
+
+            JournalRecoveryStats stats = journal.getRecoveryStats();
+            assertEquals(parallelism, stats.getParallelism());
+            assertEquals(count + count / 3 + count / 2, stats.getRecords());
+            assertEquals(count / 2, stats.getLiveRecords());
+            assertTrue(stats.getFiles() >= journal.getDataFilesCount());
+            assertTrue(stats.getBytes() > 0);
+            journal.stop();
+        }
+        journal = open();
+
+        for (List<RecordInfo> records : recovered) {
+            assertEquals(count / 2 + count / 6, records.size());
+            int index = 0;
+            for (int i = 1; i < count; i += 2) {
+                assertRecord(records.get(index++), i, "record-" + i, false);
+                if (i % 3 == 0) {
+                    assertRecord(records.get(index++), i, "update-" + i, true);
+                }
+            }
+        }
+    }
+
+    @Test
+    void compactKeepsLiveRecords() throws PegasusException {
+        journal.load();
+        int count = 600;
+        for (int i = 0; i < count; i++) {
+            journal.appendAddRecord(i, USER_TYPE, body("record-" + i), false);
+            if (i % 10 == 0) {
+                journal.appendUpdateRecord(i, USER_TYPE, body("update-" + i), false);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            if (i % 10 != 0) {
+                journal.appendDeleteRecord(i, false);
+            }
+        }
+        // re-added after its delete, only the second add is live
+        journal.appendAddRecord(1, USER_TYPE, body("again-1"), false);
+
+        int files = journal.getDataFilesCount();
+        assertTrue(journal.compact());
+        assertTrue(journal.getDataFilesCount() < files, journal.getDataFilesCount() + " files");
+        assertEquals(count / 10 + 1, journal.getLiveRecordsCount());
+
+        // appends go on after compaction
+        journal.appendDeleteRecord(0, false);
+        journal.appendAddRecord(count, USER_TYPE, body("record-" + count), true);
+
+        List<RecordInfo> records = restart().load();
+        assertEquals(2 * (count / 10 - 1) + 2, records.size());
+        for (int i = 0; i < count / 10 - 1; i++) {
+            long id = 10L * (i + 1);
+            assertRecord(records.get(2 * i), id, "record-" + id, false);
+            assertRecord(records.get(2 * i + 1), id, "update-" + id, true);
+        }
+        assertRecord(records.get(records.size() - 2), 1, "again-1", false);
+        assertRecord(records.get(records.size() - 1), count, "record-" + count, false);
+        assertEquals(count / 10 + 1, journal.getLiveRecordsCount());
+    }
+
+    @Test
+    void compactWhileAppending() throws Exception {
+        journal.stop();
+        journal = open(new JournalConfiguration(dir).setFileSize(4096).setCompactMinFiles(2).setCompactPercentage(50));
+        journal.load();
+
+        int count = 2000;
+        for (int i = 0; i < count; i++) {
+            journal.appendAddRecord(i, USER_TYPE, body("record-" + i), false);
+            if (i >= 2) {
+                // keep every fourth record
+                if ((i - 2) % 4 != 0) {
+                    journal.appendDeleteRecord(i - 2, false);
+                }
+            }
+        }
+        journal.appendDeleteRecord(count - 1, true);
+        journal.compact();
+
+        List<RecordInfo> records = restart().load();
+        long expected = 0;
+        for (int i = 0; i < count - 1; i++) {
+            if (i % 4 == 0 || i >= count - 2) {
+                expected++;
+            }
+        }
+        assertEquals(expected, records.size());
+        for (RecordInfo record : records) {
+            assertTrue(record.getId() % 4 == 0 || record.getId() == count - 2, "id " + record.getId());
+            assertEquals("record-" + record.getId(), PegasusBuffers.wrappedBuffer(record.getData()).readString());
+        }
+        assertTrue(journal.getDataFilesCount() < count / 50, journal.getDataFilesCount() + " files");
+    }
+
+    @Test
+    void unfinishedCompactionIsDropped() throws Exception {
+        journal.load();
+        journal.appendAddRecord(1, USER_TYPE, body("one"), true);
+        journal.stop();
+
+        Path leftover = dir.resolve("pegasus-data-1.pgj" + JournalCompactor.COMPACT_SUFFIX);
+        Files.write(leftover, new byte[4096]);
+
+        journal = open();
+        assertEquals(1, journal.load().size());
+        assertFalse(Files.exists(leftover));
+    }
+
+    @Test
+    void directIo() throws PegasusException {
+        journal.stop();
+        for (boolean direct : new boolean[]{true, false, true}) {
+            // alternate modes on the same files: direct appends start after buffered ones and the other way around
+            journal = open(new JournalConfiguration(dir).setFileSize(16 * 1024).setDirectIo(direct));
+            int loaded = journal.load().size();
+            for (int i = 0; i < 300; i++) {
+                long id = loaded + i;
+                journal.appendAddRecord(id, USER_TYPE, body("record-" + id), i % 7 == 0);
+            }
+            journal.stop();
+        }
+
+        journal = open();
+        List<RecordInfo> records = journal.load();
+        assertEquals(900, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertRecord(records.get(i), i, "record-" + i, false);
+        }
+    }
+
+    @Test
+    void directIoRecordsLargerThanWriteBuffer() throws PegasusException {
+        journal.stop();
+        journal = open(new JournalConfiguration(dir).setFileSize(64 * 1024).setWriteBufferSize(1024).setDirectIo(true));
+        journal.load();
+        for (int i = 0; i < 40; i++) {
+            // records of up to 3 write buffers between small ones
+            journal.appendAddRecord(i, USER_TYPE, body("x".repeat(i % 4 == 0 ? 1000 * (i % 3 + 1) : 10)), i % 5 == 0);
+        }
+
+        List<RecordInfo> records = restart().load();
+        assertEquals(40, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertRecord(records.get(i), i, "x".repeat(i % 4 == 0 ? 1000 * (i % 3 + 1) : 10), false);
+        }
+    }
+
+    @Test
+    void directIoFallsBackWithUnalignedFileSize() throws PegasusException {
+        journal.stop();
+        journal = open(new JournalConfiguration(dir).setFileSize(4096 + 100).setDirectIo(true));
+        journal.load();
+        assertFalse(journal.isDirectIo());
+        journal.appendAddRecord(1, USER_TYPE, body("one"), true);
+        assertEquals(1, restart().load().size());
+    }
+
+    @Test
+    void stopsAppendingAfterFailedWrite() throws PegasusException {
+        journal.load();
+        journal.appendAddRecord(1, USER_TYPE, body("one"), true);
+        // the next write fails, as the file was closed under the journal
+        journal.getCurrentFile().close();
+
+        assertThrows(PegasusException.class, () -> journal.appendAddRecord(2, USER_TYPE, body("two"), true));
+        PegasusException e = assertThrows(PegasusException.class,
+                () -> journal.appendAddRecord(3, USER_TYPE, body("three"), true));
+        assertEquals(PegasusExceptionType.IO_ERROR, e.getType());
+
+        // nothing was written past the failed record
+        List<RecordInfo> records = restart().load();
+        assertEquals(1, records.size());
+        assertRecord(records.get(0), 1, "one", false);
+        journal.appendAddRecord(4, USER_TYPE, body("four"), true);
+        assertEquals(2, restart().load().size());
+    }
+
+    @Test
+    void mustLoadBeforeAppend() {
+        assertThrows(IllegalStateException.class, () -> journal.appendAddRecord(1, USER_TYPE, body("one"), false));
+    }
+
+    private FileJournal restart() throws PegasusException {
+        journal.stop();
+        journal = open();
+        return journal;
+    }
+
+    private FileJournal open() throws PegasusException {
+        return open(new JournalConfiguration(dir).setFileSize(4096).setMinFiles(2));
+    }
+
+    private FileJournal open(JournalConfiguration config) throws PegasusException {
+        FileJournal journal = new FileJournal(config);
+        journal.start();
+        return journal;
+    }
+
+    private static PegasusBuffer body(String s) {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(32);
+        buf.writeString(s);
+        return buf;
+    }
+
+    private static void assertRecord(RecordInfo record, long id, String body, boolean update) {
+        assertEquals(id, record.getId());
+        assertEquals(USER_TYPE, record.getUserRecordType());
+        assertEquals(update, record.isUpdate());
+        assertEquals(body, PegasusBuffers.wrappedBuffer(record.getData()).readString());
+    }
+}
@@ -0,0 +1,45 @@
+package com.lazy.pegasus.core.journal;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class JournalFileTest {
+
+    private static final Path MAPS = Path.of("/proc/self/maps");
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void unmapsOnRelease() throws PegasusException, IOException {
+        assumeTrue(Files.isReadable(MAPS), "mappings are listed by /proc");
+        Path path = dir.resolve("1.pj");
+        byte[] bytes = new byte[8192];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+        Files.write(path, bytes);
+        JournalFile file = new JournalFile(path, 1, bytes.length);
+
+        PegasusBuffer content = file.map();
+        assertEquals(bytes.length, content.readableBytes());
+        assertEquals((byte) 4097, content.getByte(4097));
+        assertTrue(isMapped(path));
+
+        content.release();
+        assertFalse(isMapped(path));
+    }
+
+    private static boolean isMapped(Path path) throws IOException {
+        return Files.readString(MAPS).contains(path.toString());
+    }
+}
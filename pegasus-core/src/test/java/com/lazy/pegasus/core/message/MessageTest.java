@@ -0,0 +1,85 @@
+package com.lazy.pegasus.core.message;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.common.SpanString;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageTest {
+
+    @Test
+    void encodeAndRead() {
+        Message message = MessageBuilder.builder()
+                .address("orders")
+                .messageId(42)
+                .durable(true)
+                .priority(7)
+                .timestamp(1000)
+                .expiration(2000)
+                .property("region", "eu")
+                .property("qty", 3)
+                .property("price", 9.5d)
+                .property("flag", true)
+                .property("raw", new byte[]{1, 2, 3})
+                .property("none", null)
+                .body("hello".getBytes(StandardCharsets.UTF_8))
+                .build();
+
+        assertEquals(42, message.getMessageId());
+        assertTrue(message.isDurable());
+        assertEquals(7, message.getPriority());
+        assertEquals(1000, message.getTimestamp());
+        assertEquals(2000, message.getExpiration());
+        assertEquals(0, message.getScheduledDeliveryTime());
+        assertEquals(SpanString.of("orders"), message.getAddress());
+        assertEquals(6, message.getPropertiesCount());
+        assertEquals(SpanString.of("eu"), message.getProperty(SpanString.of("region")));
+        assertEquals(3, message.getProperty(SpanString.of("qty")));
+        assertEquals(9.5d, message.getProperty(SpanString.of("price")));
+        assertEquals(true, message.getProperty(SpanString.of("flag")));
+        assertArrayEquals(new byte[]{1, 2, 3}, (byte[]) message.getProperty(SpanString.of("raw")));
+        assertTrue(message.containsProperty(SpanString.of("none")));
+        assertNull(message.getProperty(SpanString.of("none")));
+        assertFalse(message.containsProperty(SpanString.of("missing")));
+
+        byte[] body = new byte[message.getBodySize()];
+        message.getBody().getBytes(0, body);
+        assertEquals("hello", new String(body, StandardCharsets.UTF_8));
+        assertEquals(message.getBuffer().capacity() + Message.MEMORY_OVERHEAD, message.getMemoryEstimate());
+        assertTrue(message.isExpired(2000));
+        assertFalse(message.isExpired(1999));
+    }
+
+    @Test
+    void decodeFromStream() {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(256);
+        for (int i = 0; i < 3; i++) {
+            MessageBuilder.builder().address("a").messageId(i).priority(i).build().encode(buf);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(i, Message.priorityOf(buf, buf.readIndex()));
+            Message message = Message.decode(buf);
+            assertEquals(i, message.getMessageId());
+        }
+        assertFalse(buf.readable());
+    }
+
+    @Test
+    void setMessageIdInPlace() {
+        Message message = MessageBuilder.builder().address("a").build();
+        message.setMessageId(7);
+        assertEquals(7, Message.wrap(message.getBuffer().copy()).getMessageId());
+    }
+
+    @Test
+    void rejectsInvalidPriority() {
+        assertThrows(IllegalArgumentException.class, () -> MessageBuilder.builder().priority(10));
+        assertThrows(IllegalArgumentException.class, () -> MessageBuilder.builder().property("a", new Object()));
+        assertThrows(IllegalStateException.class, () -> MessageBuilder.builder().build());
+    }
+}
@@ -0,0 +1,237 @@
+package com.lazy.pegasus.core.paging;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PagingStoreTest {
+
+    private static final SpanString ADDRESS = SpanString.of("orders");
+
+    @TempDir
+    Path dir;
+
+    private PagingManager manager;
+
+    @BeforeEach
+    void setUp() throws PegasusException {
+        manager = start(config());
+    }
+
+    @AfterEach
+    void tearDown() throws PegasusException {
+        manager.stop();
+    }
+
+    @Test
+    void pagesAboveMaxSize() throws PegasusException {
+        PagingStore store = manager.getPagingStore(ADDRESS);
+        assertEquals(ADDRESS.sizeof(), store.getAddressSize());
+        assertEquals(ADDRESS.sizeof(), manager.getGlobalSize());
+
+        List<Message> inMemory = new ArrayList<>();
+        int id = 0;
+        while (!store.isPaging()) {
+            Message message = message(id++, false);
+            if (!store.page(message)) {
+                inMemory.add(message);
+            }
+        }
+        long sizeBeforePaging = store.getAddressSize();
+        assertTrue(sizeBeforePaging > 2048);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(store.page(message(id++, i % 10 == 0)));
+        }
+        assertEquals(sizeBeforePaging, store.getAddressSize());
+        assertTrue(store.getNumberOfPages() > 1);
+
+        for (Message message : inMemory) {
+            store.release(message);
+        }
+        assertEquals(ADDRESS.sizeof(), store.getAddressSize());
+
+        PageCursor cursor = store.createCursor();
+        int expected = inMemory.size();
+        Message message;
+        while ((message = cursor.next()) != null) {
+            assertEquals(expected++, message.getMessageId());
+            cursor.acknowledge(message);
+            store.release(message);
+        }
+        assertEquals(id, expected);
+        assertFalse(store.isPaging());
+        assertEquals(0, store.getNumberOfPages());
+        assertEquals(ADDRESS.sizeof(), store.getAddressSize());
+
+        assertFalse(store.page(message(id, false)));
+    }
+
+    @Test
+    void resumesPagingAfterCursorDrained() throws PegasusException {
+        PagingStore store = manager.getPagingStore(ADDRESS);
+        fill(store);
+        assertTrue(store.page(message(1, false)));
+
+        PageCursor cursor = store.createCursor();
+        assertEquals(1, cursor.next().getMessageId());
+        // new messages go to a new page while the cursor reads the closed one
+        assertTrue(store.page(message(2, false)));
+        assertEquals(2, cursor.next().getMessageId());
+        assertNull(cursor.next());
+        assertFalse(store.isPaging());
+    }
+
+    @Test
+    void readsAhead() throws PegasusException {
+        PagingStore store = manager.getPagingStore(ADDRESS);
+        fill(store);
+        for (int i = 0; i < 200; i++) {
+            assertTrue(store.page(message(i, false)));
+        }
+        assertTrue(store.getNumberOfPages() > 3);
+
+        PageCursor cursor = store.createCursor();
+        assertEquals(0, cursor.next().getMessageId());
+        assertEquals(2, cursor.getReadAheadCount());
+        for (int i = 1; i < 200; i++) {
+            assertEquals(i, cursor.next().getMessageId());
+        }
+        assertNull(cursor.next());
+        assertEquals(0, cursor.getReadAheadCount());
+    }
+
+    @Test
+    void recoversPagesAfterRestart() throws Exception {
+        PagingStore store = manager.getPagingStore(ADDRESS);
+        fill(store);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(store.page(message(i, true)));
+        }
+        Path lastPage = lastPage(store);
+
+        manager.stop();
+        // a message torn by a crash is dropped
+        try (RandomAccessFile file = new RandomAccessFile(lastPage.toFile(), "rw")) {
+            file.setLength(file.length() - 1);
+        }
+        manager = start(config());
+
+        store = manager.getPagingStore(ADDRESS);
+        assertTrue(store.isPaging());
+        PageCursor cursor = store.createCursor();
+        List<Long> ids = new ArrayList<>();
+        Message message;
+        while ((message = cursor.next()) != null) {
+            ids.add(message.getMessageId());
+        }
+        assertEquals(49, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i, ids.get(i));
+        }
+        assertFalse(store.isPaging());
+    }
+
+    @Test
+    void keepsPagesOfUnacknowledgedMessagesAfterRestart() throws Exception {
+        PagingStore store = manager.getPagingStore(ADDRESS);
+        fill(store);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(store.page(message(i, true)));
+        }
+        int pages = store.getNumberOfPages();
+        assertTrue(pages > 2);
+
+        PageCursor cursor = store.createCursor();
+        Message message;
+        while ((message = cursor.next()) != null) {
+            if (message.getMessageId() < 40) {
+                cursor.acknowledge(message);
+            }
+        }
+        assertFalse(store.isPaging());
+        try (Stream<Path> files = Files.list(store.getDirectory())) {
+            long left = files.count();
+            assertTrue(left > 0 && left < pages, "pages left " + left);
+        }
+
+        // the broker crashes before the last messages were acknowledged, their pages are read again
+        manager.stop();
+        manager = start(config());
+        store = manager.getPagingStore(ADDRESS);
+        assertTrue(store.isPaging());
+        cursor = store.createCursor();
+        List<Long> ids = new ArrayList<>();
+        while ((message = cursor.next()) != null) {
+            ids.add(message.getMessageId());
+            cursor.acknowledge(message);
+        }
+        assertTrue(ids.get(0) > 0 && ids.get(0) <= 40, "first " + ids.get(0));
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(ids.get(0) + i, ids.get(i));
+        }
+        assertEquals(49, ids.get(ids.size() - 1));
+        try (Stream<Path> files = Files.list(store.getDirectory())) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void pagesAboveGlobalMaxSize() throws PegasusException {
+        manager.stop();
+        manager = start(config().setMaxSizeBytes(-1).setGlobalMaxSizeBytes(4096));
+
+        PagingStore a = manager.getPagingStore(SpanString.of("a"));
+        PagingStore b = manager.getPagingStore(SpanString.of("b"));
+        int id = 0;
+        while (!a.page(message(id++, false))) {
+            assertFalse(b.isPaging());
+        }
+        assertTrue(manager.isGlobalFull());
+        assertTrue(b.page(message(id, false)));
+    }
+
+    private PagingConfiguration config() {
+        return new PagingConfiguration(dir).setPageSize(4096).setMaxSizeBytes(2048).setReadAheadPages(2);
+    }
+
+    private static PagingManager start(PagingConfiguration config) throws PegasusException {
+        PagingManager manager = new PagingManager(config);
+        manager.start();
+        return manager;
+    }
+
+    private static void fill(PagingStore store) throws PegasusException {
+        while (!store.isFull()) {
+            assertFalse(store.page(message(-1, false)));
+        }
+    }
+
+    private static Path lastPage(PagingStore store) {
+        return store.getDirectory().resolve(store.getNumberOfPages() + PagingStore.PAGE_EXTENSION);
+    }
+
+    private static Message message(long id, boolean durable) {
+        return MessageBuilder.builder()
+                .address(ADDRESS)
+                .messageId(id)
+                .durable(durable)
+                .property("seq", id)
+                .body(new byte[200])
+                .build();
+    }
+}
@@ -0,0 +1,96 @@
+package com.lazy.pegasus.core.queue;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LastValueQueueTest {
+
+    private static final SpanString KEY = SpanString.of("symbol");
+
+    @Test
+    void keepsLastValuePerKey() {
+        List<Message> replaced = new ArrayList<>();
+        LastValueQueue queue = new LastValueQueue(KEY, replaced::add);
+        queue.offer(message(1, "AAPL"));
+        queue.offer(message(2, "MSFT"));
+        queue.offer(message(3, "AAPL"));
+        queue.offer(message(4, null));
+        queue.offer(message(5, "MSFT"));
+
+        assertEquals(3, queue.size());
+        assertEquals(2, queue.getKeysCount());
+        assertEquals(2, queue.getReplacedCount());
+        assertEquals(List.of(1L, 2L), ids(replaced));
+        assertEquals(3, queue.get(SpanString.of("AAPL")).getMessageId());
+
+        assertEquals(3, queue.poll().getMessageId());
+        assertNull(queue.get(SpanString.of("AAPL")));
+        assertEquals(4, queue.peek().getMessageId());
+        assertEquals(4, queue.poll().getMessageId());
+        assertEquals(5, queue.poll().getMessageId());
+        assertNull(queue.poll());
+        assertEquals(0, queue.getKeysCount());
+    }
+
+    @Test
+    void deliveredValueIsNotReplaced() {
+        LastValueQueue queue = new LastValueQueue(KEY);
+        queue.offer(message(1, "AAPL"));
+        assertEquals(1, queue.poll().getMessageId());
+        queue.offer(message(2, "AAPL"));
+        assertEquals(0, queue.getReplacedCount());
+        assertEquals(2, queue.poll().getMessageId());
+    }
+
+    @Test
+    void memoryBoundedByKeys() {
+        LastValueQueue queue = new LastValueQueue(KEY);
+        for (int i = 0; i < 10_000; i++) {
+            queue.offer(message(i, "K" + (i % 16)));
+        }
+        assertEquals(16, queue.size());
+
+        List<Message> drained = new ArrayList<>();
+        assertEquals(10, queue.drain(drained::add, 10));
+        assertEquals(6, queue.drain(drained::add, 100));
+        for (int i = 0; i < 16; i++) {
+            assertEquals(10_000 - 16 + i, drained.get(i).getMessageId());
+        }
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void keyOfAnyType() {
+        LastValueQueue queue = new LastValueQueue(KEY);
+        queue.offer(MessageBuilder.builder().address("q").messageId(1).property(KEY, 7).build());
+        queue.offer(MessageBuilder.builder().address("q").messageId(2).property(KEY, new byte[]{1}).build());
+        queue.offer(MessageBuilder.builder().address("q").messageId(3).property(KEY, 7).build());
+        queue.offer(MessageBuilder.builder().address("q").messageId(4).property(KEY, new byte[]{1}).build());
+        assertEquals(2, queue.size());
+        assertEquals(3, queue.get(7).getMessageId());
+        assertEquals(4, queue.get(new byte[]{1}).getMessageId());
+    }
+
+    private static Message message(long id, String symbol) {
+        MessageBuilder builder = MessageBuilder.builder().address("prices").messageId(id);
+        if (symbol != null) {
+            builder.property(KEY, SpanString.of(symbol));
+        }
+        return builder.build();
+    }
+
+    private static List<Long> ids(List<Message> messages) {
+        List<Long> ids = new ArrayList<>();
+        for (Message message : messages) {
+            ids.add(message.getMessageId());
+        }
+        return ids;
+    }
+}
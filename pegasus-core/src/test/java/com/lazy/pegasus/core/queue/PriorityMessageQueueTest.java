@@ -0,0 +1,103 @@
+package com.lazy.pegasus.core.queue;
+
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PriorityMessageQueueTest {
+
+    @Test
+    void highestPriorityFirst() {
+        PriorityMessageQueue queue = new PriorityMessageQueue(4);
+        int[] priorities = {4, 0, 9, 4, 7, 0, 9};
+        for (int i = 0; i < priorities.length; i++) {
+            queue.offer(message(i, priorities[i]));
+        }
+        assertEquals(7, queue.size());
+        assertEquals(2, queue.size(4));
+
+        long[] expected = {2, 6, 4, 0, 3, 1, 5};
+        for (long id : expected) {
+            assertEquals(id, queue.peek().getMessageId());
+            assertEquals(id, queue.poll().getMessageId());
+        }
+        assertNull(queue.poll());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void drainAcrossPriorities() {
+        PriorityMessageQueue queue = new PriorityMessageQueue();
+        for (int i = 0; i < 30; i++) {
+            queue.offer(message(i, i % 3));
+        }
+
+        List<Message> drained = new ArrayList<>();
+        assertEquals(15, queue.drain(drained::add, 15));
+        for (int i = 0; i < 10; i++) {
+            assertEquals(2, drained.get(i).getPriority());
+        }
+        for (int i = 10; i < 15; i++) {
+            assertEquals(1, drained.get(i).getPriority());
+        }
+        assertEquals(15, queue.drain(drained::add, 100));
+        assertEquals(0, queue.drain(drained::add, 100));
+        assertEquals(0, drained.get(29).getPriority());
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void concurrentProducers() throws InterruptedException {
+        PriorityMessageQueue queue = new PriorityMessageQueue(16);
+        int producers = 4;
+        int perProducer = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    queue.offer(message((long) producer << 32 | i, i % 10));
+                }
+            });
+        }
+
+        // within a producer and a priority, messages keep their order
+        long[][] last = new long[producers][10];
+        for (long[] row : last) {
+            Arrays.fill(row, -1);
+        }
+        int received = 0;
+        start.countDown();
+        while (received < producers * perProducer) {
+            received += queue.drain(m -> {
+                int producer = (int) (m.getMessageId() >>> 32);
+                long seq = m.getMessageId() & 0xFFFFFFFFL;
+                assertTrue(seq > last[producer][m.getPriority()]);
+                last[producer][m.getPriority()] = seq;
+            }, 64);
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertNull(queue.poll());
+    }
+
+    private static Message message(long id, int priority) {
+        return MessageBuilder.builder().address("q").messageId(id).priority(priority).build();
+    }
+}
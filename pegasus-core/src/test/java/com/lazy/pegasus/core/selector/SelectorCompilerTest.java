@@ -0,0 +1,110 @@
+package com.lazy.pegasus.core.selector;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelectorCompilerTest {
+
+    private static final List<Message> MESSAGES = List.of(
+            message(Map.of("region", SpanString.of("EU"), "amount", 150, "price", 9.5, "vip", true)),
+            message(Map.of("region", SpanString.of("US"), "amount", 50L, "price", 12.25f, "vip", false)),
+            message(Map.of("region", SpanString.of("EU-west"), "amount", (short) 100, "code", SpanString.of("a_b%"))),
+            message(Map.of("amount", 1000L, "priority", (byte) 3)),
+            message(Map.of()));
+
+    @Test
+    void comparisons() {
+        assertMatches("region = 'EU' AND amount > 100", true, false, false, false, false);
+        assertMatches("region <> 'EU'", false, true, true, false, false);
+        assertMatches("amount >= 100", true, false, true, true, false);
+        assertMatches("100 < amount", true, false, false, true, false);
+        assertMatches("amount = 100", false, false, true, false, false);
+        assertMatches("price < 10", true, false, false, false, false);
+        assertMatches("price > 10.5e0", false, true, false, false, false);
+        assertMatches("amount < 100.5", false, true, true, false, false);
+        assertMatches("vip", true, false, false, false, false);
+        assertMatches("vip = FALSE", false, true, false, false, false);
+        assertMatches("priority = 3", false, false, false, true, false);
+    }
+
+    @Test
+    void predicates() {
+        assertMatches("amount BETWEEN 50 AND 150", true, true, true, false, false);
+        assertMatches("amount NOT BETWEEN 50 AND 150", false, false, false, true, false);
+        assertMatches("price between 9.0 and 10", true, false, false, false, false);
+        assertMatches("region IN ('US', 'EU')", true, true, false, false, false);
+        assertMatches("region NOT IN ('US', 'EU')", false, false, true, false, false);
+        assertMatches("region LIKE 'EU%'", true, false, true, false, false);
+        assertMatches("region LIKE '_U'", true, false, false, false, false);
+        assertMatches("region NOT LIKE 'E_'", false, true, true, false, false);
+        assertMatches("code LIKE 'a\\_b\\%' ESCAPE '\\'", false, false, true, false, false);
+        assertMatches("code LIKE 'a\\_c%' ESCAPE '\\'", false, false, false, false, false);
+        assertMatches("region IS NULL", false, false, false, true, true);
+        assertMatches("region IS NOT NULL", true, true, true, false, false);
+    }
+
+    @Test
+    void threeValuedLogic() {
+        // unknown for a missing property, in either polarity
+        assertMatches("NOT region = 'EU'", false, true, true, false, false);
+        assertMatches("region = 'EU' OR amount > 500", true, false, false, true, false);
+        assertMatches("NOT (region = 'EU' OR amount > 500)", false, true, true, false, false);
+        assertMatches("region = 'EU' AND NOT vip", false, false, false, false, false);
+        assertMatches("(region = 'US' OR vip) AND amount < 200", true, true, false, false, false);
+        // a property of another type is unknown
+        assertMatches("region > 1", false, false, false, false, false);
+        assertMatches("amount = 'EU'", false, false, false, false, false);
+        assertMatches("TRUE", true, true, true, true, true);
+        assertMatches("FALSE OR (TRUE AND NOT FALSE)", true, true, true, true, true);
+    }
+
+    @Test
+    void deepSelector() {
+        StringBuilder selector = new StringBuilder("amount = 0");
+        for (int i = 1; i < 200; i++) {
+            selector.append(i % 2 == 0 ? " OR " : " OR (region = 'X' AND ").append("amount = ").append(i);
+            if (i % 2 == 1) {
+                selector.append(')');
+            }
+        }
+        selector.append(" OR amount = 1000");
+        assertMatches(selector.toString(), true, true, true, true, false);
+    }
+
+    @Test
+    void invalidSelectors() {
+        for (String selector : List.of("", "region =", "region = 'EU", "region > 'EU'", "AND", "amount BETWEEN 1",
+                "region IN ()", "(vip", "vip vip", "region LIKE 'a\\' ESCAPE '\\'", "amount # 3", "region NOT 'x'")) {
+            assertThrows(IllegalArgumentException.class, () -> SelectorCompiler.compile(selector), selector);
+        }
+    }
+
+    @Test
+    void parsedTreeIsPrinted() {
+        assertEquals("((region = 'EU' AND amount > 100) OR NOT vip IS NULL)",
+                SelectorParser.parse("region = 'EU' and amount > 100 or not vip is null").toString());
+    }
+
+    private static void assertMatches(String selector, boolean... expected) {
+        Selector compiled = SelectorCompiler.compile(selector);
+        SelectorNode interpreted = SelectorParser.parse(selector);
+        assertNotSame(interpreted.getClass(), compiled.getClass());
+        for (int i = 0; i < MESSAGES.size(); i++) {
+            assertEquals(expected[i], interpreted.matches(MESSAGES.get(i)), selector + " interpreted on message " + i);
+            assertEquals(expected[i], compiled.matches(MESSAGES.get(i)), selector + " compiled on message " + i);
+        }
+    }
+
+    private static Message message(Map<String, Object> properties) {
+        MessageBuilder builder = MessageBuilder.builder().address("orders");
+        properties.forEach(builder::property);
+        return builder.body(new byte[8]).build();
+    }
+}
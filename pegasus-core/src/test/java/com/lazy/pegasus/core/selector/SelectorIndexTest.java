@@ -0,0 +1,141 @@
+package com.lazy.pegasus.core.selector;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SelectorIndexTest {
+
+    private static final String[] REGIONS = {"EU", "US", "APAC", "LATAM"};
+
+    @Test
+    void matchesAsEvaluatingEverySelector() {
+        Random random = new Random(7);
+        SelectorIndex<Integer> index = new SelectorIndex<>();
+        List<Selector> selectors = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String selector = randomSelector(random);
+            index.add(i, selector);
+            selectors.add(selector == null ? null : SelectorParser.parse(selector));
+        }
+
+        for (int m = 0; m < 200; m++) {
+            Map<String, Object> properties = new HashMap<>();
+            if (random.nextInt(5) > 0) {
+                properties.put("region", SpanString.of(REGIONS[random.nextInt(REGIONS.length)]));
+            }
+            if (random.nextInt(5) > 0) {
+                properties.put("amount", switch (random.nextInt(4)) {
+                    case 0 -> random.nextInt(1000);
+                    case 1 -> (long) random.nextInt(1000);
+                    case 2 -> (short) random.nextInt(1000);
+                    default -> random.nextInt(1000) + 0.5;
+                });
+            }
+            if (random.nextBoolean()) {
+                properties.put("vip", random.nextBoolean());
+            }
+            Message message = message(properties);
+
+            Set<Integer> expected = new HashSet<>();
+            for (int i = 0; i < selectors.size(); i++) {
+                if (selectors.get(i) == null || selectors.get(i).matches(message)) {
+                    expected.add(i);
+                }
+            }
+            List<Integer> matched = new ArrayList<>();
+            index.match(message, matched::add);
+            assertEquals(expected.size(), matched.size(), "no subscription is matched twice");
+            assertEquals(expected, new HashSet<>(matched), properties.toString());
+        }
+    }
+
+    @Test
+    void evaluatesOnlyCandidates() {
+        SelectorIndex<Integer> index = new SelectorIndex<>();
+        for (int i = 0; i < 10_000; i++) {
+            index.add(i, "customer = 'c-" + (i % 1000) + "' AND amount > " + i);
+        }
+        for (int i = 10_000; i < 20_000; i++) {
+            int low = (i - 10_000) * 10;
+            index.add(i, "price BETWEEN " + low + " AND " + (low + 15) + " AND region LIKE 'E%'");
+        }
+        index.add(-1, "region LIKE 'E%'");
+
+        List<Integer> matched = new ArrayList<>();
+        int evaluated = index.match(message(Map.of("customer", SpanString.of("c-42"), "amount", 5000L,
+                "price", 205.0, "region", SpanString.of("EU"))), matched::add);
+        // 10 subscriptions of the customer, 2 intervals containing the price and the unindexed selector
+        assertEquals(13, evaluated);
+        assertEquals(List.of(-1, 42, 1042, 2042, 3042, 4042, 10_019, 10_020), matched.stream().sorted().toList());
+
+        matched.clear();
+        assertEquals(1, index.match(message(Map.of("customer", SpanString.of("c-unknown"), "price", -1)), matched::add));
+        assertTrue(matched.isEmpty());
+    }
+
+    @Test
+    void addAndRemove() {
+        SelectorIndex<String> index = new SelectorIndex<>();
+        index.add("eu", "region = 'EU'");
+        index.add("in", "region IN ('EU', 'US', 'EU')");
+        index.add("all", null);
+        index.add("big", "amount >= 100 AND vip");
+        assertThrows(IllegalArgumentException.class, () -> index.add("eu", "region = 'US'"));
+        assertThrows(IllegalArgumentException.class, () -> index.add("bad", "region ="));
+        assertEquals(4, index.size());
+
+        Message message = message(Map.of("region", SpanString.of("EU"), "amount", 100, "vip", true));
+        assertEquals(Set.of("eu", "in", "all", "big"), matches(index, message));
+
+        assertTrue(index.remove("eu"));
+        assertFalse(index.remove("eu"));
+        assertTrue(index.remove("all"));
+        assertEquals(Set.of("in", "big"), matches(index, message));
+        assertEquals(Set.of("in"), matches(index, message(Map.of("region", SpanString.of("US"), "amount", 99))));
+        assertEquals(2, index.size());
+    }
+
+    private static Set<String> matches(SelectorIndex<String> index, Message message) {
+        Set<String> matched = new HashSet<>();
+        index.match(message, matched::add);
+        return matched;
+    }
+
+    private static String randomSelector(Random random) {
+        String region = "'" + REGIONS[random.nextInt(REGIONS.length)] + "'";
+        int a = random.nextInt(1000);
+        int b = a + random.nextInt(200);
+        return switch (random.nextInt(12)) {
+            case 0 -> null;
+            case 1 -> "region = " + region;
+            case 2 -> "region = " + region + " AND amount > " + a;
+            case 3 -> "amount BETWEEN " + a + " AND " + b + " AND vip";
+            case 4 -> "amount >= " + a + ".5 AND region <> " + region;
+            case 5 -> "amount < " + a;
+            case 6 -> "region IN (" + region + ", 'US') AND amount <= " + b;
+            case 7 -> "amount = " + a + " OR region = " + region;
+            case 8 -> "vip = " + random.nextBoolean() + " AND amount NOT BETWEEN " + a + " AND " + b;
+            case 9 -> "amount = " + a + ".5";
+            case 10 -> "NOT region = " + region;
+            default -> "region LIKE '%A%' AND amount > " + a;
+        };
+    }
+
+    private static Message message(Map<String, Object> properties) {
+        MessageBuilder builder = MessageBuilder.builder().address("orders");
+        properties.forEach(builder::property);
+        return builder.body(new byte[8]).build();
+    }
+}
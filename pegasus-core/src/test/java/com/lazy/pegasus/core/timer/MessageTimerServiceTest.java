@@ -0,0 +1,79 @@
+package com.lazy.pegasus.core.timer;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageTimerServiceTest {
+
+    @Test
+    void expiresMessagesInBatches() {
+        AtomicLong clock = new AtomicLong(1000);
+        SpanString expiryAddress = SpanString.of("expiry");
+        List<Integer> batches = new ArrayList<>();
+        List<Message> expired = new ArrayList<>();
+        List<Message> delivered = new ArrayList<>();
+        MessageTimerService service = new MessageTimerService(expiryAddress, (address, messages) -> {
+            assertEquals(expiryAddress, address);
+            batches.add(messages.size());
+            expired.addAll(messages);
+        }, delivered::addAll, 10, 4, clock::get);
+
+        for (int i = 0; i < 10; i++) {
+            assertTrue(service.scheduleExpiration(message(i).expiration(1100).build()) >= 0);
+        }
+        long cancelled = service.scheduleExpiration(message(10).expiration(1100).build());
+        assertEquals(-1, service.scheduleExpiration(message(11).build()));
+        service.scheduleDelivery(message(12).scheduledDeliveryTime(1050).build());
+        assertTrue(service.cancelExpiration(cancelled));
+        assertEquals(10, service.getPendingExpirations());
+
+        clock.set(1050);
+        assertEquals(1, service.tick());
+        assertEquals(12, delivered.get(0).getMessageId());
+        assertTrue(expired.isEmpty());
+
+        clock.set(1100);
+        assertEquals(10, service.tick());
+        assertEquals(List.of(4, 4, 2), batches);
+        assertEquals(10, expired.size());
+        assertEquals(0, service.getPendingExpirations());
+        assertEquals(0, service.getPendingDeliveries());
+    }
+
+    @Test
+    void handsOverBatchesFollowingAFailedOne() {
+        AtomicLong clock = new AtomicLong(1000);
+        List<Message> expired = new ArrayList<>();
+        List<Message> delivered = new ArrayList<>();
+        AtomicLong calls = new AtomicLong();
+        MessageTimerService service = new MessageTimerService(SpanString.of("expiry"), (address, messages) -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("expiry address is full");
+            }
+            expired.addAll(messages);
+        }, delivered::addAll, 10, 2, clock::get);
+
+        for (int i = 0; i < 6; i++) {
+            service.scheduleExpiration(message(i).expiration(1100).build());
+        }
+        service.scheduleDelivery(message(6).scheduledDeliveryTime(1100).build());
+
+        clock.set(1100);
+        assertEquals(7, service.tick());
+        assertEquals(3, calls.get());
+        assertEquals(4, expired.size());
+        assertEquals(1, delivered.size());
+    }
+
+    private static MessageBuilder message(long id) {
+        return MessageBuilder.builder().address("q").messageId(id);
+    }
+}
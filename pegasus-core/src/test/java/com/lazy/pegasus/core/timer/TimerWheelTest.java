@@ -0,0 +1,111 @@
+package com.lazy.pegasus.core.timer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerWheelTest {
+
+    @Test
+    void firesInOrderOfDeadline() {
+        TimerWheel<Long> wheel = new TimerWheel<>(10, 0);
+        long[] deadlines = {5_000, 15, 700, 40_000, 10, 1_000_000, 650};
+        for (long deadline : deadlines) {
+            wheel.schedule(deadline, deadline);
+        }
+        assertEquals(deadlines.length, wheel.size());
+
+        List<Long> fired = new ArrayList<>();
+        assertEquals(1, wheel.advance(10, fired::add));
+        assertEquals(List.of(10L), fired);
+        assertEquals(0, wheel.advance(19, fired::add));
+        assertEquals(5, wheel.advance(40_000, fired::add));
+        assertEquals(List.of(10L, 15L, 650L, 700L, 5_000L, 40_000L), fired);
+        assertEquals(1, wheel.size());
+
+        assertEquals(0, wheel.advance(999_990, fired::add));
+        assertEquals(1, wheel.advance(1_000_000, fired::add));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void firesNoEarlierThanDeadline() {
+        TimerWheel<Long> wheel = new TimerWheel<>(1, 0);
+        AtomicLong now = new AtomicLong();
+        List<Long> late = new ArrayList<>();
+        for (long deadline = 1; deadline < 300_000; deadline += 97) {
+            wheel.schedule(deadline, deadline);
+        }
+        for (long t = 0; t <= 300_000; t += 31) {
+            now.set(t);
+            wheel.advance(t, deadline -> {
+                assertTrue(deadline <= now.get());
+                if (now.get() - deadline >= 31) {
+                    late.add(deadline);
+                }
+            });
+        }
+        assertTrue(late.isEmpty());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void beyondRange() {
+        TimerWheel<String> wheel = new TimerWheel<>(1, 0);
+        long range = 1L << 24;
+        wheel.schedule(3 * range + 5, "far");
+        List<String> fired = new ArrayList<>();
+        assertEquals(0, wheel.advance(3 * range + 4, fired::add));
+        assertEquals(1, wheel.advance(3 * range + 5, fired::add));
+        assertEquals(List.of("far"), fired);
+    }
+
+    @Test
+    void cancel() {
+        TimerWheel<String> wheel = new TimerWheel<>(10, 0, 2);
+        long a = wheel.schedule(100, "a");
+        long b = wheel.schedule(100, "b");
+        long c = wheel.schedule(100_000, "c");
+        assertEquals("b", wheel.cancel(b));
+        assertNull(wheel.cancel(b));
+        assertEquals("c", wheel.cancel(c));
+
+        List<String> fired = new ArrayList<>();
+        wheel.advance(100_000, fired::add);
+        assertEquals(List.of("a"), fired);
+        // index of a is reused, the old id does not cancel the new timer
+        long d = wheel.schedule(200_000, "d");
+        assertEquals((int) a, (int) d);
+        assertNull(wheel.cancel(a));
+        assertEquals("d", wheel.cancel(d));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void farDeadlineDoesNotOverflow() {
+        TimerWheel<String> wheel = new TimerWheel<>(10, 1000);
+        wheel.schedule(Long.MAX_VALUE, "never");
+        wheel.schedule(Long.MAX_VALUE - 5, "never");
+        TimerWheel<String> negativeStart = new TimerWheel<>(1, -1000);
+        negativeStart.schedule(Long.MAX_VALUE, "never");
+
+        assertEquals(0, wheel.advance(1_000_000, s -> fail(s)));
+        assertEquals(2, wheel.size());
+        assertEquals(0, negativeStart.advance(1_000_000, s -> fail(s)));
+        assertEquals(1, negativeStart.size());
+    }
+
+    @Test
+    void dueDeadlineFiresOnNextTick() {
+        TimerWheel<String> wheel = new TimerWheel<>(10, 1000);
+        wheel.advance(2000, s -> fail());
+        wheel.schedule(500, "past");
+        List<String> fired = new ArrayList<>();
+        assertEquals(1, wheel.advance(2010, fired::add));
+        assertEquals(List.of("past"), fired);
+    }
+}
@@ -0,0 +1,389 @@
+package com.lazy.pegasus.core.topic;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import com.lazy.pegasus.core.journal.FileJournal;
+import com.lazy.pegasus.core.journal.JournalConfiguration;
+import com.lazy.pegasus.core.journal.RecordInfo;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import com.lazy.pegasus.core.persistence.RecordTypes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicLogTest {
+
+    private static final SpanString ADDRESS = SpanString.of("orders");
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong recordIds = new AtomicLong();
+    private FileJournal journal;
+    private TopicLogManager manager;
+
+    @AfterEach
+    void tearDown() throws PegasusException {
+        journal.stop();
+    }
+
+    @Test
+    void oneRecordPerMessage() throws PegasusException {
+        List<RecordInfo> records = restart();
+        assertTrue(records.isEmpty());
+        TopicLog log = manager.getTopicLog(ADDRESS);
+        assertEquals(-1, log.publish(message(0)));
+
+        for (int i = 0; i < 10; i++) {
+            log.createSubscription(SpanString.of("s" + i));
+        }
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, log.publish(message(i)));
+        }
+
+        records = restart();
+        assertEquals(100, count(records, RecordTypes.TOPIC_MESSAGE));
+        assertEquals(10, count(records, RecordTypes.SUBSCRIPTION));
+        log = manager.getTopicLog(ADDRESS);
+        assertEquals(100, log.getMessageCount());
+        for (DurableSubscription subscription : log.getSubscriptions()) {
+            assertEquals(100, subscription.getMessageCount());
+            assertEquals(42, subscription.getMessage(42).getMessageId());
+        }
+    }
+
+    @Test
+    void cursorSurvivesRestart() throws PegasusException {
+        restart();
+        TopicLog log = manager.getTopicLog(ADDRESS);
+        DurableSubscription fast = log.createSubscription(SpanString.of("fast"));
+        DurableSubscription slow = log.createSubscription(SpanString.of("slow"));
+        for (int i = 0; i < 20; i++) {
+            log.publish(message(i));
+        }
+
+        long sequence;
+        while ((sequence = fast.receive()) >= 0) {
+            assertTrue(fast.acknowledge(sequence));
+        }
+        assertEquals(20, fast.getAckFloor());
+        assertEquals(20, log.getMessageCount());
+
+        // slow acknowledges 0-4 and every other message above
+        for (int i = 0; i < 20; i++) {
+            sequence = slow.receive();
+            if (i < 5 || i % 2 == 0) {
+                slow.acknowledge(sequence, AckMode.INDIVIDUAL, i == 19);
+            }
+        }
+        assertEquals(5, slow.getAckFloor());
+        assertEquals(7, slow.getAckedRangesCount());
+        assertFalse(slow.acknowledge(6));
+        assertEquals(15, log.getMessageCount());
+        assertNull(log.get(4));
+
+        restart();
+        log = manager.getTopicLog(ADDRESS);
+        fast = log.getSubscription(SpanString.of("fast"));
+        slow = log.getSubscription(SpanString.of("slow"));
+        assertEquals(20, fast.getAckFloor());
+        assertEquals(-1, fast.receive());
+        assertEquals(5, slow.getAckFloor());
+        assertEquals(8, slow.getMessageCount());
+        assertEquals(15, log.getMessageCount());
+        assertEquals(5, log.getFirstSequence());
+        for (int i = 5; i < 20; i += 2) {
+            sequence = slow.receive();
+            assertEquals(i, sequence);
+            assertEquals(i, slow.getMessage(sequence).getMessageId());
+            slow.acknowledge(sequence);
+        }
+        assertEquals(-1, slow.receive());
+        assertEquals(20, slow.getAckFloor());
+        assertEquals(0, slow.getAckedRangesCount());
+        assertEquals(0, log.getMessageCount());
+
+        // messages are deleted from journal, and sequences go on after them
+        assertEquals(0, count(restart(), RecordTypes.TOPIC_MESSAGE));
+        log = manager.getTopicLog(ADDRESS);
+        assertEquals(20, log.publish(message(20)));
+    }
+
+    @Test
+    void removeSubscriptionReleasesMessages() throws PegasusException {
+        restart();
+        TopicLog log = manager.getTopicLog(ADDRESS);
+        DurableSubscription kept = log.createSubscription(SpanString.of("kept"));
+        log.createSubscription(SpanString.of("removed"));
+        assertThrows(IllegalStateException.class, () -> log.createSubscription(SpanString.of("kept")));
+
+        Message message = message(1);
+        long sequence = log.publish(message);
+        kept.acknowledge(kept.receive());
+        assertEquals(1, message.getBuffer().refCnt());
+
+        log.removeSubscription(SpanString.of("removed"));
+        assertEquals(0, message.getBuffer().refCnt());
+        assertNull(log.get(sequence));
+
+        restart();
+        assertEquals(1, manager.getTopicLog(ADDRESS).getSubscriptions().size());
+    }
+
+    @Test
+    void recoverRedelivers() throws PegasusException {
+        restart();
+        TopicLog log = manager.getTopicLog(ADDRESS);
+        DurableSubscription subscription = log.createSubscription(SpanString.of("s"));
+        for (int i = 0; i < 3; i++) {
+            log.publish(message(i));
+        }
+        assertEquals(0, subscription.receive());
+        assertEquals(1, subscription.receive());
+        subscription.acknowledge(1);
+        subscription.recover();
+        assertEquals(0, subscription.receive());
+        assertEquals(2, subscription.receive());
+        assertThrows(IllegalArgumentException.class, () -> subscription.acknowledge(3));
+    }
+
+    @Test
+    void cumulativeAcknowledge() throws PegasusException {
+        restart();
+        TopicLog log = manager.getTopicLog(ADDRESS);
+        DurableSubscription subscription = log.createSubscription(SpanString.of("s"));
+        for (int i = 0; i < 10; i++) {
+            log.publish(message(i));
+        }
+        subscription.acknowledge(7);
+        subscription.acknowledge(3);
+        assertEquals(2, subscription.getAckedRangesCount());
+
+        assertTrue(subscription.acknowledge(5, AckMode.CUMULATIVE, true));
+        assertEquals(6, subscription.getAckFloor());
+        assertEquals(1, subscription.getAckedRangesCount());
+        assertFalse(subscription.acknowledge(4, AckMode.CUMULATIVE, false));
+        assertTrue(subscription.acknowledge(6, AckMode.CUMULATIVE, false));
+        assertEquals(8, subscription.getAckFloor());
+        assertEquals(0, subscription.getAckedRangesCount());
+        assertEquals(2, log.getMessageCount());
+
+        restart();
+        subscription = manager.getTopicLog(ADDRESS).getSubscription(SpanString.of("s"));
+        assertEquals(8, subscription.getAckFloor());
+        assertEquals(8, subscription.receive());
+    }
+
+    @Test
+    void journalsOnlyDurableMessages() throws PegasusException {
+        restart();
+        TopicLog log = manager.getTopicLog(ADDRESS);
+        DurableSubscription subscription = log.createSubscription(SpanString.of("s"));
+        for (int i = 0; i < 10; i++) {
+            Message message = MessageBuilder.builder().address(ADDRESS).messageId(i).durable(i < 5).build();
+            assertEquals(i, log.publish(message));
+        }
+        // a non-durable message acknowledged above the floor
+        assertTrue(subscription.acknowledge(8));
+
+        List<RecordInfo> records = restart();
+        assertEquals(5, count(records, RecordTypes.TOPIC_MESSAGE));
+        log = manager.getTopicLog(ADDRESS);
+        subscription = log.getSubscription(SpanString.of("s"));
+        // the sequences acknowledged before the restart are not given to new messages
+        assertEquals(9, log.publish(message(10)));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, subscription.receive());
+        }
+        assertEquals(9, subscription.receive());
+        assertEquals(10, subscription.getMessage(9).getMessageId());
+    }
+
+    @Test
+    void keepsCursorWhenJournalFails() throws PegasusException {
+        FailingJournal failing = startFailing();
+
+        TopicLog log = manager.getTopicLog(ADDRESS);
+        DurableSubscription subscription = log.createSubscription(SpanString.of("s"));
+        for (int i = 0; i < 5; i++) {
+            log.publish(message(i));
+        }
+        assertTrue(subscription.acknowledge(1));
+
+        failing.failUpdates = true;
+        assertThrows(PegasusException.class, () -> subscription.acknowledge(0));
+        assertThrows(PegasusException.class, () -> subscription.acknowledge(3, AckMode.CUMULATIVE, false));
+        assertThrows(PegasusException.class, () -> subscription.acknowledge(3));
+        assertEquals(0, subscription.getAckFloor());
+        assertEquals(1, subscription.getAckedRangesCount());
+        assertEquals(4, subscription.getMessageCount());
+        assertEquals(5, log.getMessageCount());
+        assertNotNull(log.get(0));
+
+        failing.failUpdates = false;
+        assertTrue(subscription.acknowledge(0));
+        assertEquals(2, subscription.getAckFloor());
+        assertEquals(3, log.getMessageCount());
+        assertTrue(subscription.acknowledge(3));
+    }
+
+    @Test
+    void keepsSubscriptionWhenDeleteFails() throws PegasusException {
+        FailingJournal failing = startFailing();
+        TopicLog log = manager.getTopicLog(ADDRESS);
+        DurableSubscription kept = log.createSubscription(SpanString.of("kept"));
+        DurableSubscription removed = log.createSubscription(SpanString.of("removed"));
+        log.publish(message(0));
+        kept.acknowledge(kept.receive());
+
+        failing.failDeletes = true;
+        assertThrows(PegasusException.class, () -> log.removeSubscription(SpanString.of("removed")));
+        assertSame(removed, log.getSubscription(SpanString.of("removed")));
+        assertEquals(1, log.getMessageCount());
+
+        failing.failDeletes = false;
+        assertSame(removed, log.removeSubscription(SpanString.of("removed")));
+        assertNull(log.removeSubscription(SpanString.of("removed")));
+        assertEquals(0, log.getMessageCount());
+        assertThrows(IllegalStateException.class, () -> removed.acknowledge(0));
+
+        restart();
+        assertEquals(1, manager.getTopicLog(ADDRESS).getSubscriptions().size());
+    }
+
+    @Test
+    void neverPublishesMessageWhoseSyncFailed() throws Exception {
+        FailingJournal failing = startFailing();
+        TopicLog log = manager.getTopicLog(ADDRESS);
+        DurableSubscription subscription = log.createSubscription(SpanString.of("s"));
+        failing.heldSync = new CompletableFuture<>();
+
+        Message failed = message(0);
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        Thread publisher = new Thread(() -> {
+            try {
+                log.publish(failed);
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        publisher.start();
+        assertTrue(failing.appended.await(10, TimeUnit.SECONDS));
+        failing.heldSync = null;
+
+        // a message following one being synced waits for it
+        Message following = MessageBuilder.builder().address(ADDRESS).messageId(1).durable(false).build();
+        assertEquals(1, log.publish(following));
+        assertEquals(-1, subscription.receive());
+        assertNull(log.get(0));
+        assertEquals(0, subscription.getMessageCount());
+
+        failing.syncs.poll().completeExceptionally(new PegasusException("Sync failed", PegasusExceptionType.IO_ERROR));
+        publisher.join(10_000);
+        assertInstanceOf(PegasusException.class, error.get());
+        assertEquals(0, failed.getBuffer().refCnt());
+
+        assertEquals(1, subscription.receive());
+        assertEquals(-1, subscription.receive());
+        assertNull(log.get(0));
+        assertSame(following, subscription.getMessage(1));
+        assertEquals(1, subscription.getMessageCount());
+        assertEquals(1, subscription.getAckFloor());
+        assertTrue(subscription.acknowledge(1));
+        assertEquals(2, subscription.getAckFloor());
+        assertEquals(0, log.getMessageCount());
+    }
+
+    private FailingJournal startFailing() throws PegasusException {
+        restart();
+        journal.stop();
+        FailingJournal failing = new FailingJournal(new JournalConfiguration(dir).setFileSize(64 * 1024));
+        journal = failing;
+        journal.start();
+        manager = new TopicLogManager(journal, recordIds::incrementAndGet);
+        manager.load(journal.load());
+        return failing;
+    }
+
+    private List<RecordInfo> restart() throws PegasusException {
+        if (journal != null) {
+            journal.stop();
+        }
+        journal = new FileJournal(new JournalConfiguration(dir).setFileSize(64 * 1024).setMinFiles(2));
+        journal.start();
+        List<RecordInfo> records = journal.load();
+        for (RecordInfo record : records) {
+            recordIds.accumulateAndGet(record.getId(), Math::max);
+        }
+        manager = new TopicLogManager(journal, recordIds::incrementAndGet);
+        manager.load(records);
+        return records;
+    }
+
+    private static long count(List<RecordInfo> records, byte type) {
+        return records.stream().filter(r -> r.getUserRecordType() == type).count();
+    }
+
+    private static Message message(long id) {
+        return MessageBuilder.builder().address(ADDRESS).messageId(id).durable(true).body(new byte[128]).build();
+    }
+
+    private static final class FailingJournal extends FileJournal {
+
+        private final CountDownLatch appended = new CountDownLatch(1);
+        private final Queue<CompletableFuture<Void>> syncs = new ConcurrentLinkedQueue<>();
+        private volatile CompletableFuture<Void> heldSync;
+        private boolean failUpdates;
+        private boolean failDeletes;
+
+        private FailingJournal(JournalConfiguration config) {
+            super(config);
+        }
+
+        @Override
+        public void appendUpdateRecord(long id, byte userRecordType, PegasusBuffer body, boolean sync)
+                throws PegasusException {
+            if (failUpdates) {
+                throw new PegasusException("Update failed", PegasusExceptionType.JOURNAL_ERROR);
+            }
+            super.appendUpdateRecord(id, userRecordType, body, sync);
+        }
+
+        @Override
+        public CompletableFuture<Void> appendAddRecordAsync(long id, byte userRecordType, PegasusBuffer body)
+                throws PegasusException {
+            CompletableFuture<Void> synced = super.appendAddRecordAsync(id, userRecordType, body);
+            CompletableFuture<Void> held = heldSync;
+            if (held == null) {
+                return synced;
+            }
+            // the record is written, but its sync completes as the test decides
+            syncs.add(held);
+            appended.countDown();
+            return held;
+        }
+
+        @Override
+        public void appendDeleteRecord(long id, boolean sync) throws PegasusException {
+            if (failDeletes) {
+                throw new PegasusException("Delete failed", PegasusExceptionType.JOURNAL_ERROR);
+            }
+            super.appendDeleteRecord(id, sync);
+        }
+    }
+}
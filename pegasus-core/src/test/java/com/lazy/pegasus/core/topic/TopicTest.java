@@ -0,0 +1,140 @@
+package com.lazy.pegasus.core.topic;
+
+import com.lazy.pegasus.core.common.SpanString;
+import com.lazy.pegasus.core.message.Message;
+import com.lazy.pegasus.core.message.MessageBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TopicTest {
+
+    private static final SpanString ADDRESS = SpanString.of("prices");
+
+    @Test
+    void sharesMessageAcrossSubscriptions() {
+        Topic topic = new Topic(ADDRESS);
+        List<TopicSubscription> subscriptions = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            subscriptions.add(topic.createSubscription(SpanString.of("s" + i)));
+        }
+
+        Message message = message(1, new byte[64 * 1024]);
+        assertEquals(1000, topic.publish(message));
+        assertEquals(1000, message.getBuffer().refCnt());
+
+        for (TopicSubscription subscription : subscriptions) {
+            long tag = subscription.receive();
+            assertSame(message, subscription.getMessage(tag));
+            assertTrue(subscription.acknowledge(tag));
+        }
+        assertEquals(0, message.getBuffer().refCnt());
+    }
+
+    @Test
+    void outOfOrderAcknowledgements() {
+        Topic topic = new Topic(ADDRESS);
+        TopicSubscription subscription = topic.createSubscription(SpanString.of("s"));
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Message message = message(i, new byte[16]);
+            messages.add(message);
+            topic.publish(message);
+        }
+
+        long[] tags = new long[100];
+        for (int i = 0; i < 100; i++) {
+            tags[i] = subscription.receive();
+            assertEquals(i, subscription.getMessage(tags[i]).getMessageId());
+        }
+        assertEquals(-1, subscription.receive());
+        assertEquals(100, subscription.getDeliveringCount());
+
+        for (int i = 99; i > 0; i--) {
+            assertTrue(subscription.acknowledge(tags[i]));
+        }
+        assertFalse(subscription.acknowledge(tags[99]));
+        // held until the oldest message is acknowledged
+        assertEquals(1, messages.get(99).getBuffer().refCnt());
+        assertEquals(1, subscription.getMessageCount());
+
+        assertTrue(subscription.acknowledge(tags[0]));
+        assertEquals(0, subscription.getMessageCount());
+        for (Message message : messages) {
+            assertEquals(0, message.getBuffer().refCnt());
+        }
+    }
+
+    @Test
+    void removeSubscriptionAfterOutOfOrderAcknowledgements() {
+        Topic topic = new Topic(ADDRESS);
+        TopicSubscription subscription = topic.createSubscription(SpanString.of("s"));
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Message message = message(i, new byte[16]);
+            messages.add(message);
+            topic.publish(message);
+        }
+        subscription.receive();
+        subscription.receive();
+        assertTrue(subscription.acknowledge(1));
+
+        topic.removeSubscription(SpanString.of("s"));
+        for (Message message : messages) {
+            assertEquals(0, message.getBuffer().refCnt());
+        }
+    }
+
+    @Test
+    void redeliverKeepsOrderAndCount() {
+        Topic topic = new Topic(ADDRESS);
+        TopicSubscription subscription = topic.createSubscription(SpanString.of("s"));
+        for (int i = 0; i < 3; i++) {
+            topic.publish(message(i, new byte[0]));
+        }
+
+        long first = subscription.receive();
+        long second = subscription.receive();
+        subscription.redeliver(first);
+        assertThrows(IllegalStateException.class, () -> subscription.acknowledge(first));
+
+        assertEquals(first, subscription.receive());
+        assertEquals(2, subscription.getDeliveryCount(first));
+        assertEquals(1, subscription.getDeliveryCount(second));
+        long third = subscription.receive();
+        assertEquals(2, subscription.getMessage(third).getMessageId());
+        assertEquals(-1, subscription.receive());
+    }
+
+    @Test
+    void removeSubscriptionReleasesMessages() {
+        Topic topic = new Topic(ADDRESS);
+        TopicSubscription kept = topic.createSubscription(SpanString.of("kept"));
+        topic.createSubscription(SpanString.of("removed"));
+        assertThrows(IllegalStateException.class, () -> topic.createSubscription(SpanString.of("kept")));
+
+        Message message = message(1, new byte[8]);
+        topic.publish(message);
+        assertEquals(2, message.getBuffer().refCnt());
+
+        TopicSubscription removed = topic.removeSubscription(SpanString.of("removed"));
+        assertTrue(removed.isClosed());
+        assertEquals(1, message.getBuffer().refCnt());
+        assertEquals(1, topic.getSubscriptionsCount());
+
+        kept.acknowledge(kept.receive());
+        assertEquals(0, message.getBuffer().refCnt());
+
+        Message unrouted = message(2, new byte[8]);
+        topic.close();
+        assertEquals(0, topic.publish(unrouted));
+        assertEquals(0, unrouted.getBuffer().refCnt());
+    }
+
+    private static Message message(long id, byte[] body) {
+        return MessageBuilder.builder().address(ADDRESS).messageId(id).body(body).build();
+    }
+}
@@ -0,0 +1,126 @@
+package com.lazy.pegasus.core.transaction;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.journal.FileJournal;
+import com.lazy.pegasus.core.journal.JournalConfiguration;
+import com.lazy.pegasus.core.journal.RecordInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransactionTest {
+
+    private static final byte USER_TYPE = 30;
+
+    @TempDir
+    Path dir;
+
+    private FileJournal journal;
+    private TransactionManager manager;
+
+    @BeforeEach
+    void setUp() throws PegasusException {
+        open();
+        journal.load();
+    }
+
+    @AfterEach
+    void tearDown() throws PegasusException {
+        journal.stop();
+    }
+
+    @Test
+    void commitIsSyncedOnce() throws PegasusException {
+        Transaction tx = manager.begin();
+        for (int i = 0; i < 1000; i++) {
+            tx.appendAddRecord(i, USER_TYPE, body("message-" + i));
+        }
+        tx.appendDeleteRecord(0);
+        List<String> committed = new ArrayList<>();
+        tx.afterCommit(() -> committed.add("delivered"));
+        assertEquals(1, manager.getActiveCount());
+
+        long syncs = journal.getSyncCount();
+        tx.commit();
+        assertEquals(syncs + 1, journal.getSyncCount());
+        assertEquals(Transaction.State.COMMITTED, tx.getState());
+        assertEquals(List.of("delivered"), committed);
+        assertEquals(0, manager.getActiveCount());
+        assertThrows(IllegalStateException.class, () -> tx.appendDeleteRecord(1));
+
+        List<RecordInfo> records = restart();
+        assertEquals(999, records.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(i + 1, records.get(i).getId());
+            assertEquals("message-" + (i + 1), PegasusBuffers.wrappedBuffer(records.get(i).getData()).readString());
+        }
+    }
+
+    @Test
+    void rollbackWritesNothing() throws PegasusException {
+        Transaction tx = manager.begin();
+        tx.appendAddRecord(1, USER_TYPE, body("one"));
+        List<String> rolledBack = new ArrayList<>();
+        tx.afterCommit(() -> fail("committed"));
+        tx.afterRollback(() -> rolledBack.add("discarded"));
+
+        long syncs = journal.getSyncCount();
+        tx.rollback();
+        assertEquals(syncs, journal.getSyncCount());
+        assertEquals(Transaction.State.ROLLED_BACK, tx.getState());
+        assertEquals(List.of("discarded"), rolledBack);
+        assertEquals(0, tx.getOperationsCount());
+        assertThrows(IllegalStateException.class, tx::commit);
+
+        Transaction empty = manager.begin();
+        empty.commit();
+        assertEquals(syncs, journal.getSyncCount());
+        assertEquals(0, manager.getActiveCount());
+
+        assertTrue(restart().isEmpty());
+    }
+
+    @Test
+    void failedCommitIsRolledBack() throws PegasusException {
+        Transaction tx = manager.begin();
+        for (int i = 0; i < 2000; i++) {
+            tx.appendAddRecord(i, USER_TYPE, body("message-" + i));
+        }
+        List<String> rolledBack = new ArrayList<>();
+        tx.afterRollback(() -> rolledBack.add("discarded"));
+
+        assertThrows(PegasusException.class, tx::commit);
+        assertEquals(Transaction.State.ROLLED_BACK, tx.getState());
+        assertEquals(List.of("discarded"), rolledBack);
+        assertEquals(0, manager.getActiveCount());
+        assertTrue(restart().isEmpty());
+    }
+
+    private List<RecordInfo> restart() throws PegasusException {
+        journal.stop();
+        open();
+        return journal.load();
+    }
+
+    private void open() throws PegasusException {
+        journal = new FileJournal(new JournalConfiguration(dir).setFileSize(64 * 1024).setMinFiles(2));
+        journal.start();
+        manager = new TransactionManager(journal, new AtomicLong()::incrementAndGet);
+    }
+
+    private static PegasusBuffer body(String s) {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(32);
+        buf.writeString(s);
+        return buf;
+    }
+}
@@ -0,0 +1,267 @@
+package com.lazy.pegasus.core.transaction;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.journal.FileJournal;
+import com.lazy.pegasus.core.journal.JournalConfiguration;
+import com.lazy.pegasus.core.journal.RecordInfo;
+import com.lazy.pegasus.core.persistence.RecordTypes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.XAResource;
+import javax.transaction.xa.Xid;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class XAResourceManagerTest {
+
+    private static final byte USER_TYPE = 30;
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong ids = new AtomicLong(1000);
+    private FileJournal journal;
+    private XAResourceManager manager;
+    private List<RecordInfo> loaded;
+
+    @BeforeEach
+    void setUp() throws PegasusException {
+        open(0);
+    }
+
+    @AfterEach
+    void tearDown() throws PegasusException {
+        journal.stop();
+    }
+
+    @Test
+    void xidIsCompact() {
+        Xid xid = xid(7, "global", "branch");
+        PegasusXid pegasusXid = PegasusXid.of(xid);
+        assertEquals(7, pegasusXid.getFormatId());
+        assertArrayEquals("global".getBytes(), pegasusXid.getGlobalTransactionId());
+        assertArrayEquals("branch".getBytes(), pegasusXid.getBranchQualifier());
+        assertEquals(pegasusXid, PegasusXid.of(xid(7, "global", "branch")));
+        assertNotEquals(pegasusXid, PegasusXid.of(xid(7, "global", "other")));
+        assertNotEquals(pegasusXid, PegasusXid.of(xid(8, "global", "branch")));
+
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(32);
+        pegasusXid.encode(buf);
+        assertEquals(pegasusXid.encodeSize(), buf.readableBytes());
+        assertEquals(pegasusXid, PegasusXid.decode(buf));
+    }
+
+    @Test
+    void twoPhaseCommit() throws Exception {
+        Xid xid = xid(1, "tx-1", "b");
+        XAResource resource = begin(xid, 1, 2);
+        assertEquals(XAResource.XA_OK, resource.prepare(xid));
+
+        long syncs = journal.getSyncCount();
+        resource.commit(xid, false);
+        assertEquals(syncs + 1, journal.getSyncCount());
+        assertEquals(0, manager.getBranchesCount());
+
+        restart();
+        assertEquals(List.of(1L, 2L), userRecordIds());
+        assertEquals(0, manager.recover().length);
+    }
+
+    @Test
+    void inDoubtBranchesAreRecovered() throws Exception {
+        Xid committed = xid(1, "tx-1", "b");
+        Xid rolledBack = xid(1, "tx-2", "b");
+        begin(committed, 1, 2).prepare(committed);
+        begin(rolledBack, 3).prepare(rolledBack);
+
+        restart();
+        // prepared operations are not applied until committed
+        assertTrue(userRecordIds().isEmpty());
+        XAResource resource = manager.createResource();
+        List<Xid> inDoubt = List.of(resource.recover(XAResource.TMSTARTRSCAN | XAResource.TMENDRSCAN));
+        assertEquals(2, inDoubt.size());
+        assertTrue(inDoubt.contains(PegasusXid.of(committed)));
+        assertTrue(inDoubt.contains(PegasusXid.of(rolledBack)));
+        assertEquals(0, resource.recover(XAResource.TMNOFLAGS).length);
+
+        resource.commit(committed, false);
+        resource.rollback(rolledBack);
+        XAException e = assertThrows(XAException.class, () -> resource.commit(committed, false));
+        assertEquals(XAException.XAER_NOTA, e.errorCode);
+
+        restart();
+        assertEquals(List.of(1L, 2L), userRecordIds());
+        assertEquals(0, manager.recover().length);
+    }
+
+    @Test
+    void heuristicCompletion() throws Exception {
+        Xid committed = xid(1, "tx-1", "b");
+        Xid rolledBack = xid(1, "tx-2", "b");
+        begin(committed, 1).prepare(committed);
+        begin(rolledBack, 2).prepare(rolledBack);
+        manager.heuristicCommit(committed);
+        manager.heuristicRollback(rolledBack);
+
+        restart();
+        assertEquals(List.of(1L), userRecordIds());
+        assertEquals(2, manager.recover().length);
+        XAResource resource = manager.createResource();
+        XAException e = assertThrows(XAException.class, () -> resource.commit(committed, false));
+        assertEquals(XAException.XA_HEURCOM, e.errorCode);
+        e = assertThrows(XAException.class, () -> resource.commit(rolledBack, false));
+        assertEquals(XAException.XA_HEURRB, e.errorCode);
+        resource.forget(committed);
+        resource.forget(rolledBack);
+
+        restart();
+        assertEquals(List.of(1L), userRecordIds());
+        assertEquals(0, manager.getBranchesCount());
+    }
+
+    @Test
+    void onePhaseAndReadOnly() throws Exception {
+        Xid onePhase = xid(1, "tx-1", "b");
+        long syncs = journal.getSyncCount();
+        begin(onePhase, 1).commit(onePhase, true);
+        assertEquals(syncs + 1, journal.getSyncCount());
+
+        Xid readOnly = xid(1, "tx-2", "b");
+        assertEquals(XAResource.XA_RDONLY, begin(readOnly).prepare(readOnly));
+        assertEquals(0, manager.getBranchesCount());
+
+        restart();
+        assertEquals(List.of(1L), userRecordIds());
+    }
+
+    @Test
+    void protocolErrors() throws Exception {
+        Xid xid = xid(1, "tx-1", "b");
+        PegasusXAResource resource = manager.createResource();
+        resource.start(xid, XAResource.TMNOFLAGS);
+        assertNotNull(resource.getTransaction());
+        assertEquals(XAException.XAER_PROTO, assertThrows(XAException.class,
+                () -> resource.start(xid(1, "tx-2", "b"), XAResource.TMNOFLAGS)).errorCode);
+        assertEquals(XAException.XAER_DUPID, assertThrows(XAException.class,
+                () -> manager.createResource().start(xid, XAResource.TMNOFLAGS)).errorCode);
+        assertEquals(XAException.XAER_PROTO, assertThrows(XAException.class, () -> resource.prepare(xid)).errorCode);
+
+        resource.getTransaction().appendAddRecord(1, USER_TYPE, body("one"));
+        resource.end(xid, XAResource.TMFAIL);
+        assertNull(resource.getTransaction());
+        assertEquals(XAException.XA_RBROLLBACK, assertThrows(XAException.class, () -> resource.prepare(xid)).errorCode);
+        assertEquals(XAException.XAER_NOTA, assertThrows(XAException.class, () -> resource.rollback(xid)).errorCode);
+
+        restart();
+        assertTrue(userRecordIds().isEmpty());
+    }
+
+    @Test
+    void concurrentPreparesAreGroupCommitted() throws Exception {
+        journal.stop();
+        open(TimeUnit.MILLISECONDS.toNanos(2));
+        int threads = 8;
+        int perThread = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long syncs = journal.getSyncCount();
+        try {
+            CountDownLatch ready = new CountDownLatch(threads);
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int base = t * perThread;
+                results.add(executor.submit(() -> {
+                    ready.countDown();
+                    ready.await();
+                    for (int i = base; i < base + perThread; i++) {
+                        Xid xid = xid(1, "tx-" + i, "b");
+                        XAResource resource = begin(xid, i);
+                        assertEquals(XAResource.XA_OK, resource.prepare(xid));
+                        resource.commit(xid, false);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        long prepareAndCommits = 2L * threads * perThread;
+        assertTrue(journal.getSyncCount() - syncs < prepareAndCommits, "syncs " + (journal.getSyncCount() - syncs));
+
+        restart();
+        assertEquals(threads * perThread, userRecordIds().size());
+    }
+
+    private PegasusXAResource begin(Xid xid, long... recordIds) throws XAException {
+        PegasusXAResource resource = manager.createResource();
+        resource.start(xid, XAResource.TMNOFLAGS);
+        for (long recordId : recordIds) {
+            resource.getTransaction().appendAddRecord(recordId, USER_TYPE, body("record-" + recordId));
+        }
+        resource.end(xid, XAResource.TMSUCCESS);
+        return resource;
+    }
+
+    private List<Long> userRecordIds() {
+        return loaded.stream().filter(r -> r.getUserRecordType() == USER_TYPE).map(RecordInfo::getId).toList();
+    }
+
+    private void restart() throws PegasusException {
+        journal.stop();
+        open(0);
+    }
+
+    private void open(long syncWindowNanos) throws PegasusException {
+        journal = new FileJournal(new JournalConfiguration(dir).setFileSize(64 * 1024).setMinFiles(2)
+                .setSyncWindowNanos(syncWindowNanos));
+        journal.start();
+        loaded = journal.load();
+        manager = new XAResourceManager(journal, new TransactionManager(journal, ids::incrementAndGet),
+                ids::incrementAndGet);
+        manager.load(loaded);
+        assertTrue(loaded.stream().allMatch(r -> r.getUserRecordType() == USER_TYPE ||
+                r.getUserRecordType() == RecordTypes.XA_PREPARE || r.getUserRecordType() == RecordTypes.XA_HEURISTIC));
+    }
+
+    private static Xid xid(int formatId, String gtrid, String bqual) {
+        return new Xid() {
+            @Override
+            public int getFormatId() {
+                return formatId;
+            }
+
+            @Override
+            public byte[] getGlobalTransactionId() {
+                return gtrid.getBytes();
+            }
+
+            @Override
+            public byte[] getBranchQualifier() {
+                return bqual.getBytes();
+            }
+        };
+    }
+
+    private static PegasusBuffer body(String s) {
+        PegasusBuffer buf = PegasusBuffers.dynamicBuffer(32);
+        buf.writeString(s);
+        return buf;
+    }
+}
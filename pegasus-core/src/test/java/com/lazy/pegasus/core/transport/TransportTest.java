@@ -0,0 +1,136 @@
+package com.lazy.pegasus.core.transport;
+
+import com.lazy.pegasus.core.common.PegasusBuffer;
+import com.lazy.pegasus.core.common.PegasusBuffers;
+import com.lazy.pegasus.core.exceptions.PegasusException;
+import com.lazy.pegasus.core.exceptions.PegasusExceptionType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TransportTest {
+
+    private TransportServer server;
+    private TransportClient client;
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) {
+            client.stop();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    void echoesFramesOverEpoll() throws Exception {
+        echoesFramesInOrder(true);
+    }
+
+    @Test
+    void echoesFramesOverNio() throws Exception {
+        echoesFramesInOrder(false);
+    }
+
+    @Test
+    void closesConnectionOnOversizedFrame() throws Exception {
+        start(new TransportConfiguration().setMaxFrameLength(1024), (connection, frame) -> fail("oversized frame"));
+        client = new TransportClient(config(true));
+        client.start();
+        Connection connection = client.connect("127.0.0.1", server.getPort(), (c, frame) -> { });
+        connection.send(PegasusBuffers.wrappedBuffer(new byte[2048])).get(10, TimeUnit.SECONDS);
+        connection.getCloseFuture().get(10, TimeUnit.SECONDS);
+        assertFalse(connection.isActive());
+    }
+
+    @Test
+    void rejectsFrameOverMaxLength() throws Exception {
+        start(config(true), (connection, frame) -> { });
+        client = new TransportClient(config(true).setMaxFrameLength(16));
+        client.start();
+        Connection connection = client.connect("127.0.0.1", server.getPort(), (c, frame) -> { });
+        PegasusBuffer buffer = PegasusBuffers.wrappedBuffer(new byte[17]);
+        assertThrows(IllegalArgumentException.class, () -> connection.send(buffer));
+        assertEquals(0, buffer.byteBuf().refCnt());
+    }
+
+    @Test
+    void failsToConnectToClosedPort() throws Exception {
+        start(config(true), (connection, frame) -> { });
+        int port = server.getPort();
+        server.stop();
+        client = new TransportClient(config(true));
+        client.start();
+        PegasusException e = assertThrows(PegasusException.class,
+                () -> client.connect("127.0.0.1", port, (c, frame) -> { }));
+        assertEquals(PegasusExceptionType.CONNECTION_ERROR, e.getType());
+    }
+
+    private void echoesFramesInOrder(boolean epoll) throws Exception {
+        // each frame is echoed prefixed by its length, composing a header with a slice of the received frame
+        start(config(epoll), (connection, frame) -> {
+            PegasusBuffer header = PegasusBuffers.fixedBuffer(4);
+            header.writeInt(frame.readableBytes());
+            connection.send(header, PegasusBuffers.wrappedBuffer(frame.byteBuf().retainedSlice()));
+        });
+        assertTrue(server.isStarted());
+
+        int frames = 5_000;
+        CountDownLatch done = new CountDownLatch(frames);
+        AtomicInteger next = new AtomicInteger();
+        AtomicReference<String> error = new AtomicReference<>();
+        client = new TransportClient(config(epoll));
+        client.start();
+        Connection connection = client.connect("127.0.0.1", server.getPort(), (c, frame) -> {
+            int i = next.getAndIncrement();
+            int length = frame.readInt();
+            if (length != sizeOf(i) || frame.readableBytes() != length) {
+                error.compareAndSet(null, "frame " + i + " has length " + length);
+            }
+            for (int j = 0; j < length; j++) {
+                if (frame.readByte() != (byte) (i + j)) {
+                    error.compareAndSet(null, "frame " + i + " differs at " + j);
+                    break;
+                }
+            }
+            done.countDown();
+        });
+
+        for (int i = 0; i < frames; i++) {
+            byte[] bytes = new byte[sizeOf(i)];
+            for (int j = 0; j < bytes.length; j++) {
+                bytes[j] = (byte) (i + j);
+            }
+            // frames are split across buffers, as the composite frames of the bridge
+            int half = bytes.length / 2;
+            connection.send(PegasusBuffers.wrappedBuffer(bytes).slice(0, half),
+                    PegasusBuffers.wrappedBuffer(bytes).slice(half, bytes.length - half));
+        }
+
+        assertTrue(done.await(30, TimeUnit.SECONDS), "received " + next.get());
+        assertNull(error.get());
+        assertEquals(1, server.getConnectionCount());
+        connection.close();
+        connection.getCloseFuture().get(10, TimeUnit.SECONDS);
+    }
+
+    private static int sizeOf(int i) {
+        return i % 1000 == 999 ? 1024 * 1024 : i % 512;
+    }
+
+    private void start(TransportConfiguration config, FrameHandler handler) throws PegasusException {
+        server = new TransportServer(config.setHost("127.0.0.1").setPort(0), handler);
+        server.start();
+    }
+
+    private static TransportConfiguration config(boolean epoll) {
+        return new TransportConfiguration().setEpoll(epoll).setIoThreads(1);
+    }
+}
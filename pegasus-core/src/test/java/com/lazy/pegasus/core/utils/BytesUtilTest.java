@@ -0,0 +1,82 @@
+package com.lazy.pegasus.core.utils;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BytesUtilTest {
+
+    @Test
+    void equalsDirectBufferAtOffset() {
+        for (int len = 0; len <= 20; len++) {
+            for (int offset = 0; offset < 9; offset++) {
+                byte[] left = bytes(len);
+                ByteBuf buf = Unpooled.directBuffer(offset + len);
+                buf.writeZero(offset);
+                buf.writeBytes(left);
+                assertTrue(buf.hasMemoryAddress());
+                assertTrue(BytesUtil.equals(left, buf, offset, len), "len " + len + ", offset " + offset);
+                assertMismatches(left, buf, offset);
+                buf.release();
+            }
+        }
+    }
+
+    @Test
+    void equalsHeapBufferAtOffset() {
+        for (int len = 0; len <= 20; len++) {
+            for (int offset = 0; offset < 9; offset++) {
+                byte[] left = bytes(len);
+                // a slice has an array offset of its own
+                ByteBuf buf = Unpooled.buffer(3 + offset + len).writeZero(3 + offset).writeBytes(left).slice(3,
+                        offset + len);
+                assertTrue(BytesUtil.equals(left, buf, offset, len), "len " + len + ", offset " + offset);
+                assertMismatches(left, buf, offset);
+            }
+        }
+    }
+
+    @Test
+    void equalsArrayAtOffset() {
+        for (int len = 0; len <= 20; len++) {
+            for (int offset = 0; offset < 9; offset++) {
+                byte[] left = bytes(len);
+                byte[] right = new byte[offset + len];
+                System.arraycopy(left, 0, right, offset, len);
+                assertTrue(BytesUtil.equals(left, right, offset, len), "len " + len + ", offset " + offset);
+                for (int i = 0; i < len; i++) {
+                    right[offset + i]++;
+                    assertFalse(BytesUtil.equals(left, right, offset, len), "len " + len + ", index " + i);
+                    right[offset + i]--;
+                }
+            }
+        }
+        assertFalse(BytesUtil.equals(bytes(8), bytes(9), 0, 9));
+    }
+
+    @Test
+    void rejectsRangeOutOfBuffer() {
+        ByteBuf buf = Unpooled.directBuffer(16).writeZero(8);
+        assertThrows(IndexOutOfBoundsException.class, () -> BytesUtil.equals(new byte[8], buf, 1, 8));
+        buf.release();
+    }
+
+    private static void assertMismatches(byte[] left, ByteBuf buf, int offset) {
+        for (int i = 0; i < left.length; i++) {
+            int index = offset + i;
+            buf.setByte(index, buf.getByte(index) + 1);
+            assertFalse(BytesUtil.equals(left, buf, offset, left.length), "len " + left.length + ", index " + i);
+            buf.setByte(index, buf.getByte(index) - 1);
+        }
+    }
+
+    private static byte[] bytes(int len) {
+        byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++) {
+            bytes[i] = (byte) (31 * i + 7);
+        }
+        return bytes;
+    }
+}